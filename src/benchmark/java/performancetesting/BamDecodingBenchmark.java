@@ -0,0 +1,65 @@
+package performancetesting;
+
+import htsjdk.samtools.*;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Decoding of a BAM file containing simulated reads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BamDecodingBenchmark {
+	private File workingDir;
+	private File bam;
+	@Setup
+	public void setup() throws IOException {
+		workingDir = Files.createTempDirectory("gridss.benchmark.").toFile();
+		SimulatedBreakpointDataset data = new SimulatedBreakpointDataset(workingDir, "random", 16, 100, 50, 100, 1);
+		bam = new File(workingDir, "simulated.bam");
+		SAMFileHeader header = data.reads.get(0).getHeader().clone();
+		header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+		try (SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(header, true, bam)) {
+			for (SAMRecord r : data.reads) {
+				writer.addAlignment(r);
+			}
+		}
+	}
+	@TearDown
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(workingDir);
+	}
+	/**
+	 * Decodes every field of every record
+	 */
+	@Benchmark
+	public long decode() throws IOException {
+		long checksum = 0;
+		try (SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(bam)) {
+			for (SAMRecord r : reader) {
+				checksum += r.getAlignmentStart() + r.getCigarLength() + r.getReadBases().length + r.getBaseQualities().length + r.getReadName().length();
+			}
+		}
+		return checksum;
+	}
+	/**
+	 * Decodes only the fixed-width record fields
+	 */
+	@Benchmark
+	public long decodeAlignmentStart() throws IOException {
+		long checksum = 0;
+		try (SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(bam)) {
+			for (SAMRecord r : reader) {
+				checksum += r.getAlignmentStart();
+			}
+		}
+		return checksum;
+	}
+}
@@ -0,0 +1,74 @@
+package performancetesting;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+
+/**
+ * Kmer encoding of reference sequence
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class KmerEncodingHelperBenchmark {
+	@Param({ "25", "31" })
+	public int k;
+	private byte[] bases;
+	private long[] kmers;
+	@Setup
+	public void setup() {
+		bases = TestHelper.SMALL_FA.getSequence("random").getBases();
+		kmers = new long[bases.length - k + 1];
+		for (int i = 0; i < kmers.length; i++) {
+			kmers[i] = KmerEncodingHelper.picardBaseToEncoded(k, Arrays.copyOfRange(bases, i, i + k));
+		}
+	}
+	@Benchmark
+	public long encode() {
+		long checksum = 0;
+		byte[] kmer = new byte[k];
+		for (int i = 0; i + k <= bases.length; i++) {
+			System.arraycopy(bases, i, kmer, 0, k);
+			checksum += KmerEncodingHelper.picardBaseToEncoded(k, kmer);
+		}
+		return checksum;
+	}
+	@Benchmark
+	public long nextState() {
+		long state = kmers[0];
+		long checksum = state;
+		for (int i = k; i < bases.length; i++) {
+			state = KmerEncodingHelper.nextState(k, state, bases[i]);
+			checksum += state;
+		}
+		return checksum;
+	}
+	@Benchmark
+	public long reverseComplement() {
+		long checksum = 0;
+		for (long kmer : kmers) {
+			checksum += KmerEncodingHelper.reverseComplement(k, kmer);
+		}
+		return checksum;
+	}
+	@Benchmark
+	public long basesDifference() {
+		long checksum = 0;
+		for (int i = 1; i < kmers.length; i++) {
+			checksum += KmerEncodingHelper.basesDifference(k, kmers[i - 1], kmers[i]);
+		}
+		return checksum;
+	}
+	@Benchmark
+	public long decode() {
+		long checksum = 0;
+		for (long kmer : kmers) {
+			checksum += KmerEncodingHelper.encodedToPicardBases(k, kmer)[0];
+		}
+		return checksum;
+	}
+}
@@ -0,0 +1,49 @@
+package performancetesting;
+
+import au.edu.wehi.idsv.AssemblyEvidenceSource;
+import au.edu.wehi.idsv.BreakendDirection;
+import au.edu.wehi.idsv.SequentialIdGenerator;
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.positional.PositionalAssembler;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Positional de Bruijn graph assembly of simulated soft clipped reads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PositionalAssemblerBenchmark {
+	@Param({ "Forward", "Backward" })
+	public BreakendDirection direction;
+	private File workingDir;
+	private SimulatedBreakpointDataset data;
+	private AssemblyEvidenceSource aes;
+	@Setup
+	public void setup() throws IOException {
+		workingDir = Files.createTempDirectory("gridss.benchmark.").toFile();
+		data = new SimulatedBreakpointDataset(workingDir, "random", 16, 100, 50, 100, 1);
+		aes = TestHelper.AES(data.ses);
+	}
+	@TearDown
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(workingDir);
+	}
+	@Benchmark
+	public int assemble() {
+		PositionalAssembler assembler = new PositionalAssembler(data.context, aes, new SequentialIdGenerator("asm"), data.evidence.iterator(), direction, null, null);
+		int contigs = 0;
+		while (assembler.hasNext()) {
+			assembler.next();
+			contigs++;
+		}
+		return contigs;
+	}
+}
@@ -0,0 +1,67 @@
+package performancetesting;
+
+import au.edu.wehi.idsv.BreakpointSummary;
+import au.edu.wehi.idsv.LinearGenomicCoordinate;
+import au.edu.wehi.idsv.VariantContextDirectedEvidence;
+import au.edu.wehi.idsv.graph.RectangleGraphMaximalCliqueCalculator;
+import au.edu.wehi.idsv.graph.RectangleGraphNode;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Maximal clique calling over read pair-like evidence rectangles
+ * surrounding simulated breakpoints
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RectangleGraphMaximalCliqueCalculatorBenchmark {
+	@Param({ "10", "100" })
+	public int evidencePerBreakpoint;
+	private static final int FRAGMENT_SIZE = 300;
+	private File workingDir;
+	private List<RectangleGraphNode> nodes;
+	@Setup
+	public void setup() throws IOException {
+		workingDir = Files.createTempDirectory("gridss.benchmark.").toFile();
+		SimulatedBreakpointDataset data = new SimulatedBreakpointDataset(workingDir, "random", 16, 100, 1, 100, 1);
+		LinearGenomicCoordinate lgc = data.context.getLinear();
+		Random rng = new Random(0);
+		nodes = new ArrayList<>();
+		for (VariantContextDirectedEvidence call : data.calls) {
+			BreakpointSummary bp = (BreakpointSummary)call.getBreakendSummary();
+			long x = lgc.getLinearCoordinate(bp.referenceIndex, bp.nominal);
+			long y = lgc.getLinearCoordinate(bp.referenceIndex2, bp.nominal2);
+			for (int i = 0; i < evidencePerBreakpoint; i++) {
+				// read pair evidence only constrains the breakpoint position to within the fragment size
+				long startX = x - rng.nextInt(FRAGMENT_SIZE);
+				long startY = y - rng.nextInt(FRAGMENT_SIZE);
+				nodes.add(new RectangleGraphNode(startX, startX + FRAGMENT_SIZE, startY, startY + FRAGMENT_SIZE, 1, 0));
+			}
+		}
+		nodes.sort(RectangleGraphNode.ByStartXYEndXY);
+	}
+	@TearDown
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(workingDir);
+	}
+	@Benchmark
+	public int calculateMaximalCliques() {
+		RectangleGraphMaximalCliqueCalculator calc = new RectangleGraphMaximalCliqueCalculator();
+		int cliques = 0;
+		for (RectangleGraphNode node : nodes) {
+			cliques += calc.next(node).size();
+		}
+		cliques += calc.complete().size();
+		return cliques;
+	}
+}
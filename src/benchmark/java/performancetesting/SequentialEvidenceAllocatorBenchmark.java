@@ -0,0 +1,52 @@
+package performancetesting;
+
+import au.edu.wehi.idsv.DirectedEvidence;
+import au.edu.wehi.idsv.DirectedEvidenceOrder;
+import au.edu.wehi.idsv.SequentialEvidenceAllocator;
+import au.edu.wehi.idsv.SequentialEvidenceAllocator.VariantEvidenceSupport;
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allocation of simulated soft clipped reads to simulated breakpoint calls
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SequentialEvidenceAllocatorBenchmark {
+	@Param({ "true", "false" })
+	public boolean assignEvidenceToSingleBreakpoint;
+	private File workingDir;
+	private SimulatedBreakpointDataset data;
+	private List<DirectedEvidence> evidence;
+	@Setup
+	public void setup() throws IOException {
+		workingDir = Files.createTempDirectory("gridss.benchmark.").toFile();
+		data = new SimulatedBreakpointDataset(workingDir, "random", 16, 100, 50, 100, 1);
+		evidence = new ArrayList<>(data.evidence);
+		evidence.sort(DirectedEvidenceOrder.ByNatural);
+	}
+	@TearDown
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(workingDir);
+	}
+	@Benchmark
+	public int allocate() {
+		SequentialEvidenceAllocator allocator = new SequentialEvidenceAllocator(data.context, data.calls.iterator(), evidence.iterator(), ImmutableList.<DirectedEvidence>of().iterator(), 1000, assignEvidenceToSingleBreakpoint);
+		int support = 0;
+		while (allocator.hasNext()) {
+			VariantEvidenceSupport ves = allocator.next();
+			support += ves.support.size();
+		}
+		return support;
+	}
+}
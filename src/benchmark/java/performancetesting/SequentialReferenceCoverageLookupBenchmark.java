@@ -0,0 +1,73 @@
+package performancetesting;
+
+import au.edu.wehi.idsv.SAMFlagReadPairConcordanceCalculator;
+import au.edu.wehi.idsv.SequentialReferenceCoverageLookup;
+import au.edu.wehi.idsv.TestHelper;
+import com.google.common.collect.ImmutableList;
+import gridss.analysis.IdsvMetrics;
+import htsjdk.samtools.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reference coverage calculation over high coverage concordant read pairs
+ * with a coverage query at every position.
+ *
+ * Scores are reported per read: divide the reads/second throughput
+ * by 1,000,000 to obtain millions of reads per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@OperationsPerInvocation(SequentialReferenceCoverageLookupBenchmark.READS)
+public class SequentialReferenceCoverageLookupBenchmark {
+	static final int READS = 1000000;
+	private static final int READ_LENGTH = 150;
+	private static final int FRAGMENT_SIZE = 500;
+	@Param({ "30", "100" })
+	public int coverage;
+	private IdsvMetrics metrics;
+	private List<SAMRecord> reads;
+	private int lastPosition;
+	@Setup
+	public void setup() {
+		metrics = new IdsvMetrics();
+		metrics.MAX_READ_LENGTH = READ_LENGTH;
+		metrics.MAX_READ_MAPPED_LENGTH = READ_LENGTH;
+		metrics.MAX_PROPER_PAIR_FRAGMENT_LENGTH = FRAGMENT_SIZE;
+		SAMFileHeader header = TestHelper.getHeader();
+		Cigar cigar = new Cigar(ImmutableList.of(new CigarElement(READ_LENGTH, CigarOperator.MATCH_OR_MISMATCH)));
+		reads = new ArrayList<>(READS);
+		for (int i = 0; i < READS; i++) {
+			// only the lower read of each pair is needed to keep the input coordinate sorted
+			int position = 1 + (int)((long)i * READ_LENGTH / coverage);
+			SAMRecord r = new SAMRecord(header);
+			r.setReferenceIndex(0);
+			r.setAlignmentStart(position);
+			r.setCigar(cigar);
+			r.setReadPairedFlag(true);
+			r.setProperPairFlag(true);
+			r.setFirstOfPairFlag(true);
+			r.setMateReferenceIndex(0);
+			r.setMateAlignmentStart(position + FRAGMENT_SIZE - READ_LENGTH);
+			r.setMateNegativeStrandFlag(true);
+			reads.add(r);
+			lastPosition = position;
+		}
+	}
+	@Benchmark
+	public long coverage() {
+		long checksum = 0;
+		SequentialReferenceCoverageLookup lookup = new SequentialReferenceCoverageLookup(reads.iterator(), metrics, new SAMFlagReadPairConcordanceCalculator(metrics), 1000, 0);
+		for (int position = 1; position <= lastPosition; position++) {
+			checksum += lookup.readsSupportingNoBreakendAfter(0, position);
+			checksum += lookup.readPairsSupportingNoBreakendAfter(0, position);
+		}
+		lookup.close();
+		return checksum;
+	}
+}
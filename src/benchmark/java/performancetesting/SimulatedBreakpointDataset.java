@@ -0,0 +1,134 @@
+package performancetesting;
+
+import au.edu.wehi.idsv.*;
+import au.edu.wehi.idsv.sim.FragmentedChromosome;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.util.SequenceUtil;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import htsjdk.variant.vcf.VCFFileReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Reproducible synthetic structural variant evidence for benchmarking.
+ *
+ * Breakpoints are generated by shattering a chromosome of the test reference
+ * using the same simulator as GenerateChromothripsis. Soft clipped reads
+ * supporting each breakend are then generated directly from the reference
+ * sequence on either side of the breakpoint.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class SimulatedBreakpointDataset extends TestHelper {
+	public final ProcessingContext context;
+	public final StubSAMEvidenceSource ses;
+	/**
+	 * Simulated breakpoints ordered by breakend position
+	 */
+	public final List<VariantContextDirectedEvidence> calls;
+	/**
+	 * Coordinate sorted reads
+	 */
+	public final List<SAMRecord> reads;
+	/**
+	 * Evidence ordered by breakend start then end position
+	 */
+	public final List<DirectedEvidence> evidence;
+	/**
+	 * @param workingDir directory to write simulated variants to
+	 * @param chr chromosome to shatter
+	 * @param fragments number of fragments to assemble into the derivative chromosome
+	 * @param fragmentLength length of each fragment
+	 * @param coverage number of soft clipped reads supporting each breakend. Reference reads are generated at the same coverage.
+	 * @param readLength read length
+	 * @param seed random seed
+	 */
+	public SimulatedBreakpointDataset(File workingDir, String chr, int fragments, int fragmentLength, int coverage, int readLength, int seed) throws IOException {
+		this.context = getContext();
+		this.ses = new StubSAMEvidenceSource(context, null, 0, 0, 2 * fragmentLength);
+		File fasta = new File(workingDir, "chromothripsis." + chr + ".fa");
+		File vcf = new File(workingDir, "chromothripsis." + chr + ".vcf");
+		FragmentedChromosome fc = new FragmentedChromosome(context, chr, readLength, fragmentLength, seed);
+		fc.assemble(fasta, vcf, fragments, false);
+		Random rng = new Random(seed);
+		this.calls = new ArrayList<>();
+		try (VCFFileReader reader = new VCFFileReader(vcf, false)) {
+			for (VariantContext vc : reader) {
+				// evidence allocation requires calls to be scored
+				vc = new VariantContextBuilder(vc).log10PError(-1 - rng.nextInt(10)).make();
+				IdsvVariantContext ivc = IdsvVariantContext.create(context.getDictionary(), null, vc);
+				if (ivc instanceof VariantContextDirectedBreakpoint) {
+					calls.add((VariantContextDirectedBreakpoint)ivc);
+				}
+			}
+		}
+		calls.sort(VariantContextDirectedEvidence.ByBreakendStartEnd);
+		byte[] ref = context.getReference().getSequence(chr).getBases();
+		int referenceIndex = context.getDictionary().getSequenceIndex(chr);
+		this.reads = new ArrayList<>();
+		int step = Math.max(1, readLength / coverage);
+		for (int pos = 1; pos + readLength - 1 <= ref.length; pos += step) {
+			reads.add(createRead(String.format("ref_%d", pos), referenceIndex, pos, readLength + "M", Arrays.copyOfRange(ref, pos - 1, pos - 1 + readLength)));
+		}
+		for (VariantContextDirectedEvidence call : calls) {
+			BreakpointSummary bp = (BreakpointSummary)call.getBreakendSummary();
+			for (int i = 0; i < coverage; i++) {
+				int anchorLength = readLength / 4 + rng.nextInt(readLength / 2);
+				int clipLength = readLength - anchorLength;
+				byte[] clip = remoteBases(ref, bp, clipLength);
+				String name = String.format("%s_%d", call.getID(), i);
+				if (bp.direction == BreakendDirection.Forward) {
+					int start = bp.nominal - anchorLength + 1;
+					reads.add(createRead(name, referenceIndex, start, anchorLength + "M" + clipLength + "S",
+							concat(Arrays.copyOfRange(ref, start - 1, bp.nominal), clip)));
+				} else {
+					reads.add(createRead(name, referenceIndex, bp.nominal, clipLength + "S" + anchorLength + "M",
+							concat(clip, Arrays.copyOfRange(ref, bp.nominal - 1, bp.nominal - 1 + anchorLength))));
+				}
+			}
+		}
+		reads.sort(new SAMRecordCoordinateComparator());
+		this.evidence = reads.stream()
+				.flatMap(r -> SingleReadEvidence.createEvidence(ses, 0, r).stream())
+				.sorted(DirectedEvidenceOrder.ByStartEnd)
+				.collect(Collectors.toList());
+	}
+	/**
+	 * Gets the bases on the remote side of the breakpoint adjacent to the local breakend
+	 */
+	private static byte[] remoteBases(byte[] ref, BreakpointSummary bp, int length) {
+		byte[] bases;
+		if (bp.direction2 == BreakendDirection.Forward) {
+			bases = Arrays.copyOfRange(ref, bp.nominal2 - length, bp.nominal2);
+		} else {
+			bases = Arrays.copyOfRange(ref, bp.nominal2 - 1, bp.nominal2 - 1 + length);
+		}
+		if (bp.direction == bp.direction2) {
+			SequenceUtil.reverseComplement(bases);
+		}
+		return bases;
+	}
+	private static byte[] concat(byte[] a, byte[] b) {
+		byte[] result = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
+		return result;
+	}
+	private static SAMRecord createRead(String name, int referenceIndex, int pos, String cigar, byte[] bases) {
+		SAMRecord r = Read(referenceIndex, pos, cigar);
+		r.setReadName(name);
+		r.setReadBases(bases);
+		byte[] qual = new byte[bases.length];
+		Arrays.fill(qual, (byte)30);
+		r.setBaseQualities(qual);
+		return r;
+	}
+}
@@ -7,9 +7,14 @@ import au.edu.wehi.idsv.sam.CigarUtil;
 import au.edu.wehi.idsv.sam.SAMFileUtil;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.sam.SamTags;
+import au.edu.wehi.idsv.util.BatchingIterator;
+import au.edu.wehi.idsv.util.DuplicatingIterable;
 import au.edu.wehi.idsv.util.FileHelper;
+import au.edu.wehi.idsv.util.FlatMapIterator;
+import au.edu.wehi.idsv.util.GangExecutor;
 import au.edu.wehi.idsv.visualisation.AssemblyTelemetry;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.MoreExecutors;
 import gridss.SoftClipsToSplitReads;
 import gridss.cmdline.CommandLineProgramHelper;
@@ -22,8 +27,10 @@ import htsjdk.samtools.util.RuntimeIOException;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -50,6 +57,14 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 	private SAMFileHeader header;
 	protected List<String> assembledCategories;
 	private int[] assemblyOrdinalToProcessingCategoryLookup;
+	private boolean sharedDecodeAssembly = Defaults.SHARED_DECODE_ASSEMBLY;
+	/**
+	 * Threads feeding and running forward breakend assembly when both directions share a single decode pass.
+	 * Backward assembly runs on the thread assembling the chunk.
+	 */
+	private static final GangExecutor sharedDecodeExecutor = new GangExecutor(
+			Math.max(2, 2 * Runtime.getRuntime().availableProcessors()),
+			"AssembleChunk-%d");
 	/**
 	 * Generates assembly evidence based on the given evidence
 	 * @param evidence evidence for creating assembly
@@ -66,6 +81,13 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		return filtered;
 	}
 
+	/**
+	 * Determines whether forward and backward breakend assembly share a single pass over
+	 * each chunk or independently decode the chunk evidence.
+	 */
+	void setSharedDecodeAssembly(boolean sharedDecodeAssembly) {
+		this.sharedDecodeAssembly = sharedDecodeAssembly;
+	}
 	public void assembleBreakends(ExecutorService threadpool) throws IOException {
 		assembleBreakends(threadpool, 0, 1);
 	}
@@ -86,15 +108,20 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		if (getContext().getConfig().getVisualisation().assemblyTelemetry) {
 			telemetry = new AssemblyTelemetry(getContext().getFileSystemContext().getAssemblyTelemetry(getFile(), jobNodeIndex), getContext().getDictionary());
 		}
-		List<QueryInterval[]> chunks = getContext().getReference().getIntervals(getContext().getConfig().chunkSize, getContext().getConfig().chunkSequenceChangePenalty);
+		ChunkScheduler scheduler = new ChunkScheduler(getContext(), source);
+		List<QueryInterval[]> chunks = scheduler.getChunks();
 		List<File> assembledChunk = new ArrayList<>();
-		List<Future<Void>> tasks = new ArrayList<>();
 		for (int i = 0; i < chunks.size(); i++) {
+			if (i % jobNodes == jobNodeIndex) {
+				assembledChunk.add(getContext().getFileSystemContext().getAssemblyChunkBam(getFile(), i));
+			}
+		}
+		List<Future<Void>> tasks = new ArrayList<>();
+		for (int i : scheduler.getExecutionOrder()) {
 			if (i % jobNodes == jobNodeIndex) {
 				QueryInterval[] chunk = chunks.get(i);
 				File f = getContext().getFileSystemContext().getAssemblyChunkBam(getFile(), i);
 				int chunkNumber = i;
-				assembledChunk.add(f);
 				if (!f.exists()) {
 					tasks.add(threadpool.submit(() -> {
 						assembleChunk(f, chunkNumber, chunk, excludedRegions, safetyRegions, downsampledRegions);
@@ -104,6 +131,9 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 			}
 		}
 		runTasks(tasks);
+		excludedRegions.freeze();
+		safetyRegions.freeze();
+		downsampledRegions.freeze();
 		if (telemetry != null) {
 			telemetry.close();
 			telemetry = null;
@@ -177,7 +207,7 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		log.info("Breakend assembly complete.");
 	}
 	private void assembleChunk(File output, int chunkNumber, QueryInterval[] qi, IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) throws IOException {
-		AssemblyIdGenerator assemblyNameGenerator = new SequentialIdGenerator(String.format(getContext().getConfig().getAssembly().contigNamePrefix, chunkNumber));
+		String contigNamePrefix = String.format(getContext().getConfig().getAssembly().contigNamePrefix, chunkNumber);
 		String chuckName = String.format("chunk %d (%s:%d-%s:%d)", chunkNumber,
 			getContext().getDictionary().getSequence(qi[0].referenceIndex).getSequenceName(), qi[0].start,
 			getContext().getDictionary().getSequence(qi[qi.length-1].referenceIndex).getSequenceName(), qi[qi.length-1].end);
@@ -188,14 +218,10 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		try (SAMFileWriter writer = new SAMFileWriterFactory().makeSAMOrBAMWriter(getHeader(), false, tmpout)) {
 			if (getContext().getAssemblyParameters().writeFiltered) {
 				try (SAMFileWriter filteredWriter = new SAMFileWriterFactory().makeSAMOrBAMWriter(getHeader(), false, filteredout)) {
-					for (BreakendDirection direction : BreakendDirection.values()) {
-						assembleChunk(writer, filteredWriter, chunkNumber, qi, direction, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
-					}
+					assembleChunk(writer, filteredWriter, chunkNumber, qi, contigNamePrefix, excludedRegions, safetyRegions, downsampledRegions);
 				}
 			} else {
-				for (BreakendDirection direction : BreakendDirection.values()) {
-					assembleChunk(writer, null, chunkNumber, qi, direction, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
-				}
+				assembleChunk(writer, null, chunkNumber, qi, contigNamePrefix, excludedRegions, safetyRegions, downsampledRegions);
 			}
 		} catch (Exception e) {
 			log.error(e, "Error assembling ", chuckName);
@@ -227,26 +253,109 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 				(int)(2 * getMaxConcordantFragmentSize() * getContext().getConfig().getAssembly().maxExpectedBreakendLengthMultiple) + 1);
 		return expanded;
 	}
+	private void assembleChunk(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, String contigNamePrefix,
+							   IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) {
+		if (sharedDecodeAssembly) {
+			assembleChunkSharedDecode(writer, filteredWriter, chunkNumber, intervals, contigNamePrefix, excludedRegions, safetyRegions, downsampledRegions);
+		} else {
+			AssemblyIdGenerator assemblyNameGenerator = new SequentialIdGenerator(contigNamePrefix);
+			for (BreakendDirection direction : BreakendDirection.values()) {
+				assembleChunk(writer, filteredWriter, chunkNumber, intervals, direction, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
+			}
+		}
+	}
 	private void assembleChunk(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, BreakendDirection direction, AssemblyIdGenerator assemblyNameGenerator,
 							   IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) {
 		QueryInterval[] expanded = getExpanded(intervals);
 		try (CloseableIterator<DirectedEvidence> input = mergedIterator(source, expanded, EvidenceSortOrder.SAMRecordStartPosition)) {
-			Iterator<DirectedEvidence> throttledIt = throttled(input, downsampledRegions);
-			Iterator<DirectedEvidence> errorCorrectedIt = errorCorrected(throttledIt);
-			PositionalAssembler assembler = new PositionalAssembler(getContext(), AssemblyEvidenceSource.this, assemblyNameGenerator, errorCorrectedIt, direction, excludedRegions, safetyRegions);
-			if (telemetry != null) {
-				assembler.setTelemetry(telemetry.getTelemetry(chunkNumber, direction));
+			assemble(writer, filteredWriter, chunkNumber, intervals, direction, assemblyNameGenerator, assemblyEvidence(input, downsampledRegions), excludedRegions, safetyRegions);
+		}
+	}
+	/**
+	 * Assembles both breakend directions from a single pass over the chunk evidence.
+	 *
+	 * Evidence is decoded, downsampled and error corrected once on a feeder thread
+	 * and fanned out to concurrent forward and backward assemblers through bounded buffers.
+	 * Each direction is given its own contig name sequence so assembly names do not
+	 * depend on thread scheduling.
+	 */
+	private void assembleChunkSharedDecode(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, String contigNamePrefix,
+							   IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) {
+		QueryInterval[] expanded = getExpanded(intervals);
+		try (CloseableIterator<DirectedEvidence> input = mergedIterator(source, expanded, EvidenceSortOrder.SAMRecordStartPosition)) {
+			DuplicatingIterable<List<DirectedEvidence>> evidence = new DuplicatingIterable<>(
+					BreakendDirection.values().length,
+					new BatchingIterator<>(assemblyEvidence(input, downsampledRegions), gridss.Defaults.ASYNC_BUFFER_SIZE),
+					gridss.Defaults.ASYNC_BUFFERS,
+					false);
+			FutureTask<Void> feeder = new FutureTask<>(evidence.getFeeder(), null);
+			Iterator<DirectedEvidence> forwardIt = new FlatMapIterator<>(evidence.iterator());
+			Iterator<DirectedEvidence> backwardIt = new FlatMapIterator<>(evidence.iterator());
+			FutureTask<Void> forward = new FutureTask<>(() -> {
+				assembleSharedDecodeDirection(writer, filteredWriter, chunkNumber, intervals, BreakendDirection.Forward, contigNamePrefix, forwardIt, evidence, excludedRegions, safetyRegions);
+				return null;
+			});
+			try {
+				sharedDecodeExecutor.execute(ImmutableList.of(feeder, forward));
+			} catch (InterruptedException e) {
+				log.error(e, "Interrupted waiting for assembly threads");
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			RuntimeException error = null;
+			try {
+				assembleSharedDecodeDirection(writer, filteredWriter, chunkNumber, intervals, BreakendDirection.Backward, contigNamePrefix, backwardIt, evidence, excludedRegions, safetyRegions);
+			} catch (RuntimeException e) {
+				error = e;
+			}
+			// the feeder must complete before the underlying input is closed
+			for (FutureTask<Void> task : ImmutableList.of(forward, feeder)) {
+				try {
+					task.get();
+				} catch (InterruptedException | ExecutionException e) {
+					if (error == null) {
+						error = new RuntimeException(e instanceof ExecutionException ? e.getCause() : e);
+					}
+				}
+			}
+			if (error != null) {
+				throw error;
 			}
-			while (assembler.hasNext()) {
-				SAMRecord asm = assembler.next();
-				asm = transformAssembly(asm); // transform before chunk bounds checking as the position may have moved
-				if (QueryIntervalUtil.overlaps(intervals, asm.getReferenceIndex(), asm.getAlignmentStart())) {
-					// only output assemblies that start within our chunk
-					if (shouldFilterAssembly(asm)) {
-						if (filteredWriter != null) {
+		}
+	}
+	private void assembleSharedDecodeDirection(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, BreakendDirection direction, String contigNamePrefix,
+							   Iterator<DirectedEvidence> it, DuplicatingIterable<?> evidence, IntervalBed excludedRegions, IntervalBed safetyRegions) {
+		try {
+			assemble(writer, filteredWriter, chunkNumber, intervals, direction, new SequentialIdGenerator(contigNamePrefix + direction.toChar()), it, excludedRegions, safetyRegions);
+		} catch (RuntimeException | Error e) {
+			// stop feeding so the other direction does not block waiting for us to consume our buffer
+			evidence.close();
+			throw e;
+		}
+	}
+	private Iterator<DirectedEvidence> assemblyEvidence(Iterator<DirectedEvidence> input, IntervalBed downsampledRegions) {
+		Iterator<DirectedEvidence> throttledIt = throttled(input, downsampledRegions);
+		return errorCorrected(throttledIt);
+	}
+	private void assemble(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, BreakendDirection direction, AssemblyIdGenerator assemblyNameGenerator,
+							   Iterator<DirectedEvidence> evidence, IntervalBed excludedRegions, IntervalBed safetyRegions) {
+		PositionalAssembler assembler = new PositionalAssembler(getContext(), AssemblyEvidenceSource.this, assemblyNameGenerator, evidence, direction, excludedRegions, safetyRegions);
+		if (telemetry != null) {
+			assembler.setTelemetry(telemetry.getTelemetry(chunkNumber, direction));
+		}
+		while (assembler.hasNext()) {
+			SAMRecord asm = assembler.next();
+			asm = transformAssembly(asm); // transform before chunk bounds checking as the position may have moved
+			if (QueryIntervalUtil.overlaps(intervals, asm.getReferenceIndex(), asm.getAlignmentStart())) {
+				// only output assemblies that start within our chunk
+				if (shouldFilterAssembly(asm)) {
+					if (filteredWriter != null) {
+						synchronized (filteredWriter) {
 							filteredWriter.addAlignment(asm);
 						}
-					} else {
+					}
+				} else {
+					synchronized (writer) {
 						writer.addAlignment(asm);
 					}
 				}
@@ -265,14 +374,13 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 			program.setReference(getProcessContext().getReference());
 			program.setFileSystemContext(getProcessContext().getFileSystemContext());
 			CommandLineProgramHelper cmd = new CommandLineProgramHelper(program);
-			cmd.addArg("WORKER_THREADS", getProcessContext().getWorkerThreadCount());
 			cmd.addArg("INPUT", getFile().getPath());
 			cmd.addArg("OUTPUT", svFile.getPath());
 			cmd.addArg("READJUST_PRIMARY_ALIGNMENT_POSITION", "true");
 			cmd.addArg("REALIGN_ENTIRE_READ=", getContext().getConfig().getAssembly().realignContigs);
-			execute(cmd);
+			executeWithWorkerThreads(cmd);
 		}
-		SAMFileUtil.sort(getContext().getFileSystemContext(), withsplitreadsFile, svFile, SortOrder.coordinate);
+		sort(withsplitreadsFile, svFile, SortOrder.coordinate);
 	}
 	@Override
 	public boolean shouldFilter(SAMRecord r) {
@@ -34,4 +34,12 @@ public class CalledBreakpointPositionLookup {
     public NominalPosition removeUpper(String eventId) {
         return lookup.remove(eventId);
     }
+
+    /**
+     * Adds the called position of the upper breakend of an event whose lower breakend
+     * was called elsewhere.
+     */
+    public void addUpper(String eventId, NominalPosition upperPosition) {
+        lookup.put(eventId, upperPosition);
+    }
 }
@@ -0,0 +1,143 @@
+package au.edu.wehi.idsv;
+
+import au.edu.wehi.idsv.picard.EvidenceDensityProfile;
+import htsjdk.samtools.*;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estimates the relative processing cost of genomic intervals from the amount
+ * of SV evidence overlapping them.
+ *
+ * Evidence density is estimated from the size of the BAM file region spanned by
+ * each interval as reported by the BAM index. No records are decoded.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class ChunkCostEstimator implements Closeable {
+	private static final Log log = Log.getInstance(ChunkCostEstimator.class);
+	/**
+	 * Approximate BGZF compression ratio used to convert the uncompressed size of
+	 * spans contained within a single BGZF block into compressed bytes.
+	 */
+	private static final int APPROXIMATE_COMPRESSION_RATIO = 4;
+	private final List<SamReader> readers = new ArrayList<>();
+	private final List<BAMIndex> indexes = new ArrayList<>();
+	public ChunkCostEstimator(List<? extends SAMEvidenceSource> evidence) {
+		for (SAMEvidenceSource ses : evidence) {
+			File file = ses.getSVFile();
+			if (file == null || !file.exists()) {
+				file = ses.getFile();
+			}
+			if (file == null || !file.exists()) {
+				continue;
+			}
+			BAMIndex index = null;
+			try {
+				SamReader reader = ses.getReader();
+				readers.add(reader);
+				if (reader.hasIndex()) {
+					index = reader.indexing().getIndex();
+				}
+			} catch (RuntimeException e) {
+				log.debug(e, "Unable to load index for ", file);
+			}
+			if (index == null) {
+				log.warn(String.format("No index found for %s. Evidence in this file will not be included in chunk cost estimates.", file));
+			} else {
+				indexes.add(index);
+			}
+		}
+	}
+	/**
+	 * Indicates whether any evidence density information is available
+	 */
+	public boolean hasEvidenceDensity() {
+		return indexes.size() > 0;
+	}
+	/**
+	 * Estimated cost of processing the given intervals
+	 * @param intervals intervals to process
+	 * @return estimated cost in approximate compressed bytes of overlapping evidence
+	 */
+	public long estimateCost(QueryInterval[] intervals) {
+		long cost = 0;
+		for (QueryInterval qi : intervals) {
+			cost += estimateCost(qi.referenceIndex, qi.start, qi.end);
+		}
+		return cost;
+	}
+	/**
+	 * Estimated cost of processing the given genomic interval
+	 * @param referenceIndex reference sequence index
+	 * @param start 1-based start position
+	 * @param end 1-based inclusive end position
+	 * @return estimated cost in approximate compressed bytes of overlapping evidence
+	 */
+	public long estimateCost(int referenceIndex, int start, int end) {
+		long cost = 0;
+		for (BAMIndex index : indexes) {
+			BAMFileSpan span = index.getSpanOverlapping(referenceIndex, start, end);
+			if (span != null) {
+				cost += spanSize(span);
+			}
+		}
+		return cost;
+	}
+	/**
+	 * Estimates the evidence density across the genome.
+	 * @param dictionary reference sequence dictionary
+	 * @param binSize size of each bin. Bins the size of BAM linear index windows can be estimated most accurately.
+	 * @return evidence density profile
+	 */
+	public EvidenceDensityProfile getDensityProfile(SAMSequenceDictionary dictionary, int binSize) {
+		EvidenceDensityProfile profile = new EvidenceDensityProfile(dictionary, binSize);
+		for (int referenceIndex = 0; referenceIndex < dictionary.size(); referenceIndex++) {
+			int referenceLength = dictionary.getSequence(referenceIndex).getSequenceLength();
+			for (int bin = 0; bin < profile.getBinCount(referenceIndex); bin++) {
+				int start = bin * binSize + 1;
+				int end = (int)Math.min((long)start + binSize - 1, referenceLength);
+				profile.addBinDensity(referenceIndex, bin, estimateCost(referenceIndex, start, end));
+			}
+		}
+		return profile;
+	}
+	public long[] estimateCost(List<QueryInterval[]> chunks) {
+		long[] cost = new long[chunks.size()];
+		for (int i = 0; i < chunks.size(); i++) {
+			cost[i] = estimateCost(chunks.get(i));
+		}
+		return cost;
+	}
+	private static long spanSize(BAMFileSpan span) {
+		long size = 0;
+		for (Chunk chunk : span.getChunks()) {
+			long blockStart = BlockCompressedFilePointerUtil.getBlockAddress(chunk.getChunkStart());
+			long blockEnd = BlockCompressedFilePointerUtil.getBlockAddress(chunk.getChunkEnd());
+			if (blockStart == blockEnd) {
+				int offsetStart = BlockCompressedFilePointerUtil.getBlockOffset(chunk.getChunkStart());
+				int offsetEnd = BlockCompressedFilePointerUtil.getBlockOffset(chunk.getChunkEnd());
+				size += Math.max(0, offsetEnd - offsetStart) / APPROXIMATE_COMPRESSION_RATIO;
+			} else {
+				size += blockEnd - blockStart;
+			}
+		}
+		return size;
+	}
+	@Override
+	public void close() {
+		// index is closed by the owning reader
+		for (SamReader reader : readers) {
+			CloserUtil.close(reader);
+		}
+		indexes.clear();
+		readers.clear();
+	}
+}
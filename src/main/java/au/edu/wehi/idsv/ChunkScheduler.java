@@ -0,0 +1,185 @@
+package au.edu.wehi.idsv;
+
+import au.edu.wehi.idsv.configuration.GridssConfiguration;
+import au.edu.wehi.idsv.picard.EvidenceDensityProfile;
+import au.edu.wehi.idsv.picard.ReferenceLookup;
+import htsjdk.samtools.LinearIndex;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Determines the genomic chunks processed by each parallel task and the order
+ * in which they should be scheduled.
+ *
+ * Chunk processing time is dominated by the amount of evidence in the chunk,
+ * not the number of bases. A handful of chunks over high coverage or repetitive
+ * regions can dominate wall-clock time if they are started late. Chunks are
+ * subdivided if their estimated cost greatly exceeds the mean and are scheduled
+ * longest-first so the expensive chunks are started as early as possible and
+ * the remaining workers fill in with the cheaper chunks.
+ *
+ * If evidence density planning is enabled, the initial chunks are sized by
+ * evidence density instead of base count.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class ChunkScheduler {
+	private static final Log log = Log.getInstance(ChunkScheduler.class);
+	/**
+	 * Evidence density bin size. Matches the BAM linear index window size.
+	 */
+	private static final int DENSITY_PROFILE_BIN_SIZE = 1 << LinearIndex.BAM_LIDX_SHIFT;
+	private final List<QueryInterval[]> chunks;
+	private final long[] cost;
+	private final List<Integer> executionOrder;
+	/**
+	 * @param context processing context
+	 * @param evidence evidence sources used to estimate chunk cost
+	 */
+	public ChunkScheduler(ProcessingContext context, List<? extends SAMEvidenceSource> evidence) {
+		GridssConfiguration config = context.getConfig();
+		if (!config.chunkEvidenceDensityPlanning && !config.chunkCostOrdering && config.chunkSplitCostMultiple <= 0) {
+			this.chunks = context.getReference().getIntervals(config.chunkSize, config.chunkSequenceChangePenalty);
+			this.cost = new long[chunks.size()];
+		} else {
+			try (ChunkCostEstimator estimator = new ChunkCostEstimator(evidence)) {
+				List<QueryInterval[]> initialChunks = planChunks(context, estimator);
+				if (config.chunkSplitCostMultiple > 0 && estimator.hasEvidenceDensity()) {
+					this.chunks = splitExpensiveChunks(estimator, initialChunks, config.chunkSplitCostMultiple, config.chunkSplitMinSize);
+				} else {
+					this.chunks = initialChunks;
+				}
+				this.cost = estimator.estimateCost(chunks);
+			}
+		}
+		if (config.chunkCostOrdering) {
+			this.executionOrder = byDescendingCost(cost);
+		} else {
+			this.executionOrder = IntStream.range(0, chunks.size()).boxed().collect(Collectors.toList());
+		}
+	}
+	private static List<QueryInterval[]> planChunks(ProcessingContext context, ChunkCostEstimator estimator) {
+		GridssConfiguration config = context.getConfig();
+		ReferenceLookup reference = context.getReference();
+		if (config.chunkEvidenceDensityPlanning) {
+			EvidenceDensityProfile profile = null;
+			if (config.chunkEvidenceDensityBed != null) {
+				try {
+					profile = EvidenceDensityProfile.fromBed(config.chunkEvidenceDensityBed, reference.getSequenceDictionary(), DENSITY_PROFILE_BIN_SIZE);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			} else if (estimator.hasEvidenceDensity()) {
+				profile = estimator.getDensityProfile(reference.getSequenceDictionary(), DENSITY_PROFILE_BIN_SIZE);
+			}
+			if (profile != null) {
+				return reference.getIntervals(config.chunkSize, config.chunkSequenceChangePenalty, profile);
+			}
+			log.warn("No evidence density information available. Falling back to fixed size chunks.");
+		}
+		return reference.getIntervals(config.chunkSize, config.chunkSequenceChangePenalty);
+	}
+	/**
+	 * Chunks in genomic order. The chunk number of each chunk is its index in this list.
+	 */
+	public List<QueryInterval[]> getChunks() {
+		return chunks;
+	}
+	/**
+	 * Estimated cost of processing the given chunk.
+	 */
+	public long getEstimatedCost(int chunkNumber) {
+		return cost[chunkNumber];
+	}
+	/**
+	 * Order in which chunks should be submitted for processing.
+	 * @return chunk numbers in scheduling order
+	 */
+	public List<Integer> getExecutionOrder() {
+		return executionOrder;
+	}
+	/**
+	 * Orders chunks by descending cost. Ties are broken by genomic order.
+	 */
+	public static List<Integer> byDescendingCost(long[] cost) {
+		return IntStream.range(0, cost.length)
+				.boxed()
+				.sorted(Comparator.comparingLong((Integer i) -> cost[i]).reversed().thenComparingInt(i -> i))
+				.collect(Collectors.toList());
+	}
+	/**
+	 * Recursively bisects chunks whose estimated cost exceeds the given multiple of the mean chunk cost.
+	 * @param estimator cost estimator
+	 * @param chunks chunks to split
+	 * @param maxCostMultiple maximum chunk cost as a multiple of the mean chunk cost
+	 * @param minChunkSize chunks are not split into chunks smaller than this many bases
+	 * @return chunks in genomic order
+	 */
+	public static List<QueryInterval[]> splitExpensiveChunks(ChunkCostEstimator estimator, List<QueryInterval[]> chunks, double maxCostMultiple, int minChunkSize) {
+		long[] cost = estimator.estimateCost(chunks);
+		double meanCost = Arrays.stream(cost).average().orElse(0);
+		long threshold = (long)Math.ceil(meanCost * maxCostMultiple);
+		if (threshold <= 0) {
+			return chunks;
+		}
+		List<QueryInterval[]> result = new ArrayList<>(chunks.size());
+		for (int i = 0; i < chunks.size(); i++) {
+			split(estimator, chunks.get(i), cost[i], threshold, minChunkSize, result);
+		}
+		if (result.size() != chunks.size()) {
+			log.info(String.format("Split %d chunks into %d chunks based on evidence density.", chunks.size(), result.size()));
+		}
+		return result;
+	}
+	private static void split(ChunkCostEstimator estimator, QueryInterval[] chunk, long cost, long threshold, int minChunkSize, List<QueryInterval[]> result) {
+		long size = size(chunk);
+		if (cost <= threshold || size < Math.max(2L, 2L * minChunkSize)) {
+			result.add(chunk);
+			return;
+		}
+		QueryInterval[][] halves = bisect(chunk, size / 2);
+		split(estimator, halves[0], estimator.estimateCost(halves[0]), threshold, minChunkSize, result);
+		split(estimator, halves[1], estimator.estimateCost(halves[1]), threshold, minChunkSize, result);
+	}
+	private static long size(QueryInterval[] chunk) {
+		long size = 0;
+		for (QueryInterval qi : chunk) {
+			size += qi.end - qi.start + 1;
+		}
+		return size;
+	}
+	/**
+	 * Splits the given intervals into two sets of intervals.
+	 * @param chunk intervals to split
+	 * @param firstSize number of bases in the first set of intervals
+	 */
+	static QueryInterval[][] bisect(QueryInterval[] chunk, long firstSize) {
+		List<QueryInterval> first = new ArrayList<>();
+		List<QueryInterval> second = new ArrayList<>();
+		long remaining = firstSize;
+		for (QueryInterval qi : chunk) {
+			long length = qi.end - qi.start + 1;
+			if (remaining >= length) {
+				first.add(qi);
+				remaining -= length;
+			} else if (remaining > 0) {
+				int splitPosition = qi.start + (int)remaining;
+				first.add(new QueryInterval(qi.referenceIndex, qi.start, splitPosition - 1));
+				second.add(new QueryInterval(qi.referenceIndex, splitPosition, qi.end));
+				remaining = 0;
+			} else {
+				second.add(qi);
+			}
+		}
+		return new QueryInterval[][] { first.toArray(new QueryInterval[0]), second.toArray(new QueryInterval[0]) };
+	}
+}
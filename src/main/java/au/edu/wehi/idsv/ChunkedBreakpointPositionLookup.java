@@ -0,0 +1,121 @@
+package au.edu.wehi.idsv;
+
+import au.edu.wehi.idsv.CalledBreakpointPositionLookup.NominalPosition;
+import htsjdk.samtools.QueryInterval;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares called breakpoint positions between genomic chunks annotated in parallel.
+ *
+ * When annotating sequentially, the nominal position of a breakpoint is determined
+ * when the first breakend is encountered and the partner breakend reuses that position.
+ * When chunks are processed in parallel, the partner breakend can be in a different chunk.
+ * The breakend in the earlier chunk publishes the position and the breakend in the later
+ * chunk waits for that position (or for the earlier chunk to complete) so the result is
+ * identical to sequential processing.
+ *
+ * Chunks only ever wait on earlier chunks, so processing is deadlock-free provided
+ * chunks are started in genomic order.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class ChunkedBreakpointPositionLookup {
+	private final LinearGenomicCoordinate linear;
+	/**
+	 * Linear start coordinate of each chunk interval
+	 */
+	private final long[] intervalStart;
+	/**
+	 * Chunk containing each interval
+	 */
+	private final int[] intervalChunk;
+	private final boolean[] complete;
+	private final Map<String, NominalPosition> published = new HashMap<>();
+	/**
+	 * @param linear linear genomic coordinate lookup
+	 * @param chunks chunks in genomic order
+	 */
+	public ChunkedBreakpointPositionLookup(LinearGenomicCoordinate linear, List<QueryInterval[]> chunks) {
+		this.linear = linear;
+		int intervalCount = chunks.stream().mapToInt(c -> c.length).sum();
+		this.intervalStart = new long[intervalCount];
+		this.intervalChunk = new int[intervalCount];
+		this.complete = new boolean[chunks.size()];
+		int offset = 0;
+		for (int i = 0; i < chunks.size(); i++) {
+			for (QueryInterval qi : chunks.get(i)) {
+				intervalStart[offset] = linear.getLinearCoordinate(qi.referenceIndex, qi.start);
+				intervalChunk[offset] = i;
+				if (offset > 0 && intervalStart[offset] <= intervalStart[offset - 1]) {
+					throw new IllegalArgumentException("Chunks must be in genomic order.");
+				}
+				offset++;
+			}
+		}
+	}
+	/**
+	 * Gets the chunk responsible for the given position
+	 */
+	public int getChunk(int referenceIndex, int position) {
+		int index = Arrays.binarySearch(intervalStart, linear.getLinearCoordinate(referenceIndex, position));
+		if (index < 0) {
+			// insertion point is the interval after the one containing the position
+			index = Math.max(0, -index - 2);
+		}
+		return intervalChunk[index];
+	}
+	/**
+	 * Gets the chunk responsible for annotating the given variant
+	 */
+	public int getChunk(VariantContextDirectedEvidence variant) {
+		BreakendSummary bs = variant.getBreakendSummary();
+		return getChunk(bs.referenceIndex, bs.start);
+	}
+	/**
+	 * Gets the chunk responsible for annotating the partner breakend of the given variant
+	 * @return chunk containing the partner breakend, or -1 if the variant is not a breakpoint
+	 */
+	public int getMateChunk(VariantContextDirectedEvidence variant) {
+		BreakendSummary bs = variant.getBreakendSummary();
+		if (!(bs instanceof BreakpointSummary)) return -1;
+		BreakpointSummary bp = (BreakpointSummary)bs;
+		return getChunk(bp.referenceIndex2, bp.start2);
+	}
+	/**
+	 * Publishes the called position of the partner breakend of an event.
+	 * @param eventId event identifier
+	 * @param upperPosition called position of the partner breakend
+	 */
+	public synchronized void publish(String eventId, NominalPosition upperPosition) {
+		published.put(eventId, upperPosition);
+		notifyAll();
+	}
+	/**
+	 * Waits until the position of the given event has been published by the given chunk
+	 * @param eventId event identifier
+	 * @param chunk chunk that will publish the position
+	 * @return called position of the partner breakend, or null if the given chunk completed without publishing a position for the event
+	 */
+	public synchronized NominalPosition await(String eventId, int chunk) throws InterruptedException {
+		while (!published.containsKey(eventId) && !complete[chunk]) {
+			wait();
+		}
+		return published.remove(eventId);
+	}
+	/**
+	 * Indicates that the given chunk will not publish any further positions.
+	 * This method must be called even if the chunk failed.
+	 */
+	public synchronized void complete(int chunk) {
+		complete[chunk] = true;
+		notifyAll();
+	}
+	public synchronized int getPublishedCount() {
+		return published.size();
+	}
+}
@@ -17,6 +17,22 @@ public class Defaults {
 	public static final boolean ATTEMPT_ASSEMBLY_RECOVERY;
 	public static final boolean USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES;
     public static final boolean EXPORT_INPROCESS_ALIGNMENTS;
+	/**
+	 * Maximum number of batches concurrently in-flight in the bwa JNI aligner.
+	 */
+	public static final int BWA_IN_FLIGHT_BATCHES;
+	/**
+	 * Maximum number of threads shared by all variant calling directional clique workers.
+	 */
+	public static final int VARIANT_CALLING_THREADS;
+	/**
+	 * Number of calls processed together when calculating inexact breakpoint homology.
+	 */
+	public static final int HOMOLOGY_BATCH_SIZE;
+	/**
+	 * Decode each assembly chunk once and assemble both breakend directions concurrently.
+	 */
+	public static final boolean SHARED_DECODE_ASSEMBLY;
 
     static {
 		SANITY_CHECK_ASSEMBLY_GRAPH = Boolean.valueOf(System.getProperty("sanitycheck.assembly", "false"));
@@ -33,5 +49,9 @@ public class Defaults {
 		ATTEMPT_ASSEMBLY_RECOVERY = Boolean.valueOf(System.getProperty("assembly.recover", "true"));
 		USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES = Boolean.valueOf(System.getProperty("assembly.optimised_data_structures", "true"));
 		EXPORT_INPROCESS_ALIGNMENTS = Boolean.valueOf(System.getProperty("bwa.export", "false"));
+		BWA_IN_FLIGHT_BATCHES = Integer.parseInt(System.getProperty("bwa.inflightbatches", "2"));
+		VARIANT_CALLING_THREADS = Integer.parseInt(System.getProperty("variantcalling.threads", Integer.toString(2 * Runtime.getRuntime().availableProcessors())));
+		HOMOLOGY_BATCH_SIZE = Integer.parseInt(System.getProperty("homology.batchsize", "64"));
+		SHARED_DECODE_ASSEMBLY = Boolean.valueOf(System.getProperty("assembly.shareddecode", "false"));
 	}
 }
\ No newline at end of file
@@ -41,6 +41,14 @@ public interface DirectedEvidence {
 	 * @return Unique breakpoint identifier string
 	 */
 	String getEvidenceID();
+	/**
+	 * Compact binary form of the evidence identifier.
+	 * Should be used in preference to the evidenceID string for in-memory lookups.
+	 * @return binary evidence identifier
+	 */
+	default EvidenceId getEvidenceIdentifier() {
+		return EvidenceId.of(getEvidenceID());
+	}
 	/**
 	 * Unique identifier for the source DNA fragments.
 	 * @return distinct read names of supporting reads
@@ -0,0 +1,67 @@
+package au.edu.wehi.idsv;
+
+import au.edu.wehi.idsv.util.Murmur3Hasher;
+
+/**
+ * Compact 128-bit binary evidence identifier.
+ *
+ * The identifier is the 128-bit murmur3 hash of the evidenceID string.
+ * It is intended for use as an in-memory lookup key; the evidenceID
+ * string remains the persisted form written to VCF and BAM files.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public final class EvidenceId implements Comparable<EvidenceId> {
+	private static final ThreadLocal<Murmur3Hasher> hasher = ThreadLocal.withInitial(Murmur3Hasher::new);
+	private final long hash1;
+	private final long hash2;
+	public EvidenceId(long hash1, long hash2) {
+		this.hash1 = hash1;
+		this.hash2 = hash2;
+	}
+	/**
+	 * Gets the binary identifier for the given evidenceID
+	 */
+	public static EvidenceId of(CharSequence evidenceID) {
+		Murmur3Hasher h = hasher.get().reset();
+		h.putAscii(evidenceID).hash();
+		return new EvidenceId(h.getHash1(), h.getHash2());
+	}
+	/**
+	 * Gets the binary identifier for the given evidence
+	 */
+	public static EvidenceId of(DirectedEvidence e) {
+		return of(e.getEvidenceID());
+	}
+	public long getHash1() {
+		return hash1;
+	}
+	public long getHash2() {
+		return hash2;
+	}
+	@Override
+	public int hashCode() {
+		// murmur3 bits are already well mixed
+		return (int)hash1;
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof EvidenceId)) return false;
+		EvidenceId other = (EvidenceId)obj;
+		return hash1 == other.hash1 && hash2 == other.hash2;
+	}
+	@Override
+	public int compareTo(EvidenceId o) {
+		int cmp = Long.compare(hash1, o.hash1);
+		if (cmp == 0) {
+			cmp = Long.compare(hash2, o.hash2);
+		}
+		return cmp;
+	}
+	@Override
+	public String toString() {
+		return String.format("%016x%016x", hash1, hash2);
+	}
+}
@@ -59,6 +59,7 @@ public class FileSystemContext {
 	private static final String FORMAT_CIGAR_METRICS = FORMAT_METRICS_PREFIX + CollectCigarMetrics.METRICS_SUFFIX;
 	private static final String FORMAT_TAG_METRICS = FORMAT_METRICS_PREFIX + CollectTagMetrics.METRICS_SUFFIX;
 	private static final String FORMAT_COVERAGE_BLACKLIST_BED = FORMAT_METRICS_PREFIX + ReportThresholdCoverage.SUFFIX;
+	private static final String FORMAT_REFERENCE_COVERAGE_INDEX = FORMAT_METRICS_PREFIX + ReferenceCoverageIndex.SUFFIX;
 	private static final String FORMAT_REALIGN_FASTQ = "%1$s/%2$s.realign.%3$d.fq";
 	private static final String FORMAT_REALIGN_SAM = "%1$s/%2$s.realign.%3$d" + SAM_SUFFIX;
 	private static final String FORMAT_BREAKPOINT_VCF = "%1$s/%2$s.breakpoint" + VCF_SUFFIX;
@@ -68,6 +69,8 @@ public class FileSystemContext {
 	private static final String FORMAT_ASSEMBLY_SAFETY_REGIONS = "%1$s/%2$s.subsetCalled_%3$d.bed";
 	private static final String FORMAT_ASSEMBLY_DOWNSAMPLED_REGIONS = "%1$s/%2$s.downsampled_%3$d.bed";
 	private static final String FORMAT_VARIANT_CALL_CHUNK_VCF = "%1$s/%2$s.breakpoint.chunk%3$d" + VCF_SUFFIX;
+	private static final String FORMAT_ANNOTATION_INPUT_CHUNK_VCF = "%1$s/%2$s.annotation.input.chunk%3$d" + VCF_SUFFIX;
+	private static final String FORMAT_ANNOTATION_CHUNK_VCF = "%1$s/%2$s.annotation.chunk%3$d" + VCF_SUFFIX;
 	/**
 	 * Gets the idsv intermediate working directory for the given input
 	 */
@@ -146,6 +149,9 @@ public class FileSystemContext {
 	public File getCoverageBlacklistBed(File input) {
 		return getFile(String.format(FORMAT_COVERAGE_BLACKLIST_BED, getIntermediateDirectory(input), getSource(input).getName()));
 	}
+	public File getReferenceCoverageIndex(File input) {
+		return getFile(String.format(FORMAT_REFERENCE_COVERAGE_INDEX, getIntermediateDirectory(input), getSource(input).getName()));
+	}
 	public File getAssemblyChunkBam(File input, int chunk) {
 		return getFile(String.format(FORMAT_ASSEMBLY_CHUNK_SAM, getIntermediateDirectory(input), getSource(input).getName(), chunk));
 	}
@@ -164,4 +170,10 @@ public class FileSystemContext {
 	public File getVariantCallChunkVcf(File input, int chunk) {
 		return getFile(String.format(FORMAT_VARIANT_CALL_CHUNK_VCF, getIntermediateDirectory(input), getSource(input).getName(), chunk));
 	}
+	public File getAnnotationInputChunkVcf(File input, int chunk) {
+		return getFile(String.format(FORMAT_ANNOTATION_INPUT_CHUNK_VCF, getIntermediateDirectory(input), getSource(input).getName(), chunk));
+	}
+	public File getAnnotationChunkVcf(File input, int chunk) {
+		return getFile(String.format(FORMAT_ANNOTATION_CHUNK_VCF, getIntermediateDirectory(input), getSource(input).getName(), chunk));
+	}
 }
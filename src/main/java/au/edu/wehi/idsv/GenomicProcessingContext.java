@@ -45,6 +45,7 @@ public class GenomicProcessingContext implements Closeable {
 	private IntervalBed blacklist;
 	private boolean filterDuplicates = true;
 	private int workerThreads = 1;
+	private ResourceGovernor resourceGovernor;
 	/**
 	 * Create a new genomic processing context
 	 * @param fileSystemContext file system context
@@ -286,8 +287,20 @@ public class GenomicProcessingContext implements Closeable {
 		return workerThreads;
 	}
 
-	public void setWorkerThreadCount(int workerThreads) {
+	public synchronized void setWorkerThreadCount(int workerThreads) {
 		this.workerThreads = workerThreads;
+		this.resourceGovernor = null;
+	}
+
+	/**
+	 * Gets the governor partitioning worker threads and temporary disk
+	 * between concurrently executing samples and stages.
+	 */
+	public synchronized ResourceGovernor getResourceGovernor() {
+		if (resourceGovernor == null) {
+			resourceGovernor = new ResourceGovernor(workerThreads);
+		}
+		return resourceGovernor;
 	}
 
 	public IntervalBed getBlacklistedRegions() {
@@ -303,7 +316,7 @@ public class GenomicProcessingContext implements Closeable {
 			throw new IllegalArgumentException(String.format("Missing file %s", blacklistFile));
 		}
 		this.blacklistFile = blacklistFile;
-		this.blacklist = new IntervalBed(getLinear(), blacklistFile);
+		this.blacklist = new IntervalBed(getLinear(), blacklistFile).freeze();
 	}
 	
 	public CommandLineProgram getCommandLineProgram() {
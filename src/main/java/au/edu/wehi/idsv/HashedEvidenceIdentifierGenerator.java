@@ -1,13 +1,9 @@
 package au.edu.wehi.idsv;
 
-import com.google.common.hash.HashCode;
-import com.google.common.hash.HashFunction;
-import com.google.common.hash.Hashing;
+import au.edu.wehi.idsv.sam.SAMRecordUtil;
+import au.edu.wehi.idsv.util.Murmur3Hasher;
 import htsjdk.samtools.SAMRecord;
 
-import java.nio.charset.StandardCharsets;
-import java.util.Base64;
-
 /**
  * Generates evidence ID using hashes to reduce evidenceID size
  * 
@@ -21,10 +17,15 @@ import java.util.Base64;
  *
  */
 public class HashedEvidenceIdentifierGenerator implements EvidenceIdentifierGenerator {
-	private final StringEvidenceIdentifierGenerator gen = new StringEvidenceIdentifierGenerator();
-	private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
-	//private final Base64.Decoder decoder = Base64.getUrlDecoder();
-	private HashFunction hf = Hashing.murmur3_128();
+	// can't use /1 and /2 since bwa strips it from the read name during alignment
+	// so realignment will fail
+	private static final char SEPERATOR = '#';
+	private static final char[] URL_SAFE_BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+	/**
+	 * Hashes are calculated directly from the record fields in a single pass
+	 * without building the intermediate StringEvidenceIdentifierGenerator names.
+	 */
+	private static final ThreadLocal<Murmur3Hasher> hasher = ThreadLocal.withInitial(Murmur3Hasher::new);
 	private final int segmentUniqueBytes;
 	private final int alignmentUniqueBytes;
 	private final int evidenceidUniqueBytes;
@@ -37,18 +38,20 @@ public class HashedEvidenceIdentifierGenerator implements EvidenceIdentifierGene
 		this(20, 6, 6);
 	}
 	/**
-	 * Hashes the given string, returning a string that does not contain any SAM or VCF special characters.
-	 * @param s
-	 * @return string encoding hash
+	 * Encodes the current hash as a string that does not contain any SAM or VCF special characters.
+	 * The encoding is the url-safe Base64 encoding of the hash truncated to the given number of characters.
 	 */
 	// SAM read name regex: \*|[!-()+-<>-~][!-~]*
 	// !"#$%&'()+,-./0123456789:;<>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\]^_`abcdefghijklmnopqrstuvwxyz{|}~
 	// * = disallowed
-	private String hash(String s, int bytes) {
-		HashCode hc = hf.hashString(s, StandardCharsets.US_ASCII);
-		String encoded = encoder.encodeToString(hc.asBytes());
-		String truncated = encoded.substring(0, bytes);
-		return truncated;
+	private static int encode(Murmur3Hasher h, char[] out, int offset, int chars) {
+		for (int i = 0; i < chars; i++) {
+			int bit = 6 * i;
+			int b = bit / 8;
+			int twoBytes = (h.getHashByte(b) << 8) | h.getHashByte(b + 1);
+			out[offset + i] = URL_SAFE_BASE64[(twoBytes >>> (10 - bit % 8)) & 0x3f];
+		}
+		return offset + chars;
 	}
 	@Override
 	public String extractAlignmentUniqueName(String evidenceId) {
@@ -58,34 +61,88 @@ public class HashedEvidenceIdentifierGenerator implements EvidenceIdentifierGene
 	public String extractSegmentUniqueName(String evidenceId) {
 		return evidenceId.substring(0, segmentUniqueBytes);
 	}
+	private static void putSegmentUniqueName(Murmur3Hasher h, SAMRecord record) {
+		h.putAscii(record.getReadName());
+		h.putAscii(SEPERATOR);
+		h.putDecimal(SAMRecordUtil.getSegmentIndex(record));
+	}
+	private static void putAlignmentUniqueNameSuffix(Murmur3Hasher h, SAMRecord record) {
+		if (!record.getReadUnmappedFlag()) {
+			h.putAscii(SEPERATOR);
+			h.putAscii(record.getReferenceName());
+			h.putAscii(SEPERATOR);
+			h.putDecimal(record.getAlignmentStart());
+			h.putAscii(SEPERATOR);
+			h.putAscii(record.getReadNegativeStrandFlag() ? '-' : '+');
+			h.putAscii(SEPERATOR);
+			h.putAscii(record.getCigarString());
+		} else {
+			h.putAscii(SEPERATOR);
+			h.putAscii(SEPERATOR);
+			h.putAscii(SEPERATOR);
+			h.putAscii(SEPERATOR);
+		}
+	}
+	/**
+	 * Hashes the segment and alignment unique names of the given record
+	 * @return offset of the next character to be written
+	 */
+	private int encodeAlignmentUniqueName(Murmur3Hasher h, SAMRecord record, char[] out) {
+		h.reset();
+		putSegmentUniqueName(h, record);
+		int offset = encode(h.hash(), out, 0, segmentUniqueBytes);
+		putAlignmentUniqueNameSuffix(h, record);
+		return encode(h.hash(), out, offset, alignmentUniqueBytes);
+	}
 	@Override
 	public String getAlignmentUniqueName(SAMRecord record) {
-		String aun = gen.getAlignmentUniqueName(record);
-		return getSegmentUniqueName(record) + hash(aun, alignmentUniqueBytes);
+		char[] out = new char[segmentUniqueBytes + alignmentUniqueBytes];
+		encodeAlignmentUniqueName(hasher.get(), record, out);
+		return new String(out);
 	}
 	@Override
 	public String getSegmentUniqueName(SAMRecord record) {
-		String sun = gen.getSegmentUniqueName(record);
-		return hash(sun, segmentUniqueBytes);
+		Murmur3Hasher h = hasher.get().reset();
+		putSegmentUniqueName(h, record);
+		char[] out = new char[segmentUniqueBytes];
+		encode(h.hash(), out, 0, segmentUniqueBytes);
+		return new String(out);
+	}
+	private String getEvidenceID(SAMRecord record, char type1, char type2, BreakendSummary bs) {
+		Murmur3Hasher h = hasher.get();
+		char[] out = new char[segmentUniqueBytes + alignmentUniqueBytes + evidenceidUniqueBytes];
+		int offset = encodeAlignmentUniqueName(h, record, out);
+		h.putAscii(SEPERATOR);
+		h.putAscii(type1);
+		h.putAscii(type2);
+		if (bs != null) {
+			h.putAscii(bs.direction.toChar());
+		}
+		encode(h.hash(), out, offset, evidenceidUniqueBytes);
+		return new String(out);
 	}
 	@Override
 	public String getEvidenceID(NonReferenceReadPair e) {
-		String id = gen.getEvidenceID(e);
-		return getAlignmentUniqueName(e.getLocalledMappedRead()) + hash(id, evidenceidUniqueBytes);
+		return getEvidenceID(e.getLocalledMappedRead(), 'r', 'p', e.getBreakendSummary());
 	}
 	@Override
 	public String getEvidenceID(SoftClipEvidence e) {
-		String id = gen.getEvidenceID(e);
-		return getAlignmentUniqueName(e.getSAMRecord()) + hash(id, evidenceidUniqueBytes);
+		return getEvidenceID(e.getSAMRecord(), 's', 'c', e.getBreakendSummary());
 	}
 	@Override
 	public String getEvidenceID(SplitReadEvidence e) {
-		String id = gen.getEvidenceID(e);
-		return getAlignmentUniqueName(e.getSAMRecord()) + hash(id, evidenceidUniqueBytes);
+		return getEvidenceID(e.getSAMRecord(), 's', 'r', e.getBreakendSummary());
 	}
 	@Override
 	public String getEvidenceID(IndelEvidence e) {
-		String id = gen.getEvidenceID(e);
-		return getAlignmentUniqueName(e.getSAMRecord()) + hash(id, evidenceidUniqueBytes);
+		Murmur3Hasher h = hasher.get();
+		char[] out = new char[segmentUniqueBytes + alignmentUniqueBytes + evidenceidUniqueBytes];
+		int offset = encodeAlignmentUniqueName(h, e.getSAMRecord(), out);
+		h.putAscii(SEPERATOR);
+		h.putDecimal(e.getIndelCigarOffset());
+		h.putAscii('i');
+		h.putAscii(e.getBreakendSummary().direction.toChar());
+		encode(h.hash(), out, offset, evidenceidUniqueBytes);
+		return new String(out);
 	}
 }
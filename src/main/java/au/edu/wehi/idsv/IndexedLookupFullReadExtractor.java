@@ -1,46 +1,191 @@
 package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.bed.IntervalBed;
+import au.edu.wehi.idsv.sam.ChimericAlignment;
+import au.edu.wehi.idsv.sam.SAMFileUtil;
+import au.edu.wehi.idsv.util.FileHelper;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import htsjdk.samtools.*;
+import htsjdk.samtools.util.Log;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static au.edu.wehi.idsv.sam.ChimericAlignment.getChimericAlignments;
+
+/**
+ * Extracts the reads that would be extracted by a full scan of the input file
+ * using index lookups.
+ *
+ * The region of interest is converted to BAM chunks using the input file index and
+ * the chunks are partitioned across worker threads. Mate and split read locations
+ * of extracted reads are iteratively looked up until no new BAM chunks are found.
+ * Each BAM chunk is read at most once so no read is extracted more than once.
+ *
+ * Worker outputs are coordinate sorted and merged into the final output.
+ */
 public class IndexedLookupFullReadExtractor extends FullReadExtractor {
+    private static final Log log = Log.getInstance(IndexedLookupFullReadExtractor.class);
     private final int regionPaddingSize;
     public IndexedLookupFullReadExtractor(LinearGenomicCoordinate lgc, IntervalBed bed, boolean extractMates, boolean extractSplits, int regionPaddingSize) {
         super(lgc, bed, extractMates, extractSplits);
         this.regionPaddingSize = regionPaddingSize;
     }
+    @Override
     public void extract(File input, File output, int workerThreads) throws IOException {
         IntervalBed lookupIntervals = new IntervalBed(getLinearGenomicCoordinate());
         for (QueryInterval qi : getRegionBed().asQueryInterval()) {
             lookupIntervals.addInterval(expandBy(qi, regionPaddingSize, getLinearGenomicCoordinate().getDictionary()));
         }
-        // todo: convert QueryInterval to bam chunk
-        // per worker parallel
-        // proper bam merge, or concat?
-        // while list not empty
-            // process whole list
-                // add mate/split locations to new list
-            // list = new list
-        BAMFileReader r;
-        throw new RuntimeException("NYI");
-    }
-    private IntervalBed processInterval(QueryInterval qi, File input, BlockingQueue<Collection<SAMRecord>> outputBuffer) {
-        throw new RuntimeException("NYI");
-    }
-    public List<Chunk> getChunks(File input) {
-        throw new RuntimeException("NYI");
-
+        List<File> workerOutput = new ArrayList<>();
+        ExecutorService threadpool = Executors.newFixedThreadPool(Math.max(1, workerThreads), new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ReadExtractor-%d").build());
+        try (SamReader reader = SamReaderFactory.makeDefault().open(input)) {
+            if (!reader.hasIndex()) {
+                throw new RuntimeException("Missing BAM index for " + input.getName());
+            }
+            SAMFileHeader header = reader.getFileHeader();
+            BAMIndex index = reader.indexing().getIndex();
+            RangeSet<Long> processed = TreeRangeSet.create();
+            List<Chunk> chunks = getChunks(index, lookupIntervals.asQueryInterval(), processed);
+            for (int pass = 0; !chunks.isEmpty(); pass++) {
+                List<List<Chunk>> partitions = partition(chunks, Math.max(1, workerThreads));
+                log.info(String.format("Extraction pass %d: reading %d BAM chunks (%d compressed bytes) in %d partitions.", pass, chunks.size(), compressedSize(chunks), partitions.size()));
+                List<Future<IntervalBed>> tasks = new ArrayList<>();
+                for (int i = 0; i < partitions.size(); i++) {
+                    List<Chunk> partition = partitions.get(i);
+                    File out = FileSystemContext.getWorkingFileFor(output, String.format("gridss.tmp.extract.%d.%d.", pass, i));
+                    workerOutput.add(out);
+                    tasks.add(threadpool.submit(() -> processChunks(input, header, partition, out)));
+                }
+                List<IntervalBed> remoteLocations = new ArrayList<>();
+                for (Future<IntervalBed> f : tasks) {
+                    remoteLocations.add(f.get());
+                }
+                chunks = getChunks(index, IntervalBed.merge(getLinearGenomicCoordinate(), remoteLocations).asQueryInterval(), processed);
+            }
+            log.info(String.format("Merging %d extraction outputs.", workerOutput.size()));
+            if (workerOutput.isEmpty()) {
+                // nothing to extract: write an empty file
+                new SAMFileWriterFactory().makeSAMOrBAMWriter(header, true, output).close();
+            } else {
+                SAMFileUtil.merge(workerOutput, output);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            threadpool.shutdownNow();
+            for (File f : workerOutput) {
+                FileHelper.delete(f, true);
+            }
+        }
+    }
+    /**
+     * Extracts the reads in the given BAM chunks
+     * @param input input file
+     * @param header input file header
+     * @param chunks chunks to read, in file order
+     * @param output coordinate sorted output file
+     * @return locations of the mates and split read alignments of the extracted reads
+     */
+    private IntervalBed processChunks(File input, SAMFileHeader header, List<Chunk> chunks, File output) throws IOException {
+        IntervalBed remoteLocations = new IntervalBed(getLinearGenomicCoordinate());
+        SAMSequenceDictionary dict = getLinearGenomicCoordinate().getDictionary();
+        try (SamReader reader = SamReaderFactory.makeDefault().open(input)) {
+            try (SAMRecordIterator it = reader.indexing().iterator(new BAMFileSpan(chunks))) {
+                try (SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(false).setCompressionLevel(0).makeBAMWriter(header, true, output)) {
+                    while (it.hasNext()) {
+                        SAMRecord r = it.next();
+                        if (shouldExtract(r)) {
+                            writer.addAlignment(r);
+                            if (shouldExtractMates() && r.getReadPairedFlag() && !r.getMateUnmappedFlag()) {
+                                remoteLocations.addInterval(r.getMateReferenceIndex(), r.getMateAlignmentStart(), r.getMateAlignmentStart());
+                            }
+                            if (shouldExtractSplits()) {
+                                for (ChimericAlignment ca : getChimericAlignments(r)) {
+                                    int referenceIndex = dict.getSequenceIndex(ca.rname);
+                                    if (referenceIndex >= 0) {
+                                        remoteLocations.addInterval(referenceIndex, ca.pos, ca.pos);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return remoteLocations;
+    }
+    /**
+     * Gets the BAM chunks overlapping the given intervals that have not already been processed.
+     * @param index BAM index
+     * @param intervals intervals to look up
+     * @param processed virtual file offsets of the BAM chunks already processed. Updated to include the returned chunks.
+     * @return unprocessed BAM chunks overlapping the given intervals in file order
+     */
+    private static List<Chunk> getChunks(BAMIndex index, QueryInterval[] intervals, RangeSet<Long> processed) {
+        RangeSet<Long> toProcess = TreeRangeSet.create();
+        for (QueryInterval qi : intervals) {
+            BAMFileSpan span = index.getSpanOverlapping(qi.referenceIndex, qi.start, qi.end);
+            if (span != null) {
+                for (Chunk c : span.getChunks()) {
+                    toProcess.add(Range.closedOpen(c.getChunkStart(), c.getChunkEnd()));
+                }
+            }
+        }
+        toProcess.removeAll(processed);
+        processed.addAll(toProcess);
+        List<Chunk> chunks = new ArrayList<>();
+        for (Range<Long> r : toProcess.asRanges()) {
+            chunks.add(new Chunk(r.lowerEndpoint(), r.upperEndpoint()));
+        }
+        return chunks;
+    }
+    /**
+     * Splits the chunks into contiguous partitions of approximately equal compressed size
+     */
+    private static List<List<Chunk>> partition(List<Chunk> chunks, int partitions) {
+        long targetSize = compressedSize(chunks) / partitions + 1;
+        List<List<Chunk>> result = new ArrayList<>();
+        List<Chunk> current = new ArrayList<>();
+        long currentSize = 0;
+        for (Chunk c : chunks) {
+            current.add(c);
+            currentSize += compressedSize(c);
+            if (currentSize >= targetSize) {
+                result.add(current);
+                current = new ArrayList<>();
+                currentSize = 0;
+            }
+        }
+        if (!current.isEmpty()) {
+            result.add(current);
+        }
+        return result;
+    }
+    private static long compressedSize(List<Chunk> chunks) {
+        return chunks.stream().mapToLong(IndexedLookupFullReadExtractor::compressedSize).sum();
+    }
+    private static long compressedSize(Chunk chunk) {
+        // upper 48 bits of the virtual file offset are the compressed block offset
+        // chunks within a single block are counted as a single byte
+        return Math.max(1, (chunk.getChunkEnd() >>> 16) - (chunk.getChunkStart() >>> 16));
     }
     private static QueryInterval expandBy(QueryInterval qi, int regionPaddingSize, SAMSequenceDictionary dict) {
         return new QueryInterval(
                 qi.referenceIndex,
-                Math.max(0, qi.start),
-                Math.min(dict.getSequence(qi.referenceIndex).getSequenceLength(), qi.end));
+                Math.max(1, qi.start - regionPaddingSize),
+                Math.min(dict.getSequence(qi.referenceIndex).getSequenceLength(), qi.end + regionPaddingSize));
     }
 }
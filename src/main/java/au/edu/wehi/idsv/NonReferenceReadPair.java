@@ -26,6 +26,7 @@ public abstract class NonReferenceReadPair implements DirectedEvidence {
 	private final BreakendSummary location;
 	private final SAMEvidenceSource source;
 	private String evidenceID = null;
+	private EvidenceId evidenceIdentifier = null;
 	private String associatedAssemblyName;
 	protected NonReferenceReadPair(SAMRecord local, SAMRecord remote, SAMEvidenceSource source) {
 		if (local == null) throw new IllegalArgumentException("local is null");
@@ -268,6 +269,13 @@ public abstract class NonReferenceReadPair implements DirectedEvidence {
 		return evidenceID;
 	}
 	@Override
+	public EvidenceId getEvidenceIdentifier() {
+		if (evidenceIdentifier == null) {
+			evidenceIdentifier = EvidenceId.of(getEvidenceID());
+		}
+		return evidenceIdentifier;
+	}
+	@Override
 	public BreakendSummary getBreakendSummary() {
 		return location;
 	}
@@ -0,0 +1,165 @@
+package au.edu.wehi.idsv;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Memory-mapped precomputed reference coverage.
+ *
+ * Coverage is stored in fixed size bins with the read and read pair coverage of each
+ * bin stored as consecutive ints. Each contig is mapped separately so lookups are
+ * random access and do not require the input reads to be reprocessed.
+ *
+ * The header records the duplicate filtering and read pair concordance settings
+ * the coverage was calculated with so stale or mismatched indexes can be detected.
+ *
+ * Instances are thread-safe.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class ReferenceCoverageIndex implements ReferenceCoverageLookup, Closeable {
+	public static final String SUFFIX = ".refcoverage.idx";
+	static final int MAGIC = 0x47434F56; // "GCOV"
+	static final int VERSION = 2;
+	static final byte PAIRING_NONE = 0;
+	static final byte PAIRING_PROPER_PAIR_FLAG = 1;
+	static final byte PAIRING_FRAGMENT_SIZE = 2;
+	private static final int BIN_RECORD_SIZE = 2 * Integer.BYTES;
+	private final RandomAccessFile file;
+	private final int binSize;
+	private final int[] sequenceLength;
+	private final MappedByteBuffer[] bins;
+	private final int category;
+	private final boolean ignoreDuplicates;
+	private final byte pairingMethod;
+	private final int minConcordantFragmentSize;
+	private final int maxConcordantFragmentSize;
+	/**
+	 * @param file reference coverage index
+	 * @param dictionary if not null, the index is validated as having been generated against this reference genome
+	 * @param category category of the input the index was generated from
+	 */
+	public ReferenceCoverageIndex(File file, SAMSequenceDictionary dictionary, int category) throws IOException {
+		this.category = category;
+		this.file = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = this.file.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE));
+			if (header.getInt() != MAGIC) {
+				throw new IOException(String.format("%s is not a GRIDSS reference coverage index", file));
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException(String.format("Unsupported reference coverage index version %d in %s", version, file));
+			}
+			binSize = header.getInt();
+			ignoreDuplicates = header.get() != 0;
+			pairingMethod = header.get();
+			minConcordantFragmentSize = header.getInt();
+			maxConcordantFragmentSize = header.getInt();
+			int contigs = header.getInt();
+			if (dictionary != null && dictionary.size() != contigs) {
+				throw new IllegalArgumentException(String.format("Reference coverage index %s has %d contigs but reference genome has %d", file, contigs, dictionary.size()));
+			}
+			sequenceLength = new int[contigs];
+			bins = new MappedByteBuffer[contigs];
+			for (int i = 0; i < contigs; i++) {
+				byte[] name = new byte[header.getShort()];
+				header.get(name);
+				sequenceLength[i] = header.getInt();
+				if (dictionary != null && !new String(name, StandardCharsets.UTF_8).equals(dictionary.getSequence(i).getSequenceName())) {
+					throw new IllegalArgumentException(String.format("Reference coverage index contig %s does not match reference genome contig %s",
+							new String(name, StandardCharsets.UTF_8), dictionary.getSequence(i).getSequenceName()));
+				}
+			}
+			long offset = header.position();
+			for (int i = 0; i < contigs; i++) {
+				long size = (long)binCount(sequenceLength[i], binSize) * BIN_RECORD_SIZE;
+				if (size > Integer.MAX_VALUE) {
+					throw new IOException(String.format("Contig %d of %s too large to memory map. Use a larger bin size.", i, file));
+				}
+				if (offset + size > channel.size()) {
+					throw new IOException(String.format("%s is truncated or corrupt", file));
+				}
+				bins[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+				offset += size;
+			}
+			if (offset != channel.size()) {
+				throw new IOException(String.format("%s is truncated or corrupt", file));
+			}
+		} catch (IOException | RuntimeException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+	static byte pairingMethod(ReadPairConcordanceCalculator pairing) {
+		if (pairing == null) return PAIRING_NONE;
+		if (pairing instanceof SAMFlagReadPairConcordanceCalculator) return PAIRING_PROPER_PAIR_FLAG;
+		return PAIRING_FRAGMENT_SIZE;
+	}
+	/**
+	 * Ensures the index coverage was calculated using the given settings
+	 * @param ignoreDuplicates reads flagged as duplicates are excluded
+	 * @param pairing read pair concordance calculator
+	 * @throws IllegalArgumentException if the index was generated with different settings
+	 */
+	public void validate(boolean ignoreDuplicates, ReadPairConcordanceCalculator pairing) {
+		if (this.ignoreDuplicates != ignoreDuplicates) {
+			throw new IllegalArgumentException(String.format("Reference coverage index was generated %s duplicate reads",
+					this.ignoreDuplicates ? "excluding" : "including"));
+		}
+		byte method = pairingMethod(pairing);
+		if (pairingMethod != method) {
+			throw new IllegalArgumentException(String.format("Reference coverage index was generated using read pair concordance method %d but method %d is required",
+					pairingMethod, method));
+		}
+		if (method == PAIRING_FRAGMENT_SIZE && (minConcordantFragmentSize != pairing.minConcordantFragmentSize() || maxConcordantFragmentSize != pairing.maxConcordantFragmentSize())) {
+			throw new IllegalArgumentException(String.format("Reference coverage index was generated using concordant fragment size [%d, %d] but [%d, %d] is required",
+					minConcordantFragmentSize, maxConcordantFragmentSize, pairing.minConcordantFragmentSize(), pairing.maxConcordantFragmentSize()));
+		}
+	}
+	static int binCount(int sequenceLength, int binSize) {
+		return (int)((sequenceLength + (long)binSize - 1) / binSize);
+	}
+	public int getBinSize() {
+		return binSize;
+	}
+	private int get(int referenceIndex, int position, int fieldOffset) {
+		if (referenceIndex < 0 || referenceIndex >= bins.length) return 0;
+		if (position < 1 || position > sequenceLength[referenceIndex]) return 0;
+		return bins[referenceIndex].getInt((position - 1) / binSize * BIN_RECORD_SIZE + fieldOffset);
+	}
+	/**
+	 * Number of reference reads providing evidence against a breakend immediately after the given base.
+	 * This is the minimum coverage of any position in the bin containing the given position.
+	 */
+	@Override
+	public int readsSupportingNoBreakendAfter(int referenceIndex, int position) {
+		return get(referenceIndex, position, 0);
+	}
+	/**
+	 * Number of read pairs providing evidence against a breakend immediately after the given base.
+	 * This is the minimum coverage of any position in the bin containing the given position.
+	 */
+	@Override
+	public int readPairsSupportingNoBreakendAfter(int referenceIndex, int position) {
+		return get(referenceIndex, position, Integer.BYTES);
+	}
+	@Override
+	public int getCategory() {
+		return category;
+	}
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
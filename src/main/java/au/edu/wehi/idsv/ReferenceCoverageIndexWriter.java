@@ -0,0 +1,167 @@
+package au.edu.wehi.idsv;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.RuntimeIOException;
+import it.unimi.dsi.fastutil.ints.IntHeapPriorityQueue;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the per-position reference coverage calculated by {@link SequentialReferenceCoverageLookup}
+ * in the binary format read by {@link ReferenceCoverageIndex}.
+ *
+ * Reads are pushed to the writer in coordinate order and bins are written as soon as all
+ * positions in the bin have been calculated so memory usage is independent of the genome size.
+ * The value of each bin is the minimum coverage of any position in that bin.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class ReferenceCoverageIndexWriter implements Closeable {
+	private final SAMSequenceDictionary dict;
+	private final ReadPairConcordanceCalculator pairing;
+	private final int binSize;
+	private final boolean ignoreDuplicates;
+	private final DataOutputStream out;
+	private final IntHeapPriorityQueue currentReferenceRead = new IntHeapPriorityQueue();
+	private final IntHeapPriorityQueue currentStartReferencePairs = new IntHeapPriorityQueue();
+	private final IntHeapPriorityQueue currentEndReferencePairs = new IntHeapPriorityQueue();
+	private int currentReferenceIndex = 0;
+	/**
+	 * First position for which the coverage has not yet been calculated
+	 */
+	private int nextPosition = 1;
+	private int binReads = Integer.MAX_VALUE;
+	private int binPairs = Integer.MAX_VALUE;
+	private SAMRecord lastRead;
+	private boolean closed = false;
+	/**
+	 * @param output index file
+	 * @param dictionary reference genome sequence dictionary
+	 * @param pairing read pair concordance calculator. If null, read pair coverage is not calculated.
+	 * @param binSize number of bases per bin
+	 * @param ignoreDuplicates exclude reads flagged as duplicates
+	 */
+	public ReferenceCoverageIndexWriter(File output, SAMSequenceDictionary dictionary, ReadPairConcordanceCalculator pairing, int binSize, boolean ignoreDuplicates) throws IOException {
+		if (binSize <= 0) throw new IllegalArgumentException("Bin size must be positive");
+		this.dict = dictionary;
+		this.pairing = pairing;
+		this.binSize = binSize;
+		this.ignoreDuplicates = ignoreDuplicates;
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+		out.writeInt(ReferenceCoverageIndex.MAGIC);
+		out.writeInt(ReferenceCoverageIndex.VERSION);
+		out.writeInt(binSize);
+		byte pairingMethod = ReferenceCoverageIndex.pairingMethod(pairing);
+		out.writeByte(ignoreDuplicates ? 1 : 0);
+		out.writeByte(pairingMethod);
+		// fragment size bounds are only meaningful when concordance is determined by fragment size
+		out.writeInt(pairingMethod == ReferenceCoverageIndex.PAIRING_FRAGMENT_SIZE ? pairing.minConcordantFragmentSize() : 0);
+		out.writeInt(pairingMethod == ReferenceCoverageIndex.PAIRING_FRAGMENT_SIZE ? pairing.maxConcordantFragmentSize() : 0);
+		out.writeInt(dict.size());
+		for (SAMSequenceRecord seq : dict.getSequences()) {
+			byte[] name = seq.getSequenceName().getBytes(StandardCharsets.UTF_8);
+			out.writeShort(name.length);
+			out.write(name);
+			out.writeInt(seq.getSequenceLength());
+		}
+	}
+	/**
+	 * Adds the given read to the coverage calculation
+	 * @param read read. Reads <b>must</b> be added in coordinate order.
+	 */
+	public void add(SAMRecord read) {
+		if (read.getReadUnmappedFlag()) return;
+		if (ignoreDuplicates && read.getDuplicateReadFlag()) return;
+		checkOrdered(read);
+		try {
+			if (read.getReferenceIndex() != currentReferenceIndex) {
+				advanceToReference(read.getReferenceIndex());
+			}
+			calculateUntil(read.getAlignmentStart());
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		}
+		currentReferenceRead.enqueue(read.getAlignmentEnd());
+		if (pairing != null && SequentialReferenceCoverageLookup.isLowerMappedOfNonOverlappingConcordantPair(read, pairing)) {
+			currentStartReferencePairs.enqueue(read.getAlignmentEnd());
+			currentEndReferencePairs.enqueue(read.getMateAlignmentStart());
+		}
+	}
+	private void checkOrdered(SAMRecord read) {
+		if (lastRead != null && (read.getReferenceIndex() < lastRead.getReferenceIndex() ||
+				(read.getReferenceIndex().equals(lastRead.getReferenceIndex()) && read.getAlignmentStart() < lastRead.getAlignmentStart()))) {
+			throw new IllegalStateException(String.format("Input is not sorted read %s at %s:%d before read %s at %s:%d",
+					lastRead.getReadName(),
+					lastRead.getReferenceName(),
+					lastRead.getAlignmentStart(),
+					read.getReadName(),
+					read.getReferenceName(),
+					read.getAlignmentStart()));
+		}
+		lastRead = read;
+	}
+	/**
+	 * Completes the current contig and writes empty bins for all contigs before the given contig
+	 */
+	private void advanceToReference(int referenceIndex) throws IOException {
+		calculateUntil(Integer.MAX_VALUE);
+		currentReferenceRead.clear();
+		currentStartReferencePairs.clear();
+		currentEndReferencePairs.clear();
+		for (currentReferenceIndex++; currentReferenceIndex < referenceIndex; currentReferenceIndex++) {
+			int bins = ReferenceCoverageIndex.binCount(dict.getSequence(currentReferenceIndex).getSequenceLength(), binSize);
+			for (int i = 0; i < bins; i++) {
+				out.writeLong(0);
+			}
+		}
+		nextPosition = 1;
+	}
+	/**
+	 * Calculates the coverage of all positions on the current contig before the given position
+	 */
+	private void calculateUntil(int position) throws IOException {
+		int length = dict.getSequence(currentReferenceIndex).getSequenceLength();
+		int end = (int)Math.min(position, length + 1L);
+		while (nextPosition < end) {
+			int binEnd = Math.min(length, ((nextPosition - 1) / binSize + 1) * binSize);
+			int last = nextPosition;
+			flushQueues(nextPosition);
+			int reads = currentReferenceRead.size();
+			int pairs = currentEndReferencePairs.size() - currentStartReferencePairs.size();
+			if (reads == 0 && currentEndReferencePairs.isEmpty() && currentStartReferencePairs.isEmpty()) {
+				// no reads can start before the given position so coverage remains zero
+				last = Math.min(end - 1, binEnd);
+			}
+			binReads = Math.min(binReads, reads);
+			binPairs = Math.min(binPairs, pairs);
+			if (last == binEnd) {
+				out.writeInt(binReads);
+				out.writeInt(binPairs);
+				binReads = Integer.MAX_VALUE;
+				binPairs = Integer.MAX_VALUE;
+			}
+			nextPosition = last + 1;
+		}
+	}
+	private void flushQueues(int position) {
+		while (!currentReferenceRead.isEmpty() && currentReferenceRead.firstInt() <= position) currentReferenceRead.dequeueInt();
+		while (!currentStartReferencePairs.isEmpty() && currentStartReferencePairs.firstInt() <= position) currentStartReferencePairs.dequeueInt();
+		while (!currentEndReferencePairs.isEmpty() && currentEndReferencePairs.firstInt() <= position) currentEndReferencePairs.dequeueInt();
+	}
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+		try {
+			if (dict.size() > 0) {
+				advanceToReference(dict.size());
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
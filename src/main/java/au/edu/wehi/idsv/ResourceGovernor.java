@@ -0,0 +1,150 @@
+package au.edu.wehi.idsv;
+
+import htsjdk.samtools.util.Log;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Partitions the process-wide worker thread and temporary disk budget
+ * across samples and pipeline stages that run concurrently.
+ *
+ * Each multi-threaded stage leases its fair share of the worker threads
+ * so running multiple samples in parallel neither oversubscribes nor
+ * underutilises the available cores. Temporary file intensive stages
+ * (such as sorting) additionally lease one of a fixed number of
+ * temporary disk slots.
+ *
+ * To prevent deadlock, a caller must not request a lease whilst holding
+ * another lease.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class ResourceGovernor {
+	private static final Log log = Log.getInstance(ResourceGovernor.class);
+	private final int workerThreads;
+	private final int temporaryDiskStages;
+	private final boolean asyncWrite;
+	private final Semaphore workerPermits;
+	private final Semaphore temporaryDiskPermits;
+	private volatile int concurrentConsumers = 1;
+	/**
+	 * Number of active leases that have been allocated one of the remainder threads
+	 */
+	private int remainderLeases = 0;
+	/**
+	 * @param workerThreads total number of worker threads available
+	 * @param temporaryDiskStages maximum number of concurrent temporary disk intensive stages
+	 * @param asyncWrite true if each stage consumes an additional thread for asynchronous BGZF compression
+	 */
+	public ResourceGovernor(int workerThreads, int temporaryDiskStages, boolean asyncWrite) {
+		this.workerThreads = Math.max(1, workerThreads);
+		this.temporaryDiskStages = Math.max(1, temporaryDiskStages);
+		this.asyncWrite = asyncWrite;
+		this.workerPermits = new Semaphore(this.workerThreads, true);
+		this.temporaryDiskPermits = new Semaphore(this.temporaryDiskStages, true);
+	}
+	public ResourceGovernor(int workerThreads) {
+		this(workerThreads, gridss.Defaults.CONCURRENT_TEMPORARY_DISK_STAGES, htsjdk.samtools.Defaults.USE_ASYNC_IO_WRITE_FOR_SAMTOOLS);
+	}
+	public int getWorkerThreadCount() {
+		return workerThreads;
+	}
+	public int getConcurrentConsumers() {
+		return concurrentConsumers;
+	}
+	/**
+	 * Sets the number of samples or stages expected to concurrently
+	 * request worker threads.
+	 */
+	public void setConcurrentConsumers(int concurrentConsumers) {
+		this.concurrentConsumers = Math.max(1, Math.min(workerThreads, concurrentConsumers));
+	}
+	/**
+	 * Minimum number of worker threads allocated to each lease
+	 */
+	public int getFairShare() {
+		return Math.max(1, workerThreads / concurrentConsumers);
+	}
+	/**
+	 * Number of worker threads not evenly divisible between the consumers.
+	 * Each of these threads is allocated to a separate lease in addition to the fair share.
+	 */
+	public int getRemainder() {
+		return workerThreads % concurrentConsumers;
+	}
+	/**
+	 * Blocks until the fair share of worker threads is available
+	 * @return lease of worker threads. The lease must be closed when the stage completes.
+	 */
+	public Lease acquireWorkerThreads() throws InterruptedException {
+		boolean remainder;
+		synchronized (this) {
+			remainder = remainderLeases < getRemainder();
+			if (remainder) remainderLeases++;
+		}
+		int share = getFairShare() + (remainder ? 1 : 0);
+		try {
+			workerPermits.acquire(share);
+		} catch (InterruptedException e) {
+			if (remainder) releaseRemainder();
+			throw e;
+		}
+		// BGZF compression runs on its own thread for each output file
+		int threads = asyncWrite && share > 1 ? share - 1 : share;
+		if (log.isEnabled(Log.LogLevel.DEBUG)) {
+			log.debug(String.format("Leased %d of %d worker threads (%d available)", share, workerThreads, workerPermits.availablePermits()));
+		}
+		return new Lease(workerPermits, share, threads, remainder ? this::releaseRemainder : null);
+	}
+	private synchronized void releaseRemainder() {
+		remainderLeases--;
+	}
+	/**
+	 * Blocks until a temporary disk slot is available
+	 * @return temporary disk lease. The lease must be closed when the stage completes.
+	 */
+	public Lease acquireTemporaryDisk() throws InterruptedException {
+		temporaryDiskPermits.acquire();
+		return new Lease(temporaryDiskPermits, 1, 1, null);
+	}
+	/**
+	 * Number of worker threads currently not leased
+	 */
+	public int getAvailableWorkerThreads() {
+		return workerPermits.availablePermits();
+	}
+	/**
+	 * Number of temporary disk slots currently not leased
+	 */
+	public int getAvailableTemporaryDiskSlots() {
+		return temporaryDiskPermits.availablePermits();
+	}
+	public static class Lease implements AutoCloseable {
+		private final Semaphore semaphore;
+		private final int permits;
+		private final int workerThreads;
+		private final Runnable onRelease;
+		private boolean released = false;
+		private Lease(Semaphore semaphore, int permits, int workerThreads, Runnable onRelease) {
+			this.semaphore = semaphore;
+			this.permits = permits;
+			this.workerThreads = workerThreads;
+			this.onRelease = onRelease;
+		}
+		/**
+		 * Number of worker threads the stage should use
+		 */
+		public int getWorkerThreads() {
+			return workerThreads;
+		}
+		@Override
+		public synchronized void close() {
+			if (!released) {
+				released = true;
+				if (onRelease != null) onRelease.run();
+				semaphore.release(permits);
+			}
+		}
+	}
+}
@@ -15,6 +15,7 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import gridss.ComputeSamTags;
 import gridss.ExtractSVReads;
+import gridss.PreprocessSVReads;
 import gridss.SoftClipsToSplitReads;
 import gridss.analysis.CollectGridssMetrics;
 import gridss.cmdline.CommandLineProgramHelper;
@@ -134,6 +135,31 @@ public class SAMEvidenceSource extends EvidenceSource {
 			throw new RuntimeException(msg);
 		}
 	}
+	/**
+	 * Executes a multi-threaded program using this source's share of the worker threads
+	 */
+	protected void executeWithWorkerThreads(CommandLineProgramHelper cmd) {
+		ResourceGovernor governor = getProcessContext().getResourceGovernor();
+		try (ResourceGovernor.Lease lease = governor.acquireWorkerThreads()) {
+			cmd.addArg("WORKER_THREADS", lease.getWorkerThreads());
+			execute(cmd);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+	/**
+	 * Sorts the given file once temporary disk is available
+	 */
+	protected void sort(File unsorted, File output, SortOrder sortOrder) throws IOException {
+		ResourceGovernor governor = getProcessContext().getResourceGovernor();
+		try (ResourceGovernor.Lease lease = governor.acquireTemporaryDisk()) {
+			SAMFileUtil.sort(getContext().getFileSystemContext(), unsorted, output, sortOrder);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
 	public synchronized void ensureExtracted() throws IOException {
 		File svFile = getContext().getFileSystemContext().getSVBam(getFile());
 		File extractedFile = FileSystemContext.getWorkingFileFor(svFile, "gridss.tmp.extracted.");
@@ -141,6 +167,11 @@ public class SAMEvidenceSource extends EvidenceSource {
 		File taggedFile = FileSystemContext.getWorkingFileFor(svFile, "gridss.tmp.tagged.");
 		File withsplitreadsFile = FileSystemContext.getWorkingFileFor(svFile, "gridss.tmp.splitreads.");
 		ensureMetrics();
+		if (gridss.Defaults.FUSED_SV_READ_PREPROCESSING && !svFile.exists() && !extractedFile.exists()
+				&& !querysortedFile.exists() && !taggedFile.exists() && !withsplitreadsFile.exists()) {
+			ensureExtractedFused(svFile);
+			return;
+		}
 		// Regenerate from from the intermediate file furtherest through the pipeline
 		// extract -> query sort -> tag -> split read -> back to coordinate sorted
 		// We want to tag before generating split reads so all splits are guaranteed to
@@ -169,7 +200,7 @@ public class SAMEvidenceSource extends EvidenceSource {
 							if (rpcConcordantPercentage != null) cmd.addArg("READ_PAIR_CONCORDANT_PERCENT", rpcConcordantPercentage);
 							execute(cmd);
 						}
-						SAMFileUtil.sort(getContext().getFileSystemContext(), extractedFile, querysortedFile, SortOrder.queryname);
+						sort(extractedFile, querysortedFile, SortOrder.queryname);
 						if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
 							FileHelper.delete(extractedFile, true);
 						}
@@ -186,7 +217,6 @@ public class SAMEvidenceSource extends EvidenceSource {
 				log.info("Identifying split reads for " + getFile().getAbsolutePath());
 				SoftClipsToSplitReads program = new SoftClipsToSplitReads();
 				CommandLineProgramHelper cmd = new CommandLineProgramHelper(program);
-				cmd.addArg("WORKER_THREADS", getProcessContext().getWorkerThreadCount());
 				cmd.addArg("INPUT", taggedFile.getPath());
 				cmd.addArg("OUTPUT", withsplitreadsFile.getPath());
 				cmd.addArg("REALIGN_EXISTING_SPLIT_READS", Boolean.toString(getContext().getConfig().getSoftClip().realignSplitReads));
@@ -195,12 +225,12 @@ public class SAMEvidenceSource extends EvidenceSource {
 						//"MIN_CLIP_QUAL=" + getContext().getConfig().getSoftClip().minAverageQual);
 				program.setReference(getProcessContext().getReference());
 				program.setFileSystemContext(getProcessContext().getFileSystemContext());
-				execute(cmd);
+				executeWithWorkerThreads(cmd);
 				if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
 					FileHelper.delete(taggedFile, true);
 				}
 			}
-			SAMFileUtil.sort(getContext().getFileSystemContext(), withsplitreadsFile, svFile, SortOrder.coordinate);
+			sort(withsplitreadsFile, svFile, SortOrder.coordinate);
 			if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
 				FileHelper.delete(withsplitreadsFile, true);
 			}
@@ -212,6 +242,26 @@ public class SAMEvidenceSource extends EvidenceSource {
 			FileHelper.delete(withsplitreadsFile, true);
 		}
 	}
+	/**
+	 * Generates the SV read file in a single pass without writing any intermediate BAM files.
+	 */
+	private void ensureExtractedFused(File svFile) {
+		log.info("Extracting and preprocessing SV reads from " + getFile().getAbsolutePath());
+		File in = getFile(SortOrder.queryname);
+		if (in == null || !in.exists()) {
+			in = getFile();
+		}
+		CommandLineProgramHelper cmd = new CommandLineProgramHelper(new PreprocessSVReads());
+		cmd.addArg("INPUT", in.getPath());
+		cmd.addArg("OUTPUT", svFile.getPath());
+		cmd.addArg("MIN_CLIP_LENGTH", getContext().getConfig().getSoftClip().minLength);
+		cmd.addArg("INSERT_SIZE_METRICS", getContext().getFileSystemContext().getInsertSizeMetrics(getFile()));
+		cmd.addArg("REALIGN_EXISTING_SPLIT_READS", Boolean.toString(getContext().getConfig().getSoftClip().realignSplitReads));
+		if (rpcMinFragmentSize != null) cmd.addArg("READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE", rpcMinFragmentSize);
+		if (rpcMaxFragmentSize != null) cmd.addArg("READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE", rpcMaxFragmentSize);
+		if (rpcConcordantPercentage != null) cmd.addArg("READ_PAIR_CONCORDANT_PERCENT", rpcConcordantPercentage);
+		executeWithWorkerThreads(cmd);
+	}
 	public CloseableIterator<DirectedEvidence> iterator(final QueryInterval[] intervals, EvidenceSortOrder eso) {
 		SamReader reader = getReader();
 		// expand query bounds as the alignment for a discordant read pair could fall before or after the breakend interval we are extracting
@@ -420,7 +470,7 @@ public class SAMEvidenceSource extends EvidenceSource {
 					blacklist = IntervalBed.merge(getContext().getLinear(), ImmutableList.of(
 							getContext().getBlacklistedRegions(),
 							new IntervalBed(getContext().getLinear(), coverageBlacklist)
-					));
+					)).freeze();
 				} catch (IOException e) {
 					log.error(e);
 					blacklist = getContext().getBlacklistedRegions();
@@ -1,6 +1,7 @@
 package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
+import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordIterator;
@@ -12,6 +13,8 @@ import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.ProgressLogger;
 
 import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -36,19 +39,45 @@ public class SequentialCoverageAnnotator<T extends VariantContextDirectedEvidenc
 	private final List<Closeable> toclose = new ArrayList<>();
 	private final ExecutorService threadpool;
 	public SequentialCoverageAnnotator(ProcessingContext context, List<SAMEvidenceSource> sources, Iterator<T> it, int windowSize, ExecutorService threadpool) {
+		this(context, sources, it, windowSize, null, threadpool);
+	}
+	/**
+	 * @param intervals intervals containing all breakends to annotate, padded by at least the window size.
+	 * If null, coverage is calculated across the entire genome.
+	 */
+	public SequentialCoverageAnnotator(ProcessingContext context, List<SAMEvidenceSource> sources, Iterator<T> it, int windowSize, QueryInterval[] intervals, ExecutorService threadpool) {
 		this.context = context;
-		this.reference = createLookup(context, sources, windowSize);
+		this.reference = createLookup(context, sources, windowSize, intervals);
 		this.it = it;
 		this.threadpool = threadpool;
 	}
-	private List<ReferenceCoverageLookup> createLookup(ProcessingContext context, List<SAMEvidenceSource> sources, int windowSize) {
+	private List<ReferenceCoverageLookup> createLookup(ProcessingContext context, List<SAMEvidenceSource> sources, int windowSize, QueryInterval[] intervals) {
 		List<ReferenceCoverageLookup> result = new ArrayList<>();
 		for (SAMEvidenceSource ses : sources) {
 			assert(ses.getSourceCategory() >= 0);
 			assert(ses.getSourceCategory() < context.getCategoryCount());
+			File index = context.getFileSystemContext().getReferenceCoverageIndex(ses.getFile());
+			if (index.exists()) {
+				if (index.lastModified() < ses.getFile().lastModified()) {
+					log.warn(index + " is older than " + ses.getFile() + ". Falling back to calculating coverage from " + ses.getFile());
+				} else {
+					ReferenceCoverageIndex indexLookup = null;
+					try {
+						indexLookup = new ReferenceCoverageIndex(index, context.getDictionary(), ses.getSourceCategory());
+						indexLookup.validate(context.isFilterDuplicates(), ses.getReadPairConcordanceCalculator());
+						log.info("Using precomputed reference coverage from " + index);
+						toclose.add(indexLookup);
+						result.add(indexLookup);
+						continue;
+					} catch (IOException | IllegalArgumentException e) {
+						CloserUtil.close(indexLookup);
+						log.warn("Unable to use " + index + ": " + e.getMessage() + ". Falling back to calculating coverage from " + ses.getFile());
+					}
+				}
+			}
 			// one read-ahead thread per input file
 			SamReader reader = SamReaderFactory.makeDefault().referenceSequence(context.getReferenceFile()).open(ses.getFile());
-			SAMRecordIterator rawIterator = reader.iterator();
+			SAMRecordIterator rawIterator = intervals == null ? reader.iterator() : reader.queryOverlapping(intervals);
 			rawIterator.assertSorted(SortOrder.coordinate);
 			CloseableIterator<SAMRecord> sit = new AsyncBufferedIterator<SAMRecord>(rawIterator, ses.getFile().getName() + "-Coverage");
 			toclose.add(sit); // close the async iterator first to prevent aysnc reading from a closed stream 
@@ -34,6 +34,7 @@ public abstract class SingleReadEvidence implements DirectedEvidence {
 	private final int nominalOffset;
 	private final boolean isInAssemblyAnchor;
 	private String evidenceid;
+	private EvidenceId evidenceIdentifier;
 	private boolean unableToCalculateHomology = false;
 	private String associatedAssemblyName;
 	private int assemblyOffset = Integer.MIN_VALUE;
@@ -340,6 +341,14 @@ public abstract class SingleReadEvidence implements DirectedEvidence {
 		}
 		return evidenceid;
 	}
+
+	@Override
+	public EvidenceId getEvidenceIdentifier() {
+		if (evidenceIdentifier == null) {
+			evidenceIdentifier = EvidenceId.of(getEvidenceID());
+		}
+		return evidenceIdentifier;
+	}
 	
 	public String getHomologySequence() {
 		if (unableToCalculateHomology) throw new IllegalStateException("Unable to calculate homology as reference genome has not been supplied");
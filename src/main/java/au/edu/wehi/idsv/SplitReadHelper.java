@@ -28,8 +28,14 @@ public class SplitReadHelper {
 	private static Comparator<SAMRecord> ByFirstAlignedBaseReadOffset = Comparator.comparing(r -> SAMRecordUtil.getFirstAlignedBaseReadOffset(r));
 	private static final Log log = Log.getInstance(SplitReadHelper.class);
 	public static FastqRecord getFullRealignment(SAMRecord r, EvidenceIdentifierGenerator eidgen) {
+		return getFullRealignment(r, eidgen.getAlignmentUniqueName(r));
+	}
+	/**
+	 * @param alignmentUniqueName name identifying the originating alignment of the realignment records
+	 */
+	public static FastqRecord getFullRealignment(SAMRecord r, String alignmentUniqueName) {
 		assert(!AssemblyAttributes.isUnanchored(r));
-		String name = eidgen.getAlignmentUniqueName(r);
+		String name = alignmentUniqueName;
 		byte[] seq = r.getReadBases();
 		byte[] qual = r.getBaseQualities();
 		if (r.getReadNegativeStrandFlag()) {
@@ -82,6 +88,19 @@ public class SplitReadHelper {
 	 * @return bases requiring alignment to identify split reads
 	 */
 	public static List<FastqRecord> getSplitReadRealignments(SAMRecord r, boolean recordIsPartialAlignment, EvidenceIdentifierGenerator eidgen, byte fallbackBaseQuality) {
+		return getSplitReadRealignments(r, recordIsPartialAlignment, eidgen, null, fallbackBaseQuality);
+	}
+	/**
+	 * Extract the unaligned portions of the read requiring realignment to identify split reads
+	 *
+	 * @param r alignment record
+	 * @param recordIsPartialAlignment true if the record is the result of aligning FastqRecords
+	 * from a previous call to getSplitReadRealignments()
+	 * @param alignmentUniqueName name identifying the originating alignment. If null, the
+	 * alignment unique name of the record is used. Ignored for partial alignments.
+	 * @return bases requiring alignment to identify split reads
+	 */
+	public static List<FastqRecord> getSplitReadRealignments(SAMRecord r, boolean recordIsPartialAlignment, EvidenceIdentifierGenerator eidgen, String alignmentUniqueName, byte fallbackBaseQuality) {
 		int startClipLength = SAMRecordUtil.getStartSoftClipLength(r);
 		int endClipLength = SAMRecordUtil.getEndSoftClipLength(r);
 		if (startClipLength + endClipLength == 0 || r.getReadUnmappedFlag()) {
@@ -94,7 +113,7 @@ public class SplitReadHelper {
 			name = getOriginatingAlignmentUniqueName(r);
 		} else {
 			offset = 0;
-			name = eidgen.getAlignmentUniqueName(r);
+			name = alignmentUniqueName != null ? alignmentUniqueName : eidgen.getAlignmentUniqueName(r);
 		}
 		List<FastqRecord> list = new ArrayList<>(2);
 		if (startClipLength > 0) {
@@ -94,6 +94,15 @@ public abstract class SplitReadRealigner {
     }
 
     public List<FastqRecord> extract(SAMRecord r, boolean isRecursiveRealignment) {
+        return extract(r, isRecursiveRealignment, null);
+    }
+
+    /**
+     * Extracts the bases requiring realignment
+     * @param alignmentUniqueName name used to identify the originating record in the realignment
+     *                            read names. Defaults to the alignment unique name of the record if null.
+     */
+    protected List<FastqRecord> extract(SAMRecord r, boolean isRecursiveRealignment, String alignmentUniqueName) {
         if (!isRecursiveRealignment && shouldDropInputRecord(r)) {
             throw new IllegalArgumentException("Record should have been dropped.");
         }
@@ -101,7 +110,7 @@ public abstract class SplitReadRealigner {
         if (r.getReadUnmappedFlag()) return list;
         if (!SAMRecordUtil.isSoftClipLengthAtLeast(r, getMinSoftClipLength())) return list;
         if (isRealignEntireRecord() && !isRecursiveRealignment && !AssemblyAttributes.isUnanchored(r)) {
-            list.add(SplitReadHelper.getFullRealignment(r, getEvidenceIdentifierGenerator()));
+            list.add(alignmentUniqueName != null ? SplitReadHelper.getFullRealignment(r, alignmentUniqueName) : SplitReadHelper.getFullRealignment(r, getEvidenceIdentifierGenerator()));
             return list;
         }
         if (isRecursiveRealignment && SplitReadHelper.isAnchoringBasesRecord(r)) {
@@ -115,7 +124,7 @@ public abstract class SplitReadRealigner {
         if (!isRealignExistingSplitReads() && !isRecursiveRealignment && r.getAttribute(SAMTag.SA.name()) != null) return list;
         if (r.getSupplementaryAlignmentFlag()) return list;
         if (r.isSecondaryAlignment() && !isProcessSecondaryAlignments()) return list;
-        for (FastqRecord fqr : SplitReadHelper.getSplitReadRealignments(r, isRecursiveRealignment, getEvidenceIdentifierGenerator(), fallBackBaseQuality)) {
+        for (FastqRecord fqr : SplitReadHelper.getSplitReadRealignments(r, isRecursiveRealignment, getEvidenceIdentifierGenerator(), alignmentUniqueName, fallBackBaseQuality)) {
             if (fqr.getReadLength() < getMinSoftClipLength()) continue;
             if (averageBaseQuality(fqr) < getMinSoftClipQuality()) continue;
             list.add(fqr);
@@ -8,16 +8,29 @@ import htsjdk.samtools.fastq.FastqRecord;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.ProgressLogger;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
+/**
+ * Realigns soft clipped bases using a streaming aligner.
+ *
+ * Realignment records are named using a compact numeric identifier
+ * of the originating record instead of the alignment unique name.
+ * This avoids computing alignment unique names and allows the records
+ * awaiting realignment to be stored in a primitive long-keyed lookup.
+ */
 public class StreamingSplitReadRealigner extends SplitReadRealigner {
     private static final Log log = Log.getInstance(StreamingSplitReadRealigner.class);
     private final StreamingAligner aligner;
     private final GenomicProcessingContext pc;
     private final int maxBufferedRecords;
+    private long nextRealignmentId = 0;
 
     public StreamingSplitReadRealigner(GenomicProcessingContext pc, StreamingAligner aligner, int maxBufferedRecords) {
         super(pc.getReference());
@@ -27,7 +40,7 @@ public class StreamingSplitReadRealigner extends SplitReadRealigner {
     }
 
     public void process(Iterator<SAMRecord> it, SAMFileWriter coordinateSortedWriter, SAMFileWriter unorderedWriter) throws IOException {
-        Map<String, SplitReadRealignmentInfo> lookup = new HashMap<>();
+        Long2ObjectMap<SplitReadRealignmentInfo> lookup = new Long2ObjectOpenHashMap<>();
         ProgressLogger progress = new ProgressLogger(log);
         int recordNumber = 0;
         while (it.hasNext()) {
@@ -61,7 +74,7 @@ public class StreamingSplitReadRealigner extends SplitReadRealigner {
     }
 
     private void processCompletedAsyncRealignments(
-            Map<String, SplitReadRealignmentInfo> lookup,
+            Long2ObjectMap<SplitReadRealignmentInfo> lookup,
             SAMFileWriter coordinateSortedWriter,
             SAMFileWriter unorderedWriter) throws IOException {
         flushIfRequired();
@@ -72,18 +85,20 @@ public class StreamingSplitReadRealigner extends SplitReadRealigner {
         }
     }
 
-    private void processInputRecord(SAMRecord record, Map<String, SplitReadRealignmentInfo> realignments, SAMFileWriter coordinateSortedWriter) throws IOException {
+    private void processInputRecord(SAMRecord record, Long2ObjectMap<SplitReadRealignmentInfo> realignments, SAMFileWriter coordinateSortedWriter) throws IOException {
         if (shouldDropInputRecord(record)) {
             return;
         }
-        List<FastqRecord> softclipRealignments = extract(record, false);
+        long id = nextRealignmentId;
+        List<FastqRecord> softclipRealignments = extract(record, false, Long.toString(id));
         if (softclipRealignments.size() == 0) {
             // nothing to do - just output the record
             coordinateSortedWriter.addAlignment(record);
         } else {
             // perform split read realignment
-            SplitReadRealignmentInfo info = new SplitReadRealignmentInfo(record);
-            realignments.put(info.alignmentUniqueName, info);
+            nextRealignmentId++;
+            SplitReadRealignmentInfo info = new SplitReadRealignmentInfo(record, id);
+            realignments.put(id, info);
             for (FastqRecord fq : softclipRealignments) {
                 aligner.asyncAlign(fq);
                 info.outstandingRealignments++;
@@ -91,10 +106,13 @@ public class StreamingSplitReadRealigner extends SplitReadRealigner {
         }
     }
 
-    private void processAlignmentRecord(SAMRecord supp, Map<String, SplitReadRealignmentInfo> realignments,
+    private void processAlignmentRecord(SAMRecord supp, Long2ObjectMap<SplitReadRealignmentInfo> realignments,
                                         SAMFileWriter writer, SAMFileWriter modifiedRecordWriter) throws IOException {
-        String lookupKey = SplitReadHelper.getOriginatingAlignmentUniqueName(supp);
+        long lookupKey = getRealignmentId(supp);
         SplitReadRealignmentInfo info = realignments.get(lookupKey);
+        if (info == null) {
+            throw new IllegalStateException(String.format("Realignment record %s does not match any record awaiting realignment", supp.getReadName()));
+        }
         if (supp.getSupplementaryAlignmentFlag() || supp.isSecondaryAlignment()) {
             // only consider the best mapping location reported by the aligner
             //log.debug(String.format("%s: ignoring supp alignment", supp.getReadName()));
@@ -120,6 +138,28 @@ public class StreamingSplitReadRealigner extends SplitReadRealigner {
         }
     }
 
+    /**
+     * Parses the numeric identifier of the originating record from the realignment read name
+     */
+    static long getRealignmentId(SAMRecord realignment) {
+        String name = realignment.getReadName();
+        int end = name.indexOf('#');
+        if (end <= 0) {
+            throw new IllegalStateException(String.format("Realignment record %s does not start with the <id># prefix of the originating record", name));
+        }
+        for (int i = 0; i < end; i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalStateException(String.format("Realignment record %s does not start with the numeric <id># prefix of the originating record", name));
+            }
+        }
+        try {
+            return Long.parseLong(name.substring(0, end));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(String.format("Realignment record %s originating record id is not a valid identifier", name), e);
+        }
+    }
+
     public void createSupplementaryAlignments(final File input, final File output, final File outputModified) throws IOException {
         SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
         SamReaderFactory readerFactory = SamReaderFactory.makeDefault().referenceSequence(pc.getReferenceFile());
@@ -147,21 +187,21 @@ public class StreamingSplitReadRealigner extends SplitReadRealigner {
         }
     }
 
-    private class SplitReadRealignmentInfo {
+    private static class SplitReadRealignmentInfo {
         @Override
         public int hashCode() {
-            return alignmentUniqueName.hashCode();
+            return Long.hashCode(id);
         }
         @Override
         public boolean equals(Object obj) {
-            return alignmentUniqueName.equals(((SplitReadRealignmentInfo) obj).alignmentUniqueName);
+            return id == ((SplitReadRealignmentInfo) obj).id;
         }
-        public SplitReadRealignmentInfo(SAMRecord record) {
+        public SplitReadRealignmentInfo(SAMRecord record, long id) {
             this.originatingRecord = record;
-            this.alignmentUniqueName = getEvidenceIdentifierGenerator().getAlignmentUniqueName(record);
+            this.id = id;
         }
-        private SAMRecord originatingRecord;
-        private String alignmentUniqueName;
+        private final SAMRecord originatingRecord;
+        private final long id;
         private List<SAMRecord> realignments = new ArrayList<>(2);
         private int outstandingRealignments = 0;
     }
@@ -13,6 +13,7 @@ import htsjdk.samtools.CigarOperator;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.util.Log;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 
 import java.util.*;
 import java.util.function.ToDoubleFunction;
@@ -27,7 +28,7 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 	private final ProcessingContext processContext;
 	private final CalledBreakpointPositionLookup calledBreakpointLookup;
 	private final VariantContextDirectedEvidence parent;
-	private final Set<String> encounteredEvidenceIDs;
+	private final Set<EvidenceId> encounteredEvidenceIDs;
 	private final List<DirectedBreakpoint> supportingBreakpoint = new ArrayList<>();
 	private final List<DirectedEvidence> supportingBreakend = new ArrayList<>();
 	// breakpoint support
@@ -51,7 +52,7 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 		this.calledBreakpointLookup = calledBreakpointLookup;
 		this.processContext = processContext;
 		this.parent = parent;
-		this.encounteredEvidenceIDs = deduplicateEvidence ? new HashSet<String>() : null;
+		this.encounteredEvidenceIDs = deduplicateEvidence ? new ObjectOpenHashSet<>() : null;
 		ensureGenotypeBuilders(processContext);
 		for (int i = 0; i < processContext.getCategoryCount(); i++) {
 			supportingSR.add(new ArrayList<>());
@@ -77,11 +78,11 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 						parent.getBreakendSummary()));
 			}
 		}
-		String eid = evidence.getEvidenceID();
 		if (encounteredEvidenceIDs != null) {
+			EvidenceId eid = evidence.getEvidenceIdentifier();
 			if (encounteredEvidenceIDs.contains(eid)) {
 				if (deduplicationMessageCount < gridss.Defaults.SUPPRESS_DATA_ERROR_MESSAGES_AFTER) { 
-					log.debug(String.format("Deduplicating %s from %s", eid, parent.getID()));
+					log.debug(String.format("Deduplicating %s from %s", evidence.getEvidenceID(), parent.getID()));
 					deduplicationMessageCount++;
 					if (deduplicationMessageCount == gridss.Defaults.SUPPRESS_DATA_ERROR_MESSAGES_AFTER) {
 						log.debug(String.format("Supressing further deduplication log messages."));
@@ -3,6 +3,7 @@ package au.edu.wehi.idsv;
 import au.edu.wehi.idsv.util.BatchingIterator;
 import au.edu.wehi.idsv.util.DuplicatingIterable;
 import au.edu.wehi.idsv.util.FlatMapIterator;
+import au.edu.wehi.idsv.util.GangExecutor;
 import au.edu.wehi.idsv.visualisation.StateTracker;
 import au.edu.wehi.idsv.visualisation.TrackedState;
 import com.google.common.collect.ImmutableList;
@@ -11,28 +12,42 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.util.CloseableIterator;
-import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.Log;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 /**
  * Calls breakpoints from the given evidence
  * 
+ * Each breakend direction is processed by a separate worker. Workers
+ * from all concurrent iterators are scheduled on a single shared executor
+ * so the number of threads is bounded regardless of how many chunks are
+ * being called concurrently.
+ * 
  * @author Daniel Cameron
  */
 public class VariantCallIterator implements CloseableIterator<VariantContextDirectedEvidence> {
 	private static final Log log = Log.getInstance(VariantCallIterator.class);
 	private static final int ITERATOR_BUFFER_SIZE = 256;
+	private static final long ABORT_POLL_INTERVAL_MS = 100;
+	/**
+	 * Largest number of workers required by a single iterator: one for each
+	 * breakpoint and breakend direction, and one to feed evidence to them.
+	 */
+	private static final int MAX_WORKERS_PER_ITERATOR = 7;
+	private static final GangExecutor executor = new GangExecutor(
+			Math.max(MAX_WORKERS_PER_ITERATOR, Defaults.VARIANT_CALLING_THREADS),
+			"CallVariants-%d");
 	private final VariantContextDirectedEvidence endOfStream;
 	private final ProcessingContext processContext;
 	private final DuplicatingIterable<List<DirectedEvidence>> iterable;
 	private final QueryInterval[] filterInterval;
-	private final BlockingDeque<VariantContextDirectedEvidence> outBuffer = new LinkedBlockingDeque<>(ITERATOR_BUFFER_SIZE);
+	private final BlockingQueue<VariantContextDirectedEvidence> outBuffer = new ArrayBlockingQueue<>(ITERATOR_BUFFER_SIZE);
 	private VariantContextDirectedEvidence outBufferHeadNextValidRecord = null;
 	private final List<AsyncDirectionalIterator> async = new ArrayList<>();
 	private int activeIterators;
@@ -48,7 +63,7 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 		this.processContext = processContext;
 		boolean callBreakends = processContext.getVariantCallingParameters().callBreakends;
 		this.activeIterators = callBreakends ? 6 : 4;
-		this.iterable = new DuplicatingIterable<>(activeIterators, new BatchingIterator<>(evidence, ITERATOR_BUFFER_SIZE), 2);
+		this.iterable = new DuplicatingIterable<>(activeIterators, new BatchingIterator<>(evidence, ITERATOR_BUFFER_SIZE), 2, false);
 		this.filterInterval = interval;
 		for (BreakendDirection localDir : BreakendDirection.values()) {
 			for (BreakendDirection remoteDir : BreakendDirection.values()) {
@@ -69,6 +84,16 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 				async.add(new AsyncDirectionalIterator(it, localDir, null));
 			}
 		}
+		List<Runnable> workers = new ArrayList<>(async.size() + 1);
+		workers.add(iterable.getFeeder());
+		workers.addAll(async);
+		try {
+			executor.execute(workers);
+		} catch (InterruptedException e) {
+			log.error(e, "Interrupted waiting for variant calling threads");
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
 	}
 	public VariantCallIterator(ProcessingContext processContext, Iterator<DirectedEvidence> evidence) {
 		this(processContext, evidence, null, -1);
@@ -82,12 +107,18 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 				QueryIntervalUtil.padIntervals(source.getContext().getDictionary(), interval, source.getMaxConcordantFragmentSize() + 1),
 				intervalNumber);
 	}
-	public class AsyncDirectionalIterator<T extends VariantContextDirectedEvidence> implements TrackedState, Closeable {
+	/**
+	 * Executor shared by all variant calling iterators
+	 */
+	public static GangExecutor getExecutor() {
+		return executor;
+	}
+	public class AsyncDirectionalIterator<T extends VariantContextDirectedEvidence> implements TrackedState, Closeable, Runnable {
 		private Iterator<T> it;
 		private StateTracker currentTracker = null;
 		private Collection<TrackedState> currentTrackedObjects = null;
 		private T lastElement = null;
-		private Thread thread;
+		private final String name;
 		private volatile boolean shouldAbortImmediately = false;
 		public AsyncDirectionalIterator(Iterator<T> iterator, BreakendDirection dir1, BreakendDirection dir2) {
 			this.it = iterator;
@@ -107,10 +138,7 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 				}
 			}
 			this.it = filterInterval == null ? this.it : wrapFilter(filterInterval, this.it);
-			this.thread = new Thread(() -> run());
-			this.thread.setDaemon(true);
-			this.thread.setName("CallVariants " + positionComponent + dir1.toChar() + (dir2 == null ? "" : dir2.toChar()));
-			this.thread.start();
+			this.name = "CallVariants " + positionComponent + dir1.toChar() + (dir2 == null ? "" : dir2.toChar());
 		}
 		private Iterator<T> wrapFilter(QueryInterval[] filterInterval, Iterator<T> it) {
 			return Iterators.filter(it, v -> {
@@ -124,11 +152,30 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 				}
 			});
 		}
+		/**
+		 * Blocks until the record has been written to the output buffer or the iterator has been closed
+		 */
+		private void put(VariantContextDirectedEvidence v) throws InterruptedException {
+			while (!outBuffer.offer(v, ABORT_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+				if (shouldAbortImmediately) return;
+			}
+		}
+		@Override
 		public void run() {
+			Thread thread = Thread.currentThread();
+			String threadName = thread.getName();
+			thread.setName(name);
+			try {
+				process();
+			} finally {
+				thread.setName(threadName);
+			}
+		}
+		private void process() {
 			try {
 				while (it.hasNext() && !shouldAbortImmediately) {
 					lastElement = it.next();
-					outBuffer.putLast(lastElement);
+					put(lastElement);
 					if (currentTracker != null) {
 						try {
 							currentTracker.track(currentTrackedObjects);
@@ -137,7 +184,7 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 						}
 					}
 				}
-				outBuffer.putLast(endOfStream);
+				put(endOfStream);
 				if (currentTracker != null) {
 					try {
 						currentTracker.close();
@@ -148,7 +195,7 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 			} catch (Exception e) {
 				workerThreadException = e;
 				try {
-					outBuffer.putLast(endOfStream);
+					put(endOfStream);
 				} catch (InterruptedException ex) {
 					log.error("Interrupted writing end of stream");
 				}
@@ -185,7 +232,7 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 		if (outBufferHeadNextValidRecord == null) {
 			try {
 				while (activeIterators > 0 && workerThreadException == null) {
-					VariantContextDirectedEvidence nextElement = outBuffer.takeFirst();
+					VariantContextDirectedEvidence nextElement = outBuffer.take();
 					if (nextElement != endOfStream) {
 						outBufferHeadNextValidRecord = nextElement;
 						return;
@@ -225,7 +272,7 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 		for (AsyncDirectionalIterator adi : async) {
 			adi.close();
 		}
-		CloserUtil.close(iterable);
+		iterable.close();
 	}
 }
  
\ No newline at end of file
@@ -42,33 +42,32 @@ public class VariantCaller {
 			threadpool = MoreExecutors.newDirectExecutorService();
 		}
 		AggregateEvidenceSource es = new AggregateEvidenceSource(processContext, samEvidence, assemblyEvidence, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition);
-		List<QueryInterval[]> chunks = processContext.getReference().getIntervals(processContext.getConfig().chunkSize, processContext.getConfig().chunkSequenceChangePenalty);
+		List<SAMEvidenceSource> allEvidence = new ArrayList<>(samEvidence);
+		allEvidence.addAll(assemblyEvidence);
+		ChunkScheduler scheduler = new ChunkScheduler(processContext, allEvidence);
+		List<QueryInterval[]> chunks = scheduler.getChunks();
 		List<File> calledChunk = new ArrayList<>();
-		List<Future<Void>> tasks = new ArrayList<>();
-		
 		for (int i = 0; i < chunks.size(); i++) {
+			calledChunk.add(processContext.getFileSystemContext().getVariantCallChunkVcf(vcf, i));
+		}
+		List<Future<Void>> tasks = new ArrayList<>();
+		for (int i : scheduler.getExecutionOrder()) {
 			QueryInterval[] chunk = chunks.get(i);
-			File f = processContext.getFileSystemContext().getVariantCallChunkVcf(vcf, i);
+			File f = calledChunk.get(i);
 			int chunkNumber = i;
-			calledChunk.add(f);
 			if (!f.exists()) {
 				tasks.add(threadpool.submit(() -> { callChunk(f, es, chunkNumber, chunk); return null; }));
 			}
 		}
 		runTasks(tasks);
 		
-		log.info("Merging identified breakpoints");
-		File mergedOut = FileSystemContext.getWorkingFileFor(vcf, "gridss.merged.");
-		VcfFileUtil.concat(processContext.getReference().getSequenceDictionary(), calledChunk, mergedOut);
-		
-		log.info("Sorting identified breakpoints");
-		VcfFileUtil.sort(processContext, mergedOut, vcf);
+		log.info("Sorting and merging identified breakpoints");
+		VcfFileUtil.sortAndMerge(processContext, calledChunk, vcf, threadpool);
 		// clean up chunked
 		if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
 			for (File f : calledChunk) {
 				FileHelper.delete(f, true);
 			}
-			FileHelper.delete(mergedOut, true);
 		}
 	}
 	private void runTasks(List<Future<Void>> tasks) {
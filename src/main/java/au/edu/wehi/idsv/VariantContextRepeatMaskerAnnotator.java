@@ -1,85 +1,45 @@
 package au.edu.wehi.idsv;
 
-import au.edu.wehi.idsv.repeatmasker.RepeatMaskerBEDCodec;
-import au.edu.wehi.idsv.repeatmasker.RepeatMaskerFeature;
+import au.edu.wehi.idsv.repeatmasker.RepeatMaskerIndex;
 import au.edu.wehi.idsv.sam.ChimericAlignment;
 import au.edu.wehi.idsv.util.IntervalUtil;
 import au.edu.wehi.idsv.vcf.VcfInfoAttributes;
-import htsjdk.samtools.util.IntervalTree;
 import htsjdk.samtools.util.Log;
-import htsjdk.tribble.AbstractFeatureReader;
-import htsjdk.tribble.annotation.Strand;
-import htsjdk.tribble.bed.BEDFeature;
-import htsjdk.tribble.readers.LineIterator;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.*;
+import java.util.Collection;
+import java.util.List;
 import java.util.function.Function;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
+import java.util.function.IntConsumer;
 
 public class VariantContextRepeatMaskerAnnotator implements Function<VariantContext, VariantContext> {
     private static final Log log = Log.getInstance(VariantContextRepeatMaskerAnnotator.class);
-    private Map<String, IntervalTree<RepeatMaskerFeature>> lookup;
-
-    private class RepeatMaskerHit {
-        public final RepeatMaskerFeature rme;
-        public final double overlap;
-        public final boolean isNegative;
-        public RepeatMaskerHit(RepeatMaskerFeature rme, int alignmentStart, int alignmentEnd, boolean alignmentOnNegative) {
-            this.rme = rme;
-            this.overlap = IntervalUtil.overlapsWidthClosed(alignmentStart, alignmentEnd, rme.getStart(), rme.getEnd()) / (alignmentEnd - alignmentStart + 1.0);
-            this.isNegative = alignmentOnNegative != (rme.getStrand() == Strand.NEGATIVE);
-        }
-    }
+    private final RepeatMaskerIndex lookup;
 
     public Collection<String> getRepeatMaskerContigs() {
-        return lookup.keySet();
-    }
-
-    private static Map<String, IntervalTree<RepeatMaskerFeature>> createLookup(File repeatMaskerBed) throws IOException {
-        Map<String, IntervalTree<RepeatMaskerFeature>> lookup = new HashMap<>();
-        try (AbstractFeatureReader<BEDFeature, LineIterator> reader = AbstractFeatureReader.getFeatureReader(repeatMaskerBed.getPath(), new RepeatMaskerBEDCodec(), false)) {
-            int lineno = 0;
-            for (BEDFeature rawfeat : reader.iterator()) {
-                RepeatMaskerFeature feat = (RepeatMaskerFeature)rawfeat;
-                feat.setRepeatAlignmentSummaryInformation(null); // reduce memory footprint
-                lineno++;
-                IntervalTree<RepeatMaskerFeature> tree = lookup.get(feat.getContig());
-                if (tree == null) {
-                    tree = new IntervalTree<>();
-                    lookup.put(feat.getContig(), tree);
-                }
-                tree.put(rawfeat.getStart(), rawfeat.getEnd(), feat);
-            }
-        }
-        return lookup;
+        return lookup.getContigs();
     }
 
-    public VariantContextRepeatMaskerAnnotator(File repeatMaskerBed) throws IOException {
-        this.lookup = createLookup(repeatMaskerBed);
+    /**
+     * @param repeatMasker bedops RepeatMasker BED file or RepeatMasker index
+     */
+    public VariantContextRepeatMaskerAnnotator(File repeatMasker) throws IOException {
+        this(RepeatMaskerIndex.open(repeatMasker));
     }
 
-    private Stream<RepeatMaskerHit> getHits(String s) {
-        ChimericAlignment aln = ChimericAlignment.parseBEALNAlignment(s);
-        String chr = aln.rname;
-        int start = aln.pos;
-        int end = aln.pos + aln.cigar.getReferenceLength() - 1;
-        IntervalTree<RepeatMaskerFeature> tree = lookup.get(chr);
-        if (tree == null) return Stream.empty();
-        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(tree.overlappers(start, end), 0), false)
-                .map(n -> new RepeatMaskerHit(n.getValue(), start, end, aln.isNegativeStrand));
+    public VariantContextRepeatMaskerAnnotator(RepeatMaskerIndex lookup) {
+        this.lookup = lookup;
     }
 
-    private VariantContext annotate(VariantContext variantContext, RepeatMaskerHit hit) {
+    private VariantContext annotate(VariantContext variantContext, int record, double overlap, boolean isNegative) {
         return new VariantContextBuilder(variantContext)
-                .attribute(VcfInfoAttributes.INSERTED_SEQUENCE_REPEATMASKER_OVERLAP.attribute(), hit.overlap)
-                .attribute(VcfInfoAttributes.INSERTED_SEQUENCE_REPEATMASKER_REPEAT_TYPE.attribute(), hit.rme.getRepeatType())
-                .attribute(VcfInfoAttributes.INSERTED_SEQUENCE_REPEATMASKER_REPEAT_CLASS.attribute(), hit.rme.getRepeatClass())
-                .attribute(VcfInfoAttributes.INSERTED_SEQUENCE_REPEATMASKER_ORIENTATION.attribute(), hit.isNegative ? "-" : "+")
+                .attribute(VcfInfoAttributes.INSERTED_SEQUENCE_REPEATMASKER_OVERLAP.attribute(), overlap)
+                .attribute(VcfInfoAttributes.INSERTED_SEQUENCE_REPEATMASKER_REPEAT_TYPE.attribute(), lookup.getRepeatType(record))
+                .attribute(VcfInfoAttributes.INSERTED_SEQUENCE_REPEATMASKER_REPEAT_CLASS.attribute(), lookup.getRepeatClass(record))
+                .attribute(VcfInfoAttributes.INSERTED_SEQUENCE_REPEATMASKER_ORIENTATION.attribute(), isNegative ? "-" : "+")
                 .make();
     }
 
@@ -100,12 +60,24 @@ public class VariantContextRepeatMaskerAnnotator implements Function<VariantCont
             if (alignments == null || alignments.size() == 0) {
                 return variantContext;
             }
-            Optional<RepeatMaskerHit> bestHit = alignments.stream()
-                    .flatMap(a -> getHits(a))
-                    .sorted(ByOverlapDesc)
-                    .findFirst();
-            if (bestHit.isPresent()) {
-                variantContext = annotate(variantContext, bestHit.get());
+            // first feature with the greatest overlap of any alignment
+            int bestRecord = -1;
+            double bestOverlap = 0;
+            boolean bestIsNegative = false;
+            for (String s : alignments) {
+                ChimericAlignment aln = ChimericAlignment.parseBEALNAlignment(s);
+                int start = aln.pos;
+                int end = aln.pos + aln.cigar.getReferenceLength() - 1;
+                OverlapTracker tracker = new OverlapTracker(start, end);
+                lookup.forEachOverlap(aln.rname, start, end, tracker);
+                if (tracker.record >= 0 && (bestRecord < 0 || tracker.overlap > bestOverlap)) {
+                    bestRecord = tracker.record;
+                    bestOverlap = tracker.overlap;
+                    bestIsNegative = aln.isNegativeStrand != lookup.isNegativeStrand(tracker.record);
+                }
+            }
+            if (bestRecord >= 0) {
+                variantContext = annotate(variantContext, bestRecord, bestOverlap, bestIsNegative);
             }
         } catch (IndexOutOfBoundsException ioobe) {
             log.error("Malformed BEALN field for " + variantContext.getID() + ". Ignoring.");
@@ -114,5 +86,25 @@ public class VariantContextRepeatMaskerAnnotator implements Function<VariantCont
         }
         return variantContext;
     }
-    public static final Comparator<RepeatMaskerHit> ByOverlapDesc = Comparator.comparingDouble(hit -> -hit.overlap);
+    /**
+     * Tracks the first feature with the greatest overlap with an alignment
+     */
+    private class OverlapTracker implements IntConsumer {
+        private final int alignmentStart;
+        private final int alignmentEnd;
+        private int record = -1;
+        private double overlap;
+        public OverlapTracker(int alignmentStart, int alignmentEnd) {
+            this.alignmentStart = alignmentStart;
+            this.alignmentEnd = alignmentEnd;
+        }
+        @Override
+        public void accept(int r) {
+            double o = IntervalUtil.overlapsWidthClosed(alignmentStart, alignmentEnd, lookup.getStart(r), lookup.getEnd(r)) / (alignmentEnd - alignmentStart + 1.0);
+            if (record < 0 || o > overlap) {
+                record = r;
+                overlap = o;
+            }
+        }
+    }
 }
@@ -0,0 +1,63 @@
+package au.edu.wehi.idsv.alignment;
+
+import au.edu.wehi.idsv.ProcessingContext;
+import au.edu.wehi.idsv.VariantContextDirectedBreakpoint;
+import au.edu.wehi.idsv.VariantContextDirectedEvidence;
+import au.edu.wehi.idsv.configuration.VariantCallingConfiguration;
+import au.edu.wehi.idsv.picard.ReferenceWindowCache;
+import htsjdk.samtools.QueryInterval;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calculates the inexact homology of a batch of breakpoints.
+ *
+ * The reference windows required by all breakpoints in the batch are loaded together
+ * before any alignment is performed. As calls are processed in genomic order, the
+ * local windows of a batch typically merge into a single reference lookup.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class BatchedBreakpointHomology {
+	/**
+	 * Reference windows separated by at most this many bases are loaded as a single lookup
+	 */
+	private static final int WINDOW_MERGE_DISTANCE = 4096;
+	private final ProcessingContext context;
+	public BatchedBreakpointHomology(ProcessingContext context) {
+		this.context = context;
+	}
+	/**
+	 * Annotates the inexact homology of each breakpoint in the batch
+	 * @param batch calls to annotate
+	 * @return annotated calls in the same order as the input batch
+	 */
+	public List<VariantContextDirectedEvidence> annotate(List<VariantContextDirectedEvidence> batch) {
+		VariantCallingConfiguration vc = context.getVariantCallingParameters();
+		List<QueryInterval> windows = new ArrayList<>();
+		for (VariantContextDirectedEvidence call : batch) {
+			if (call instanceof VariantContextDirectedBreakpoint && call.isBreakendExact()) {
+				VariantContextDirectedBreakpoint bp = (VariantContextDirectedBreakpoint)call;
+				windows.addAll(BreakpointHomology.getReferenceWindows(
+						bp.getBreakendSummary().getNominalPosition(),
+						bp.getUntemplatedSequence(),
+						vc.maxBreakendHomologyLength,
+						vc.breakendHomologyAlignmentMargin));
+			}
+		}
+		if (windows.isEmpty()) {
+			return batch;
+		}
+		ReferenceWindowCache reference = new ReferenceWindowCache(context.getReference(), windows, WINDOW_MERGE_DISTANCE);
+		List<VariantContextDirectedEvidence> result = new ArrayList<>(batch.size());
+		for (VariantContextDirectedEvidence call : batch) {
+			if (call instanceof VariantContextDirectedBreakpoint) {
+				call = BreakpointHomology.annotate(context, reference, (VariantContextDirectedBreakpoint)call);
+			}
+			result.add(call);
+		}
+		return result;
+	}
+}
@@ -4,7 +4,9 @@ import au.edu.wehi.idsv.*;
 import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.vcf.VcfInfoAttributes;
+import com.google.common.collect.ImmutableList;
 import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.TextCigarCodec;
 import htsjdk.samtools.util.SequenceUtil;
 
@@ -46,10 +48,9 @@ public class BreakpointHomology {
 			insertedSequence = SequenceUtil.reverseComplement(insertedSequence);
 		}
 		int seqLength = maxBreakendLength;
-		int refLength = maxBreakendLength + insertedSequence.length() + margin;
+		int refLength = getReferenceLength(bs, insertedSequence, maxBreakendLength, margin);
 		if (bs.getEventSize() != null) {
 			seqLength = Math.min(seqLength, bs.getEventSize());
-			refLength = Math.min(refLength, bs.getEventSize());
 		}
 		// local           remote
 		// ACGTACGT        CCTTAAGG
@@ -102,6 +103,24 @@ public class BreakpointHomology {
 		}
 		return new BreakpointHomology(localHomologyBaseCount, remoteHomologyBaseCount);
 	}
+	private static int getReferenceLength(BreakpointSummary bs, String insertedSequence, int maxBreakendLength, int margin) {
+		int refLength = maxBreakendLength + (insertedSequence == null ? 0 : insertedSequence.length()) + margin;
+		if (bs.getEventSize() != null) {
+			refLength = Math.min(refLength, bs.getEventSize());
+		}
+		return refLength;
+	}
+	/**
+	 * Gets the reference genome intervals read when calculating the homology of the given breakpoint
+	 * @return reference intervals around each breakend
+	 */
+	public static List<QueryInterval> getReferenceWindows(BreakpointSummary bs, String insertedSequence, int maxBreakendLength, int margin) {
+		int refLength = getReferenceLength(bs, insertedSequence, maxBreakendLength, margin);
+		// anchor and advanced anchor sequences span at most refLength bases in either direction
+		return ImmutableList.of(
+				new QueryInterval(bs.referenceIndex, bs.start - 2 * refLength, bs.start + 2 * refLength),
+				new QueryInterval(bs.referenceIndex2, bs.start2 - 2 * refLength, bs.start2 + 2 * refLength));
+	}
 	public int getLocalHomologyLength() {
 		return localHomologyLength;
 	}
@@ -109,10 +128,17 @@ public class BreakpointHomology {
 		return remoteHomologyLength;
 	}
 	public static VariantContextDirectedBreakpoint annotate(ProcessingContext context, VariantContextDirectedBreakpoint bp) {
+		return annotate(context, context.getReference(), bp);
+	}
+	/**
+	 * Annotates the given breakpoint with its inexact homology
+	 * @param reference reference genome lookup to use in place of the context reference
+	 */
+	public static VariantContextDirectedBreakpoint annotate(ProcessingContext context, ReferenceLookup reference, VariantContextDirectedBreakpoint bp) {
 		if (!bp.isBreakendExact()) return bp;
 		IdsvVariantContextBuilder builder = new IdsvVariantContextBuilder(context, bp);
 		BreakpointHomology bh = BreakpointHomology.calculate(
-				context.getReference(),
+				reference,
 				bp.getBreakendSummary().getNominalPosition(),
 				bp.getUntemplatedSequence(),
 				context.getVariantCallingParameters().maxBreakendHomologyLength,
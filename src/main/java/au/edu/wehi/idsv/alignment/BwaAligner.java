@@ -114,6 +114,15 @@ public class BwaAligner implements Closeable {
     }
 
     public List<SAMRecord> align(Collection<FastqRecord> input) {
+        return transform(input, alignRaw(input));
+    }
+
+    /**
+     * Aligns the given reads without converting the bwa alignments to SAMRecords.
+     * @param input reads to align
+     * @return bwa alignments for each input read
+     */
+    public List<List<BwaMemAlignment>> alignRaw(Collection<FastqRecord> input) {
         List<byte[]> inputs = new ArrayList<>(input.size());
         for (FastqRecord fq : input) {
             inputs.add(fq.getReadBases());
@@ -141,6 +150,16 @@ public class BwaAligner implements Closeable {
         if (bwaResult.size() != input.size()) {
             throw new IllegalStateException(String.format("bwa returned alignments for %d reads, when input with %d reads.", bwaResult.size(), input.size()));
         }
+        return bwaResult;
+    }
+
+    /**
+     * Converts bwa alignments to SAMRecords
+     * @param input aligned reads
+     * @param bwaResult bwa alignments for each input read
+     * @return SAMRecord alignments in input order
+     */
+    public List<SAMRecord> transform(Collection<FastqRecord> input, List<List<BwaMemAlignment>> bwaResult) {
         List<SAMRecord> samResult = new ArrayList<>((int)(input.size() * 1.3)); // conservatively guess 30% of alignments are split read alignments
         int i = 0;
         for (FastqRecord fq : input) {
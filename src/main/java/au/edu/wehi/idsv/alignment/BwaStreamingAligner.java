@@ -1,13 +1,16 @@
 package au.edu.wehi.idsv.alignment;
 
+import au.edu.wehi.idsv.Defaults;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.fastq.FastqRecord;
 import htsjdk.samtools.util.Log;
+import org.broadinstitute.hellbender.utils.bwa.BwaMemAlignment;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
@@ -16,15 +19,21 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Runs bwa mem through a JNI interface.
+ *
+ * Alignment is pipelined: while bwa aligns one batch, the previous batch is
+ * converted to SAMRecords and the next batch is filled by the caller.
+ * The caller blocks when the maximum number of batches are in-flight.
  */
 public class BwaStreamingAligner implements StreamingAligner {
     private static final Log log = Log.getInstance(BwaStreamingAligner.class);
-    private ThreadPoolExecutor bwaDriver = new ThreadPoolExecutor(1, 1,
-            0L, TimeUnit.MILLISECONDS,
-            new AlwaysBlockingQueue<Runnable>(1),
+    private final ExecutorService bwaDriver = Executors.newSingleThreadExecutor(
             new ThreadFactoryBuilder().setDaemon(true).setNameFormat("bwaDriver").build());
-    private final int bufferSizeInBytes;
-    private Queue<FastqRecord> bwaInputBuffer;
+    private final ExecutorService bwaConverter = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("bwaConverter").build());
+    private final int batchSizeInBases;
+    private final Semaphore inFlightBatches;
+    private final Queue<Future<?>> inFlight = new ArrayDeque<>();
+    private final Queue<FastqRecord> bwaInputBuffer = new LinkedBlockingDeque<>();
     private final Queue<SAMRecord> bwaOutputBuffer = new LinkedBlockingDeque<>();
     private final BwaAligner aligner;
     private AtomicInteger outstandingRecords = new AtomicInteger(0);
@@ -35,23 +44,15 @@ public class BwaStreamingAligner implements StreamingAligner {
     }
 
     /**
-     * Hacky queue that will force the calling thread to block until the task can be queued
+     *
+     * @param reference Reference genome
+     * @param dict sequence dictionary for reference genome
+     * @param threads number of bwa threads
+     * @param bufferSizeInBases number of base pairs of sequence to buffer.
+     *                          This buffer is evenly split across the input buffer and the in-flight batches.
      */
-    private static class AlwaysBlockingQueue<E> extends ArrayBlockingQueue<E> {
-        public AlwaysBlockingQueue(int maxSize) {
-            super(maxSize);
-        }
-
-        @Override
-        public boolean offer(E e)  {
-            try {
-                put(e);
-                return true;
-            } catch(InterruptedException ie) {
-                Thread.currentThread().interrupt();
-            }
-            return false;
-        }
+    public BwaStreamingAligner(File reference, SAMSequenceDictionary dict, int threads, int bufferSizeInBases) {
+        this(reference, dict, threads, bufferSizeInBases, Defaults.BWA_IN_FLIGHT_BATCHES);
     }
 
     /**
@@ -60,19 +61,21 @@ public class BwaStreamingAligner implements StreamingAligner {
      * @param dict sequence dictionary for reference genome
      * @param threads number of bwa threads
      * @param bufferSizeInBases number of base pairs of sequence to buffer.
-     *                          This buffer is evenly split across the input buffer and buffer to run to bwa.
-     *                          Actual invocations to bwa will be with a buffer half this size.
+     *                          This buffer is evenly split across the input buffer and the in-flight batches.
+     * @param maxInFlightBatches maximum number of batches either being aligned by bwa or
+     *                           awaiting conversion to SAMRecords.
      */
-    public BwaStreamingAligner(File reference, SAMSequenceDictionary dict, int threads, int bufferSizeInBases) {
-        this.bwaInputBuffer = new LinkedBlockingDeque<>();
+    public BwaStreamingAligner(File reference, SAMSequenceDictionary dict, int threads, int bufferSizeInBases, int maxInFlightBatches) {
+        if (maxInFlightBatches < 1) throw new IllegalArgumentException("maxInFlightBatches must be at least 1");
         this.aligner = new BwaAligner(reference, dict, threads);
-        this.bufferSizeInBytes = bufferSizeInBases / 2 + 1;
+        this.batchSizeInBases = bufferSizeInBases / (maxInFlightBatches + 1) + 1;
+        this.inFlightBatches = new Semaphore(maxInFlightBatches);
     }
 
     /**
      * Align the given records.
      *
-     * @implNote This method currently uses a buffered synchronous implementation.
+     * Blocks if the maximum number of batches are already in-flight.
      * @param fq
      */
     @Override
@@ -81,48 +84,73 @@ public class BwaStreamingAligner implements StreamingAligner {
         outstandingRecords.incrementAndGet();
         outstandingBases.addAndGet(fq.getReadBases().length);
         int queuedBytes = queuedBases.addAndGet(fq.getReadBases().length);
-        if (queuedBytes >= bufferSizeInBytes) {
+        if (queuedBytes >= batchSizeInBases) {
             processInput();
         }
     }
 
     // synchronized to ensure record ordering is stable
-    private synchronized Future<List<SAMRecord>> processInput() {
-        final ArrayList<FastqRecord> inFlightBuffer = new ArrayList<>(bwaInputBuffer.size() + 16);
+    private synchronized void processInput() {
+        checkCompletedBatches();
+        final ArrayList<FastqRecord> batch = new ArrayList<>(bwaInputBuffer.size() + 16);
         int basesSent = 0;
         while (!bwaInputBuffer.isEmpty()) {
             FastqRecord fq = bwaInputBuffer.poll();
             queuedBases.addAndGet(-fq.getReadBases().length);
-            inFlightBuffer.add(fq);
+            batch.add(fq);
             basesSent += fq.getReadBases().length;
         }
-        if (inFlightBuffer.size() > 0) {
+        if (batch.size() > 0) {
+            try {
+                inFlightBatches.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
             final int actualBasesSent = basesSent;
-            Future<List<SAMRecord>> result = bwaDriver.submit(() -> {
-                List<SAMRecord> results = getAligner().align(inFlightBuffer);
-                bwaOutputBuffer.addAll(results);
-                outstandingBases.addAndGet(-actualBasesSent);
-                outstandingRecords.addAndGet(-inFlightBuffer.size());
-                return results;
+            // Both executors are single threaded so batches are completed in submission order
+            Future<List<List<BwaMemAlignment>>> aligned = bwaDriver.submit(() -> getAligner().alignRaw(batch));
+            Future<Void> converted = bwaConverter.submit(() -> {
+                try {
+                    List<SAMRecord> results = getAligner().transform(batch, aligned.get());
+                    bwaOutputBuffer.addAll(results);
+                } finally {
+                    outstandingBases.addAndGet(-actualBasesSent);
+                    outstandingRecords.addAndGet(-batch.size());
+                    inFlightBatches.release();
+                }
+                return null;
             });
-            return result;
+            inFlight.add(converted);
+        }
+    }
+
+    /**
+     * Removes completed batches, rethrowing any alignment failure.
+     */
+    private synchronized void checkCompletedBatches() {
+        while (!inFlight.isEmpty() && inFlight.peek().isDone()) {
+            waitFor(inFlight.poll());
+        }
+    }
+
+    private static void waitFor(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            log.error(e, "Exception flushing bwa results.");
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            log.error(e, "Exception flushing bwa results.");
+            throw new RuntimeException(e);
         }
-        return null;
     }
 
     @Override
-    public void flush() {
-        Future<List<SAMRecord>> future = processInput();
-        if (future != null) {
-            try {
-                future.get();
-            } catch (InterruptedException e) {
-                log.error(e, "Exception flushing bwa results.");
-                throw new RuntimeException(e);
-            } catch (ExecutionException e) {
-                log.error(e, "Exception flushing bwa results.");
-                throw new RuntimeException(e);
-            }
+    public synchronized void flush() {
+        processInput();
+        while (!inFlight.isEmpty()) {
+            waitFor(inFlight.poll());
         }
     }
 
@@ -149,6 +177,7 @@ public class BwaStreamingAligner implements StreamingAligner {
     public void close() throws IOException {
         flush();
         this.bwaDriver.shutdown();
+        this.bwaConverter.shutdown();
         this.aligner.close();
     }
 }
@@ -1,6 +1,7 @@
 package au.edu.wehi.idsv.bed;
 
 import au.edu.wehi.idsv.LinearGenomicCoordinate;
+import com.google.common.collect.BoundType;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.collect.TreeRangeSet;
@@ -20,6 +21,11 @@ import java.util.stream.Collectors;
 
 /**
  * Minimal bed wrapper retaining only interval information
+ * 
+ * Once all intervals have been loaded, the bed can be frozen.
+ * A frozen bed is immutable and overlap queries use a lock-free flat
+ * interval index optimised for sequential access.
+ * 
  * @author Daniel Cameron
  *
  */
@@ -27,6 +33,7 @@ public class IntervalBed {
 	private static final Log log = Log.getInstance(IntervalBed.class);
 	private final LinearGenomicCoordinate linear;
 	private final RangeSet<Long> intervals;
+	private volatile FrozenIntervals frozen = null;
 	public int size() {
 		return intervals.asRanges().size();
 	}
@@ -79,11 +86,32 @@ public class IntervalBed {
 		blacklisted.add(Range.closedOpen(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end) + 1));
 	}
 	public synchronized void addInterval(int referenceIndex, int start, int end) {
+		ensureNotFrozen();
 		addInterval(linear, intervals, referenceIndex, start, end);
 	}
 	public synchronized void addInterval(QueryInterval qi) {
+		ensureNotFrozen();
 		addInterval(linear, intervals, qi.referenceIndex, qi.start, qi.end);
 	}
+	private void ensureNotFrozen() {
+		if (frozen != null) {
+			throw new IllegalStateException("Cannot modify frozen IntervalBed");
+		}
+	}
+	/**
+	 * Prevents further modification of this bed and switches overlap queries
+	 * to an immutable lock-free index.
+	 * @return this bed
+	 */
+	public synchronized IntervalBed freeze() {
+		if (frozen == null) {
+			frozen = new FrozenIntervals(intervals);
+		}
+		return this;
+	}
+	public boolean isFrozen() {
+		return frozen != null;
+	}
 	/**
 	 * Determines whether any of the intervals overlap the given interval
 	 * @param referenceIndex
@@ -95,6 +123,10 @@ public class IntervalBed {
 		return overlaps(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end));
 	}
 	public boolean overlaps(long start, long end) {
+		FrozenIntervals fi = frozen;
+		if (fi != null) {
+			return fi.overlaps(start, end + 1);
+		}
 		Range<Long> r = Range.closedOpen(start, end + 1);
 		return overlaps(r);
 	}
@@ -102,13 +134,20 @@ public class IntervalBed {
 		if (interval == null) {
 			return false;
 		}
+		FrozenIntervals fi = frozen;
+		if (fi != null && interval.hasLowerBound() && interval.hasUpperBound()
+				&& interval.lowerBoundType() == BoundType.CLOSED && interval.upperBoundType() == BoundType.OPEN) {
+			return fi.overlaps(interval.lowerEndpoint(), interval.upperEndpoint());
+		}
+		// the underlying range set is safe to read concurrently once frozen
 		return intervals.intersects(interval);
 	}
 	/**
 	 * Removes the given set of intervals
 	 * @param toRemove intervals to remove
 	 */
-	public void remove(IntervalBed toRemove) {
+	public synchronized void remove(IntervalBed toRemove) {
+		ensureNotFrozen();
 		intervals.removeAll(toRemove.intervals.asRanges());
 	}
 	public void write(File bed, String name) throws IOException {
@@ -162,4 +201,65 @@ public class IntervalBed {
 	public RangeSet<Long> asRangeSet() {
 		return TreeRangeSet.create(intervals);
 	}
+	/**
+	 * Immutable interval index of sorted, disjoint half-open intervals
+	 */
+	private static class FrozenIntervals {
+		private final long[] starts;
+		/**
+		 * Exclusive end positions. Since intervals are disjoint, these are also sorted.
+		 */
+		private final long[] ends;
+		/**
+		 * Offset of the interval matched by the previous query on this thread.
+		 * Sequential queries typically hit the same or next interval so
+		 * checking the cursor first avoids the binary search.
+		 */
+		private final ThreadLocal<int[]> cursor = ThreadLocal.withInitial(() -> new int[1]);
+		public FrozenIntervals(RangeSet<Long> intervals) {
+			int n = intervals.asRanges().size();
+			this.starts = new long[n];
+			this.ends = new long[n];
+			int i = 0;
+			for (Range<Long> r : intervals.asRanges()) {
+				// all ranges are added as closedOpen
+				starts[i] = r.lowerEndpoint();
+				ends[i] = r.upperEndpoint();
+				i++;
+			}
+		}
+		/**
+		 * Determines whether any interval overlaps [start, endExclusive)
+		 */
+		public boolean overlaps(long start, long endExclusive) {
+			if (start >= endExclusive || starts.length == 0) return false;
+			int[] c = cursor.get();
+			int i = firstEndingAfter(c[0], start);
+			c[0] = i;
+			return i < starts.length && starts[i] < endExclusive;
+		}
+		/**
+		 * Finds the offset of the first interval ending after the given position 
+		 */
+		private int firstEndingAfter(int hint, long position) {
+			if (hint < ends.length && ends[hint] > position && (hint == 0 || ends[hint - 1] <= position)) {
+				return hint;
+			}
+			hint++;
+			if (hint < ends.length && ends[hint] > position && ends[hint - 1] <= position) {
+				return hint;
+			}
+			int low = 0;
+			int high = ends.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (ends[mid] <= position) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+	}
 }
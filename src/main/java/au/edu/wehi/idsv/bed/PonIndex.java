@@ -0,0 +1,226 @@
+package au.edu.wehi.idsv.bed;
+
+import au.edu.wehi.idsv.BreakendDirection;
+import au.edu.wehi.idsv.BreakendSummary;
+import au.edu.wehi.idsv.BreakpointSummary;
+import htsjdk.samtools.SAMSequenceDictionary;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Memory-mapped binary panel of normals.
+ *
+ * Breakpoints are stored by their lower breakend in fixed-width records sorted
+ * by (referenceIndex, referenceIndex2, start, start2). A block index of the
+ * records for each (referenceIndex, referenceIndex2) pair, and the maximum interval
+ * width within that block, allows lookups to binary search directly on the mapped
+ * records without loading them onto the heap. Single breakends are stored
+ * analogously with a block for each referenceIndex.
+ *
+ * Instances are thread-safe.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class PonIndex implements Closeable {
+	static final int MAGIC = 0x47504F4E; // "GPON"
+	static final int VERSION = 1;
+	static final int FORWARD = 1;
+	static final int FORWARD2 = 2;
+	static final int BREAKPOINT_BLOCK_FIELDS = 5;
+	static final int BREAKEND_BLOCK_FIELDS = 4;
+	private static final int BREAKPOINT_RECORD_SIZE = 6 * Integer.BYTES;
+	private static final int BREAKEND_RECORD_SIZE = 4 * Integer.BYTES;
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final String[] sequenceNames;
+	/**
+	 * (referenceIndex, referenceIndex2) key of each breakpoint block
+	 */
+	private final long[] bpBlockKey;
+	private final int[] bpBlockOffset;
+	private final int[] bpBlockSize;
+	private final int[] bpBlockMaxWidth;
+	private final int[] beBlockReferenceIndex;
+	private final int[] beBlockOffset;
+	private final int[] beBlockSize;
+	private final int[] beBlockMaxWidth;
+	private final int bpRecordOffset;
+	private final int bpRecordCount;
+	private final int beRecordOffset;
+	private final int beRecordCount;
+	public PonIndex(File file) throws IOException {
+		this(file, null);
+	}
+	/**
+	 * @param file binary PON file
+	 * @param dictionary if not null, the PON is validated as having been generated against this reference genome
+	 */
+	public PonIndex(File file, SAMSequenceDictionary dictionary) throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = this.file.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(String.format("%s too large to memory map", file));
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			ByteBuffer bb = buffer.duplicate();
+			if (bb.getInt() != MAGIC) {
+				throw new IOException(String.format("%s is not a binary GRIDSS PON", file));
+			}
+			int version = bb.getInt();
+			if (version != VERSION) {
+				throw new IOException(String.format("Unsupported binary PON version %d in %s", version, file));
+			}
+			sequenceNames = new String[bb.getInt()];
+			for (int i = 0; i < sequenceNames.length; i++) {
+				byte[] name = new byte[bb.getShort()];
+				bb.get(name);
+				sequenceNames[i] = new String(name, StandardCharsets.UTF_8);
+			}
+			if (dictionary != null) {
+				ensureDictionaryMatches(dictionary);
+			}
+			int bpBlocks = bb.getInt();
+			bpBlockKey = new long[bpBlocks];
+			bpBlockOffset = new int[bpBlocks];
+			bpBlockSize = new int[bpBlocks];
+			bpBlockMaxWidth = new int[bpBlocks];
+			for (int i = 0; i < bpBlocks; i++) {
+				bpBlockKey[i] = key(bb.getInt(), bb.getInt());
+				bpBlockOffset[i] = bb.getInt();
+				bpBlockSize[i] = bb.getInt();
+				bpBlockMaxWidth[i] = bb.getInt();
+			}
+			int beBlocks = bb.getInt();
+			beBlockReferenceIndex = new int[beBlocks];
+			beBlockOffset = new int[beBlocks];
+			beBlockSize = new int[beBlocks];
+			beBlockMaxWidth = new int[beBlocks];
+			for (int i = 0; i < beBlocks; i++) {
+				beBlockReferenceIndex[i] = bb.getInt();
+				beBlockOffset[i] = bb.getInt();
+				beBlockSize[i] = bb.getInt();
+				beBlockMaxWidth[i] = bb.getInt();
+			}
+			bpRecordCount = bb.getInt();
+			bpRecordOffset = bb.position();
+			bb.position(bpRecordOffset + bpRecordCount * BREAKPOINT_RECORD_SIZE);
+			beRecordCount = bb.getInt();
+			beRecordOffset = bb.position();
+			if (beRecordOffset + beRecordCount * BREAKEND_RECORD_SIZE != buffer.limit()) {
+				throw new IOException(String.format("%s is truncated or corrupt", file));
+			}
+		} catch (IOException | RuntimeException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+	private void ensureDictionaryMatches(SAMSequenceDictionary dictionary) {
+		if (dictionary.size() != sequenceNames.length) {
+			throw new IllegalArgumentException(String.format("PON reference genome has %d contigs but reference genome has %d", sequenceNames.length, dictionary.size()));
+		}
+		for (int i = 0; i < sequenceNames.length; i++) {
+			if (!sequenceNames[i].equals(dictionary.getSequence(i).getSequenceName())) {
+				throw new IllegalArgumentException(String.format("PON contig %s does not match reference genome contig %s", sequenceNames[i], dictionary.getSequence(i).getSequenceName()));
+			}
+		}
+	}
+	private static long key(int referenceIndex1, int referenceIndex2) {
+		return ((long)referenceIndex1 << 32) | (referenceIndex2 & 0xFFFFFFFFL);
+	}
+	public int getBreakpointCount() {
+		return bpRecordCount;
+	}
+	public int getBreakendCount() {
+		return beRecordCount;
+	}
+	/**
+	 * Gets the PON count of the given breakpoint
+	 * @param bp breakpoint to look up
+	 * @param margin additional distance either side of each breakend to consider overlapping
+	 * @return highest count of the PON breakpoints overlapping both breakends, or 0 if the breakpoint is not in the PON
+	 */
+	public int getCount(BreakpointSummary bp, int margin) {
+		int count = 0;
+		if (bp.referenceIndex <= bp.referenceIndex2) {
+			count = lookupLowBreakpoint(bp, margin);
+		}
+		if (bp.referenceIndex >= bp.referenceIndex2) {
+			// intrachromosomal breakpoints could match either way around
+			count = Math.max(count, lookupLowBreakpoint(bp.remoteBreakpoint(), margin));
+		}
+		return count;
+	}
+	/**
+	 * Gets the PON count of the given single breakend
+	 * @param be breakend to look up. Breakpoints are looked up in the breakpoint PON.
+	 * @param margin additional distance either side of the breakend to consider overlapping
+	 * @return highest count of the PON breakends overlapping the breakend, or 0 if the breakend is not in the PON
+	 */
+	public int getCount(BreakendSummary be, int margin) {
+		if (be instanceof BreakpointSummary) {
+			return getCount((BreakpointSummary)be, margin);
+		}
+		int block = Arrays.binarySearch(beBlockReferenceIndex, be.referenceIndex);
+		if (block < 0) return 0;
+		int direction = be.direction == BreakendDirection.Forward ? FORWARD : 0;
+		int end = beBlockOffset[block] + beBlockSize[block];
+		int count = 0;
+		for (int i = lowerBound(beRecordOffset, BREAKEND_RECORD_SIZE, beBlockOffset[block], end, be.start - margin - beBlockMaxWidth[block]); i < end; i++) {
+			int offset = beRecordOffset + i * BREAKEND_RECORD_SIZE;
+			if (buffer.getInt(offset) > be.end + margin) break;
+			if (buffer.getInt(offset + 4) >= be.start - margin
+					&& buffer.getInt(offset + 12) == direction) {
+				count = Math.max(count, buffer.getInt(offset + 8));
+			}
+		}
+		return count;
+	}
+	private int lookupLowBreakpoint(BreakpointSummary bp, int margin) {
+		int block = Arrays.binarySearch(bpBlockKey, key(bp.referenceIndex, bp.referenceIndex2));
+		if (block < 0) return 0;
+		int direction = (bp.direction == BreakendDirection.Forward ? FORWARD : 0) | (bp.direction2 == BreakendDirection.Forward ? FORWARD2 : 0);
+		int end = bpBlockOffset[block] + bpBlockSize[block];
+		int count = 0;
+		for (int i = lowerBound(bpRecordOffset, BREAKPOINT_RECORD_SIZE, bpBlockOffset[block], end, bp.start - margin - bpBlockMaxWidth[block]); i < end; i++) {
+			int offset = bpRecordOffset + i * BREAKPOINT_RECORD_SIZE;
+			if (buffer.getInt(offset) > bp.end + margin) break;
+			if (buffer.getInt(offset + 4) >= bp.start - margin
+					&& buffer.getInt(offset + 8) <= bp.end2 + margin
+					&& buffer.getInt(offset + 12) >= bp.start2 - margin
+					&& buffer.getInt(offset + 20) == direction) {
+				count = Math.max(count, buffer.getInt(offset + 16));
+			}
+		}
+		return count;
+	}
+	/**
+	 * Finds the first record in the given range whose start position is at least the given position
+	 */
+	private int lowerBound(int recordOffset, int recordSize, int from, int to, int position) {
+		int low = from;
+		int high = to;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (buffer.getInt(recordOffset + mid * recordSize) < position) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -0,0 +1,211 @@
+package au.edu.wehi.idsv.bed;
+
+import au.edu.wehi.idsv.BreakendDirection;
+import au.edu.wehi.idsv.BreakendSummary;
+import au.edu.wehi.idsv.BreakpointSummary;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.tribble.AbstractFeatureReader;
+import htsjdk.tribble.annotation.Strand;
+import htsjdk.tribble.bed.BEDCodec;
+import htsjdk.tribble.bed.BEDFeature;
+import htsjdk.tribble.readers.LineIterator;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a panel of normals in the binary format read by {@link PonIndex}.
+ *
+ * Records are buffered in primitive arrays and sorted on close. Building the
+ * index thus requires the PON to fit in memory but querying the index does not.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class PonIndexWriter implements Closeable {
+	private final SAMSequenceDictionary dict;
+	private final File output;
+	private final IntArrayList bpReferenceIndex1 = new IntArrayList();
+	private final IntArrayList bpReferenceIndex2 = new IntArrayList();
+	private final IntArrayList bpStart1 = new IntArrayList();
+	private final IntArrayList bpEnd1 = new IntArrayList();
+	private final IntArrayList bpStart2 = new IntArrayList();
+	private final IntArrayList bpEnd2 = new IntArrayList();
+	private final IntArrayList bpDirection = new IntArrayList();
+	private final IntArrayList bpCount = new IntArrayList();
+	private final IntArrayList beReferenceIndex = new IntArrayList();
+	private final IntArrayList beStart = new IntArrayList();
+	private final IntArrayList beEnd = new IntArrayList();
+	private final IntArrayList beDirection = new IntArrayList();
+	private final IntArrayList beCount = new IntArrayList();
+	private boolean closed = false;
+	public PonIndexWriter(SAMSequenceDictionary dictionary, File output) {
+		this.dict = dictionary;
+		this.output = output;
+	}
+	public void write(BreakpointSummary bp, int count) {
+		// only the lower breakend is stored
+		if (bp.isHighBreakend()) {
+			bp = bp.remoteBreakpoint();
+		}
+		bpReferenceIndex1.add(bp.referenceIndex);
+		bpReferenceIndex2.add(bp.referenceIndex2);
+		bpStart1.add(bp.start);
+		bpEnd1.add(bp.end);
+		bpStart2.add(bp.start2);
+		bpEnd2.add(bp.end2);
+		bpDirection.add((bp.direction == BreakendDirection.Forward ? PonIndex.FORWARD : 0) | (bp.direction2 == BreakendDirection.Forward ? PonIndex.FORWARD2 : 0));
+		bpCount.add(count);
+	}
+	public void write(BreakendSummary be, int count) {
+		if (be instanceof BreakpointSummary) {
+			write((BreakpointSummary)be, count);
+			return;
+		}
+		beReferenceIndex.add(be.referenceIndex);
+		beStart.add(be.start);
+		beEnd.add(be.end);
+		beDirection.add(be.direction == BreakendDirection.Forward ? PonIndex.FORWARD : 0);
+		beCount.add(count);
+	}
+	/**
+	 * Adds the records in the given GRIDSS PON BEDPE file
+	 */
+	public void addBedpe(File bedpe) throws IOException {
+		try (BedpeIterator it = new BedpeIterator(bedpe, dict)) {
+			while (it.hasNext()) {
+				BedpeRecord record = it.next();
+				write(record.bp, Integer.parseInt(record.score));
+			}
+		}
+	}
+	/**
+	 * Adds the records in the given GRIDSS PON BED file
+	 */
+	public void addBed(File bed) throws IOException {
+		try (AbstractFeatureReader<BEDFeature, LineIterator> reader = AbstractFeatureReader.getFeatureReader(bed.getPath(), new BEDCodec(), false)) {
+			for (BEDFeature feat : reader.iterator()) {
+				SAMSequenceRecord seq = dict.getSequence(feat.getContig());
+				if (seq == null) {
+					throw new IllegalArgumentException(String.format("Contig %s missing from reference genome", feat.getContig()));
+				}
+				write(new BreakendSummary(seq.getSequenceIndex(), feat.getStrand() == Strand.FORWARD ? BreakendDirection.Forward : BreakendDirection.Backward,
+						feat.getStart(), feat.getStart(), feat.getEnd()), (int)feat.getScore());
+			}
+		}
+	}
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+		int[] bpOrder = sortedBreakpointOrder();
+		int[] beOrder = sortedBreakendOrder();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+			out.writeInt(PonIndex.MAGIC);
+			out.writeInt(PonIndex.VERSION);
+			out.writeInt(dict.size());
+			for (SAMSequenceRecord seq : dict.getSequences()) {
+				byte[] name = seq.getSequenceName().getBytes(StandardCharsets.UTF_8);
+				out.writeShort(name.length);
+				out.write(name);
+			}
+			writeBreakpointBlocks(out, bpOrder);
+			writeBreakendBlocks(out, beOrder);
+			out.writeInt(bpOrder.length);
+			for (int i : bpOrder) {
+				out.writeInt(bpStart1.getInt(i));
+				out.writeInt(bpEnd1.getInt(i));
+				out.writeInt(bpStart2.getInt(i));
+				out.writeInt(bpEnd2.getInt(i));
+				out.writeInt(bpCount.getInt(i));
+				out.writeInt(bpDirection.getInt(i));
+			}
+			out.writeInt(beOrder.length);
+			for (int i : beOrder) {
+				out.writeInt(beStart.getInt(i));
+				out.writeInt(beEnd.getInt(i));
+				out.writeInt(beCount.getInt(i));
+				out.writeInt(beDirection.getInt(i));
+			}
+		}
+	}
+	private void writeBreakpointBlocks(DataOutputStream out, int[] order) throws IOException {
+		IntArrayList blocks = new IntArrayList();
+		int blockStart = 0;
+		for (int i = 1; i <= order.length; i++) {
+			if (i == order.length
+					|| bpReferenceIndex1.getInt(order[i]) != bpReferenceIndex1.getInt(order[blockStart])
+					|| bpReferenceIndex2.getInt(order[i]) != bpReferenceIndex2.getInt(order[blockStart])) {
+				int maxWidth = 0;
+				for (int j = blockStart; j < i; j++) {
+					maxWidth = Math.max(maxWidth, bpEnd1.getInt(order[j]) - bpStart1.getInt(order[j]));
+				}
+				blocks.add(bpReferenceIndex1.getInt(order[blockStart]));
+				blocks.add(bpReferenceIndex2.getInt(order[blockStart]));
+				blocks.add(blockStart);
+				blocks.add(i - blockStart);
+				blocks.add(maxWidth);
+				blockStart = i;
+			}
+		}
+		out.writeInt(blocks.size() / PonIndex.BREAKPOINT_BLOCK_FIELDS);
+		for (int i = 0; i < blocks.size(); i++) {
+			out.writeInt(blocks.getInt(i));
+		}
+	}
+	private void writeBreakendBlocks(DataOutputStream out, int[] order) throws IOException {
+		IntArrayList blocks = new IntArrayList();
+		int blockStart = 0;
+		for (int i = 1; i <= order.length; i++) {
+			if (i == order.length || beReferenceIndex.getInt(order[i]) != beReferenceIndex.getInt(order[blockStart])) {
+				int maxWidth = 0;
+				for (int j = blockStart; j < i; j++) {
+					maxWidth = Math.max(maxWidth, beEnd.getInt(order[j]) - beStart.getInt(order[j]));
+				}
+				blocks.add(beReferenceIndex.getInt(order[blockStart]));
+				blocks.add(blockStart);
+				blocks.add(i - blockStart);
+				blocks.add(maxWidth);
+				blockStart = i;
+			}
+		}
+		out.writeInt(blocks.size() / PonIndex.BREAKEND_BLOCK_FIELDS);
+		for (int i = 0; i < blocks.size(); i++) {
+			out.writeInt(blocks.getInt(i));
+		}
+	}
+	private int[] sortedBreakpointOrder() {
+		int[] order = identity(bpCount.size());
+		it.unimi.dsi.fastutil.Arrays.quickSort(0, order.length, (a, b) -> {
+			int cmp = Integer.compare(bpReferenceIndex1.getInt(order[a]), bpReferenceIndex1.getInt(order[b]));
+			if (cmp == 0) cmp = Integer.compare(bpReferenceIndex2.getInt(order[a]), bpReferenceIndex2.getInt(order[b]));
+			if (cmp == 0) cmp = Integer.compare(bpStart1.getInt(order[a]), bpStart1.getInt(order[b]));
+			if (cmp == 0) cmp = Integer.compare(bpStart2.getInt(order[a]), bpStart2.getInt(order[b]));
+			return cmp;
+		}, (a, b) -> swap(order, a, b));
+		return order;
+	}
+	private int[] sortedBreakendOrder() {
+		int[] order = identity(beCount.size());
+		it.unimi.dsi.fastutil.Arrays.quickSort(0, order.length, (a, b) -> {
+			int cmp = Integer.compare(beReferenceIndex.getInt(order[a]), beReferenceIndex.getInt(order[b]));
+			if (cmp == 0) cmp = Integer.compare(beStart.getInt(order[a]), beStart.getInt(order[b]));
+			return cmp;
+		}, (a, b) -> swap(order, a, b));
+		return order;
+	}
+	private static int[] identity(int size) {
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		return order;
+	}
+	private static void swap(int[] array, int a, int b) {
+		int tmp = array[a];
+		array[a] = array[b];
+		array[b] = tmp;
+	}
+}
@@ -69,6 +69,30 @@ public class GridssConfiguration {
 	 * from a single reference sequence.
 	 */
 	public int chunkSequenceChangePenalty;
+	/**
+	 * Schedule chunks in descending order of estimated processing cost so the most
+	 * expensive chunks are started first.
+	 */
+	public boolean chunkCostOrdering;
+	/**
+	 * Chunks with an estimated processing cost exceeding this multiple of the mean chunk
+	 * cost are split into smaller chunks. Zero disables chunk splitting.
+	 */
+	public double chunkSplitCostMultiple;
+	/**
+	 * Minimum size (in base pairs) of chunks created by chunk splitting.
+	 */
+	public int chunkSplitMinSize;
+	/**
+	 * Size chunks by the evidence they contain instead of by base count. Chunk
+	 * boundaries are placed in regions of low evidence density.
+	 */
+	public boolean chunkEvidenceDensityPlanning;
+	/**
+	 * bedGraph-style BED file of evidence density used for evidence density chunk planning.
+	 * If not specified, evidence density is estimated from the BAM index of the extracted SV reads.
+	 */
+	public File chunkEvidenceDensityBed;
 	/**
 	 * Use the read group sample name as the category label
 	 */
@@ -122,6 +146,12 @@ public class GridssConfiguration {
 		terminateOnFirstError = config.getBoolean("terminateOnFirstError");
 		chunkSize = config.getInt("chunkSize");
 		chunkSequenceChangePenalty = config.getInt("chunkSequenceChangePenalty");
+		chunkCostOrdering = config.getBoolean("chunkCostOrdering");
+		chunkSplitCostMultiple = config.getDouble("chunkSplitCostMultiple");
+		chunkSplitMinSize = config.getInt("chunkSplitMinSize");
+		chunkEvidenceDensityPlanning = config.getBoolean("chunkEvidenceDensityPlanning");
+		String densityBed = config.getString("chunkEvidenceDensityBed", null);
+		chunkEvidenceDensityBed = densityBed == null || densityBed.trim().isEmpty() ? null : new File(densityBed);
 		useReadGroupSampleNameCategoryLabel = config.getBoolean("useReadGroupSampleNameCategoryLabel");
 		hashEvidenceID = config.getBoolean("hashEvidenceID");
 		sourceConfigurationFile = null;
@@ -1,6 +1,7 @@
 package au.edu.wehi.idsv.debruijn.positional;
 
 import au.edu.wehi.idsv.Defaults;
+import au.edu.wehi.idsv.EvidenceId;
 import au.edu.wehi.idsv.util.IntervalUtil;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
@@ -25,7 +26,7 @@ import static au.edu.wehi.idsv.Defaults.SANITY_CHECK_EVIDENCE_TRACKER;
 public class EvidenceTracker {
 	//public static EvidenceTracker TEMP_HACK_CURRENT_TRACKER = null;
 	private final Long2ObjectOpenHashMap<LinkedList<KmerSupportNode>> lookup = new Long2ObjectOpenHashMap<>();
-	private final Object2ObjectOpenHashMap<String, List<KmerEvidence>> id = new Object2ObjectOpenHashMap<>();
+	private final Object2ObjectOpenHashMap<EvidenceId, List<KmerEvidence>> id = new Object2ObjectOpenHashMap<>();
 	private long evidenceTotal = 0;
 	/**
 	 * Tracks evidence emitted from the given iterator
@@ -45,7 +46,7 @@ public class EvidenceTracker {
 		}
 		list.add(support);
 		KmerEvidence ke = support.evidence();
-		String evidenceId = ke.evidence().getEvidenceID();
+		EvidenceId evidenceId = ke.evidence().getEvidenceIdentifier();
 		List<KmerEvidence> idvalue = id.get(evidenceId);
 		if (idvalue == null) {
 			evidenceTotal++;
@@ -78,7 +79,7 @@ public class EvidenceTracker {
 	private void addToRemoveList(KmerEvidence evidence, Set<KmerEvidence> removeSet, LongSortedSet kmersInSet) {
 		// Need to remove all KmerEvidence associated with the evidence
 		// Read pairs can have two: one each of the anchored and unanchored reads
-		Collection<KmerEvidence> trackedKmerEvidenceForEvidence = id.remove(evidence.evidence().getEvidenceID());
+		Collection<KmerEvidence> trackedKmerEvidenceForEvidence = id.remove(evidence.evidence().getEvidenceIdentifier());
 		if (trackedKmerEvidenceForEvidence == null) {
 			// Will happen when we attempt to remove the second KmerEvidence in a read pair
 			return;
@@ -195,7 +196,10 @@ public class EvidenceTracker {
 		return evidenceWeight == expectedWidthWeight;
 	}
 	public boolean isTracked(String evidenceId) {
-		return id.keySet().contains(evidenceId);
+		return isTracked(EvidenceId.of(evidenceId));
+	}
+	public boolean isTracked(EvidenceId evidenceId) {
+		return id.containsKey(evidenceId);
 	}
 	public class PathNodeAssertionInterceptor implements Iterator<KmerPathNode> {
 		private final Iterator<KmerPathNode> underlying;
@@ -254,14 +258,14 @@ public class EvidenceTracker {
 		return lookup.values().stream().mapToInt(x -> x.size()).max().orElse(0);
 	}
 	public void sanityCheck() {
-		Set<String> lookupEid = lookup.values()
+		Set<EvidenceId> lookupEid = lookup.values()
 				.stream()
 				.flatMap(ll -> ll.stream())
-				.map(ksn -> ksn.evidence().evidence().getEvidenceID())
+				.map(ksn -> ksn.evidence().evidence().getEvidenceIdentifier())
 				.collect(Collectors.toSet());
-		Set<String> idEid = id.keySet().stream().collect(Collectors.toSet());
-		Set<String> missingInLookup = new HashSet<>(idEid);
-		Set<String> missingInIds = new HashSet<>(lookupEid);
+		Set<EvidenceId> idEid = id.keySet().stream().collect(Collectors.toSet());
+		Set<EvidenceId> missingInLookup = new HashSet<>(idEid);
+		Set<EvidenceId> missingInIds = new HashSet<>(lookupEid);
 		missingInIds.removeAll(idEid);
 		missingInLookup.removeAll(lookupEid);
 		Set<KmerEvidence> kes = lookup.values()
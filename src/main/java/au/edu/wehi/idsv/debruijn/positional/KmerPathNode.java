@@ -27,7 +27,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	private static final List<KmerPathNode> EMPTY_EDGE_LIST = ImmutableList.of();
 	private static final Ordering<KmerNode> NEXT_SORT_ORDER = KmerNodeUtil.ByFirstStart;
 	private static final Ordering<KmerNode> PREV_SORT_ORDER = KmerNodeUtil.ByLastStart;
-	private LongArrayList kmers; // FIXME: replace with 2-bit encoding of kmer sequence
+	private PackedKmerPath kmers;
 	private IntArrayList weight;
 	private int totalWeight;
 	private int start;
@@ -58,7 +58,11 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	public int startPosition(int offset) { return start + offset; }
 	public int endPosition(int offset) { return end + offset; }
 	public int weight() { return totalWeight; }
-	public LongArrayList pathKmers() { return kmers; }
+	/**
+	 * Kmers of this path.
+	 * @return copy of the kmers in this path
+	 */
+	public LongArrayList pathKmers() { return kmers.toLongArrayList(); }
 	public IntArrayList pathWeights() { return weight; }
 	@Override
 	public int weight(int offset) {
@@ -68,8 +72,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	public int length() { return kmers.size(); }
 	public int width() { return end - start + 1; }
 	public KmerPathNode(long kmer, int start, int end, boolean reference, int weight) {
-		this.kmers = new LongArrayList(1);
-		this.kmers.add(kmer);
+		this.kmers = new PackedKmerPath(kmer);
 		this.weight = new IntArrayList(1);
 		this.weight.add(weight);
 		this.totalWeight = weight;
@@ -77,7 +80,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		this.end = end;
 		this.reference = reference;
 	}
-	private KmerPathNode(LongArrayList kmer, int start, int end, boolean reference, int totalWeight, IntArrayList weight) {
+	private KmerPathNode(PackedKmerPath kmer, int start, int end, boolean reference, int totalWeight, IntArrayList weight) {
 		this.kmers = kmer.clone();
 		this.weight = weight.clone();
 		this.totalWeight = totalWeight;
@@ -85,7 +88,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		this.end = end;
 		this.reference = reference;
 	}
-	private KmerPathNode(LongArrayList kmer, int start, int end, boolean reference, IntArrayList weight) {
+	private KmerPathNode(PackedKmerPath kmer, int start, int end, boolean reference, IntArrayList weight) {
 		this(kmer, start, end, reference, sumWeights(weight), weight);
 	}
 	public KmerPathNode(KmerNode node) {
@@ -426,10 +429,10 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(firstNodeLength > 0);
 		assert(firstNodeLength < length());
 		// copy our new kmers and weights
-		LongArrayList kmerSecond = new LongArrayList(kmers.subList(firstNodeLength, length()));
+		PackedKmerPath kmerSecond = kmers.copy(firstNodeLength, length());
 		IntArrayList weightSecond = new IntArrayList(weight.subList(firstNodeLength, length()));
 		// let split own our current arrays
-		this.kmers.removeElements(firstNodeLength, this.kmers.size());
+		this.kmers.truncate(firstNodeLength);
 		this.weight.removeElements(firstNodeLength, this.weight.size());
 		KmerPathNode split = new KmerPathNode(
 				this.kmers,
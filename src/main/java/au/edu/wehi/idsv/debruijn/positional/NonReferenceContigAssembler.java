@@ -4,6 +4,7 @@ import au.edu.wehi.idsv.*;
 import au.edu.wehi.idsv.bed.IntervalBed;
 import au.edu.wehi.idsv.debruijn.DeBruijnGraphBase;
 import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.KmerNodeByFirstStartKmerRingBufferNavigableSet;
 import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.KmerNodeByLastKmerIntervalLookup;
 import au.edu.wehi.idsv.graph.ScalingHelper;
 import au.edu.wehi.idsv.model.Models;
@@ -71,8 +72,8 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 	 */
 	private static final boolean SIMPLIFY_AFTER_REMOVAL = false;
 	private KmerNodeByLastKmerIntervalLookup<KmerPathNodeKmerNode> graphByKmerNode = new KmerNodeByLastKmerIntervalLookup<>();
-	private TreeSet<KmerPathNode> graphByPosition = new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer); // TODO: OPT: replace data structure
-	private SortedSet<KmerPathNode> nonReferenceGraphByPosition = new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer); // TODO: OPT: replace data structure
+	private final NavigableSet<KmerPathNode> graphByPosition = createGraphByPosition();
+	private final SortedSet<KmerPathNode> nonReferenceGraphByPosition = createGraphByPosition();
 	private final EvidenceTracker evidenceTracker;
 	private final AssemblyEvidenceSource aes;
 	private final AssemblyIdGenerator assemblyNameGenerator;
@@ -183,6 +184,12 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		this.safetyRegions = safetyRegions;
 		initialiseBestCaller();
 	}
+	private static NavigableSet<KmerPathNode> createGraphByPosition() {
+		if (Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES) {
+			return new KmerNodeByFirstStartKmerRingBufferNavigableSet<>(10);
+		}
+		return new TreeSet<>(KmerNodeUtil.ByFirstStartKmer);
+	}
 	private void initialiseBestCaller() {
 		this.bestContigCaller = new MemoizedContigCaller(ANCHORED_SCORE, maxEvidenceSupportIntervalWidth);
 		for (KmerPathNode n : graphByPosition) {
@@ -0,0 +1,220 @@
+package au.edu.wehi.idsv.debruijn.positional;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.Arrays;
+
+/**
+ * Kmers of a de Bruijn graph path in which each kmer is usually the successor of the previous kmer.
+ *
+ * Successive kmers overlap by k-1 bases so only the first kmer and the 2-bit
+ * encoded final base of each subsequent kmer are stored.
+ * Kmers are reconstructed on demand.
+ *
+ * The kmer size is not known by the list itself. The range of kmer sizes consistent
+ * with the kmers added is tracked instead. All kmer sizes in this range reconstruct
+ * the same kmers. If a kmer is added that is not the successor of the previous kmer
+ * for any consistent kmer size, the list falls back to storing each kmer explicitly.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class PackedKmerPath {
+	private static final int MAX_K = 32;
+	private static final int BASES_PER_WORD = 32;
+	private long firstKmer;
+	/**
+	 * 2-bit encoded final base of each kmer after the first, with the first base in the most significant bits
+	 */
+	private long[] bases;
+	/**
+	 * Offset of the final base of the second kmer in bases
+	 */
+	private int baseOffset;
+	private int size;
+	private int minK = 1;
+	private int maxK = MAX_K;
+	/**
+	 * Kmers. Only used if the kmers are not successive.
+	 */
+	private LongArrayList explicit;
+	public PackedKmerPath() {
+	}
+	public PackedKmerPath(long kmer) {
+		add(kmer);
+	}
+	private PackedKmerPath(PackedKmerPath list) {
+		this.firstKmer = list.firstKmer;
+		this.bases = list.bases == null ? null : Arrays.copyOf(list.bases, list.bases.length);
+		this.baseOffset = list.baseOffset;
+		this.size = list.size;
+		this.minK = list.minK;
+		this.maxK = list.maxK;
+		this.explicit = list.explicit == null ? null : list.explicit.clone();
+	}
+	private static long mask(int k) {
+		return k >= MAX_K ? -1L : (1L << (2 * k)) - 1;
+	}
+	private static int minKmerSize(long kmer) {
+		return Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(kmer) + 1) / 2);
+	}
+	public int size() {
+		return size;
+	}
+	/**
+	 * Indicates whether the kmers are stored in packed form
+	 */
+	public boolean isPacked() {
+		return explicit == null;
+	}
+	public long getLong(int offset) {
+		if (offset < 0 || offset >= size) throw new IndexOutOfBoundsException(Integer.toString(offset));
+		if (explicit != null) return explicit.getLong(offset);
+		if (offset == 0) return firstKmer;
+		int baseCount = Math.min(offset, BASES_PER_WORD);
+		long kmer = packedBases(baseOffset + offset - baseCount, baseCount);
+		if (offset < BASES_PER_WORD) {
+			kmer |= firstKmer << (2 * offset);
+		}
+		return kmer & mask(maxK);
+	}
+	/**
+	 * Gets the given bases as a 2-bit encoding with the first base in the most significant bits.
+	 * @param from index of first base
+	 * @param count number of bases. Must be between 1 and 32 inclusive.
+	 */
+	private long packedBases(int from, int count) {
+		int word = from / BASES_PER_WORD;
+		int bit = 2 * (from % BASES_PER_WORD);
+		long value = bases[word] << bit;
+		if (bit + 2 * count > Long.SIZE) {
+			value |= bases[word + 1] >>> (Long.SIZE - bit);
+		}
+		return value >>> (Long.SIZE - 2 * count);
+	}
+	private void setBase(int index, long base) {
+		int word = index / BASES_PER_WORD;
+		if (bases == null) {
+			bases = new long[Math.max(1, word + 1)];
+		} else if (word >= bases.length) {
+			bases = Arrays.copyOf(bases, Math.max(word + 1, 2 * bases.length));
+		}
+		int shift = Long.SIZE - 2 - 2 * (index % BASES_PER_WORD);
+		bases[word] = (bases[word] & ~(3L << shift)) | ((base & 3) << shift);
+	}
+	public void add(long kmer) {
+		if (explicit != null) {
+			explicit.add(kmer);
+			size++;
+			return;
+		}
+		if (size == 0) {
+			firstKmer = kmer;
+			baseOffset = 0;
+			minK = minKmerSize(kmer);
+			maxK = MAX_K;
+			size = 1;
+			return;
+		}
+		long prev = getLong(size - 1);
+		long diff = ((prev << 2) | (kmer & 3)) ^ kmer;
+		int lowerK = Math.max(minK, minKmerSize(kmer));
+		int upperK = Math.min(maxK, diff == 0 ? MAX_K : Long.numberOfTrailingZeros(diff) / 2);
+		if (lowerK > upperK) {
+			// not a successor kmer
+			unpack();
+			explicit.add(kmer);
+			size++;
+			return;
+		}
+		minK = lowerK;
+		maxK = upperK;
+		setBase(baseOffset + size - 1, kmer);
+		size++;
+	}
+	public void addAll(PackedKmerPath list) {
+		for (int i = 0; i < list.size(); i++) {
+			add(list.getLong(i));
+		}
+	}
+	private void unpack() {
+		LongArrayList list = new LongArrayList(size + 1);
+		for (int i = 0; i < size; i++) {
+			list.add(getLong(i));
+		}
+		explicit = list;
+		bases = null;
+	}
+	/**
+	 * Removes all kmers from the given offset onwards
+	 * @param newSize new size of the list
+	 */
+	public void truncate(int newSize) {
+		if (newSize < 0 || newSize > size) throw new IndexOutOfBoundsException(Integer.toString(newSize));
+		if (explicit != null) {
+			explicit.removeElements(newSize, size);
+		}
+		size = newSize;
+	}
+	public long removeLong(int offset) {
+		long kmer = getLong(offset);
+		if (explicit != null) {
+			explicit.removeLong(offset);
+			size--;
+		} else if (offset == size - 1) {
+			size--;
+		} else if (offset == 0) {
+			firstKmer = getLong(1);
+			baseOffset++;
+			size--;
+		} else {
+			PackedKmerPath tail = copy(offset + 1, size);
+			truncate(offset);
+			addAll(tail);
+		}
+		return kmer;
+	}
+	/**
+	 * Copies the given kmers into a new list
+	 * @param from offset of first kmer to copy
+	 * @param to offset after the last kmer to copy
+	 * @return new list containing the given kmers
+	 */
+	public PackedKmerPath copy(int from, int to) {
+		PackedKmerPath result = new PackedKmerPath();
+		for (int i = from; i < to; i++) {
+			result.add(getLong(i));
+		}
+		return result;
+	}
+	@Override
+	public PackedKmerPath clone() {
+		return new PackedKmerPath(this);
+	}
+	public LongArrayList toLongArrayList() {
+		LongArrayList list = new LongArrayList(size);
+		for (int i = 0; i < size; i++) {
+			list.add(getLong(i));
+		}
+		return list;
+	}
+	@Override
+	public int hashCode() {
+		int result = 1;
+		for (int i = 0; i < size; i++) {
+			result = 31 * result + Long.hashCode(getLong(i));
+		}
+		return result;
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof PackedKmerPath)) return false;
+		PackedKmerPath other = (PackedKmerPath)obj;
+		if (size != other.size) return false;
+		for (int i = 0; i < size; i++) {
+			if (getLong(i) != other.getLong(i)) return false;
+		}
+		return true;
+	}
+}
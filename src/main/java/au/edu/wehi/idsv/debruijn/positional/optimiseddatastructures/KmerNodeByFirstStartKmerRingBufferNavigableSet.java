@@ -0,0 +1,344 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.debruijn.positional.KmerNode;
+import au.edu.wehi.idsv.debruijn.positional.KmerNodeUtil;
+
+import java.util.*;
+
+/**
+ * Sorted set of kmer nodes ordered by first start position then first kmer.
+ *
+ * Nodes are bucketed by first start position into a ring buffer
+ * that spans the window of occupied positions. This is optimised
+ * for a window sliding linearly through the genome: add, remove and contains
+ * are constant time and iteration is linear in the window width.
+ *
+ * Nodes with the same first start position and first kmer are considered equal
+ * (consistent with KmerNodeUtil.ByFirstStartKmer).
+ *
+ * Backed by ArrayList under the assumption that the number of entries
+ * at each position will be small
+ */
+public class KmerNodeByFirstStartKmerRingBufferNavigableSet<T extends KmerNode> extends AbstractSet<T> implements NavigableSet<T> {
+    private ArrayList<T>[] buckets;
+    private int mask;
+    private int size = 0;
+    private int modCount = 0;
+    /**
+     * First occupied position. Only valid when the set is non-empty.
+     */
+    private int firstPosition;
+    /**
+     * Last occupied position. Only valid when the set is non-empty.
+     */
+    private int lastPosition;
+
+    /**
+     * @param initialBits log2 of the initial window width
+     */
+    public KmerNodeByFirstStartKmerRingBufferNavigableSet(int initialBits) {
+        this.buckets = (ArrayList<T>[])new ArrayList[1 << initialBits];
+        this.mask = buckets.length - 1;
+    }
+
+    private ArrayList<T> bucket(int position) {
+        return buckets[position & mask];
+    }
+
+    /**
+     * Finds the offset of the node with the given kmer in the given bucket
+     * @return offset of the node if found, otherwise (-(insertion point) - 1)
+     */
+    private static <T extends KmerNode> int indexOf(ArrayList<T> bucket, long kmer) {
+        int low = 0;
+        int high = bucket.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Long.compare(bucket.get(mid).firstKmer(), kmer);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Grows the ring buffer so it can span the given window
+     */
+    private void ensureCapacity(int windowStart, int windowEnd) {
+        long width = (long)windowEnd - windowStart + 1;
+        if (width <= buckets.length) return;
+        int newLength = buckets.length;
+        while (newLength < width) {
+            if (newLength >= 1 << 30) {
+                throw new IllegalStateException(String.format("Window %d-%d too large for ring buffer", windowStart, windowEnd));
+            }
+            newLength <<= 1;
+        }
+        ArrayList<T>[] newBuckets = (ArrayList<T>[])new ArrayList[newLength];
+        int newMask = newLength - 1;
+        for (int position = firstPosition; position <= lastPosition; position++) {
+            newBuckets[position & newMask] = buckets[position & mask];
+        }
+        buckets = newBuckets;
+        mask = newMask;
+    }
+
+    @Override
+    public boolean add(T node) {
+        int position = node.firstStart();
+        if (size == 0) {
+            firstPosition = position;
+            lastPosition = position;
+        } else {
+            ensureCapacity(Math.min(firstPosition, position), Math.max(lastPosition, position));
+        }
+        ArrayList<T> bucket = bucket(position);
+        if (bucket == null) {
+            bucket = new ArrayList<>(2);
+            buckets[position & mask] = bucket;
+        }
+        int offset = indexOf(bucket, node.firstKmer());
+        if (offset >= 0) {
+            return false;
+        }
+        bucket.add(-offset - 1, node);
+        size++;
+        modCount++;
+        firstPosition = Math.min(firstPosition, position);
+        lastPosition = Math.max(lastPosition, position);
+        return true;
+    }
+
+    private ArrayList<T> lookupBucket(Object o) {
+        if (size == 0 || !(o instanceof KmerNode)) return null;
+        int position = ((KmerNode)o).firstStart();
+        if (position < firstPosition || position > lastPosition) return null;
+        return bucket(position);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        ArrayList<T> bucket = lookupBucket(o);
+        return bucket != null && indexOf(bucket, ((KmerNode)o).firstKmer()) >= 0;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        ArrayList<T> bucket = lookupBucket(o);
+        if (bucket == null) return false;
+        int offset = indexOf(bucket, ((KmerNode)o).firstKmer());
+        if (offset < 0) return false;
+        removeAt(((KmerNode)o).firstStart(), bucket, offset);
+        return true;
+    }
+
+    private T removeAt(int position, ArrayList<T> bucket, int offset) {
+        T node = bucket.remove(offset);
+        size--;
+        modCount++;
+        if (bucket.isEmpty()) {
+            buckets[position & mask] = null;
+            if (size > 0) {
+                while (bucket(firstPosition) == null) firstPosition++;
+                while (bucket(lastPosition) == null) lastPosition--;
+            }
+        }
+        return node;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            for (int position = firstPosition; position <= lastPosition; position++) {
+                buckets[position & mask] = null;
+            }
+        }
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public T first() {
+        if (size == 0) throw new NoSuchElementException();
+        return bucket(firstPosition).get(0);
+    }
+
+    @Override
+    public T last() {
+        if (size == 0) throw new NoSuchElementException();
+        ArrayList<T> bucket = bucket(lastPosition);
+        return bucket.get(bucket.size() - 1);
+    }
+
+    @Override
+    public T pollFirst() {
+        if (size == 0) return null;
+        return removeAt(firstPosition, bucket(firstPosition), 0);
+    }
+
+    @Override
+    public T pollLast() {
+        if (size == 0) return null;
+        ArrayList<T> bucket = bucket(lastPosition);
+        return removeAt(lastPosition, bucket, bucket.size() - 1);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new RingIterator(true);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return new RingIterator(false);
+    }
+
+    private class RingIterator implements Iterator<T> {
+        private final boolean ascending;
+        private int expectedModCount = modCount;
+        private int position;
+        private int endPosition;
+        private ArrayList<T> bucket = null;
+        /**
+         * Offset of the next node in the current bucket
+         */
+        private int offset;
+        private T lastReturned = null;
+        private int lastReturnedPosition;
+        public RingIterator(boolean ascending) {
+            this.ascending = ascending;
+            if (size == 0) {
+                position = 1;
+                endPosition = 0;
+            } else {
+                position = ascending ? firstPosition : lastPosition;
+                endPosition = ascending ? lastPosition : firstPosition;
+            }
+            moveToNextBucket();
+        }
+        private boolean positionInRange() {
+            return ascending ? position <= endPosition : position >= endPosition;
+        }
+        private void moveToNextBucket() {
+            while (positionInRange()) {
+                ArrayList<T> b = bucket(position);
+                if (b != null && !b.isEmpty()) {
+                    bucket = b;
+                    offset = ascending ? 0 : b.size() - 1;
+                    return;
+                }
+                position += ascending ? 1 : -1;
+            }
+            bucket = null;
+        }
+        @Override
+        public boolean hasNext() {
+            return bucket != null;
+        }
+        @Override
+        public T next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (bucket == null) throw new NoSuchElementException();
+            lastReturned = bucket.get(offset);
+            lastReturnedPosition = position;
+            if (ascending) {
+                offset++;
+            } else {
+                offset--;
+            }
+            if (offset < 0 || offset >= bucket.size()) {
+                position += ascending ? 1 : -1;
+                moveToNextBucket();
+            }
+            return lastReturned;
+        }
+        @Override
+        public void remove() {
+            if (lastReturned == null) throw new IllegalStateException();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            ArrayList<T> b = bucket(lastReturnedPosition);
+            int removalOffset = indexOf(b, lastReturned.firstKmer());
+            removeAt(lastReturnedPosition, b, removalOffset);
+            if (ascending && b == bucket) {
+                offset--;
+            }
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return KmerNodeUtil.ByFirstStartKmer;
+    }
+
+    @Override
+    public T lower(T t) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public T floor(T t) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public T ceiling(T t) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public T higher(T t) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NavigableSet<T> descendingSet() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NavigableSet<T> subSet(T t, boolean b, T e1, boolean b1) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NavigableSet<T> headSet(T t, boolean b) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(T t, boolean b) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<T> subSet(T t, T e1) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<T> headSet(T t) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T t) {
+        throw new UnsupportedOperationException();
+    }
+}
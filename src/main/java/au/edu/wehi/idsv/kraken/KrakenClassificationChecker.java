@@ -1,7 +1,7 @@
 package au.edu.wehi.idsv.kraken;
 
-import au.edu.wehi.idsv.ncbi.MinimalTaxonomyNode;
 import au.edu.wehi.idsv.ncbi.TaxonomyHelper;
+import au.edu.wehi.idsv.ncbi.TaxonomyIndex;
 import htsjdk.samtools.util.Log;
 import org.apache.commons.collections4.iterators.ReverseListIterator;
 
@@ -9,7 +9,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Checks whether this read could be part of the given taxonomic subset.
@@ -32,14 +31,18 @@ public class KrakenClassificationChecker {
      * Ancestors of taxa in our set of interest are ambiguous.
      */
     private final boolean[] badTaxId;
+    /**
+     * @param taxonomyIdOfInterest taxonomy IDs of interest
+     * @param nodesdmp NCBI nodes.dmp or taxonomy index
+     */
     public KrakenClassificationChecker(List<Integer> taxonomyIdOfInterest, File nodesdmp) throws IOException {
         log.info("Loading NCBI taxonomy from ", nodesdmp);
-        Map<Integer, MinimalTaxonomyNode> lookup = TaxonomyHelper.parseMinimal(nodesdmp);
+        TaxonomyIndex lookup = TaxonomyIndex.open(nodesdmp);
         this.goodTaxId = TaxonomyHelper.createInclusionLookup(taxonomyIdOfInterest, lookup);
         this.badTaxId = setupBadTaxId(goodTaxId, lookup, taxonomyIdOfInterest);
     }
 
-    private boolean[] setupBadTaxId(boolean[] goodTaxId, Map<Integer, MinimalTaxonomyNode> lookup, List<Integer> taxonomyIdOfInterest) {
+    private boolean[] setupBadTaxId(boolean[] goodTaxId, TaxonomyIndex lookup, List<Integer> taxonomyIdOfInterest) {
         boolean[] badTaxId = new boolean[goodTaxId.length];
         for (int i = 0 ; i < goodTaxId.length; i++) {
             badTaxId[i] = !goodTaxId[i];
@@ -49,7 +52,7 @@ public class KrakenClassificationChecker {
             while (ancestorTaxId != lastTaxId) {
                 badTaxId[ancestorTaxId] = false;
                 lastTaxId = ancestorTaxId;
-                ancestorTaxId = lookup.get(ancestorTaxId).parentTaxId;
+                ancestorTaxId = lookup.getParentTaxId(ancestorTaxId);
 
             }
         }
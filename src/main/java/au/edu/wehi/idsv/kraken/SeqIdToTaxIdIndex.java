@@ -0,0 +1,174 @@
+package au.edu.wehi.idsv.kraken;
+
+import au.edu.wehi.idsv.util.MemoryMappedIndex;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Read-only Kraken2 seqid2taxid.map lookup backed by an open addressing hash table.
+ *
+ * Each hash table slot contains the offset of the sequence ID in the key block and
+ * the taxonomy ID of that sequence. Lookups use linear probing and compare the UTF-8
+ * encoded sequence IDs directly so looking up a sequence ID creates no per-entry objects.
+ *
+ * The index can be memory-mapped from a file written by {@link SeqIdToTaxIdIndexWriter}
+ * or built in memory directly from a seqid2taxid.map file.
+ *
+ * Instances are thread-safe.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class SeqIdToTaxIdIndex extends AbstractMap<String, Integer> implements MemoryMappedIndex {
+    static final int MAGIC = 0x47535449; // "GSTI"
+    static final int VERSION = 1;
+    static final int EMPTY_SLOT = -1;
+    static final int SLOT_BYTES = 2 * Integer.BYTES;
+    private final ByteBuffer buffer;
+    private final int slotCount;
+    private final int entryCount;
+    private final int slotOffset;
+    private final int keyOffset;
+    /**
+     * Memory-maps the given index file
+     */
+    public SeqIdToTaxIdIndex(File file) throws IOException {
+        this(MemoryMappedIndex.map(file), file.getPath());
+    }
+    /**
+     * @param buffer serialised index
+     * @param source description of the index source used in error messages
+     */
+    SeqIdToTaxIdIndex(ByteBuffer buffer, String source) throws IOException {
+        this.buffer = buffer;
+        ByteBuffer bb = buffer.duplicate();
+        if (bb.getInt() != MAGIC) {
+            throw new IOException(String.format("%s is not a GRIDSS seqid2taxid index", source));
+        }
+        int version = bb.getInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported seqid2taxid index version %d in %s", version, source));
+        }
+        slotCount = bb.getInt();
+        entryCount = bb.getInt();
+        int keyBytes = bb.getInt();
+        slotOffset = bb.position();
+        keyOffset = slotOffset + slotCount * SLOT_BYTES;
+        if (Integer.bitCount(slotCount) != 1 || entryCount >= slotCount || keyOffset + keyBytes != buffer.limit()) {
+            throw new IOException(String.format("%s is truncated or corrupt", source));
+        }
+    }
+    /**
+     * Determines whether the given file is a seqid2taxid index
+     */
+    public static boolean isIndex(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= Integer.BYTES && in.readInt() == MAGIC;
+        }
+    }
+    /**
+     * Loads the given seqid2taxid index or Kraken2 seqid2taxid.map file
+     */
+    public static SeqIdToTaxIdIndex open(File file) throws IOException {
+        if (isIndex(file)) {
+            return new SeqIdToTaxIdIndex(file);
+        }
+        SeqIdToTaxIdIndexWriter writer = new SeqIdToTaxIdIndexWriter();
+        writer.addSeqIdToTaxIdMap(file);
+        return writer.toIndex();
+    }
+    /**
+     * Hash of the given sequence ID. This is part of the file format and must not be changed.
+     */
+    static int hash(String seqId) {
+        int h = seqId.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    /**
+     * @return hash table slot containing the given sequence ID, or the empty slot at which the probe sequence terminated.
+     */
+    private int findSlot(String seqId) {
+        byte[] key = seqId.getBytes(StandardCharsets.UTF_8);
+        int mask = slotCount - 1;
+        int slot = hash(seqId) & mask;
+        while (true) {
+            int offset = getKeyOffset(slot);
+            if (offset == EMPTY_SLOT || keyEquals(offset, key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+    private int getKeyOffset(int slot) {
+        return buffer.getInt(slotOffset + slot * SLOT_BYTES);
+    }
+    private int getTaxId(int slot) {
+        return buffer.getInt(slotOffset + slot * SLOT_BYTES + Integer.BYTES);
+    }
+    private boolean keyEquals(int offset, byte[] key) {
+        int position = keyOffset + offset;
+        if (buffer.getInt(position) != key.length) return false;
+        position += Integer.BYTES;
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(position + i) != key[i]) return false;
+        }
+        return true;
+    }
+    private String getKey(int offset) {
+        ByteBuffer bb = buffer.duplicate();
+        bb.position(keyOffset + offset);
+        byte[] b = new byte[bb.getInt()];
+        bb.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+    @Override
+    public Integer get(Object key) {
+        if (!(key instanceof String)) return null;
+        int slot = findSlot((String)key);
+        if (getKeyOffset(slot) == EMPTY_SLOT) return null;
+        return getTaxId(slot);
+    }
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+    @Override
+    public int size() {
+        return entryCount;
+    }
+    @Override
+    public Set<Entry<String, Integer>> entrySet() {
+        return new AbstractSet<Entry<String, Integer>>() {
+            @Override
+            public Iterator<Entry<String, Integer>> iterator() {
+                return new Iterator<Entry<String, Integer>>() {
+                    private int slot = advance(0);
+                    private int advance(int from) {
+                        while (from < slotCount && getKeyOffset(from) == EMPTY_SLOT) {
+                            from++;
+                        }
+                        return from;
+                    }
+                    @Override
+                    public boolean hasNext() {
+                        return slot < slotCount;
+                    }
+                    @Override
+                    public Entry<String, Integer> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        Entry<String, Integer> entry = new SimpleImmutableEntry<>(getKey(getKeyOffset(slot)), getTaxId(slot));
+                        slot = advance(slot + 1);
+                        return entry;
+                    }
+                };
+            }
+            @Override
+            public int size() {
+                return entryCount;
+            }
+        };
+    }
+}
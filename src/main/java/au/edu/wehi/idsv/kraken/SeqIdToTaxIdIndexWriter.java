@@ -0,0 +1,94 @@
+package au.edu.wehi.idsv.kraken;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes a Kraken2 seqid2taxid.map in the binary format read by {@link SeqIdToTaxIdIndex}.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class SeqIdToTaxIdIndexWriter {
+    private final List<String> seqId = new ArrayList<>();
+    private final IntArrayList taxId = new IntArrayList();
+    public void add(String seqId, int taxId) {
+        this.seqId.add(seqId);
+        this.taxId.add(taxId);
+    }
+    /**
+     * Adds the mappings in the given Kraken2 seqid2taxid.map file
+     */
+    public void addSeqIdToTaxIdMap(File seqid2taxid_map) throws IOException {
+        try (Stream<String> lines = Files.lines(seqid2taxid_map.toPath())) {
+            lines.forEach(line -> {
+                String[] fields = line.split("\t");
+                add(fields[0], Integer.parseInt(fields[1]));
+            });
+        }
+    }
+    public void write(File output) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            write(out);
+        }
+    }
+    /**
+     * Creates an in-memory index of the mappings added
+     */
+    public SeqIdToTaxIdIndex toIndex() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out);
+        }
+        return new SeqIdToTaxIdIndex(ByteBuffer.wrap(bytes.toByteArray()), "in-memory seqid2taxid index");
+    }
+    private void write(DataOutputStream out) throws IOException {
+        // load factor of at most 0.5 keeps linear probe sequences short
+        int slotCount = Integer.highestOneBit(Math.max(1, seqId.size()) * 4 - 1);
+        int mask = slotCount - 1;
+        int[] slotEntry = new int[slotCount];
+        Arrays.fill(slotEntry, -1);
+        byte[][] keys = new byte[seqId.size()][];
+        int[] keyOffset = new int[seqId.size()];
+        int keyBytes = 0;
+        for (int i = 0; i < seqId.size(); i++) {
+            keys[i] = seqId.get(i).getBytes(StandardCharsets.UTF_8);
+            keyOffset[i] = keyBytes;
+            keyBytes += Integer.BYTES + keys[i].length;
+            int slot = SeqIdToTaxIdIndex.hash(seqId.get(i)) & mask;
+            while (slotEntry[slot] != -1) {
+                if (Arrays.equals(keys[slotEntry[slot]], keys[i])) {
+                    throw new IllegalArgumentException("Duplicate sequence ID " + seqId.get(i));
+                }
+                slot = (slot + 1) & mask;
+            }
+            slotEntry[slot] = i;
+        }
+        out.writeInt(SeqIdToTaxIdIndex.MAGIC);
+        out.writeInt(SeqIdToTaxIdIndex.VERSION);
+        out.writeInt(slotCount);
+        out.writeInt(seqId.size());
+        out.writeInt(keyBytes);
+        for (int entry : slotEntry) {
+            if (entry == -1) {
+                out.writeInt(SeqIdToTaxIdIndex.EMPTY_SLOT);
+                out.writeInt(0);
+            } else {
+                out.writeInt(keyOffset[entry]);
+                out.writeInt(taxId.getInt(entry));
+            }
+        }
+        for (byte[] key : keys) {
+            out.writeInt(key.length);
+            out.write(key);
+        }
+    }
+}
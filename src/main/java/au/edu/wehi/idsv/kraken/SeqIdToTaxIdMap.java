@@ -4,18 +4,16 @@ import htsjdk.samtools.util.RuntimeIOException;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class SeqIdToTaxIdMap {
+    /**
+     * Loads the given Kraken2 seqid2taxid.map file or seqid2taxid index.
+     * Index files are memory-mapped.
+     */
     public static Map<String, Integer> createLookup(File seqid2taxid_map) {
         try {
-            List<String> lines = Files.readAllLines(seqid2taxid_map.toPath());
-            return lines.stream()
-                    .map(s -> s.split("\t"))
-                    .collect(Collectors.toMap(s -> s[0], s -> Integer.parseInt(s[1])));
+            return SeqIdToTaxIdIndex.open(seqid2taxid_map);
         } catch (IOException e) {
             throw new RuntimeIOException(e);
         }
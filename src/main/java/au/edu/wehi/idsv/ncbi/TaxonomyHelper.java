@@ -66,6 +66,33 @@ public abstract class TaxonomyHelper {
         return result;
     }
 
+    /**
+     * Creates a lookup table indicating whether that node is included, or is a child of
+     * any of the given NCBI taxonomy IDs.
+     * @param taxIds taxonomy IDs to search for
+     * @return lookup table of inclusion(true) or exclusion(false) any of the given taxonomy IDs.
+     */
+    public static boolean[] createInclusionLookup(Collection<Integer> taxIds, TaxonomyIndex lookup) {
+        boolean[] result = new boolean[lookup.getMaxTaxId() + 1];
+        for (int id : taxIds) {
+            result[id] = true;
+        }
+        // check all children
+        for (int i = 0; i < result.length; i++) {
+            int taxId = i;
+            int parentTaxId = lookup.getParentTaxId(taxId);
+            while (parentTaxId != TaxonomyIndex.NO_TAXID && taxId != parentTaxId) {
+                if (result[taxId]) {
+                    result[i] = true;
+                    break;
+                }
+                taxId = parentTaxId;
+                parentTaxId = lookup.getParentTaxId(taxId);
+            }
+        }
+        return result;
+    }
+
     public static boolean[] leafNodes(Map<Integer, MinimalTaxonomyNode> lookup) {
         boolean[] result = new boolean[maxTaxId(lookup) + 1];
         Arrays.fill(result, true);
@@ -88,4 +115,20 @@ public abstract class TaxonomyHelper {
         }
         return result;
     }
+    public static boolean[] addAncestors(boolean[] taxa, TaxonomyIndex lookup) {
+        boolean[] result = Arrays.copyOf(taxa, taxa.length);
+        for (int i = 0; i < result.length; i++) {
+            if (taxa[i]) {
+                // iterate up the tree
+                int taxId = i;
+                int parentTaxId = lookup.getParentTaxId(taxId);
+                while (parentTaxId != TaxonomyIndex.NO_TAXID && taxId != parentTaxId) {
+                    taxId = parentTaxId;
+                    parentTaxId = lookup.getParentTaxId(taxId);
+                    result[taxId] = true;
+                }
+            }
+        }
+        return result;
+    }
 }
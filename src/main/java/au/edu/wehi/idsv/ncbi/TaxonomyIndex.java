@@ -0,0 +1,116 @@
+package au.edu.wehi.idsv.ncbi;
+
+import au.edu.wehi.idsv.util.MemoryMappedIndex;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact NCBI taxonomy lookup.
+ *
+ * The parent of each node is stored in an array indexed by taxonomy ID and the rank
+ * of each node as an index into a rank dictionary. Taxonomy IDs not in the taxonomy
+ * have a parent of {@link #NO_TAXID}.
+ *
+ * The index can be memory-mapped from a file written by {@link TaxonomyIndexWriter}
+ * or built in memory directly from a nodes.dmp file.
+ *
+ * Instances are thread-safe.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class TaxonomyIndex implements MemoryMappedIndex {
+    static final int MAGIC = 0x47544149; // "GTAI"
+    static final int VERSION = 1;
+    /**
+     * NCBI taxonomy IDs start at 1 so 0 is used to indicate the absence of a node
+     */
+    public static final int NO_TAXID = 0;
+    private final ByteBuffer buffer;
+    private final String[] ranks;
+    private final int maxTaxId;
+    private final int parentOffset;
+    private final int rankOffset;
+    /**
+     * Memory-maps the given index file
+     */
+    public TaxonomyIndex(File file) throws IOException {
+        this(MemoryMappedIndex.map(file), file.getPath());
+    }
+    /**
+     * @param buffer serialised index
+     * @param source description of the index source used in error messages
+     */
+    TaxonomyIndex(ByteBuffer buffer, String source) throws IOException {
+        this.buffer = buffer;
+        ByteBuffer bb = buffer.duplicate();
+        if (bb.getInt() != MAGIC) {
+            throw new IOException(String.format("%s is not a GRIDSS taxonomy index", source));
+        }
+        int version = bb.getInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported taxonomy index version %d in %s", version, source));
+        }
+        ranks = readStrings(bb);
+        maxTaxId = bb.getInt();
+        parentOffset = bb.position();
+        rankOffset = parentOffset + (maxTaxId + 1) * Integer.BYTES;
+        if (rankOffset + maxTaxId + 1 != buffer.limit()) {
+            throw new IOException(String.format("%s is truncated or corrupt", source));
+        }
+    }
+    private static String[] readStrings(ByteBuffer bb) {
+        String[] strings = new String[bb.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] b = new byte[bb.getInt()];
+            bb.get(b);
+            strings[i] = new String(b, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+    /**
+     * Determines whether the given file is a taxonomy index
+     */
+    public static boolean isIndex(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= Integer.BYTES && in.readInt() == MAGIC;
+        }
+    }
+    /**
+     * Loads the given taxonomy index or NCBI nodes.dmp file
+     */
+    public static TaxonomyIndex open(File file) throws IOException {
+        if (isIndex(file)) {
+            return new TaxonomyIndex(file);
+        }
+        TaxonomyIndexWriter writer = new TaxonomyIndexWriter();
+        writer.addNodesDmp(file);
+        return writer.toIndex();
+    }
+    /**
+     * @return largest taxonomy ID in the taxonomy
+     */
+    public int getMaxTaxId() {
+        return maxTaxId;
+    }
+    public boolean contains(int taxId) {
+        return getParentTaxId(taxId) != NO_TAXID;
+    }
+    /**
+     * @return parent taxonomy ID, or {@link #NO_TAXID} if the taxonomy ID is not in the taxonomy.
+     * The root node is its own parent.
+     */
+    public int getParentTaxId(int taxId) {
+        if (taxId < 0 || taxId > maxTaxId) return NO_TAXID;
+        return buffer.getInt(parentOffset + taxId * Integer.BYTES);
+    }
+    /**
+     * @return rank of the given node, or null if the taxonomy ID is not in the taxonomy.
+     */
+    public String getRank(int taxId) {
+        if (!contains(taxId)) return null;
+        return ranks[Byte.toUnsignedInt(buffer.get(rankOffset + taxId))];
+    }
+}
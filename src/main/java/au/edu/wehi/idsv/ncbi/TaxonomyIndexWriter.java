@@ -0,0 +1,93 @@
+package au.edu.wehi.idsv.ncbi;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.stream.Stream;
+
+/**
+ * Writes an NCBI taxonomy in the binary format read by {@link TaxonomyIndex}.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class TaxonomyIndexWriter {
+    private static final int MAX_RANKS = 256;
+    private final Object2IntLinkedOpenHashMap<String> ranks = new Object2IntLinkedOpenHashMap<>();
+    private final IntArrayList taxId = new IntArrayList();
+    private final IntArrayList parentTaxId = new IntArrayList();
+    private final IntArrayList rank = new IntArrayList();
+    public void add(int taxId, int parentTaxId, String rank) {
+        if (taxId <= TaxonomyIndex.NO_TAXID || parentTaxId <= TaxonomyIndex.NO_TAXID) {
+            throw new IllegalArgumentException(String.format("Invalid taxonomy node %d with parent %d", taxId, parentTaxId));
+        }
+        int rankIndex = ranks.getOrDefault(rank, -1);
+        if (rankIndex == -1) {
+            if (ranks.size() >= MAX_RANKS) {
+                throw new IllegalArgumentException(String.format("Taxonomy indexes support at most %d distinct ranks", MAX_RANKS));
+            }
+            rankIndex = ranks.size();
+            ranks.put(rank, rankIndex);
+        }
+        this.taxId.add(taxId);
+        this.parentTaxId.add(parentTaxId);
+        this.rank.add(rankIndex);
+    }
+    /**
+     * Adds the nodes in the given nodes.dmp from https://ftp.ncbi.nlm.nih.gov/pub/taxonomy/taxdmp.zip
+     */
+    public void addNodesDmp(File nodesdmp) throws IOException {
+        try (Stream<String> lines = Files.lines(nodesdmp.toPath())) {
+            lines.forEach(line -> {
+                // only the leading taxid, parent taxid, and rank fields are required
+                String[] fields = line.split("\t[|]\t", 4);
+                add(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), fields[2]);
+            });
+        }
+    }
+    public void write(File output) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            write(out);
+        }
+    }
+    /**
+     * Creates an in-memory index of the nodes added
+     */
+    public TaxonomyIndex toIndex() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out);
+        }
+        return new TaxonomyIndex(ByteBuffer.wrap(bytes.toByteArray()), "in-memory taxonomy index");
+    }
+    private void write(DataOutputStream out) throws IOException {
+        int maxTaxId = 0;
+        for (int i = 0; i < taxId.size(); i++) {
+            maxTaxId = Math.max(maxTaxId, taxId.getInt(i));
+        }
+        int[] parentLookup = new int[maxTaxId + 1];
+        byte[] rankLookup = new byte[maxTaxId + 1];
+        for (int i = 0; i < taxId.size(); i++) {
+            parentLookup[taxId.getInt(i)] = parentTaxId.getInt(i);
+            rankLookup[taxId.getInt(i)] = (byte)rank.getInt(i);
+        }
+        out.writeInt(TaxonomyIndex.MAGIC);
+        out.writeInt(TaxonomyIndex.VERSION);
+        out.writeInt(ranks.size());
+        // dictionary iteration order is insertion order which matches the assigned indexes
+        for (String s : ranks.keySet()) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(b.length);
+            out.write(b);
+        }
+        out.writeInt(maxTaxId);
+        for (int parent : parentLookup) {
+            out.writeInt(parent);
+        }
+        out.write(rankLookup);
+    }
+}
@@ -0,0 +1,111 @@
+package au.edu.wehi.idsv.picard;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Amount of evidence across the genome, summarised into fixed-size bins.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class EvidenceDensityProfile {
+	private static final Log log = Log.getInstance(EvidenceDensityProfile.class);
+	private final SAMSequenceDictionary dictionary;
+	private final int binSize;
+	private final double[][] density;
+	public EvidenceDensityProfile(SAMSequenceDictionary dictionary, int binSize) {
+		if (binSize <= 0) throw new IllegalArgumentException("binSize must be positive");
+		this.dictionary = dictionary;
+		this.binSize = binSize;
+		this.density = new double[dictionary.size()][];
+		for (int i = 0; i < dictionary.size(); i++) {
+			density[i] = new double[(int)((dictionary.getSequence(i).getSequenceLength() + (long)binSize - 1) / binSize)];
+		}
+	}
+	/**
+	 * Loads a density profile from a bedGraph-style BED file in which the fourth column
+	 * contains the evidence density (such as the mean read depth) per base of the interval.
+	 * @param bed density BED. Can be gzipped.
+	 * @param dictionary reference sequence dictionary
+	 * @param binSize bin size
+	 */
+	public static EvidenceDensityProfile fromBed(File bed, SAMSequenceDictionary dictionary, int binSize) throws IOException {
+		EvidenceDensityProfile profile = new EvidenceDensityProfile(dictionary, binSize);
+		try (BufferedReader reader = IOUtil.openFileForBufferedReading(bed)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.startsWith("#") || line.startsWith("track") || line.startsWith("browser")) continue;
+				String[] fields = line.split("\t");
+				if (fields.length < 4) {
+					throw new IllegalArgumentException(String.format("%s: expected at least 4 columns in line \"%s\"", bed, line));
+				}
+				SAMSequenceRecord seq = dictionary.getSequence(fields[0]);
+				if (seq == null) {
+					log.debug("Ignoring density of unknown contig ", fields[0]);
+					continue;
+				}
+				// BED is 0-based half-open
+				int start = Integer.parseInt(fields[1]) + 1;
+				int end = Integer.parseInt(fields[2]);
+				profile.addDensity(seq.getSequenceIndex(), start, end, Double.parseDouble(fields[3]));
+			}
+		}
+		return profile;
+	}
+	/**
+	 * Adds evidence uniformly distributed across the given interval
+	 * @param referenceIndex contig
+	 * @param start 1-based start position
+	 * @param end 1-based inclusive end position
+	 * @param densityPerBase amount of evidence per base
+	 */
+	public void addDensity(int referenceIndex, int start, int end, double densityPerBase) {
+		double[] bins = density[referenceIndex];
+		start = Math.max(1, start);
+		end = Math.min(end, dictionary.getSequence(referenceIndex).getSequenceLength());
+		while (start <= end) {
+			int bin = (start - 1) / binSize;
+			int binEnd = Math.min(end, (bin + 1) * binSize);
+			bins[bin] += densityPerBase * (binEnd - start + 1);
+			start = binEnd + 1;
+		}
+	}
+	/**
+	 * Adds evidence to the given bin
+	 */
+	public void addBinDensity(int referenceIndex, int bin, double amount) {
+		density[referenceIndex][bin] += amount;
+	}
+	public SAMSequenceDictionary getSequenceDictionary() {
+		return dictionary;
+	}
+	public int getBinSize() {
+		return binSize;
+	}
+	public int getBinCount(int referenceIndex) {
+		return density[referenceIndex].length;
+	}
+	/**
+	 * Amount of evidence in the given bin. Bins are 0-based with bin i covering
+	 * the 1-based positions i * binSize + 1 to (i + 1) * binSize
+	 */
+	public double getDensity(int referenceIndex, int bin) {
+		return density[referenceIndex][bin];
+	}
+	public double getTotalDensity() {
+		double total = 0;
+		for (double[] bins : density) {
+			for (double d : bins) {
+				total += d;
+			}
+		}
+		return total;
+	}
+}
@@ -1,6 +1,7 @@
 package au.edu.wehi.idsv.picard;
 
 import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.reference.ReferenceSequenceFile;
 
 import java.util.ArrayList;
@@ -48,4 +49,95 @@ public interface ReferenceLookup extends ReferenceSequenceFile {
 		}
 		return result;
 	}
+	/**
+	 * Proportion of the target chunk cost after which chunk boundaries can be placed.
+	 */
+	static final double DENSITY_BOUNDARY_SNAP_WINDOW = 0.25;
+	/**
+	 * Gets a list of intervals containing approximately the same amount of evidence.
+	 *
+	 * The cost of each bin is the evidence it contains plus the mean evidence per base
+	 * multiplied by the bin size. This ensures regions without evidence are still chunked
+	 * and no chunk spans more than approximately twice the given interval size.
+	 *
+	 * Chunk boundaries are placed on bin boundaries. Once a chunk is within
+	 * DENSITY_BOUNDARY_SNAP_WINDOW of the target cost, the boundary with the lowest
+	 * adjacent evidence density is used. Contig ends have no adjacent evidence
+	 * so are preferred.
+	 *
+	 * @param intervalSize mean number of bases per chunk.
+	 * @param changePenalty penalty for for changing contigs, in bases.
+	 * @param density evidence density profile over this reference
+	 * @return entire reference sequence separated into chunks of approximately equal cost
+	 */
+	default List<QueryInterval[]> getIntervals(int intervalSize, int changePenalty, EvidenceDensityProfile density) {
+		if (intervalSize <= 1) throw new IllegalArgumentException("intervalSize must be at least 1");
+		if (changePenalty < 0) throw new IllegalArgumentException("changePenalty cannot be negative");
+		if (changePenalty > intervalSize) {
+			changePenalty = intervalSize;
+		}
+		List<SAMSequenceRecord> sequences = getSequenceDictionary().getSequences();
+		double totalDensity = density.getTotalDensity();
+		long totalBases = getSequenceDictionary().getReferenceLength();
+		if (totalDensity <= 0 || totalBases <= 0) {
+			return getIntervals(intervalSize, changePenalty);
+		}
+		int binSize = density.getBinSize();
+		double meanDensityPerBase = totalDensity / totalBases;
+		double contigChangeCost = changePenalty * meanDensityPerBase;
+		long chunkCount = (totalBases + intervalSize - 1) / intervalSize;
+		double targetCost = (2 * totalDensity + contigChangeCost * (sequences.size() - 1)) / chunkCount;
+		List<QueryInterval[]> result = new ArrayList<>();
+		int referenceIndex = 0;
+		int bin = 0;
+		while (referenceIndex < sequences.size()) {
+			int startReferenceIndex = referenceIndex;
+			int startBin = bin;
+			double cost = 0;
+			double bestBoundaryDensity = Double.POSITIVE_INFINITY;
+			int endReferenceIndex = -1;
+			int endBin = -1;
+			while (referenceIndex < sequences.size() && (endReferenceIndex < 0 || cost < targetCost)) {
+				int binCount = density.getBinCount(referenceIndex);
+				if (binCount > 0) {
+					int referenceLength = sequences.get(referenceIndex).getSequenceLength();
+					int binLength = Math.min(binSize, referenceLength - bin * binSize);
+					cost += density.getDensity(referenceIndex, bin) + meanDensityPerBase * binLength;
+				}
+				boolean isLastBin = bin + 1 >= binCount;
+				if (cost >= targetCost * (1 - DENSITY_BOUNDARY_SNAP_WINDOW) || referenceIndex == sequences.size() - 1 && isLastBin) {
+					double boundaryDensity = isLastBin ? 0 : density.getDensity(referenceIndex, bin) + density.getDensity(referenceIndex, bin + 1);
+					if (boundaryDensity <= bestBoundaryDensity) {
+						bestBoundaryDensity = boundaryDensity;
+						endReferenceIndex = referenceIndex;
+						endBin = bin;
+					}
+				}
+				if (isLastBin) {
+					referenceIndex++;
+					bin = 0;
+					cost += contigChangeCost;
+				} else {
+					bin++;
+				}
+			}
+			List<QueryInterval> currentIntervals = new ArrayList<>();
+			for (int i = startReferenceIndex; i <= endReferenceIndex; i++) {
+				int referenceLength = sequences.get(i).getSequenceLength();
+				int start = i == startReferenceIndex ? startBin * binSize + 1 : 1;
+				int end = i == endReferenceIndex ? (int)Math.min((long)(endBin + 1) * binSize, referenceLength) : referenceLength;
+				currentIntervals.add(new QueryInterval(i, start, end));
+			}
+			result.add(currentIntervals.toArray(new QueryInterval[0]));
+			// resume from the chunk boundary
+			if (endBin + 1 >= density.getBinCount(endReferenceIndex)) {
+				referenceIndex = endReferenceIndex + 1;
+				bin = 0;
+			} else {
+				referenceIndex = endReferenceIndex;
+				bin = endBin + 1;
+			}
+		}
+		return result;
+	}
 }
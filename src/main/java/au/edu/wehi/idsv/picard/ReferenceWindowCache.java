@@ -0,0 +1,130 @@
+package au.edu.wehi.idsv.picard;
+
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.ReferenceSequence;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reference lookup that serves requests from a set of reference windows loaded up front.
+ *
+ * Overlapping and nearby windows are merged so each region of the reference is fetched
+ * from the underlying lookup only once. Requests not contained within a cached window
+ * are passed through to the underlying lookup.
+ *
+ * Instances are immutable after construction and are thread-safe if the underlying
+ * lookup is thread-safe.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class ReferenceWindowCache implements ReferenceLookup {
+	private final ReferenceLookup underlying;
+	/**
+	 * Start position of each cached window, by reference index
+	 */
+	private final int[][] windowStart;
+	private final byte[][][] windowBases;
+	/**
+	 * @param underlying reference lookup to load windows from
+	 * @param windows reference windows to cache
+	 * @param mergeDistance windows separated by at most this many bases are loaded as a single window
+	 */
+	public ReferenceWindowCache(ReferenceLookup underlying, List<QueryInterval> windows, int mergeDistance) {
+		this.underlying = underlying;
+		SAMSequenceDictionary dict = underlying.getSequenceDictionary();
+		this.windowStart = new int[dict.size()][];
+		this.windowBases = new byte[dict.size()][][];
+		List<QueryInterval> sorted = new ArrayList<>(windows);
+		sorted.sort(Comparator.comparingInt((QueryInterval qi) -> qi.referenceIndex).thenComparingInt(qi -> qi.start));
+		int i = 0;
+		while (i < sorted.size()) {
+			int referenceIndex = sorted.get(i).referenceIndex;
+			SAMSequenceRecord seq = dict.getSequence(referenceIndex);
+			List<Integer> starts = new ArrayList<>();
+			List<byte[]> bases = new ArrayList<>();
+			while (i < sorted.size() && sorted.get(i).referenceIndex == referenceIndex) {
+				int start = Math.max(1, sorted.get(i).start);
+				int end = sorted.get(i).end;
+				i++;
+				while (i < sorted.size() && sorted.get(i).referenceIndex == referenceIndex && sorted.get(i).start <= end + mergeDistance) {
+					end = Math.max(end, sorted.get(i).end);
+					i++;
+				}
+				end = Math.min(end, seq.getSequenceLength());
+				if (start <= end) {
+					starts.add(start);
+					bases.add(underlying.getSubsequenceAt(seq.getSequenceName(), start, end).getBases());
+				}
+			}
+			windowStart[referenceIndex] = starts.stream().mapToInt(x -> x).toArray();
+			windowBases[referenceIndex] = bases.toArray(new byte[0][]);
+		}
+	}
+	/**
+	 * Gets the cached window containing the given interval
+	 * @return window index, or -1 if the interval is not fully contained in a cached window
+	 */
+	private int findWindow(int referenceIndex, long start, long stop) {
+		if (referenceIndex < 0 || windowStart[referenceIndex] == null) return -1;
+		int index = Arrays.binarySearch(windowStart[referenceIndex], (int)Math.min(start, Integer.MAX_VALUE));
+		if (index < 0) {
+			index = -index - 2;
+		}
+		if (index < 0) return -1;
+		long windowEnd = windowStart[referenceIndex][index] + windowBases[referenceIndex][index].length - 1;
+		return stop <= windowEnd ? index : -1;
+	}
+	@Override
+	public ReferenceSequence getSubsequenceAt(String contig, long start, long stop) {
+		SAMSequenceRecord seq = getSequenceDictionary().getSequence(contig);
+		int referenceIndex = seq == null ? -1 : seq.getSequenceIndex();
+		int window = findWindow(referenceIndex, start, stop);
+		if (window < 0) {
+			return underlying.getSubsequenceAt(contig, start, stop);
+		}
+		int offset = (int)(start - windowStart[referenceIndex][window]);
+		byte[] bases = Arrays.copyOfRange(windowBases[referenceIndex][window], offset, offset + (int)(stop - start + 1));
+		return new ReferenceSequence(contig, referenceIndex, bases);
+	}
+	@Override
+	public byte getBase(int referenceIndex, int position) {
+		int window = findWindow(referenceIndex, position, position);
+		if (window < 0) {
+			return underlying.getBase(referenceIndex, position);
+		}
+		return windowBases[referenceIndex][window][position - windowStart[referenceIndex][window]];
+	}
+	@Override
+	public SAMSequenceDictionary getSequenceDictionary() {
+		return underlying.getSequenceDictionary();
+	}
+	@Override
+	public ReferenceSequence nextSequence() {
+		return underlying.nextSequence();
+	}
+	@Override
+	public void reset() {
+		underlying.reset();
+	}
+	@Override
+	public boolean isIndexed() {
+		return underlying.isIndexed();
+	}
+	@Override
+	public ReferenceSequence getSequence(String contig) {
+		return underlying.getSequence(contig);
+	}
+	/**
+	 * The underlying lookup is not owned by the cache and is not closed.
+	 */
+	@Override
+	public void close() throws IOException {
+	}
+}
@@ -0,0 +1,171 @@
+package au.edu.wehi.idsv.repeatmasker;
+
+import au.edu.wehi.idsv.util.MemoryMappedIndex;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Compact RepeatMasker interval index.
+ *
+ * Features are stored in columnar arrays of start, end, repeat type, repeat class and strand
+ * sorted by contig then start position. Repeat types and classes are stored as indexes into
+ * string dictionaries. Features are identified by their record index so querying the index
+ * does not create any per-feature objects.
+ *
+ * The index can be memory-mapped from a file written by {@link RepeatMaskerIndexWriter}
+ * or built in memory directly from a RepeatMasker BED file.
+ *
+ * Instances are thread-safe.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class RepeatMaskerIndex implements MemoryMappedIndex {
+    static final int MAGIC = 0x47524D49; // "GRMI"
+    static final int VERSION = 1;
+    static final int NO_REPEAT_CLASS = -1;
+    private final ByteBuffer buffer;
+    private final Map<String, Integer> contigBlock = new HashMap<>();
+    private final int[] blockOffset;
+    private final int[] blockSize;
+    private final int[] blockMaxWidth;
+    private final String[] repeatTypes;
+    private final String[] repeatClasses;
+    private final int recordCount;
+    private final int startOffset;
+    private final int endOffset;
+    private final int typeOffset;
+    private final int classOffset;
+    private final int strandOffset;
+    /**
+     * Memory-maps the given index file
+     */
+    public RepeatMaskerIndex(File file) throws IOException {
+        this(MemoryMappedIndex.map(file), file.getPath());
+    }
+    /**
+     * @param buffer serialised index
+     * @param source description of the index source used in error messages
+     */
+    RepeatMaskerIndex(ByteBuffer buffer, String source) throws IOException {
+        this.buffer = buffer;
+        ByteBuffer bb = buffer.duplicate();
+        if (bb.getInt() != MAGIC) {
+            throw new IOException(String.format("%s is not a GRIDSS RepeatMasker index", source));
+        }
+        int version = bb.getInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported RepeatMasker index version %d in %s", version, source));
+        }
+        String[] contigs = readStrings(bb);
+        blockOffset = new int[contigs.length];
+        blockSize = new int[contigs.length];
+        blockMaxWidth = new int[contigs.length];
+        for (int i = 0; i < contigs.length; i++) {
+            contigBlock.put(contigs[i], i);
+            blockOffset[i] = bb.getInt();
+            blockSize[i] = bb.getInt();
+            blockMaxWidth[i] = bb.getInt();
+        }
+        repeatTypes = readStrings(bb);
+        repeatClasses = readStrings(bb);
+        recordCount = bb.getInt();
+        startOffset = bb.position();
+        endOffset = startOffset + recordCount * Integer.BYTES;
+        typeOffset = endOffset + recordCount * Integer.BYTES;
+        classOffset = typeOffset + recordCount * Integer.BYTES;
+        strandOffset = classOffset + recordCount * Integer.BYTES;
+        if (strandOffset + recordCount != buffer.limit()) {
+            throw new IOException(String.format("%s is truncated or corrupt", source));
+        }
+    }
+    private static String[] readStrings(ByteBuffer bb) {
+        String[] strings = new String[bb.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] b = new byte[bb.getInt()];
+            bb.get(b);
+            strings[i] = new String(b, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+    /**
+     * Determines whether the given file is a RepeatMasker index
+     */
+    public static boolean isIndex(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= Integer.BYTES && in.readInt() == MAGIC;
+        }
+    }
+    /**
+     * Loads the given RepeatMasker index or bedops RepeatMasker BED file
+     */
+    public static RepeatMaskerIndex open(File file) throws IOException {
+        if (isIndex(file)) {
+            return new RepeatMaskerIndex(file);
+        }
+        RepeatMaskerIndexWriter writer = new RepeatMaskerIndexWriter();
+        writer.addBed(file);
+        return writer.toIndex();
+    }
+    public Collection<String> getContigs() {
+        return contigBlock.keySet();
+    }
+    public int size() {
+        return recordCount;
+    }
+    /**
+     * Calls the given consumer with the record index of every feature overlapping the given closed interval.
+     * Features are visited in order of start then end position.
+     */
+    public void forEachOverlap(String contig, int start, int end, IntConsumer consumer) {
+        Integer block = contigBlock.get(contig);
+        if (block == null) return;
+        int blockEnd = blockOffset[block] + blockSize[block];
+        for (int i = lowerBound(blockOffset[block], blockEnd, start - blockMaxWidth[block]); i < blockEnd && getStart(i) <= end; i++) {
+            if (getEnd(i) >= start) {
+                consumer.accept(i);
+            }
+        }
+    }
+    /**
+     * Finds the first record in the given range whose start position is at least the given position
+     */
+    private int lowerBound(int from, int to, int position) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getStart(mid) < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    public int getStart(int record) {
+        return buffer.getInt(startOffset + record * Integer.BYTES);
+    }
+    public int getEnd(int record) {
+        return buffer.getInt(endOffset + record * Integer.BYTES);
+    }
+    public String getRepeatType(int record) {
+        return repeatTypes[buffer.getInt(typeOffset + record * Integer.BYTES)];
+    }
+    /**
+     * @return repeat class, or null if the feature has no repeat class
+     */
+    public String getRepeatClass(int record) {
+        int index = buffer.getInt(classOffset + record * Integer.BYTES);
+        return index == NO_REPEAT_CLASS ? null : repeatClasses[index];
+    }
+    public boolean isNegativeStrand(int record) {
+        return buffer.get(strandOffset + record) != 0;
+    }
+}
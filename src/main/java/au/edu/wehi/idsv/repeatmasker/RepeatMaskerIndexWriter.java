@@ -0,0 +1,141 @@
+package au.edu.wehi.idsv.repeatmasker;
+
+import htsjdk.tribble.AbstractFeatureReader;
+import htsjdk.tribble.annotation.Strand;
+import htsjdk.tribble.bed.BEDFeature;
+import htsjdk.tribble.readers.LineIterator;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes RepeatMasker annotations in the binary format read by {@link RepeatMaskerIndex}.
+ *
+ * Features are buffered in primitive arrays and sorted when written. Building the
+ * index thus requires the annotations to fit in memory but querying the index does not.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class RepeatMaskerIndexWriter {
+    private final Object2IntLinkedOpenHashMap<String> contigs = new Object2IntLinkedOpenHashMap<>();
+    private final Object2IntLinkedOpenHashMap<String> repeatTypes = new Object2IntLinkedOpenHashMap<>();
+    private final Object2IntLinkedOpenHashMap<String> repeatClasses = new Object2IntLinkedOpenHashMap<>();
+    private final IntArrayList contig = new IntArrayList();
+    private final IntArrayList start = new IntArrayList();
+    private final IntArrayList end = new IntArrayList();
+    private final IntArrayList repeatType = new IntArrayList();
+    private final IntArrayList repeatClass = new IntArrayList();
+    private final ByteArrayList negativeStrand = new ByteArrayList();
+    private static int lookup(Object2IntLinkedOpenHashMap<String> dictionary, String s) {
+        int index = dictionary.getOrDefault(s, -1);
+        if (index == -1) {
+            index = dictionary.size();
+            dictionary.put(s, index);
+        }
+        return index;
+    }
+    public void add(String contig, int start, int end, String repeatType, String repeatClass, boolean isNegativeStrand) {
+        this.contig.add(lookup(contigs, contig));
+        this.start.add(start);
+        this.end.add(end);
+        this.repeatType.add(lookup(repeatTypes, repeatType == null ? "" : repeatType));
+        this.repeatClass.add(repeatClass == null ? RepeatMaskerIndex.NO_REPEAT_CLASS : lookup(repeatClasses, repeatClass));
+        this.negativeStrand.add((byte)(isNegativeStrand ? 1 : 0));
+    }
+    public void add(RepeatMaskerFeature feat) {
+        add(feat.getContig(), feat.getStart(), feat.getEnd(), feat.getRepeatType(), feat.getRepeatClass(), feat.getStrand() == Strand.NEGATIVE);
+    }
+    /**
+     * Adds the features in the given bedops RepeatMasker BED file
+     */
+    public void addBed(File repeatMaskerBed) throws IOException {
+        try (AbstractFeatureReader<BEDFeature, LineIterator> reader = AbstractFeatureReader.getFeatureReader(repeatMaskerBed.getPath(), new RepeatMaskerBEDCodec(), false)) {
+            for (BEDFeature feat : reader.iterator()) {
+                add((RepeatMaskerFeature)feat);
+            }
+        }
+    }
+    public void write(File output) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            write(out);
+        }
+    }
+    /**
+     * Creates an in-memory index of the features added
+     */
+    public RepeatMaskerIndex toIndex() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out);
+        }
+        return new RepeatMaskerIndex(ByteBuffer.wrap(bytes.toByteArray()), "in-memory RepeatMasker index");
+    }
+    private void write(DataOutputStream out) throws IOException {
+        int[] order = sortedOrder();
+        out.writeInt(RepeatMaskerIndex.MAGIC);
+        out.writeInt(RepeatMaskerIndex.VERSION);
+        out.writeInt(contigs.size());
+        int blockStart = 0;
+        for (String name : contigs.keySet()) {
+            int contigIndex = contigs.getInt(name);
+            int blockEnd = blockStart;
+            int maxWidth = 0;
+            while (blockEnd < order.length && contig.getInt(order[blockEnd]) == contigIndex) {
+                maxWidth = Math.max(maxWidth, end.getInt(order[blockEnd]) - start.getInt(order[blockEnd]));
+                blockEnd++;
+            }
+            writeString(out, name);
+            out.writeInt(blockStart);
+            out.writeInt(blockEnd - blockStart);
+            out.writeInt(maxWidth);
+            blockStart = blockEnd;
+        }
+        writeStrings(out, repeatTypes);
+        writeStrings(out, repeatClasses);
+        out.writeInt(order.length);
+        for (int i : order) out.writeInt(start.getInt(i));
+        for (int i : order) out.writeInt(end.getInt(i));
+        for (int i : order) out.writeInt(repeatType.getInt(i));
+        for (int i : order) out.writeInt(repeatClass.getInt(i));
+        for (int i : order) out.writeByte(negativeStrand.getByte(i));
+    }
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+    private static void writeStrings(DataOutputStream out, Object2IntLinkedOpenHashMap<String> dictionary) throws IOException {
+        out.writeInt(dictionary.size());
+        // dictionary iteration order is insertion order which matches the assigned indexes
+        for (String s : dictionary.keySet()) {
+            writeString(out, s);
+        }
+    }
+    /**
+     * Record order sorted by contig, start, then end.
+     * Features with identical intervals retain their input order.
+     */
+    private int[] sortedOrder() {
+        int[] order = new int[start.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        it.unimi.dsi.fastutil.Arrays.quickSort(0, order.length, (a, b) -> {
+            int cmp = Integer.compare(contig.getInt(order[a]), contig.getInt(order[b]));
+            if (cmp == 0) cmp = Integer.compare(start.getInt(order[a]), start.getInt(order[b]));
+            if (cmp == 0) cmp = Integer.compare(end.getInt(order[a]), end.getInt(order[b]));
+            if (cmp == 0) cmp = Integer.compare(order[a], order[b]);
+            return cmp;
+        }, (a, b) -> {
+            int tmp = order[a];
+            order[a] = order[b];
+            order[b] = tmp;
+        });
+        return order;
+    }
+}
@@ -3,12 +3,14 @@ package au.edu.wehi.idsv.util;
 import com.google.common.collect.PeekingIterator;
 import htsjdk.samtools.util.Log;
 
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -23,16 +25,18 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @author Daniel Cameron
  *
  */
-public class DuplicatingIterable<T> implements Iterable<T> {
+public class DuplicatingIterable<T> implements Iterable<T>, Closeable {
 	private static final Log log = Log.getInstance(DuplicatingIterable.class);
 	private static final Object endofstream = new Object();
 	private static final AtomicInteger threadCount = new AtomicInteger(0);
+	private static final long CLOSE_POLL_INTERVAL_MS = 100;
 	private final Iterator<T> it;
 	private final List<DuplicatingIterableIterator> iterators = new ArrayList<DuplicatingIterableIterator>();
 	private final List<BlockingQueue<Object>> queues = new ArrayList<BlockingQueue<Object>>();
 	private int iteratorsRequested = 0;
-	private FeedingThread thread;
+	private final Feeder feeder = new Feeder();
 	private volatile Exception error = null;
+	private volatile boolean closed = false;
 	
 	/**
 	 * Duplicates an iterator
@@ -42,6 +46,18 @@ public class DuplicatingIterable<T> implements Iterable<T> {
 	 * for other iterators to catch up
 	 */
 	public DuplicatingIterable(int nIterators, Iterator<T> it,  int maxIteratorDifference) {
+		this(nIterators, it, maxIteratorDifference, true);
+	}
+	/**
+	 * Duplicates an iterator
+	 * @param nIterators number of consuming iterators
+	 * @param it underlying iterator
+	 * @param maxIteratorDifference maximum number of records an iterator can traverse before blocking to wait
+	 * for other iterators to catch up
+	 * @param startFeedingThread start a dedicated background thread to feed the iterators.
+	 * If false, the caller is responsible for running {@link #getFeeder()} concurrently with the consumers.
+	 */
+	public DuplicatingIterable(int nIterators, Iterator<T> it,  int maxIteratorDifference, boolean startFeedingThread) {
 		if (it == null) throw new IllegalArgumentException();
 		if (maxIteratorDifference <= 0) throw new IllegalArgumentException("buffer size must be greater than zero.");
 		this.it = it;
@@ -49,9 +65,11 @@ public class DuplicatingIterable<T> implements Iterable<T> {
 			queues.add(new ArrayBlockingQueue<Object>(maxIteratorDifference));
 			iterators.add(new DuplicatingIterableIterator(queues.get(i)));
 		}
-		this.thread = new FeedingThread();
-		this.thread.setName(String.format("DuplicatingIterable-%d", threadCount.incrementAndGet()));
-		this.thread.start();
+		if (startFeedingThread) {
+			Thread thread = new Thread(feeder);
+			thread.setName(String.format("DuplicatingIterable-%d", threadCount.incrementAndGet()));
+			thread.start();
+		}
 	}
 	/**
 	 * Creates a new iterator
@@ -61,14 +79,28 @@ public class DuplicatingIterable<T> implements Iterable<T> {
 		if (iteratorsRequested >= iterators.size()) throw new IllegalStateException(String.format("Already created %d iterators", iterators.size()));
 		return iterators.get(iteratorsRequested++);
 	}
-	private class FeedingThread extends Thread {
+	/**
+	 * Task feeding records from the underlying iterator to the duplicated iterators.
+	 */
+	public Runnable getFeeder() {
+		return feeder;
+	}
+	/**
+	 * Stops feeding records. Iterators that have not yet reached the end of the stream
+	 * will report end of stream once they have consumed their buffered records.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+	}
+	private class Feeder implements Runnable {
 		@Override
 		public void run() {
 			try {
-				while (it.hasNext()) {
+				while (!closed && it.hasNext()) {
 					T n = it.next();
 					for (BlockingQueue<Object> queue : queues) {
-						queue.put(n);
+						if (!put(queue, n)) break;
 					}
 				}
 				eos();
@@ -92,9 +124,24 @@ public class DuplicatingIterable<T> implements Iterable<T> {
 				}
 			}
 		}
+		/**
+		 * Blocks until the record has been added to the queue or this iterable is closed
+		 * @return true if the record was added 
+		 */
+		private boolean put(BlockingQueue<Object> queue, Object o) throws InterruptedException {
+			while (!queue.offer(o, CLOSE_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+				if (closed) return false;
+			}
+			return true;
+		}
 		private void eos() throws InterruptedException {
 			for (BlockingQueue<Object> queue : queues) {
-				queue.put(endofstream);
+				while (!queue.offer(endofstream, CLOSE_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+					if (closed) {
+						// consumer may no longer be reading
+						queue.clear();
+					}
+				}
 			}
 		}
 	}
@@ -0,0 +1,112 @@
+package au.edu.wehi.idsv.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import htsjdk.samtools.util.Log;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded executor shared by groups of tasks that must all run concurrently.
+ *
+ * Tasks that communicate through blocking queues deadlock if only some of them
+ * are scheduled on a bounded thread pool. Each gang of tasks is admitted
+ * only once there are sufficient threads available to run every task in the gang
+ * so the total thread count remains bounded regardless of the number of
+ * concurrent callers. Callers block until their gang is admitted.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class GangExecutor {
+	private static final Log log = Log.getInstance(GangExecutor.class);
+	private final int maxThreads;
+	private final Semaphore slots;
+	private final ThreadPoolExecutor pool;
+	private final AtomicInteger activeTasks = new AtomicInteger();
+	private final AtomicInteger peakActiveTasks = new AtomicInteger();
+	private final AtomicLong completedTasks = new AtomicLong();
+	private final AtomicLong admittedGangs = new AtomicLong();
+	/**
+	 * @param maxThreads maximum number of concurrently executing tasks
+	 * @param threadNameFormat thread name format string
+	 */
+	public GangExecutor(int maxThreads, String threadNameFormat) {
+		if (maxThreads <= 0) throw new IllegalArgumentException("maxThreads must be positive");
+		this.maxThreads = maxThreads;
+		this.slots = new Semaphore(maxThreads, true);
+		// Admission control guarantees a thread is always available for each admitted task
+		this.pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat(threadNameFormat).build());
+		this.pool.allowCoreThreadTimeOut(true);
+	}
+	/**
+	 * Blocks until sufficient threads are available then schedules all the given tasks.
+	 * A caller must not submit a gang whilst a previously submitted gang of its own is still running
+	 * if the combined size of the gangs could exceed the maximum thread count.
+	 * @param tasks tasks to run concurrently
+	 */
+	public void execute(List<? extends Runnable> tasks) throws InterruptedException {
+		if (tasks.size() > maxThreads) {
+			throw new IllegalArgumentException(String.format("Gang of %d tasks exceeds thread limit of %d", tasks.size(), maxThreads));
+		}
+		if (tasks.isEmpty()) return;
+		if (!slots.tryAcquire(tasks.size())) {
+			if (log.isEnabled(Log.LogLevel.DEBUG)) {
+				log.debug(String.format("Waiting for %d of %d threads (%d tasks active)", tasks.size(), maxThreads, activeTasks.get()));
+			}
+			slots.acquire(tasks.size());
+		}
+		admittedGangs.incrementAndGet();
+		for (Runnable task : tasks) {
+			pool.execute(() -> {
+				peakActiveTasks.accumulateAndGet(activeTasks.incrementAndGet(), Math::max);
+				try {
+					task.run();
+				} finally {
+					activeTasks.decrementAndGet();
+					completedTasks.incrementAndGet();
+					slots.release();
+				}
+			});
+		}
+	}
+	public int getMaximumThreads() {
+		return maxThreads;
+	}
+	/**
+	 * Number of tasks currently executing
+	 */
+	public int getActiveTasks() {
+		return activeTasks.get();
+	}
+	/**
+	 * Maximum number of tasks that have executed concurrently
+	 */
+	public int getPeakActiveTasks() {
+		return peakActiveTasks.get();
+	}
+	public long getCompletedTasks() {
+		return completedTasks.get();
+	}
+	public long getAdmittedGangs() {
+		return admittedGangs.get();
+	}
+	/**
+	 * Number of callers waiting for their gang to be admitted
+	 */
+	public int getWaitingGangs() {
+		return slots.getQueueLength();
+	}
+	/**
+	 * Number of threads currently in the underlying thread pool
+	 */
+	public int getPoolSize() {
+		return pool.getPoolSize();
+	}
+}
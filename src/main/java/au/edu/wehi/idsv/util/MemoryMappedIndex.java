@@ -0,0 +1,39 @@
+package au.edu.wehi.idsv.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only index backed by a single memory-mapped file.
+ *
+ * The underlying file is closed as soon as it has been mapped.
+ * Memory-mapped buffers are released when the index is garbage collected
+ * so closing the index is a no-op.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public interface MemoryMappedIndex extends Closeable {
+	/**
+	 * Memory-maps the entirety of the given file
+	 * @param file file to map. Files larger than 2GB are not supported.
+	 * @return read-only buffer of the file content
+	 */
+	static ByteBuffer map(File file) throws IOException {
+		// the mapping remains valid after the file is closed
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(String.format("%s too large to memory map", file));
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+	@Override
+	default void close() throws IOException {
+	}
+}
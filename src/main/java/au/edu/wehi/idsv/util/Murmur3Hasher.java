@@ -0,0 +1,177 @@
+package au.edu.wehi.idsv.util;
+
+/**
+ * Reusable streaming 128-bit murmur3 (x64 variant, seed 0) hasher.
+ *
+ * Produces the same hash as Guava's Hashing.murmur3_128() without allocating
+ * intermediate strings or buffers. The hash of any prefix of the stream can
+ * be obtained without disturbing the hashing of the remainder of the stream.
+ *
+ * This class is not thread-safe.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class Murmur3Hasher {
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+	private final byte[] buffer = new byte[16];
+	private int bufferLength;
+	private long h1;
+	private long h2;
+	private long length;
+	/**
+	 * First 64 bits of the most recently calculated hash
+	 */
+	private long hash1;
+	/**
+	 * Last 64 bits of the most recently calculated hash
+	 */
+	private long hash2;
+	public Murmur3Hasher() {
+		reset();
+	}
+	public Murmur3Hasher reset() {
+		bufferLength = 0;
+		h1 = 0;
+		h2 = 0;
+		length = 0;
+		return this;
+	}
+	public Murmur3Hasher putByte(byte b) {
+		buffer[bufferLength++] = b;
+		if (bufferLength == 16) {
+			bmix64(getLongLittleEndian(0), getLongLittleEndian(8));
+			length += 16;
+			bufferLength = 0;
+		}
+		return this;
+	}
+	/**
+	 * Hashes the given ASCII character
+	 */
+	public Murmur3Hasher putAscii(char c) {
+		return putByte(c < 128 ? (byte)c : (byte)'?');
+	}
+	/**
+	 * Hashes the US-ASCII encoding of the given string
+	 */
+	public Murmur3Hasher putAscii(CharSequence s) {
+		for (int i = 0; i < s.length(); i++) {
+			putAscii(s.charAt(i));
+		}
+		return this;
+	}
+	/**
+	 * Hashes the decimal string representation of the given value
+	 */
+	public Murmur3Hasher putDecimal(int value) {
+		if (value < 0) {
+			putByte((byte)'-');
+			if (value == Integer.MIN_VALUE) {
+				return putAscii(Integer.toString(value).substring(1));
+			}
+			value = -value;
+		}
+		int divisor = 1;
+		while (value / divisor >= 10) {
+			divisor *= 10;
+		}
+		while (divisor > 0) {
+			putByte((byte)('0' + (value / divisor) % 10));
+			divisor /= 10;
+		}
+		return this;
+	}
+	/**
+	 * Calculates the hash of all bytes hashed so far. Further bytes can still be
+	 * added to calculate the hash of a longer stream.
+	 * @return this
+	 */
+	public Murmur3Hasher hash() {
+		long f1 = h1;
+		long f2 = h2;
+		long len = length;
+		if (bufferLength > 0) {
+			long k1 = 0;
+			long k2 = 0;
+			for (int i = Math.min(bufferLength, 8) - 1; i >= 0; i--) {
+				k1 = (k1 << 8) | (buffer[i] & 0xff);
+			}
+			for (int i = bufferLength - 1; i >= 8; i--) {
+				k2 = (k2 << 8) | (buffer[i] & 0xff);
+			}
+			len += bufferLength;
+			f1 ^= mixK1(k1);
+			f2 ^= mixK2(k2);
+		}
+		f1 ^= len;
+		f2 ^= len;
+		f1 += f2;
+		f2 += f1;
+		f1 = fmix64(f1);
+		f2 = fmix64(f2);
+		f1 += f2;
+		f2 += f1;
+		hash1 = f1;
+		hash2 = f2;
+		return this;
+	}
+	/**
+	 * First 64 bits of the most recently calculated hash, as a little-endian long.
+	 */
+	public long getHash1() {
+		return hash1;
+	}
+	/**
+	 * Last 64 bits of the most recently calculated hash, as a little-endian long.
+	 */
+	public long getHash2() {
+		return hash2;
+	}
+	/**
+	 * Gets the given byte of the most recently calculated hash
+	 */
+	public int getHashByte(int offset) {
+		if (offset < 8) return (int)(hash1 >>> (8 * offset)) & 0xff;
+		if (offset < 16) return (int)(hash2 >>> (8 * (offset - 8))) & 0xff;
+		return 0;
+	}
+	private long getLongLittleEndian(int offset) {
+		long v = 0;
+		for (int i = offset + 7; i >= offset; i--) {
+			v = (v << 8) | (buffer[i] & 0xff);
+		}
+		return v;
+	}
+	private void bmix64(long k1, long k2) {
+		h1 ^= mixK1(k1);
+		h1 = Long.rotateLeft(h1, 27);
+		h1 += h2;
+		h1 = h1 * 5 + 0x52dce729;
+		h2 ^= mixK2(k2);
+		h2 = Long.rotateLeft(h2, 31);
+		h2 += h1;
+		h2 = h2 * 5 + 0x38495ab5;
+	}
+	private static long fmix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+	private static long mixK1(long k1) {
+		k1 *= C1;
+		k1 = Long.rotateLeft(k1, 31);
+		k1 *= C2;
+		return k1;
+	}
+	private static long mixK2(long k2) {
+		k2 *= C2;
+		k2 = Long.rotateLeft(k2, 33);
+		k2 *= C1;
+		return k2;
+	}
+}
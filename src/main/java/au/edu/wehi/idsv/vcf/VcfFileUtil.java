@@ -6,8 +6,11 @@ import au.edu.wehi.idsv.IntermediateFileUtil;
 import au.edu.wehi.idsv.ProcessingContext;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.SortingCollection;
 import htsjdk.variant.variantcontext.VariantContext;
@@ -20,9 +23,14 @@ import htsjdk.variant.vcf.VCFRecordCodec;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class VcfFileUtil {
 	private static final Log log = Log.getInstance(VcfFileUtil.class);
@@ -60,18 +68,26 @@ public class VcfFileUtil {
 		private final File output;
 		private final Comparator<VariantContext> sortComparator;
 		private final boolean indexed;
+		private final int maxRecordsInRam;
 		public SortCallable(ProcessingContext processContext, File input, File output) {
 			this(processContext, input, output, IdsvVariantContext.VariantContextByLocationStart(processContext.getDictionary()));
 		}
 		public SortCallable(ProcessingContext processContext, File input, File output, Comparator<VariantContext> sortComparator) {
-			this(processContext, input, output, sortComparator, false);
+			this(processContext, input, output, sortComparator, false, processContext.getFileSystemContext().getMaxBufferedRecordsPerFile());
 		}
-		private SortCallable(ProcessingContext processContext, File input, File output, Comparator<VariantContext> sortComparator, boolean writeIndex) {
+		/**
+		 * @param maxRecordsInRam number of records to buffer in memory before spilling to disk
+		 */
+		public SortCallable(ProcessingContext processContext, File input, File output, Comparator<VariantContext> sortComparator, int maxRecordsInRam) {
+			this(processContext, input, output, sortComparator, false, maxRecordsInRam);
+		}
+		private SortCallable(ProcessingContext processContext, File input, File output, Comparator<VariantContext> sortComparator, boolean writeIndex, int maxRecordsInRam) {
 			this.processContext = processContext;
 			this.input = input;
 			this.output = output;
 			this.sortComparator = sortComparator;
 			this.indexed = writeIndex;
+			this.maxRecordsInRam = maxRecordsInRam;
 		}
 		@Override
 		public Void call() throws IOException {
@@ -93,7 +109,7 @@ public class VcfFileUtil {
 								VariantContext.class,
 								new VCFRecordCodec(header),
 								sortComparator,
-								processContext.getFileSystemContext().getMaxBufferedRecordsPerFile(),
+								maxRecordsInRam,
 								processContext.getFileSystemContext().getTemporaryDirectory().toPath());
 						while (rit.hasNext()) {
 							collection.add(rit.next());
@@ -153,4 +169,109 @@ public class VcfFileUtil {
 			FileHelper.move(tmpout, output, true);
 		}
 	}
+	/**
+	 * Sorts each input file independently in parallel then merges the sorted files.
+	 * 
+	 * This is more efficient than a single sort of the concatenated input
+	 * when each input is mostly sorted and the inputs are in approximately
+	 * genomic order.
+	 * 
+	 * @param input input files
+	 * @param output sorted output
+	 * @param threadpool thread pool to sort on
+	 * @throws IOException
+	 */
+	public static void sortAndMerge(ProcessingContext processContext, List<File> input, File output, ExecutorService threadpool) throws IOException {
+		Comparator<VariantContext> sortComparator = IdsvVariantContext.VariantContextByLocationStart(processContext.getDictionary());
+		// Sorts run concurrently so split the in-memory record buffer between them
+		int maxRecordsInRam = Math.max(1, processContext.getFileSystemContext().getMaxBufferedRecordsPerFile() / Math.max(1, processContext.getWorkerThreadCount()));
+		List<File> sorted = new ArrayList<>(input.size());
+		List<Future<Void>> tasks = new ArrayList<>(input.size());
+		for (File f : input) {
+			File sortedFile = FileSystemContext.getWorkingFileFor(f, "gridss.tmp.sorted.");
+			sorted.add(sortedFile);
+			tasks.add(threadpool.submit(new SortCallable(processContext, f, sortedFile, sortComparator, maxRecordsInRam)));
+		}
+		try {
+			Exception firstException = null;
+			for (Future<Void> task : tasks) {
+				try {
+					task.get();
+				} catch (InterruptedException e) {
+					for (Future<Void> t : tasks) {
+						t.cancel(true);
+					}
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				} catch (ExecutionException e) {
+					if (firstException == null) {
+						firstException = e;
+					}
+				}
+			}
+			if (firstException != null) {
+				throw new RuntimeException(firstException);
+			}
+			merge(processContext, sorted, output, sortComparator);
+		} finally {
+			for (File f : sorted) {
+				if (f.exists()) {
+					FileHelper.delete(f, true);
+				}
+			}
+		}
+	}
+	/**
+	 * Merges sorted VCFs into a single sorted VCF.
+	 * @param input sorted input files.
+	 * @param output output file
+	 * @param sortComparator sort order of the input files.
+	 * Records that compare equal are written in input file order.
+	 * @throws IOException
+	 */
+	public static void merge(ProcessingContext processContext, List<File> input, File output, Comparator<VariantContext> sortComparator) throws IOException {
+		File tmpout = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(output, "gridss.tmp.merging.") : output;
+		List<VCFFileReader> readers = new ArrayList<>(input.size());
+		List<CloseableIterator<VariantContext>> iterators = new ArrayList<>(input.size());
+		try {
+			List<PeekingIterator<VariantContext>> its = new ArrayList<>(input.size());
+			for (File f : input) {
+				VCFFileReader reader = new VCFFileReader(f, false);
+				readers.add(reader);
+				CloseableIterator<VariantContext> it = reader.iterator();
+				iterators.add(it);
+				its.add(Iterators.peekingIterator(it));
+			}
+			PriorityQueue<Integer> queue = new PriorityQueue<>(Math.max(1, input.size()), Comparator
+					.<Integer, VariantContext>comparing(i -> its.get(i).peek(), sortComparator)
+					.thenComparingInt(i -> i));
+			for (int i = 0; i < its.size(); i++) {
+				if (its.get(i).hasNext()) {
+					queue.add(i);
+				}
+			}
+			try (VariantContextWriter writer = processContext.getVariantContextWriter(tmpout, false)) {
+				while (!queue.isEmpty()) {
+					int i = queue.poll();
+					writer.add(its.get(i).next());
+					if (its.get(i).hasNext()) {
+						queue.add(i);
+					}
+				}
+			}
+			if (tmpout != output) {
+				FileHelper.move(tmpout, output, true);
+			}
+		} finally {
+			for (CloseableIterator<VariantContext> it : iterators) {
+				CloserUtil.close(it);
+			}
+			for (VCFFileReader reader : readers) {
+				CloserUtil.close(reader);
+			}
+			if (tmpout != output && tmpout.exists()) {
+				FileHelper.delete(tmpout, true);
+			}
+		}
+	}
 }
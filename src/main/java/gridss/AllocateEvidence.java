@@ -9,9 +9,11 @@ import au.edu.wehi.idsv.util.AutoClosingIterator;
 import au.edu.wehi.idsv.util.AutoClosingMergedIterator;
 import au.edu.wehi.idsv.validation.OrderAssertingIterator;
 import au.edu.wehi.idsv.validation.PairedEvidenceTracker;
+import au.edu.wehi.idsv.vcf.VcfSvConstants;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import gridss.cmdline.VcfTransformCommandLineProgram;
+import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordCoordinateComparator;
 import htsjdk.samtools.SAMRecordIterator;
@@ -50,11 +52,23 @@ public class AllocateEvidence extends VcfTransformCommandLineProgram {
 		GREEDY,
 	}
 	private CalledBreakpointPositionLookup lookup = new CalledBreakpointPositionLookup();
+	private ChunkedBreakpointPositionLookup chunkLookup = null;
+	private int chunkNumber = -1;
 	public CloseableIterator<DirectedEvidence> getReadIterator() {
+		return getReadIterator(null);
+	}
+	/**
+	 * @param intervals intervals to return evidence for. If null, all evidence is returned.
+	 */
+	public CloseableIterator<DirectedEvidence> getReadIterator(QueryInterval[] intervals) {
 		CloseableIterator<DirectedEvidence> evidenceIt;
 		List<SAMEvidenceSource> sources = getSamEvidenceSources();
 		sources.stream().forEach(ses -> ses.assertPreprocessingComplete());
-		evidenceIt = SAMEvidenceSource.mergedIterator(ImmutableList.<SAMEvidenceSource>builder().addAll(sources).build(), true, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition);
+		if (intervals == null) {
+			evidenceIt = SAMEvidenceSource.mergedIterator(ImmutableList.<SAMEvidenceSource>builder().addAll(sources).build(), true, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition);
+		} else {
+			evidenceIt = SAMEvidenceSource.mergedIterator(ImmutableList.<SAMEvidenceSource>builder().addAll(sources).build(), intervals, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition);
+		}
 		if (Defaults.SANITY_CHECK_ITERATORS) {
 			evidenceIt = new AutoClosingIterator<>(
 					new PairedEvidenceTracker<>("Reads", new OrderAssertingIterator<>(evidenceIt, DirectedEvidenceOrder.ByNatural), false),
@@ -63,8 +77,15 @@ public class AllocateEvidence extends VcfTransformCommandLineProgram {
 		return evidenceIt;
 	}
 	public CloseableIterator<DirectedEvidence> getAssemblyIterator() {
+		return getAssemblyIterator(null);
+	}
+	/**
+	 * @param intervals intervals to return assemblies for. If null, all assemblies are returned.
+	 */
+	public CloseableIterator<DirectedEvidence> getAssemblyIterator(QueryInterval[] intervals) {
 		CloseableIterator<DirectedEvidence> evidenceIt;
-		evidenceIt = new AggregateEvidenceSource(getContext(), getAssemblySource(), null, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition).iterator();
+		AggregateEvidenceSource aes = new AggregateEvidenceSource(getContext(), getAssemblySource(), null, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition);
+		evidenceIt = intervals == null ? aes.iterator() : aes.iterator(intervals);
 		if (Defaults.SANITY_CHECK_ITERATORS) {
 			evidenceIt = new AutoClosingIterator<>(
 					new PairedEvidenceTracker<>("Assemblies", new OrderAssertingIterator<>(evidenceIt, DirectedEvidenceOrder.ByNatural), false),
@@ -74,17 +95,42 @@ public class AllocateEvidence extends VcfTransformCommandLineProgram {
 	}
 	@Override
 	public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, ExecutorService threadpool) {
+		return allocate(calls, null);
+	}
+	/**
+	 * Allocates evidence to the calls of a single chunk.
+	 * 
+	 * Calls and evidence within the padding around the chunk are considered during allocation
+	 * but only the calls in the given chunk are returned. Called breakpoint positions are exchanged
+	 * with the chunks containing the partner breakend through the given lookup.
+	 * 
+	 * @param calls calls overlapping the padded chunk intervals
+	 * @param paddedIntervals chunk intervals, padded by at least the maximum evidence window size
+	 * @param chunkNumber chunk to return calls for
+	 * @param chunkLookup lookup shared between all chunks
+	 */
+	public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, QueryInterval[] paddedIntervals, int chunkNumber, ChunkedBreakpointPositionLookup chunkLookup) {
+		this.chunkNumber = chunkNumber;
+		this.chunkLookup = chunkLookup;
+		return allocate(calls, paddedIntervals);
+	}
+	private CloseableIterator<VariantContextDirectedEvidence> allocate(CloseableIterator<VariantContextDirectedEvidence> calls, QueryInterval[] intervals) {
 		log.info("Allocating evidence"); 
-		CloseableIterator<DirectedEvidence> rawReads = new AsyncBufferedIterator<>(getReadIterator(), "mergedReads-allocation");
-		CloseableIterator<DirectedEvidence> reads = new AsyncBufferedIterator<>(annotateAssembly(rawReads), "annotate-associated-assembly");
-		CloseableIterator<DirectedEvidence> assemblies = new AsyncBufferedIterator<>(getAssemblyIterator(), "assembly-allocation");
+		CloseableIterator<DirectedEvidence> rawReads = new AsyncBufferedIterator<>(getReadIterator(intervals), "mergedReads-allocation");
+		CloseableIterator<DirectedEvidence> reads = new AsyncBufferedIterator<>(annotateAssembly(rawReads, intervals), "annotate-associated-assembly");
+		CloseableIterator<DirectedEvidence> assemblies = new AsyncBufferedIterator<>(getAssemblyIterator(intervals), "assembly-allocation");
 		Iterator<VariantEvidenceSupport> annotator = new SequentialEvidenceAllocator(getContext(), calls, reads, assemblies, SAMEvidenceSource.maximumWindowSize(getContext(), getSamEvidenceSources(), getAssemblySource()), true);
 		CloseableIterator<VariantEvidenceSupport> bufferedAnnotator = new AsyncBufferedIterator<>(annotator, "annotator", 2, 8);
-		Iterator<VariantContextDirectedEvidence> it = Iterators.transform(bufferedAnnotator, bp -> annotate(bp));
+		Iterator<VariantEvidenceSupport> ownedIt = bufferedAnnotator;
+		if (chunkLookup != null) {
+			// calls in the padding are only used to ensure evidence is allocated consistently with neighbouring chunks
+			ownedIt = Iterators.filter(ownedIt, ves -> chunkLookup.getChunk(ves.variant) == chunkNumber);
+		}
+		Iterator<VariantContextDirectedEvidence> it = Iterators.transform(ownedIt, bp -> annotate(bp));
 		it = Iterators.filter(it, v -> v != null);
 		return new AutoClosingIterator<>(it, calls, rawReads, reads, assemblies, bufferedAnnotator);
 	}
-	private CloseableIterator<DirectedEvidence> annotateAssembly(CloseableIterator<DirectedEvidence> it) {
+	private CloseableIterator<DirectedEvidence> annotateAssembly(CloseableIterator<DirectedEvidence> it, QueryInterval[] intervals) {
 		List<Closeable> assToClose = new ArrayList<>();
 		List<Iterator<SAMRecord>> rawAssemblies = new ArrayList<>();
 		int windowSize = 0;
@@ -103,8 +149,22 @@ public class AllocateEvidence extends VcfTransformCommandLineProgram {
 			// defensive over-eager loading
 			windowSize *= 2;
 			SamReader reader = getContext().getSamReader(assemblyFile);
-			SAMRecordIterator assit = reader.iterator();
-			rawAssemblies.add(assit);
+			SAMRecordIterator assit;
+			Iterator<SAMRecord> filteredIt;
+			if (intervals == null) {
+				assit = reader.iterator();
+				filteredIt = assit;
+			} else {
+				QueryInterval[] assemblyIntervals = QueryIntervalUtil.padIntervals(getContext().getDictionary(), intervals, windowSize);
+				if (reader.hasIndex()) {
+					assit = reader.queryOverlapping(assemblyIntervals);
+					filteredIt = assit;
+				} else {
+					assit = reader.iterator();
+					filteredIt = Iterators.filter(assit, r -> !r.getReadUnmappedFlag() && QueryIntervalUtil.overlaps(assemblyIntervals, r.getReferenceIndex(), r.getAlignmentStart(), r.getAlignmentEnd()));
+				}
+			}
+			rawAssemblies.add(filteredIt);
 			assToClose.add(assit);
 			assToClose.add(reader);
 		}
@@ -113,6 +173,24 @@ public class AllocateEvidence extends VcfTransformCommandLineProgram {
 	}
 	private VariantContextDirectedEvidence annotate(VariantEvidenceSupport ves) {
 		VariantCallingConfiguration vc = getContext().getConfig().getVariantCalling();
+		String event = null;
+		int mateChunk = -1;
+		if (chunkLookup != null && ALLOCATE_ASSEMBLIES && ves.variant instanceof VariantContextDirectedBreakpoint) {
+			event = ves.variant.getAttributeAsString(VcfSvConstants.BREAKEND_EVENT_ID_KEY, null);
+			mateChunk = chunkLookup.getMateChunk(ves.variant);
+			if (event != null && mateChunk < chunkNumber) {
+				// partner breakend has already been called by an earlier chunk
+				try {
+					CalledBreakpointPositionLookup.NominalPosition np = chunkLookup.await(event, mateChunk);
+					if (np != null) {
+						lookup.addUpper(event, np);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
+			}
+		}
 		StructuralVariationCallBuilder builder = new StructuralVariationCallBuilder(getContext(), lookup, ves.variant);
 		builder.setUpdateAssemblyInformation(ALLOCATE_ASSEMBLIES);
 		builder.setUpdateReadInformation(ALLOCATE_READS);
@@ -120,6 +198,12 @@ public class AllocateEvidence extends VcfTransformCommandLineProgram {
 			builder.addEvidence(e);
 		}
 		VariantContextDirectedEvidence be = builder.make();
+		if (event != null && mateChunk > chunkNumber) {
+			CalledBreakpointPositionLookup.NominalPosition np = lookup.removeUpper(event);
+			if (np != null) {
+				chunkLookup.publish(event, np);
+			}
+		}
 		if (ALLOCATE_READS && ALLOCATE_ASSEMBLIES) {
 			if (!vc.writeFiltered) {
 				if (be.isFiltered()) return null;
@@ -1,24 +1,30 @@
 package gridss;
 
-import au.edu.wehi.idsv.VariantContextDirectedBreakpoint;
+import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.VariantContextDirectedEvidence;
-import au.edu.wehi.idsv.alignment.BreakpointHomology;
+import au.edu.wehi.idsv.alignment.BatchedBreakpointHomology;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
 import au.edu.wehi.idsv.util.ParallelTransformIterator;
+import com.google.common.collect.Iterators;
 import gridss.cmdline.VcfTransformCommandLineProgram;
 import htsjdk.samtools.util.CloseableIterator;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 public class AnnotateInexactHomology extends VcfTransformCommandLineProgram {
 	@Override
 	public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, ExecutorService threadpool) {
-		Iterator<VariantContextDirectedEvidence> it = new ParallelTransformIterator<VariantContextDirectedEvidence, VariantContextDirectedEvidence>(
-				calls,
-				call -> (call instanceof VariantContextDirectedBreakpoint) ? BreakpointHomology.annotate(getContext(), (VariantContextDirectedBreakpoint)call) : call,
+		BatchedBreakpointHomology homology = new BatchedBreakpointHomology(getContext());
+		// batches are annotated in parallel with each batch loading its reference windows together
+		Iterator<List<VariantContextDirectedEvidence>> batches = Iterators.partition(calls, Defaults.HOMOLOGY_BATCH_SIZE);
+		Iterator<List<VariantContextDirectedEvidence>> annotated = new ParallelTransformIterator<List<VariantContextDirectedEvidence>, List<VariantContextDirectedEvidence>>(
+				batches,
+				batch -> homology.annotate(batch),
 				WORKER_THREADS + 1,
 				threadpool);
+		Iterator<VariantContextDirectedEvidence> it = Iterators.concat(Iterators.transform(annotated, List::iterator));
 		return new AutoClosingIterator<>(it, calls);
 	}
 	public static void main(String[] argv) {
@@ -59,7 +59,8 @@ public class AnnotateInsertedSequence extends ReferenceCommandLineProgram {
             "ADD_MISSING (Add alignments to records missing a BEALN field, and" +
             "SKIP (do not align).", optional = true)
     public AlignmentStatus ALIGNMENT = AlignmentStatus.REPLACE;
-    @Argument(doc = "Annotate inserted sequences with RepeatMasker annotations. Use bedops rmsk2bed to generate the bed file from the RepeatMasker .fa.out file.", optional = true)
+    @Argument(doc = "Annotate inserted sequences with RepeatMasker annotations. Use bedops rmsk2bed to generate the bed file from the RepeatMasker .fa.out file."
+            + " A RepeatMasker index generated by IndexRepeatMaskerBed can be specified instead of the bed file to reduce memory usage and load time.", optional = true)
     public File REPEAT_MASKER_BED = null;
 
     public static void main(String[] argv) {
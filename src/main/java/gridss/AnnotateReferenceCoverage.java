@@ -2,6 +2,7 @@ package gridss;
 
 import au.edu.wehi.idsv.*;
 import gridss.cmdline.VcfTransformCommandLineProgram;
+import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.util.CloseableIterator;
 
 import java.util.List;
@@ -14,10 +15,18 @@ public class AnnotateReferenceCoverage extends VcfTransformCommandLineProgram {
 	private final int WINDOW_SIZE_SAFETY_MARGIN = 100000;
 	@Override
 	public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, ExecutorService threadpool) {
+		return iterator(calls, null, threadpool);
+	}
+	/**
+	 * Annotates calls using only the reads overlapping the given intervals
+	 * @param intervals intervals containing the calls. If null, all reads are used.
+	 */
+	public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, QueryInterval[] intervals, ExecutorService threadpool) {
 		ProcessingContext context = getContext();
 		List<SAMEvidenceSource> sources = getSamEvidenceSources();
 		int windowSize = SAMEvidenceSource.maximumWindowSize(context, sources, null);
-		return new SequentialCoverageAnnotator<VariantContextDirectedEvidence>(context, sources, calls, 2 * windowSize + WINDOW_SIZE_SAFETY_MARGIN, threadpool);
+		QueryInterval[] readIntervals = intervals == null ? null : QueryIntervalUtil.padIntervals(context.getDictionary(), intervals, 2 * windowSize + WINDOW_SIZE_SAFETY_MARGIN);
+		return new SequentialCoverageAnnotator<VariantContextDirectedEvidence>(context, sources, calls, 2 * windowSize + WINDOW_SIZE_SAFETY_MARGIN, readIntervals, threadpool);
 	}
 	public static void main(String[] argv) {
         System.exit(new AnnotateReferenceCoverage().instanceMain(argv));
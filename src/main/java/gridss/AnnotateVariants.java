@@ -1,19 +1,35 @@
 package gridss;
 
 import au.edu.wehi.idsv.*;
+import au.edu.wehi.idsv.util.AutoClosingIterator;
+import au.edu.wehi.idsv.util.FileHelper;
+import com.google.common.collect.Iterators;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import gridss.cmdline.VcfTransformCommandLineProgram;
+import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.util.AsyncBufferedIterator;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Log;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.vcf.VCFFileReader;
+import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 
 import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @CommandLineProgramProperties(
         summary = "Annotates breakpoint variant calls",  
@@ -22,6 +38,12 @@ import java.util.concurrent.ExecutorService;
 )
 public class AnnotateVariants extends VcfTransformCommandLineProgram {
 	private static final Log log = Log.getInstance(AnnotateVariants.class);
+	/**
+	 * Defensive programming safety margin around the evidence window size
+	 */
+	private static final int CHUNK_PADDING_SAFETY_MARGIN = 1000;
+	@Argument(doc="Annotate each chunk of the genome in parallel. Chunks are the same as those used for variant calling.", optional=true)
+	public boolean CHUNKED_ANNOTATION = true;
 	public static void writeAssemblyBreakends(File file, AssemblyEvidenceSource assemblyEvidence) throws IOException {
 		log.info("Writing breakend assembly support.");
 		File tmp = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(file) : file;
@@ -51,6 +73,185 @@ public class AnnotateVariants extends VcfTransformCommandLineProgram {
 		log.info("Writing breakend assembly support complete.");
 	}
 	@Override
+	protected CloseableIterator<VariantContextDirectedEvidence> getTransformedBreakends(ExecutorService threadpool) throws IOException, InterruptedException, ExecutionException {
+		if (!CHUNKED_ANNOTATION) {
+			return super.getTransformedBreakends(threadpool);
+		}
+		List<SAMEvidenceSource> allEvidence = new ArrayList<>(getSamEvidenceSources());
+		allEvidence.addAll(getAssemblySource());
+		List<QueryInterval[]> chunks = new ChunkScheduler(getContext(), allEvidence).getChunks();
+		if (chunks.size() <= 1) {
+			return super.getTransformedBreakends(threadpool);
+		}
+		return annotateChunks(chunks, threadpool);
+	}
+	/**
+	 * Annotates each chunk in parallel.
+	 * 
+	 * Each chunk task annotates the calls whose breakend starts within the chunk. Calls and evidence
+	 * in the padding around the chunk are included so evidence is allocated identically to sequential
+	 * annotation. Chunks block on earlier chunks when the partner breakend of a call is in an earlier
+	 * chunk. Chunks are started in genomic order on a dedicated thread pool so the earlier chunk is
+	 * always either running or complete.
+	 * 
+	 * @return annotated breakends in breakend start order
+	 */
+	private CloseableIterator<VariantContextDirectedEvidence> annotateChunks(List<QueryInterval[]> chunks, ExecutorService threadpool) throws IOException, InterruptedException {
+		ProcessingContext context = getContext();
+		int padding = 2 * SAMEvidenceSource.maximumWindowSize(context, getSamEvidenceSources(), getAssemblySource()) + CHUNK_PADDING_SAFETY_MARGIN;
+		List<QueryInterval[]> paddedChunks = new ArrayList<>();
+		List<File> inputChunk = new ArrayList<>();
+		List<File> outputChunk = new ArrayList<>();
+		for (int i = 0; i < chunks.size(); i++) {
+			paddedChunks.add(QueryIntervalUtil.padIntervals(context.getDictionary(), chunks.get(i), padding));
+			inputChunk.add(context.getFileSystemContext().getAnnotationInputChunkVcf(INPUT_VCF, i));
+			outputChunk.add(context.getFileSystemContext().getAnnotationChunkVcf(INPUT_VCF, i));
+		}
+		ChunkedBreakpointPositionLookup chunkLookup = new ChunkedBreakpointPositionLookup(context.getLinear(), chunks);
+		log.info(String.format("Annotating variants in %d chunks", chunks.size()));
+		ExecutorService chunkpool = Executors.newFixedThreadPool(WORKER_THREADS, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("AnnotateVariants-%d").build());
+		try {
+			splitCalls(chunkLookup, paddedChunks, padding, inputChunk);
+			List<Future<Void>> tasks = new ArrayList<>();
+			for (int i = 0; i < chunks.size(); i++) {
+				int chunkNumber = i;
+				tasks.add(chunkpool.submit(() -> {
+					annotateChunk(chunkNumber, chunks.get(chunkNumber), paddedChunks.get(chunkNumber), inputChunk.get(chunkNumber), outputChunk.get(chunkNumber), chunkLookup, threadpool);
+					return null;
+				}));
+			}
+			for (Future<Void> f : tasks) {
+				try {
+					f.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException)e.getCause();
+					}
+					throw new RuntimeException(e.getCause());
+				}
+			}
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			deleteChunks(outputChunk);
+			throw e;
+		} finally {
+			chunkpool.shutdownNow();
+			deleteChunks(inputChunk);
+		}
+		return concatenateChunks(outputChunk);
+	}
+	/**
+	 * Writes the calls overlapping each padded chunk to the input file for that chunk in a single pass over the input VCF.
+	 */
+	private void splitCalls(ChunkedBreakpointPositionLookup chunkLookup, List<QueryInterval[]> paddedChunks, int padding, List<File> inputChunk) {
+		ProcessingContext context = getContext();
+		LinearGenomicCoordinate linear = context.getLinear();
+		long[] paddedEnd = new long[paddedChunks.size()];
+		for (int i = 0; i < paddedChunks.size(); i++) {
+			QueryInterval[] chunk = paddedChunks.get(i);
+			paddedEnd[i] = linear.getLinearCoordinate(chunk[chunk.length - 1].referenceIndex, chunk[chunk.length - 1].end);
+		}
+		VariantContextWriter[] writers = new VariantContextWriter[paddedChunks.size()];
+		boolean[] closed = new boolean[paddedChunks.size()];
+		int lowestOpen = 0;
+		try (VCFFileReader vcfReader = new VCFFileReader(INPUT_VCF, false)) {
+			for (VariantContext vc : vcfReader) {
+				IdsvVariantContext variant = IdsvVariantContext.create(context.getDictionary(), null, vc);
+				if (!(variant instanceof VariantContextDirectedEvidence)) continue;
+				// input is in VCF position order so no subsequent breakend can overlap chunks ending well before this record
+				long position = linear.getLinearCoordinate(variant.getReferenceIndex(), variant.getStart());
+				while (lowestOpen < writers.length && paddedEnd[lowestOpen] + padding < position) {
+					if (writers[lowestOpen] != null) {
+						writers[lowestOpen].close();
+					}
+					closed[lowestOpen] = true;
+					lowestOpen++;
+				}
+				BreakendSummary bs = ((VariantContextDirectedEvidence)variant).getBreakendSummary();
+				int owner = chunkLookup.getChunk(bs.referenceIndex, bs.start);
+				int first = owner;
+				while (first > 0 && QueryIntervalUtil.overlaps(paddedChunks.get(first - 1), bs)) {
+					first--;
+				}
+				for (int i = first; i < writers.length && (i <= owner || QueryIntervalUtil.overlaps(paddedChunks.get(i), bs)); i++) {
+					if (closed[i]) {
+						throw new IllegalStateException(String.format("%s is not coordinate sorted.", INPUT_VCF));
+					}
+					if (writers[i] == null) {
+						writers[i] = context.getVariantContextWriter(inputChunk.get(i), false);
+					}
+					writers[i].add(vc);
+				}
+			}
+		} finally {
+			for (int i = 0; i < writers.length; i++) {
+				if (writers[i] != null && !closed[i]) {
+					writers[i].close();
+				}
+			}
+		}
+	}
+	private void annotateChunk(int chunkNumber, QueryInterval[] chunk, QueryInterval[] paddedChunk, File input, File output, ChunkedBreakpointPositionLookup chunkLookup, ExecutorService threadpool) throws IOException {
+		String chunkMsg = String.format("chunk %d (%s:%d-%s:%d)", chunkNumber,
+				getContext().getDictionary().getSequence(chunk[0].referenceIndex).getSequenceName(), chunk[0].start,
+				getContext().getDictionary().getSequence(chunk[chunk.length - 1].referenceIndex).getSequenceName(), chunk[chunk.length - 1].end);
+		try {
+			log.info("Start annotating ", chunkMsg);
+			File tmp = new File(output.getParent(), "gridss.tmp." + output.getName());
+			try (VariantContextWriter vcfWriter = getContext().getVariantContextWriter(tmp, false)) {
+				if (input.exists()) {
+					AllocateEvidence ae = new AllocateEvidence();
+					AnnotateReferenceCoverage arc = new AnnotateReferenceCoverage();
+					AnnotateInexactHomology ihom = new AnnotateInexactHomology();
+					copyInputs(ae);
+					copyInputs(arc);
+					copyInputs(ihom);
+					ae.INPUT_VCF = INPUT_VCF;
+					CloseableIterator<VariantContextDirectedEvidence> calls = getBreakends(input);
+					calls = new AsyncBufferedIterator<VariantContextDirectedEvidence>(ae.iterator(calls, paddedChunk, chunkNumber, chunkLookup), 128, 2, "AllocateEvidence " + chunkMsg);
+					calls = new AsyncBufferedIterator<VariantContextDirectedEvidence>(arc.iterator(calls, chunk, threadpool), 128, 2, "AnnotateReferenceCoverage " + chunkMsg);
+					calls = ihom.iterator(calls, threadpool);
+					AnnotateAlleleFraction aaf = new AnnotateAlleleFraction(new AlleleFractionAnnotator(getContext(), getSamEvidenceSources()));
+					try (CloseableIterator<VariantContextDirectedEvidence> it = aaf.iterator(calls, threadpool)) {
+						while (it.hasNext()) {
+							vcfWriter.add(it.next());
+						}
+					}
+				}
+			}
+			FileHelper.move(tmp, output, true);
+			log.info("Complete annotating ", chunkMsg);
+		} finally {
+			// partner breakends in later chunks must not wait on a failed chunk
+			chunkLookup.complete(chunkNumber);
+		}
+	}
+	/**
+	 * Concatenates the annotated chunks. Chunk files are deleted when the returned iterator is closed. 
+	 */
+	private CloseableIterator<VariantContextDirectedEvidence> concatenateChunks(List<File> outputChunk) {
+		List<Closeable> toClose = new ArrayList<>();
+		Iterator<VariantContext> it = Iterators.concat(Iterators.transform(outputChunk.iterator(), f -> {
+			VCFFileReader reader = new VCFFileReader(f, false);
+			toClose.add(reader);
+			return reader.iterator();
+		}));
+		Iterator<IdsvVariantContext> idsvIt = Iterators.transform(it, variant -> IdsvVariantContext.create(getContext().getDictionary(), null, variant));
+		Iterator<VariantContextDirectedEvidence> beit = Iterators.filter(idsvIt, VariantContextDirectedEvidence.class);
+		return new AutoClosingIterator<>(beit, () -> {
+			for (Closeable c : toClose) {
+				c.close();
+			}
+			deleteChunks(outputChunk);
+		});
+	}
+	private static void deleteChunks(List<File> chunks) throws IOException {
+		if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
+			for (File f : chunks) {
+				FileHelper.delete(f, true);
+			}
+		}
+	}
+	@Override
 	public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, ExecutorService threadpool) {
 		AllocateEvidence ae = new AllocateEvidence();
 		AnnotateReferenceCoverage arc = new AnnotateReferenceCoverage();
@@ -2,6 +2,7 @@ package gridss;
 
 import au.edu.wehi.idsv.AssemblyEvidenceSource;
 import au.edu.wehi.idsv.FileSystemContext;
+import au.edu.wehi.idsv.ResourceGovernor;
 import au.edu.wehi.idsv.SAMEvidenceSource;
 import au.edu.wehi.idsv.util.FileHelper;
 import com.google.common.base.Function;
@@ -43,35 +44,42 @@ public class CallVariants extends FullEvidenceCommandLineProgram {
 	}
 	private void extractEvidence(ExecutorService threadpool, List<SAMEvidenceSource> samEvidence) throws InterruptedException, ExecutionException {
 		log.info("Extracting evidence.");
-		for (Future<Void> future : threadpool.invokeAll(Lists.transform(samEvidence, new Function<SAMEvidenceSource, Callable<Void>>() {
-				@Override
-				public Callable<Void> apply(final SAMEvidenceSource input) {
-					return new Callable<Void>() {
-						@Override
-						public Void call() throws Exception {
-							try {
-								input.ensureMetrics();
-								InsertSizeMetrics ism = input.getMetrics().getInsertSizeMetrics();
-					    		if (ism != null && ism.PAIR_ORIENTATION != PairOrientation.FR) {
-					    			String msg = "GRIDSS currently supports only FR read pair orientation. If usage with other read pair orientations is required, please raise an enchancement request at https://github.com/PapenfussLab/gridss/issues"; 
-					    			log.error(msg);
-					    			throw new RuntimeException(msg);
-					    		}
-								input.ensureExtracted();
-							} catch (Exception e) {
-								log.error(e, "Fatal exception thrown by worker thread.");
-								if (getContext().getConfig().terminateOnFirstError) {
-									System.exit(1);
+		// share worker threads between the samples being concurrently extracted
+		ResourceGovernor governor = getContext().getResourceGovernor();
+		governor.setConcurrentConsumers(samEvidence.size());
+		try {
+			for (Future<Void> future : threadpool.invokeAll(Lists.transform(samEvidence, new Function<SAMEvidenceSource, Callable<Void>>() {
+					@Override
+					public Callable<Void> apply(final SAMEvidenceSource input) {
+						return new Callable<Void>() {
+							@Override
+							public Void call() throws Exception {
+								try {
+									input.ensureMetrics();
+									InsertSizeMetrics ism = input.getMetrics().getInsertSizeMetrics();
+						    		if (ism != null && ism.PAIR_ORIENTATION != PairOrientation.FR) {
+						    			String msg = "GRIDSS currently supports only FR read pair orientation. If usage with other read pair orientations is required, please raise an enchancement request at https://github.com/PapenfussLab/gridss/issues"; 
+						    			log.error(msg);
+						    			throw new RuntimeException(msg);
+						    		}
+									input.ensureExtracted();
+								} catch (Exception e) {
+									log.error(e, "Fatal exception thrown by worker thread.");
+									if (getContext().getConfig().terminateOnFirstError) {
+										System.exit(1);
+									}
+									throw e;
 								}
-								throw e;
+								return null;
 							}
-							return null;
-						}
-					};
-				}
-			}))) {
-			// throw exception from worker thread here
-			future.get();
+						};
+					}
+				}))) {
+				// throw exception from worker thread here
+				future.get();
+			}
+		} finally {
+			governor.setConcurrentConsumers(1);
 		}
 		log.info("Evidence extraction complete.");
 	}
@@ -40,10 +40,19 @@ public class ComputeCoverage extends GcSinglePassSamProgram {
 			+ " actual aligned sequence coverage, and FRAGMENT which calculated physical coverage based on the"
 			+ " alignment of read pairs.", optional=true)
 	public CoverageCalculationMethod COVERAGE_METHOD = CoverageCalculationMethod.READ;
+	@Argument(shortName="RCI", doc="Reference coverage index used by AnnotateReferenceCoverage instead of rereading the input file."
+			+ " To be used, the index must be written to the input file metrics prefix in the GRIDSS working directory"
+			+ " with the suffix " + ReferenceCoverageIndex.SUFFIX + "."
+			+ " The index is ignored if the duplicate filtering or read pair concordance settings do not match those used by GRIDSS,"
+			+ " or if it is older than the input file.", optional=true)
+	public File OUTPUT_REFERENCE_COVERAGE_INDEX;
+	@Argument(doc="Bin size of the reference coverage index. The coverage reported for each bin is the minimum coverage of any position in the bin.", optional=true)
+	public int REFERENCE_COVERAGE_INDEX_BIN_SIZE = 16;
 	
 	private IntervalCoverageAccumulator ica_gc;
 	private IntervalCoverageAccumulator ica_raw;
 	private GcBiasAdjuster gcAdjust;
+	private ReferenceCoverageIndexWriter referenceCoverageIndex;
 	@Override
 	protected String[] customCommandLineValidation() {
 		if (OUTPUT_GC != null) {
@@ -51,6 +60,9 @@ public class ComputeCoverage extends GcSinglePassSamProgram {
 				return new String[] { "GC_ADJUSTMENT file is required if GC_OUTPUT specified" };
 			}
 		}
+		if (REFERENCE_COVERAGE_INDEX_BIN_SIZE <= 0) {
+			return new String[] { "REFERENCE_COVERAGE_INDEX_BIN_SIZE must be positive" };
+		}
 		return super.customCommandLineValidation();
 	}
 	@Override
@@ -65,6 +77,17 @@ public class ComputeCoverage extends GcSinglePassSamProgram {
 			ica_gc = initIntervalCoverageAccumulator();
 		}
 		ica_raw = initIntervalCoverageAccumulator();
+		referenceCoverageIndex = null;
+		if (OUTPUT_REFERENCE_COVERAGE_INDEX != null) {
+			try {
+				referenceCoverageIndex = new ReferenceCoverageIndexWriter(OUTPUT_REFERENCE_COVERAGE_INDEX, getReference().getSequenceDictionary(),
+						getReadPairConcordanceCalculator(), REFERENCE_COVERAGE_INDEX_BIN_SIZE, !INCLUDE_DUPLICATES);
+			} catch (IOException e) {
+				String msg = String.format("Unable to write to %s", OUTPUT_REFERENCE_COVERAGE_INDEX);
+				log.error(e, msg);
+				throw new RuntimeException(msg, e);
+			}
+		}
 	}
 	private IntervalCoverageAccumulator initIntervalCoverageAccumulator() {
 		SAMSequenceDictionary dictionary = getReference().getSequenceDictionary();
@@ -82,6 +105,9 @@ public class ComputeCoverage extends GcSinglePassSamProgram {
 	}
 	@Override
 	protected void acceptRead(SAMRecord record, ReferenceSequence refSeq) {
+		if (referenceCoverageIndex != null) {
+			referenceCoverageIndex.add(record);
+		}
 		if (record.getDuplicateReadFlag() && !INCLUDE_DUPLICATES) return;
 		ReadGcSummary gc = new ReadGcSummary(record, refSeq, UNPAIRED_FRAGMENT_SIZE, getReadPairConcordanceCalculator());
 		if (ica_gc != null) {
@@ -99,6 +125,15 @@ public class ComputeCoverage extends GcSinglePassSamProgram {
 			log.error(e, msg);
 			throw new RuntimeException(msg, e);
 		}
+		if (referenceCoverageIndex != null) {
+			try {
+				referenceCoverageIndex.close();
+			} catch (IOException e) {
+				String msg = String.format("Unable to write to %s", OUTPUT_REFERENCE_COVERAGE_INDEX);
+				log.error(e, msg);
+				throw new RuntimeException(msg, e);
+			}
+		}
 		if (ica_gc != null) {
 			try {
 				ica_gc.writeToBed(OUTPUT_GC);
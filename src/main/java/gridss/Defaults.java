@@ -18,6 +18,16 @@ public class Defaults {
 	 * See http://stackoverflow.com/questions/2972986/how-to-unmap-a-file-from-memory-mapped-using-filechannel-in-java
 	 */
 	public static final boolean DEFENSIVE_GC;
+	/**
+	 * Generate the SV read file using a single in-process pipeline (PreprocessSVReads)
+	 * instead of writing intermediate BAM files between each preprocessing step.
+	 */
+	public static final boolean FUSED_SV_READ_PREPROCESSING;
+	/**
+	 * Maximum number of temporary file intensive stages (such as sorting)
+	 * that can run concurrently across all samples.
+	 */
+	public static final int CONCURRENT_TEMPORARY_DISK_STAGES;
 	static {
 		IGNORE_FILE_TIMESTAMPS = Boolean.valueOf(System.getProperty("gridss.ignoreTimestamps", "true"));
 		ASYNC_BUFFERS = Integer.parseInt(System.getProperty("gridss.async.buffers", "2"));
@@ -27,5 +37,7 @@ public class Defaults {
 		WRITE_ZERO_OR_EMTPY_VCF_FIELDS = Boolean.valueOf(System.getProperty("gridss.writeZeroOrEmptyVcfFields", "true"));
 		DEFENSIVE_GC = Boolean.valueOf(System.getProperty("gridss.defensiveGC", "false"));
 		OUTPUT_TO_TEMP_FILE = Boolean.valueOf(System.getProperty("gridss.output_to_temp_file", "false"));
+		FUSED_SV_READ_PREPROCESSING = Boolean.valueOf(System.getProperty("gridss.preprocess.fused", "false"));
+		CONCURRENT_TEMPORARY_DISK_STAGES = Integer.parseInt(System.getProperty("gridss.tmpdisk.concurrency", "2"));
 	}
 }
@@ -1,26 +1,37 @@
 package gridss;
 
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
 import htsjdk.samtools.*;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.fastq.FastqRecord;
 import htsjdk.samtools.fastq.FastqWriter;
 import htsjdk.samtools.fastq.FastqWriterFactory;
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.samtools.util.SequenceUtil;
+import htsjdk.samtools.util.SortingCollection;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.Stream;
 
 @CommandLineProgramProperties(
-		summary = "Exports reads and read pairs with the given names to fastq",
+		summary = "Exports reads and read pairs with the given names to fastq." +
+				" By default, all read names and unpaired mates are held in memory." +
+				" In LOW_MEMORY mode, read names are sorted on disk and records passing a Bloom filter prefilter" +
+				" are spilled to disk and sorted by read name before being merge joined against the read names." +
+				" Queryname sorted input is merge joined directly without spilling records to disk." +
+				" Fragments are written in read name order in LOW_MEMORY mode.",
         oneLineSummary = "Exports reads and read pairs with the given names to fastq",
         programGroup = gridss.cmdline.programgroups.DataConversion.class
 )
@@ -36,6 +47,12 @@ public class ExtractFragmentsToFastq extends CommandLineProgram {
 	public File OUTPUT_FQ1;
 	@Argument(doc="File to extract second read in pair to.")
 	public File OUTPUT_FQ2;
+	@Argument(doc="Bound memory usage by sorting read names and matching records on disk instead of holding them in memory. " +
+			"Uses MAX_RECORDS_IN_RAM and TMP_DIR.", optional=true)
+	public boolean LOW_MEMORY = false;
+	@Argument(doc="False positive rate of the LOW_MEMORY mode read name Bloom filter. " +
+			"Records of false positive names are spilled to disk but not exported.", optional=true)
+	public double BLOOM_FILTER_FALSE_POSITIVE_RATE = 0.01;
 
 	public static void main(String[] argv) {
 		System.exit(new ExtractFragmentsToFastq().instanceMain(argv));
@@ -55,8 +72,19 @@ public class ExtractFragmentsToFastq extends CommandLineProgram {
 				SAMUtils.phredToFastq(quals));
 	}
 
+	@Override
+	protected String[] customCommandLineValidation() {
+		if (BLOOM_FILTER_FALSE_POSITIVE_RATE <= 0 || BLOOM_FILTER_FALSE_POSITIVE_RATE >= 1) {
+			return new String[] { "BLOOM_FILTER_FALSE_POSITIVE_RATE must be between 0 and 1" };
+		}
+		return super.customCommandLineValidation();
+	}
+
 	@Override
 	protected int doWork() {
+		if (LOW_MEMORY) {
+			return doWorkLowMemory();
+		}
 		Map<String, SAMRecord> lookup = new HashMap<>();
 		try {
 			HashSet<String> readNames = new HashSet<>(Files.readAllLines(READ_NAMES.toPath()));
@@ -117,4 +145,188 @@ public class ExtractFragmentsToFastq extends CommandLineProgram {
 		}
 		return 0;
 	}
+
+	private static boolean isPrimary(SAMRecord r) {
+		return !r.getSupplementaryAlignmentFlag() && !r.isSecondaryAlignment();
+	}
+
+	private int doWorkLowMemory() {
+		SortingCollection<String> readNames = null;
+		SortingCollection<SAMRecord> spilled = null;
+		try {
+			long expectedNames;
+			try (Stream<String> lines = Files.lines(READ_NAMES.toPath())) {
+				expectedNames = lines.count();
+			}
+			BloomFilter<CharSequence> filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), Math.max(1, expectedNames), BLOOM_FILTER_FALSE_POSITIVE_RATE);
+			readNames = SortingCollection.newInstance(String.class, new ReadNameCodec(), SAMRecordQueryNameComparator::compareReadNames, MAX_RECORDS_IN_RAM, TMP_DIR);
+			try (BufferedReader br = Files.newBufferedReader(READ_NAMES.toPath())) {
+				String line;
+				while ((line = br.readLine()) != null) {
+					filter.put(line);
+					readNames.add(line);
+				}
+			}
+			readNames.doneAdding();
+			log.info(String.format("Loaded %d read names", expectedNames));
+			FastqWriterFactory factory = new FastqWriterFactory();
+			try (FastqWriter fq1 = factory.newWriter(OUTPUT_FQ1)) {
+				try (FastqWriter fq2 = factory.newWriter(OUTPUT_FQ2)) {
+					try (FastqWriter fq = factory.newWriter(OUTPUT_FQ)) {
+						try (SamReader reader = SamReaderFactory.makeDefault().open(INPUT)) {
+							SAMFileHeader header = reader.getFileHeader();
+							try (SAMRecordIterator it = reader.iterator()) {
+								Iterator<SAMRecord> candidates;
+								if (header.getSortOrder() == SortOrder.queryname) {
+									log.info("Input is queryname sorted. Merge joining input records with read names.");
+									candidates = Iterators.filter(it, r -> isPrimary(r));
+								} else {
+									log.info("Spilling records matching read name filter to disk.");
+									SAMFileHeader querynameHeader = header.clone();
+									querynameHeader.setSortOrder(SortOrder.queryname);
+									spilled = SortingCollection.newInstance(SAMRecord.class, new BAMRecordCodec(querynameHeader), SortOrder.queryname.getComparatorInstance(), MAX_RECORDS_IN_RAM, TMP_DIR);
+									long spilledCount = 0;
+									while (it.hasNext()) {
+										SAMRecord r = it.next();
+										if (isPrimary(r) && filter.mightContain(r.getReadName())) {
+											spilled.add(r);
+											spilledCount++;
+										}
+									}
+									spilled.doneAdding();
+									log.info(String.format("Merge joining %d records with read names.", spilledCount));
+									candidates = spilled.iterator();
+								}
+								try (CloseableIterator<String> nameIt = readNames.iterator()) {
+									mergeJoin(Iterators.peekingIterator(nameIt), Iterators.peekingIterator(candidates), fq, fq1, fq2);
+								}
+							}
+						}
+					}
+				}
+			}
+		} catch (IOException | RuntimeIOException e) {
+			log.error(e);
+			return -1;
+		} finally {
+			if (readNames != null) readNames.cleanup();
+			if (spilled != null) spilled.cleanup();
+		}
+		return 0;
+	}
+
+	/**
+	 * Writes the fragments of records whose read name is in the given read names.
+	 * Both iterators must be in queryname order.
+	 */
+	private void mergeJoin(PeekingIterator<String> names, PeekingIterator<SAMRecord> records, FastqWriter fq, FastqWriter fq1, FastqWriter fq2) {
+		long missingNames = 0;
+		long missingMates = 0;
+		String lastRecordName = null;
+		List<SAMRecord> fragment = new ArrayList<>();
+		while (names.hasNext() && records.hasNext()) {
+			String name = names.peek();
+			String recordName = records.peek().getReadName();
+			if (lastRecordName != null && SAMRecordQueryNameComparator.compareReadNames(lastRecordName, recordName) > 0) {
+				String msg = String.format("%s is not queryname sorted: %s encountered after %s. The input header sort order may not match the record order.", INPUT, recordName, lastRecordName);
+				log.error(msg);
+				throw new IllegalStateException(msg);
+			}
+			lastRecordName = recordName;
+			int cmp = SAMRecordQueryNameComparator.compareReadNames(name, recordName);
+			if (cmp < 0) {
+				names.next();
+				missingNames++;
+			} else if (cmp > 0) {
+				records.next();
+			} else {
+				while (names.hasNext() && names.peek().equals(name)) {
+					names.next();
+				}
+				fragment.clear();
+				while (records.hasNext() && records.peek().getReadName().equals(name)) {
+					fragment.add(records.next());
+				}
+				if (!writeFragment(fragment, fq, fq1, fq2)) {
+					missingMates++;
+				}
+			}
+		}
+		while (names.hasNext()) {
+			names.next();
+			missingNames++;
+		}
+		if (missingMates > 0) {
+			log.error("Missing paired primary alignment for ", missingMates, " reads. Writing to unpaired fastq.");
+		}
+		if (missingNames > 0) {
+			log.warn("Missing SAM records for ", missingNames, " reads.");
+		}
+	}
+
+	/**
+	 * Writes the given primary alignment records of a single fragment
+	 * @return false if the fragment was paired but only one read in the pair was found
+	 */
+	private static boolean writeFragment(List<SAMRecord> fragment, FastqWriter fq, FastqWriter fq1, FastqWriter fq2) {
+		SAMRecord pending = null;
+		for (SAMRecord r : fragment) {
+			if (!r.getReadPairedFlag()) {
+				fq.write(samToFastq(r));
+				return true;
+			}
+			if (pending == null) {
+				pending = r;
+			} else if (pending.getFirstOfPairFlag() == r.getFirstOfPairFlag()) {
+				log.error("Found multiple primary alignment records for ", r.getReadName(), ". Ignoring all but first.");
+			} else {
+				fq1.write(samToFastq(r.getFirstOfPairFlag() ? r : pending));
+				fq2.write(samToFastq(r.getFirstOfPairFlag() ? pending : r));
+				return true;
+			}
+		}
+		if (pending != null) {
+			fq.write(samToFastq(pending));
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Read name table codec
+	 */
+	private static class ReadNameCodec implements SortingCollection.Codec<String> {
+		private DataOutputStream out;
+		private DataInputStream in;
+		@Override
+		public void setOutputStream(OutputStream os) {
+			out = new DataOutputStream(os);
+		}
+		@Override
+		public void setInputStream(InputStream is) {
+			in = new DataInputStream(is);
+		}
+		@Override
+		public void encode(String val) {
+			try {
+				out.writeUTF(val);
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+		}
+		@Override
+		public String decode() {
+			try {
+				return in.readUTF();
+			} catch (EOFException e) {
+				return null;
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+		}
+		@Override
+		public ReadNameCodec clone() {
+			return new ReadNameCodec();
+		}
+	}
 }
@@ -41,8 +41,15 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
     	SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
     	tmpoutput = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(OUTPUT, "gridss.tmp.ExtractSVReads.") : OUTPUT;
     	writer = writerFactory.makeSAMOrBAMWriter(header, true, tmpoutput);
-    	
-    	IndelReadFilter indelFilter = new IndelReadFilter(INDELS ? MIN_INDEL_SIZE : Integer.MAX_VALUE);
+		initialiseFilters();
+		count = 0;
+    }
+	/**
+	 * Initialises the read and read pair filters used by {@link #shouldExtract(List, ReferenceLookup)}.
+	 * Required only when performing in-process extraction without calling setup()
+	 */
+	public void initialiseFilters() {
+		IndelReadFilter indelFilter = new IndelReadFilter(INDELS ? MIN_INDEL_SIZE : Integer.MAX_VALUE);
 		ClippedReadFilter softClipFilter = new ClippedReadFilter(CLIPPED ? MIN_CLIP_LENGTH : Integer.MAX_VALUE, SPLIT);
 		SplitReadFilter splitReadFilter = new SplitReadFilter();
 		AlignedFilter unmappedFilter = new AlignedFilter(false);
@@ -62,8 +69,7 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
 		if (!SINGLE_MAPPED_PAIRED && !DISCORDANT_READ_PAIRS) {
 			pairfilter = new FixedFilter(true);
 		}
-		count = 0;
-    }
+	}
 	public static boolean[] hasReadAlignmentConsistentWithReference(List<SAMRecord> records) {
 		boolean[] consistent = new boolean[2];
 		for (SAMRecord r : records) {
@@ -4,16 +4,20 @@ import au.edu.wehi.idsv.*;
 import au.edu.wehi.idsv.bed.BedpeIterator;
 import au.edu.wehi.idsv.bed.BedpeRecord;
 import au.edu.wehi.idsv.bed.BedpeWriter;
+import au.edu.wehi.idsv.bed.PonIndexWriter;
 import au.edu.wehi.idsv.configuration.GridssConfiguration;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
+import au.edu.wehi.idsv.util.FileHelper;
 import au.edu.wehi.idsv.util.WindowedSortingIterator;
 import au.edu.wehi.idsv.vcf.VcfFormatAttributes;
 import au.edu.wehi.idsv.vcf.VcfSvConstants;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Ordering;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
@@ -32,15 +36,19 @@ import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -72,6 +80,18 @@ public class GeneratePonBedpe extends CommandLineProgram {
 	private int MAX_BREAKPOINT_HOMOLOGY_LENGTH = 2000;
 	@Argument(doc="Number of worker threads to spawn. Defaults to number of cores available with a maximum of one 1 per input file.", shortName="THREADS")
 	public int WORKER_THREADS = Runtime.getRuntime().availableProcessors();
+	@Argument(doc="Process each chromosome independently in parallel. "
+			+ "Requires all input VCFs to be indexed. "
+			+ "Chromosomes are grouped into one contiguous partition per worker thread with each partition reading each input VCF once. "
+			+ "Breakpoints are assigned to the chromosome of their lower breakend so partitioned output is identical to unpartitioned output.", optional=true)
+	public boolean PARTITION_BY_CHROMOSOME = false;
+	@Argument(doc="Maximum number of input VCFs open at any one time when PARTITION_BY_CHROMOSOME is used. "
+			+ "Each partition opens every input VCF so this limits the number of partitions processed concurrently. "
+			+ "At least one partition is always processed.", optional=true)
+	public int MAX_OPEN_INPUT_FILES = 1024;
+	@Argument(doc="Output binary PON. The binary PON contains both the breakpoint and single breakend PON "
+			+ "and can be memory-mapped and queried without parsing the BED and BEDPE files.", optional=true)
+	public File OUTPUT_INDEX = null;
 
 	@Override
 	protected String[] customCommandLineValidation() {
@@ -87,6 +107,9 @@ public class GeneratePonBedpe extends CommandLineProgram {
 		if (NORMAL_ORDINAL == null || NORMAL_ORDINAL.size() == 0) {
 			return new String[] {"NORMAL_ORDINAL must be specified"};
 		}
+		if (MAX_OPEN_INPUT_FILES <= 0) {
+			return new String[] {"MAX_OPEN_INPUT_FILES must be positive"};
+		}
 		return super.customCommandLineValidation();
 	}
 
@@ -123,34 +146,212 @@ public class GeneratePonBedpe extends CommandLineProgram {
 			}
 			GenomicProcessingContext pc = new GenomicProcessingContext(new FileSystemContext(TMP_DIR.get(0), TMP_DIR.get(0), MAX_RECORDS_IN_RAM), REFERENCE_SEQUENCE, null);
 			pc.setCommandLineProgram(this);
-			Iterator<Pair<BreakendSummary, Integer>> mergedIt = Iterators.mergeSorted(ImmutableList.of(
-					filteredMerge(pc, INPUT, NORMAL_ORDINAL),
-					getExistingPON(pc.getDictionary(), INPUT_BEDPE, INPUT_BED)), ByBreakendStartEnd);
-			BedpeMergingCounter pe = new BedpeMergingCounter();
-			BedMergingCounter se = new BedMergingCounter(true);
-			BedpeWriter writer = new BedpeWriter(pc.getDictionary(), OUTPUT_BEDPE);
-			BufferedWriter seWriter = Files.newBufferedWriter(OUTPUT_BED.toPath(), StandardCharsets.US_ASCII);
-			while(mergedIt.hasNext()) {
-				Pair<BreakendSummary, Integer> record = mergedIt.next();
-				if (record.getFirst() instanceof BreakpointSummary) {
-					Pair<BreakpointSummary, Integer> bpRecord = Pair.create((BreakpointSummary)record.getFirst(), record.getSecond());
-					writeBedpe(pe.process(bpRecord), writer);
-				} else {
-					writeBed(pc.getReference().getSequenceDictionary(), seWriter, se.process(record));
+			if (OUTPUT_INDEX != null) {
+				IOUtil.assertFileIsWritable(OUTPUT_INDEX);
+			}
+			if (PARTITION_BY_CHROMOSOME) {
+				writePartitioned(pc);
+			} else {
+				Iterator<Pair<BreakendSummary, Integer>> mergedIt = Iterators.mergeSorted(ImmutableList.of(
+						filteredMerge(pc, INPUT, NORMAL_ORDINAL),
+						getExistingPON(pc.getDictionary(), INPUT_BEDPE, INPUT_BED)), ByBreakendStartEnd);
+				try (BedpeWriter writer = new BedpeWriter(pc.getDictionary(), OUTPUT_BEDPE)) {
+					try (BufferedWriter seWriter = Files.newBufferedWriter(OUTPUT_BED.toPath(), StandardCharsets.US_ASCII)) {
+						mergeAndWrite(pc.getDictionary(), mergedIt, writer, seWriter);
+					}
+				}
+			}
+			if (OUTPUT_INDEX != null) {
+				log.info("Writing binary PON to " + OUTPUT_INDEX);
+				try (PonIndexWriter indexWriter = new PonIndexWriter(pc.getDictionary(), OUTPUT_INDEX)) {
+					indexWriter.addBedpe(OUTPUT_BEDPE);
+					indexWriter.addBed(OUTPUT_BED);
 				}
 			}
-			writeBedpe(pe.finish(), writer);
-			writeBed(pc.getReference().getSequenceDictionary(), seWriter, se.finish());
-			writer.close();
-			seWriter.close();
 		} catch (IOException e) {
 			log.error(e);
 			return 1;
 		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.error(e, "Interrupted while generating PON");
+			return 1;
 		}
 		log.error("Imprecise call inclusion not recommended due to overly aggressive PON matching.");
 		return 0;
  	}
+	private void mergeAndWrite(SAMSequenceDictionary dict, Iterator<Pair<BreakendSummary, Integer>> mergedIt, BedpeWriter writer, BufferedWriter seWriter) throws IOException {
+		BedpeMergingCounter pe = new BedpeMergingCounter();
+		BedMergingCounter se = new BedMergingCounter(true);
+		while(mergedIt.hasNext()) {
+			Pair<BreakendSummary, Integer> record = mergedIt.next();
+			if (record.getFirst() instanceof BreakpointSummary) {
+				Pair<BreakpointSummary, Integer> bpRecord = Pair.create((BreakpointSummary)record.getFirst(), record.getSecond());
+				writeBedpe(pe.process(bpRecord), writer);
+			} else {
+				writeBed(dict, seWriter, se.process(record));
+			}
+		}
+		writeBedpe(pe.finish(), writer);
+		writeBed(dict, seWriter, se.finish());
+	}
+	/**
+	 * Generates the PON for groups of chromosomes in parallel then concatenates the per-partition output.
+	 *
+	 * Merging never spans chromosomes: breakpoints are only counted at their lower breakend
+	 * so each breakpoint is processed by exactly one partition.
+	 */
+	private void writePartitioned(GenomicProcessingContext pc) throws IOException, InterruptedException {
+		SAMSequenceDictionary dict = pc.getDictionary();
+		File tmpDir = TMP_DIR.get(0);
+		List<File> tmpFiles = new ArrayList<>();
+		// every partition has every input open so bound the number of partitions in flight
+		int concurrency = Math.max(1, Math.min(WORKER_THREADS, MAX_OPEN_INPUT_FILES / Math.max(1, INPUT.size())));
+		List<List<SAMSequenceRecord>> partitions = partitionContigs(dict, concurrency);
+		int[] partitionOf = new int[dict.size()];
+		for (int i = 0; i < partitions.size(); i++) {
+			for (SAMSequenceRecord contig : partitions.get(i)) {
+				partitionOf[contig.getSequenceIndex()] = i;
+			}
+		}
+		ExecutorService threadpool = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Worker-%d").build());
+		try {
+			// Only the existing PON is split up front as the input VCFs are indexed
+			File[] existingBedpe = splitByPartition(dict, partitionOf, partitions.size(), INPUT_BEDPE, ".bedpe", tmpDir, tmpFiles);
+			File[] existingBed = splitByPartition(dict, partitionOf, partitions.size(), INPUT_BED, ".bed", tmpDir, tmpFiles);
+			File[] partBedpe = new File[partitions.size()];
+			File[] partBed = new File[partitions.size()];
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < partitions.size(); i++) {
+				final int partition = i;
+				partBedpe[i] = createTempFile(tmpDir, i, ".bedpe", tmpFiles);
+				partBed[i] = createTempFile(tmpDir, i, ".bed", tmpFiles);
+				futures.add(threadpool.submit(() -> {
+					writePartition(pc, partitions.get(partition), existingBedpe[partition], existingBed[partition], partBedpe[partition], partBed[partition]);
+					return null;
+				}));
+			}
+			for (Future<?> f : futures) {
+				try {
+					f.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException)e.getCause();
+					}
+					throw new RuntimeException(e.getCause());
+				}
+			}
+			concatenate(partBedpe, OUTPUT_BEDPE);
+			concatenate(partBed, OUTPUT_BED);
+		} finally {
+			threadpool.shutdownNow();
+			for (File f : tmpFiles) {
+				FileHelper.delete(f, true);
+			}
+		}
+	}
+	/**
+	 * Splits the reference genome into contiguous groups of chromosomes of approximately equal total length.
+	 * @param partitionCount maximum number of partitions
+	 * @return non-empty partitions in reference genome order
+	 */
+	static List<List<SAMSequenceRecord>> partitionContigs(SAMSequenceDictionary dict, int partitionCount) {
+		long totalLength = Math.max(1, dict.getReferenceLength());
+		List<List<SAMSequenceRecord>> partitions = new ArrayList<>();
+		long cumulativeLength = 0;
+		int currentPartition = -1;
+		for (SAMSequenceRecord contig : dict.getSequences()) {
+			// assign by contig midpoint so a large chromosome is not split from its own partition
+			int partition = (int)Math.min(partitionCount - 1, (cumulativeLength + contig.getSequenceLength() / 2) * partitionCount / totalLength);
+			if (partition != currentPartition) {
+				partitions.add(new ArrayList<>());
+				currentPartition = partition;
+			}
+			partitions.get(partitions.size() - 1).add(contig);
+			cumulativeLength += contig.getSequenceLength();
+		}
+		return partitions;
+	}
+	private void writePartition(GenomicProcessingContext pc, List<SAMSequenceRecord> contigs, File existingBedpe, File existingBed, File outBedpe, File outBed) throws IOException {
+		SAMSequenceDictionary dict = pc.getDictionary();
+		List<CloseableIterator<Pair<BreakendSummary, Integer>>> fileIt = new ArrayList<>();
+		try {
+			for (File f : INPUT) {
+				fileIt.add(getFilteredIterator(pc, f, NORMAL_ORDINAL, contigs));
+			}
+			Iterator<Pair<BreakendSummary, Integer>> mergedIt = Iterators.mergeSorted(ImmutableList.of(
+					Iterators.mergeSorted(fileIt, ByBreakendStartEnd),
+					getExistingPON(dict, existingBedpe, existingBed)), ByBreakendStartEnd);
+			try (BedpeWriter writer = new BedpeWriter(dict, outBedpe)) {
+				try (BufferedWriter seWriter = Files.newBufferedWriter(outBed.toPath(), StandardCharsets.US_ASCII)) {
+					mergeAndWrite(dict, mergedIt, writer, seWriter);
+				}
+			}
+		} finally {
+			for (CloseableIterator<Pair<BreakendSummary, Integer>> it : fileIt) {
+				it.close();
+			}
+		}
+		if (log.isEnabled(Log.LogLevel.DEBUG)) {
+			log.debug(String.format("Completed PON generation for %s to %s", contigs.get(0).getSequenceName(), contigs.get(contigs.size() - 1).getSequenceName()));
+		}
+	}
+	/**
+	 * Splits an existing PON into per-partition files
+	 * @param partitionOf partition of each chromosome. Partitions must be contiguous in reference genome order.
+	 * @return per-partition files indexed by partition. Partitions without any records are null.
+	 */
+	private static File[] splitByPartition(SAMSequenceDictionary dict, int[] partitionOf, int partitionCount, File input, String suffix, File tmpDir, List<File> tmpFiles) throws IOException {
+		File[] result = new File[partitionCount];
+		if (input == null) {
+			return result;
+		}
+		BufferedWriter writer = null;
+		int currentPartition = -1;
+		try (BufferedReader reader = Files.newBufferedReader(input.toPath(), StandardCharsets.US_ASCII)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() == 0 || line.charAt(0) == '#') {
+					continue;
+				}
+				int tab = line.indexOf('\t');
+				int referenceIndex = dict.getSequenceIndex(tab < 0 ? line : line.substring(0, tab));
+				if (referenceIndex < 0) {
+					throw new IllegalArgumentException(String.format("Contig of record \"%s\" in %s not found in reference.", line, input));
+				}
+				int partition = partitionOf[referenceIndex];
+				if (partition != currentPartition) {
+					// PON files are sorted by chromosome so we only need one file open at a time
+					if (writer != null) {
+						writer.close();
+					}
+					if (result[partition] == null) {
+						result[partition] = createTempFile(tmpDir, partition, ".existing" + suffix, tmpFiles);
+					}
+					writer = Files.newBufferedWriter(result[partition].toPath(), StandardCharsets.US_ASCII, StandardOpenOption.APPEND);
+					currentPartition = partition;
+				}
+				writer.write(line);
+				writer.write('\n');
+			}
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+		return result;
+	}
+	private static File createTempFile(File tmpDir, int partition, String suffix, List<File> tmpFiles) throws IOException {
+		File f = File.createTempFile("gridss.pon." + partition + ".", suffix, tmpDir);
+		tmpFiles.add(f);
+		return f;
+	}
+	private static void concatenate(File[] parts, File output) throws IOException {
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(output))) {
+			for (File part : parts) {
+				Files.copy(part.toPath(), os);
+			}
+		}
+	}
  	private static Pair<BreakendSummary, Integer> toPair(SAMSequenceDictionary dictionary, BEDFeature feat) {
 		String chr = feat.getContig();
 		int start = feat.getStart();
@@ -162,15 +363,20 @@ public class GeneratePonBedpe extends CommandLineProgram {
 	}
 
 	private Iterator<Pair<BreakendSummary, Integer>> getExistingPON(SAMSequenceDictionary dictionary, File bedpeFile, File bedFile) throws IOException {
-		if (bedpeFile == null || bedFile == null) {
-			return ImmutableList.<Pair<BreakendSummary, Integer>>of().iterator();
+		List<Iterator<Pair<BreakendSummary, Integer>>> its = new ArrayList<>();
+		List<Closeable> toClose = new ArrayList<>();
+		if (bedpeFile != null) {
+			BedpeIterator peIt = new BedpeIterator(bedpeFile, dictionary);
+			its.add(Iterators.transform(peIt, (BedpeRecord x) -> Pair.create(x.bp, Integer.parseInt(x.score))));
+			toClose.add(peIt);
+		}
+		if (bedFile != null) {
+			BEDCodec codec = new BEDCodec();
+			AbstractFeatureReader<BEDFeature, LineIterator> reader = AbstractFeatureReader.getFeatureReader(bedFile.getPath(), codec, false);
+			its.add(Iterators.transform(reader.iterator(), (BEDFeature x) -> toPair(dictionary, x)));
+			toClose.add(reader);
 		}
-		BedpeIterator peIt = new BedpeIterator(bedpeFile, dictionary);
-		Iterator<Pair<BreakendSummary, Integer>> peItTransformed = Iterators.transform(peIt, (BedpeRecord x) -> Pair.create(x.bp, Integer.parseInt(x.score)));
-		BEDCodec codec = new BEDCodec();
-		AbstractFeatureReader<BEDFeature, LineIterator> reader = AbstractFeatureReader.getFeatureReader(bedFile.getPath(), codec, false);
-		Iterator<Pair<BreakendSummary, Integer>> seItTransformed = Iterators.transform(reader.iterator(), (BEDFeature x) -> toPair(dictionary, x));
-		return new AutoClosingIterator<>(Iterators.mergeSorted(ImmutableList.of(peItTransformed, seItTransformed), ByBreakendStartEnd), reader, peIt);
+		return new AutoClosingIterator<>(Iterators.mergeSorted(its, ByBreakendStartEnd), toClose.toArray(new Closeable[0]));
 	}
 	private static <T> Iterable<T> expand(Pair<T, Integer> pair) {
 		List<T> result = new ArrayList<>(pair.getSecond());
@@ -217,8 +423,14 @@ public class GeneratePonBedpe extends CommandLineProgram {
 		return mergedIt;
 	}
 	private CloseableIterator<Pair<BreakendSummary, Integer>> getFilteredIterator(GenomicProcessingContext pc, File file, List<Integer> ordinals) {
-		VCFFileReader vcfReader = new VCFFileReader(file, false);
-		CloseableIterator<VariantContext> it = vcfReader.iterator();
+		return getFilteredIterator(pc, file, ordinals, null);
+	}
+	/**
+	 * @param contigs chromosomes to restrict iteration to. If not null, the VCF must be indexed.
+	 */
+	private CloseableIterator<Pair<BreakendSummary, Integer>> getFilteredIterator(GenomicProcessingContext pc, File file, List<Integer> ordinals, List<SAMSequenceRecord> contigs) {
+		VCFFileReader vcfReader = new VCFFileReader(file, contigs != null);
+		CloseableIterator<VariantContext> it = contigs == null ? vcfReader.iterator() : new ContigQueryIterator(vcfReader, contigs);
 		Iterator<Pair<BreakendSummary, Integer>> idsvIt = Iterators.transform(it, variant -> getBreakendSummary(pc.getDictionary(), variant, ordinals));
 		Iterator<Pair<BreakendSummary, Integer>> idsvFilteredIt = Iterators.filter(idsvIt, pair -> pair != null && pair.getSecond() > 0);
 		Iterator<Pair<BreakendSummary, Integer>> bpit = new PairBreakendSummaryWindowedSortingIterator(pc.getLinear(), idsvFilteredIt, MAX_BREAKPOINT_HOMOLOGY_LENGTH);
@@ -257,6 +469,41 @@ public class GeneratePonBedpe extends CommandLineProgram {
 	public static void main(String[] argv) {
         System.exit(new GeneratePonBedpe().instanceMain(argv));
     }
+	/**
+	 * Iterates over the given chromosomes of an indexed VCF with at most one query open at a time.
+	 */
+	private static class ContigQueryIterator implements CloseableIterator<VariantContext> {
+		private final VCFFileReader reader;
+		private final Iterator<SAMSequenceRecord> contigs;
+		private CloseableIterator<VariantContext> current = null;
+		public ContigQueryIterator(VCFFileReader reader, List<SAMSequenceRecord> contigs) {
+			this.reader = reader;
+			this.contigs = contigs.iterator();
+		}
+		@Override
+		public boolean hasNext() {
+			while ((current == null || !current.hasNext()) && contigs.hasNext()) {
+				if (current != null) {
+					current.close();
+				}
+				SAMSequenceRecord contig = contigs.next();
+				current = reader.query(contig.getSequenceName(), 1, contig.getSequenceLength());
+			}
+			return current != null && current.hasNext();
+		}
+		@Override
+		public VariantContext next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			return current.next();
+		}
+		@Override
+		public void close() {
+			if (current != null) {
+				current.close();
+				current = null;
+			}
+		}
+	}
 	public class PairBreakendSummaryWindowedSortingIterator extends WindowedSortingIterator<Pair<BreakendSummary, Integer>> {
 		public PairBreakendSummaryWindowedSortingIterator(LinearGenomicCoordinate lgc, Iterator<Pair<BreakendSummary, Integer>> it, long windowSize) {
 			super(it, x -> lgc.getLinearCoordinate(x.getFirst().referenceIndex, x.getFirst().start), windowSize);
@@ -0,0 +1,214 @@
+package gridss;
+
+import au.edu.wehi.idsv.FileSystemContext;
+import au.edu.wehi.idsv.GenomicProcessingContext;
+import au.edu.wehi.idsv.StreamingSplitReadRealigner;
+import au.edu.wehi.idsv.alignment.BwaStreamingAligner;
+import au.edu.wehi.idsv.alignment.StreamingAligner;
+import au.edu.wehi.idsv.sam.SAMRecordUtil;
+import au.edu.wehi.idsv.util.AsyncBufferedIterator;
+import au.edu.wehi.idsv.util.FileHelper;
+import au.edu.wehi.idsv.util.UngroupingIterator;
+import com.google.common.collect.Iterators;
+import gridss.cmdline.ReferenceCommandLineProgram;
+import htsjdk.samtools.*;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.util.AsyncReadTaskRunner;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.SortingCollection;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+import picard.cmdline.StandardOptionDefinitions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+@CommandLineProgramProperties(
+		summary = "Generates the coordinate sorted GRIDSS SV read file in a single pass." +
+				" This command combines ExtractSVReads, ComputeSamTags, and SoftClipsToSplitReads into a single" +
+				" in-process iterator pipeline. No intermediate BAM files are written:" +
+				" if the input is not queryname sorted, extracted reads are spilled to temporary SortingCollection files" +
+				" and the only BAM written is the final coordinate sorted output." +
+				" Realignment is done in-process.",
+		oneLineSummary = "Extracts, annotates and realigns SV reads in a single pass.",
+		programGroup = picard.cmdline.programgroups.ReadDataManipulationProgramGroup.class
+)
+public class PreprocessSVReads extends ReferenceCommandLineProgram {
+	private static final Log log = Log.getInstance(PreprocessSVReads.class);
+	@Argument(shortName=StandardOptionDefinitions.INPUT_SHORT_NAME, doc="Input BAM file. If the input file is queryname sorted, no extraction sort is performed.")
+	public File INPUT;
+	@Argument(shortName=StandardOptionDefinitions.OUTPUT_SHORT_NAME, doc="Coordinate sorted BAM file containing SV reads with tags corrected and split reads identified.")
+	public File OUTPUT;
+	@Argument(doc="Minimum bases clipped for a read to be extracted.", optional=true)
+	public int MIN_CLIP_LENGTH = new ExtractSVReads().MIN_CLIP_LENGTH;
+	@Argument(doc="Minimum bases clipped for split read realignment. Generally, short read aligners are not able to uniquely align sequences shorter than 18-20 bases.", optional=true)
+	public int MIN_REALIGNMENT_CLIP_LENGTH = new SoftClipsToSplitReads().MIN_CLIP_LENGTH;
+	@Argument(doc="Minimum average base quality score of clipped bases. Low quality clipped bases are indicative of sequencing errors.", optional=true)
+	public float MIN_CLIP_QUAL = new SoftClipsToSplitReads().MIN_CLIP_QUAL;
+	@Argument(doc="Minimum concordant read pair fragment size if using the fixed method of calculation", optional=true)
+	public Integer READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE = null;
+	@Argument(doc="Maximum concordant read pair fragment size if using the fixed method of calculation", optional=true)
+	public Integer READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE = null;
+	@Argument(doc = "Percent (0.0-1.0) of read pairs considered concordant if using the library distribution to determine concordance.", optional=true)
+	public Double READ_PAIR_CONCORDANT_PERCENT = null;
+	@Argument(doc="Picard tools insert size distribution metrics txt file. Required if using the library distribution to determine concordance.", optional=true)
+	public File INSERT_SIZE_METRICS = null;
+	@Argument(doc="Indicates whether to perform realignment on existing chimeric alignment. If true, only the primary alignment record is retained.", optional=true)
+	public boolean REALIGN_EXISTING_SPLIT_READS = false;
+	@Argument(doc="Which in-process aligner to use.", optional=true)
+	public SoftClipsToSplitReads.Aligner ALIGNER = SoftClipsToSplitReads.Aligner.BWAMEM;
+	@Argument(doc="Number of records to buffer when performing in-process alignment.", optional=true)
+	public int ALIGNER_BATCH_SIZE = 100000;
+	@Argument(doc="Number of threads to use for realignment. Defaults to number of cores available."
+			+ " Note that I/O threads are not included in this worker thread count so CPU usage can be higher than the number of worker thread.",
+			shortName="THREADS")
+	public int WORKER_THREADS = Runtime.getRuntime().availableProcessors();
+	@Argument(doc="Base quality score to sent to aligner if quality scores are missing.", optional=true)
+	public byte FALLBACK_BASE_QUALITY = new SoftClipsToSplitReads().FALLBACK_BASE_QUALITY;
+	public static void main(String[] argv) {
+		System.exit(new PreprocessSVReads().instanceMain(argv));
+	}
+
+	@Override
+	protected String[] customCommandLineValidation() {
+		if (ALIGNER == SoftClipsToSplitReads.Aligner.EXTERNAL) {
+			return new String[]{"Cannot use external aligner for PreprocessSVReads. Run ExtractSVReads, ComputeSamTags and SoftClipsToSplitReads separately instead."};
+		}
+		if (WORKER_THREADS < 1) {
+			return new String[]{"WORKER_THREADS must be at least 1."};
+		}
+		if ((READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE != null) != (READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE != null)) {
+			return new String[] { "READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE and READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE must both be specified." };
+		}
+		if (READ_PAIR_CONCORDANT_PERCENT != null && INSERT_SIZE_METRICS == null) {
+			return new String[] { "INSERT_SIZE_METRICS must be specified if READ_PAIR_CONCORDANT_PERCENT is specified." };
+		}
+		return super.customCommandLineValidation();
+	}
+
+	@Override
+	protected int doWork() {
+		log.debug("Setting language-neutral locale");
+		java.util.Locale.setDefault(Locale.ROOT);
+		IOUtil.assertFileIsReadable(INPUT);
+		IOUtil.assertFileIsWritable(OUTPUT);
+		IOUtil.assertFileIsReadable(REFERENCE_SEQUENCE);
+
+		GenomicProcessingContext pc = new GenomicProcessingContext(getFileSystemContext(), REFERENCE_SEQUENCE, getReference());
+		ExtractSVReads extract = createExtractSVReads();
+		ComputeSamTags tags = new ComputeSamTags();
+		tags.setReference(getReference());
+		tags.WORKER_THREADS = -1; // don't use ComputeSamTags workers - we're handling this ourselves
+		StreamingAligner sa;
+		switch (ALIGNER) {
+			case BWAMEM:
+				// see PreprocessForBreakendAssembly for rationale behind the buffer size
+				sa = new BwaStreamingAligner(REFERENCE_SEQUENCE, getReference().getSequenceDictionary(), WORKER_THREADS, ALIGNER_BATCH_SIZE * 25);
+				break;
+			case EXTERNAL:
+			default:
+				throw new IllegalArgumentException("Aligner not supported by PreprocessSVReads");
+		}
+		StreamingSplitReadRealigner realigner = new StreamingSplitReadRealigner(pc, sa, ALIGNER_BATCH_SIZE);
+		realigner.setFallbackBaseQuality(FALLBACK_BASE_QUALITY);
+		realigner.setMinSoftClipLength(MIN_REALIGNMENT_CLIP_LENGTH);
+		realigner.setMinSoftClipQuality(MIN_CLIP_QUAL);
+		realigner.setWorkerThreads(WORKER_THREADS);
+		realigner.setRealignExistingSplitReads(REALIGN_EXISTING_SPLIT_READS);
+		String threadPrefix = INPUT.getName() + "-";
+		FileSystemContext fsc = getFileSystemContext();
+		SortingCollection<SAMRecord> querynameSorted = null;
+		try {
+			SamReaderFactory readerFactory = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE);
+			try (SamReader reader = readerFactory.open(INPUT)) {
+				SAMFileHeader header = reader.getFileHeader().clone();
+				boolean inputQuerynameSorted = header.getSortOrder() == SortOrder.queryname;
+				header.setSortOrder(SortOrder.coordinate);
+				try (SAMRecordIterator rawIt = reader.iterator()) {
+					CloseableIterator<SAMRecord> asyncIn = new AsyncBufferedIterator<>(rawIt, threadPrefix + "raw");
+					Iterator<SAMRecord> extractedIt = extract(extract, asyncIn);
+					if (!inputQuerynameSorted) {
+						// ComputeSamTags requires all records for a read to be together.
+						// The only spill to disk is the (uncompressed/snappy) SortingCollection temp files
+						log.info("Sorting extracted SV reads from " + INPUT + " by read name");
+						SAMFileHeader querynameHeader = header.clone();
+						querynameHeader.setSortOrder(SortOrder.queryname);
+						querynameSorted = SortingCollection.newInstance(
+								SAMRecord.class,
+								new BAMRecordCodec(querynameHeader),
+								SortOrder.queryname.getComparatorInstance(),
+								fsc.getMaxBufferedRecordsPerFile(),
+								fsc.getTemporaryDirectory().toPath());
+						while (extractedIt.hasNext()) {
+							querynameSorted.add(extractedIt.next());
+						}
+						querynameSorted.doneAdding();
+						extractedIt = querynameSorted.iterator();
+					}
+					File tmpOutput = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(OUTPUT, "gridss.tmp.PreprocessSVReads.") : OUTPUT;
+					SAMFileWriterFactory writerFactory = pc.getSamFileWriterFactory()
+							.setMaxRecordsInRam(fsc.getMaxBufferedRecordsPerFile());
+					// Not presorted: the writer performs the coordinate sort
+					try (SAMFileWriter writer = writerFactory.makeSAMOrBAMWriter(header, false, tmpOutput)) {
+						Iterator<SAMRecord> tagFixedIt = tags.transform(AsyncReadTaskRunner.getNonBlockingThreadpool(), Defaults.ASYNC_BUFFER_SIZE, extractedIt, null);
+						realigner.process(tagFixedIt, writer, writer);
+					}
+					if (tmpOutput != OUTPUT) {
+						FileHelper.move(tmpOutput, OUTPUT, true);
+					}
+				}
+			}
+			sa.close();
+		} catch (IOException e) {
+			log.error(e);
+			return -1;
+		} finally {
+			if (querynameSorted != null) {
+				querynameSorted.cleanup();
+			}
+		}
+		return 0;
+	}
+
+	private ExtractSVReads createExtractSVReads() {
+		ExtractSVReads extract = new ExtractSVReads();
+		extract.INPUT = INPUT;
+		extract.MIN_CLIP_LENGTH = MIN_CLIP_LENGTH;
+		extract.READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE = READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE;
+		extract.READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE = READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE;
+		extract.READ_PAIR_CONCORDANT_PERCENT = READ_PAIR_CONCORDANT_PERCENT;
+		extract.INSERT_SIZE_METRICS = INSERT_SIZE_METRICS;
+		// saves sorting unmapped reads that will be filtered anyway
+		extract.UNMAPPED_READS = false;
+		// Picard tools does not mark duplicates correctly. We need to keep them so we can
+		// fix the duplicate marking in ComputeSamTags
+		extract.INCLUDE_DUPLICATES = true;
+		extract.initialiseFilters();
+		return extract;
+	}
+
+	/**
+	 * Streaming equivalent of ExtractSVReads. As with ExtractSVReads, reads with the same
+	 * read name are assumed to be consecutive.
+	 */
+	private static Iterator<SAMRecord> extract(ExtractSVReads extract, Iterator<SAMRecord> it) {
+		Iterator<List<SAMRecord>> fragments = SAMRecordUtil.groupedByReadName(it);
+		Iterator<List<SAMRecord>> extracted = Iterators.transform(fragments, records -> {
+			boolean[] shouldExtract = extract.shouldExtract(records, null);
+			List<SAMRecord> result = new ArrayList<>(records.size());
+			for (int i = 0; i < records.size(); i++) {
+				if (shouldExtract[i]) {
+					result.add(records.get(i));
+				}
+			}
+			return result;
+		});
+		return new UngroupingIterator<>(extracted);
+	}
+}
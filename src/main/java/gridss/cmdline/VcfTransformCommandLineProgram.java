@@ -56,12 +56,19 @@ public abstract class VcfTransformCommandLineProgram extends FullEvidenceCommand
 			return 1;
 		}
 		log.info("Annotating variants in " + INPUT_VCF);
-		try (CloseableIterator<VariantContextDirectedEvidence> it = iterator(getBreakends(INPUT_VCF), threadpool)) {
+		try (CloseableIterator<VariantContextDirectedEvidence> it = getTransformedBreakends(threadpool)) {
 			saveVcf(OUTPUT_VCF, getAllCalls(INPUT_VCF, it));
 		}
 		log.info("Annotated variants written to " + OUTPUT_VCF);
 		return 0;
 	}
+	/**
+	 * Transforms the breakend calls in the input VCF
+	 * @return transformed breakends ordered by breakend start position
+	 */
+	protected CloseableIterator<VariantContextDirectedEvidence> getTransformedBreakends(ExecutorService threadpool) throws IOException, InterruptedException, ExecutionException {
+		return iterator(getBreakends(INPUT_VCF), threadpool);
+	}
 	public CloseableIterator<VariantContextDirectedEvidence> getBreakends(File file) {
 		VCFFileReader vcfReader = new VCFFileReader(file, false);
 		CloseableIterator<VariantContext> it = vcfReader.iterator();
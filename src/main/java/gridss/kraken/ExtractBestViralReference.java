@@ -3,10 +3,9 @@ package gridss.kraken;
 import au.edu.wehi.idsv.debruijn.ContigKmerCounter;
 import au.edu.wehi.idsv.kraken.KrakenReportLine;
 import au.edu.wehi.idsv.kraken.SeqIdToTaxIdMap;
-import au.edu.wehi.idsv.ncbi.MinimalTaxonomyNode;
 import au.edu.wehi.idsv.ncbi.TaxonomyHelper;
+import au.edu.wehi.idsv.ncbi.TaxonomyIndex;
 import au.edu.wehi.idsv.ncbi.TaxonomyLevel;
-import au.edu.wehi.idsv.ncbi.TaxonomyNode;
 import com.google.common.collect.Streams;
 import gridss.cmdline.ReferenceCommandLineProgram;
 import htsjdk.samtools.SAMSequenceDictionary;
@@ -63,9 +62,11 @@ public class ExtractBestViralReference extends CommandLineProgram {
     public int KMER = 16;
     @Argument(doc="Distance between kmers in reference lookup. Longer stride reduces memory usage. Should not be more than kmer length")
     public int STRIDE = 16;
-    @Argument(doc="NCBI taxonomy nodes.dmp. Download and extract from https://ftp.ncbi.nlm.nih.gov/pub/taxonomy/taxdmp.zip")
+    @Argument(doc="NCBI taxonomy nodes.dmp. Download and extract from https://ftp.ncbi.nlm.nih.gov/pub/taxonomy/taxdmp.zip" +
+            " A taxonomy index created by IndexTaxonomy can be used instead.")
     public File NCBI_NODES_DMP;
-    @Argument(doc="Kraken2 seqid2taxid.map mapping file")
+    @Argument(doc="Kraken2 seqid2taxid.map mapping file." +
+            " A seqid2taxid index created by IndexTaxonomy can be used instead.")
     public File SEQID2TAXID_MAP;
     @Argument(doc="Kraken2 library.fna files." +
             " Downloaded by kraken2-build." +
@@ -103,7 +104,7 @@ public class ExtractBestViralReference extends CommandLineProgram {
             log.info("Loading seqid2taxid.map from ", SEQID2TAXID_MAP);
             Map<String, Integer> seq2taxLookup = SeqIdToTaxIdMap.createLookup(SEQID2TAXID_MAP);
             log.info("Loading NCBI taxonomy from ", NCBI_NODES_DMP);
-            Map<Integer, TaxonomyNode> taxa = TaxonomyHelper.parseFull(NCBI_NODES_DMP);
+            TaxonomyIndex taxa = TaxonomyIndex.open(NCBI_NODES_DMP);
             log.info("Parsing ", INPUT_SUMMARY);
             List<List<String>> summaryLines = Files.readAllLines(INPUT_SUMMARY.toPath()).stream()
                     .map(line -> Arrays.asList(line.split("\t")))
@@ -226,9 +227,9 @@ public class ExtractBestViralReference extends CommandLineProgram {
         return 0;
     }
 
-    private int getParentTaxaOfInterest(Set<Integer> taxaOfInterest, Map<Integer, ? extends MinimalTaxonomyNode> taxa, int taxId) {
+    private int getParentTaxaOfInterest(Set<Integer> taxaOfInterest, TaxonomyIndex taxa, int taxId) {
         while (!taxaOfInterest.contains(taxId)) {
-            int parentTaxId = taxa.get(taxId).parentTaxId;
+            int parentTaxId = taxa.getParentTaxId(taxId);
             if (parentTaxId <= 1) return taxId;
             taxId = parentTaxId;
         }
@@ -3,8 +3,8 @@ package gridss.kraken;
 import au.edu.wehi.idsv.debruijn.ContigKmerCounter;
 import au.edu.wehi.idsv.kraken.KrakenReportLine;
 import au.edu.wehi.idsv.kraken.SeqIdToTaxIdMap;
-import au.edu.wehi.idsv.ncbi.MinimalTaxonomyNode;
 import au.edu.wehi.idsv.ncbi.TaxonomyHelper;
+import au.edu.wehi.idsv.ncbi.TaxonomyIndex;
 import au.edu.wehi.idsv.ncbi.TaxonomyLevel;
 import au.edu.wehi.idsv.ncbi.TaxonomyNode;
 import com.google.common.collect.Lists;
@@ -60,9 +60,11 @@ public class IdentifyViralTaxa extends CommandLineProgram {
     public List<Integer> TAXONOMY_IDS = Lists.newArrayList(NCBI_VIRUS_TAXID);
     @Argument(doc="File containing NCBI Taxonomy IDs to extract. One taxonomy ID per line.", optional = true)
     public File TAXONOMY_ID_LIST;
-    @Argument(doc="NCBI taxonomy nodes.dmp. Download and extract from https://ftp.ncbi.nlm.nih.gov/pub/taxonomy/taxdmp.zip")
+    @Argument(doc="NCBI taxonomy nodes.dmp. Download and extract from https://ftp.ncbi.nlm.nih.gov/pub/taxonomy/taxdmp.zip" +
+            " A taxonomy index created by IndexTaxonomy can be used instead.")
     public File NCBI_NODES_DMP;
-    @Argument(doc="Kraken2 seqid2taxid.map mapping file")
+    @Argument(doc="Kraken2 seqid2taxid.map mapping file." +
+            " A seqid2taxid index created by IndexTaxonomy can be used instead.")
     public File SEQID2TAXID_MAP;
     @Argument(doc="Kraken2 library.fna files." +
             " Downloaded by kraken2-build." +
@@ -123,7 +125,7 @@ public class IdentifyViralTaxa extends CommandLineProgram {
             log.info("Loading seqid2taxid.map from ", SEQID2TAXID_MAP);
             Map<String, Integer> seq2taxLookup = SeqIdToTaxIdMap.createLookup(SEQID2TAXID_MAP);
             log.info("Loading NCBI taxonomy from ", NCBI_NODES_DMP);
-            Map<Integer, MinimalTaxonomyNode> taxa = TaxonomyHelper.parseMinimal(NCBI_NODES_DMP);
+            TaxonomyIndex taxa = TaxonomyIndex.open(NCBI_NODES_DMP);
             boolean[] taxIdLookup = TaxonomyHelper.createInclusionLookup(TAXONOMY_IDS, taxa);
             boolean[] relevantTaxIdAndAncestors = TaxonomyHelper.addAncestors(taxIdLookup, taxa);
             log.info("Parsing Kraken2 report from ", INPUT_KRAKEN2_REPORT);
@@ -174,7 +176,7 @@ public class IdentifyViralTaxa extends CommandLineProgram {
         return "taxid_genus\tname_genus\treads_genus_tree\ttaxid_species\tname_species\treads_species_tree\ttaxid_assigned\tname_assigned\treads_assigned_tree\treads_assigned_direct";
     }
 
-    private String createSummaryLine(List<KrakenReportLine> fullReport, Map<Integer, MinimalTaxonomyNode> taxa, KrakenReportLine line) {
+    private String createSummaryLine(List<KrakenReportLine> fullReport, TaxonomyIndex taxa, KrakenReportLine line) {
         Map<Integer, KrakenReportLine> lookup = fullReport.stream().collect(Collectors.toMap(x -> x.taxonomyId, x -> x));
         KrakenReportLine genus = line;
         KrakenReportLine species = line;
@@ -188,7 +190,7 @@ public class IdentifyViralTaxa extends CommandLineProgram {
                     genus = current;
                     break;
             }
-            int parent_taxid = taxa.get(current.taxonomyId).parentTaxId;
+            int parent_taxid = taxa.getParentTaxId(current.taxonomyId);
             if (parent_taxid <= 1) break;
             current = lookup.get(parent_taxid);
         }
@@ -205,7 +207,7 @@ public class IdentifyViralTaxa extends CommandLineProgram {
      * @param level
      * @return
      */
-    public static Int2IntMap createTaxaGroupLookup(Map<Integer, ? extends MinimalTaxonomyNode> taxa, List<KrakenReportLine> fullReport, TaxonomyLevel level) {
+    public static Int2IntMap createTaxaGroupLookup(TaxonomyIndex taxa, List<KrakenReportLine> fullReport, TaxonomyLevel level) {
         Map<Integer, KrakenReportLine> reportLookup = fullReport.stream().collect(Collectors.toMap(krl -> krl.taxonomyId, krl -> krl));
         Int2IntMap taxaGroupLookup = new Int2IntOpenHashMap();
         for (KrakenReportLine krl : fullReport) {
@@ -216,9 +218,10 @@ public class IdentifyViralTaxa extends CommandLineProgram {
                     if (level.krakenAbbreviation().equals(parent.rank)) {
                         groupTaxa = parent.taxonomyId;
                     }
-                    if (taxa.get(parent.taxonomyId) == null) break;
-                    if (parent.taxonomyId == taxa.get(parent.taxonomyId).parentTaxId) break;
-                    parent = reportLookup.get(taxa.get(parent.taxonomyId).parentTaxId);
+                    int parentTaxId = taxa.getParentTaxId(parent.taxonomyId);
+                    if (parentTaxId == TaxonomyIndex.NO_TAXID) break;
+                    if (parent.taxonomyId == parentTaxId) break;
+                    parent = reportLookup.get(parentTaxId);
                 }
             }
             taxaGroupLookup.put(krl.taxonomyId, groupTaxa);
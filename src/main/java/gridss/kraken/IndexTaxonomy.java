@@ -0,0 +1,77 @@
+package gridss.kraken;
+
+import au.edu.wehi.idsv.kraken.SeqIdToTaxIdIndexWriter;
+import au.edu.wehi.idsv.ncbi.TaxonomyIndexWriter;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+import picard.cmdline.CommandLineProgram;
+
+import java.io.File;
+import java.io.IOException;
+
+@CommandLineProgramProperties(
+        summary = "Converts the NCBI taxonomy nodes.dmp and Kraken2 seqid2taxid.map files to memory-mappable indexes." +
+                " The indexes can be used in place of the original files by IdentifyViralTaxa, ExtractBestViralReference" +
+                " and SubsetToTaxonomy and are loaded without parsing or holding the taxonomy on the heap.",
+        oneLineSummary = "Creates taxonomy indexes from NCBI nodes.dmp and Kraken2 seqid2taxid.map files",
+        programGroup = gridss.cmdline.programgroups.DataConversion.class
+)
+public class IndexTaxonomy extends CommandLineProgram {
+    private static final Log log = Log.getInstance(IndexTaxonomy.class);
+    @Argument(doc="NCBI taxonomy nodes.dmp. Download and extract from https://ftp.ncbi.nlm.nih.gov/pub/taxonomy/taxdmp.zip", optional = true)
+    public File NCBI_NODES_DMP;
+    @Argument(doc="Output taxonomy index", optional = true)
+    public File OUTPUT_NODES_INDEX;
+    @Argument(doc="Kraken2 seqid2taxid.map mapping file", optional = true)
+    public File SEQID2TAXID_MAP;
+    @Argument(doc="Output seqid2taxid index", optional = true)
+    public File OUTPUT_SEQID2TAXID_INDEX;
+
+    @Override
+    protected String[] customCommandLineValidation() {
+        if ((NCBI_NODES_DMP == null) != (OUTPUT_NODES_INDEX == null)) {
+            return new String[] { "NCBI_NODES_DMP and OUTPUT_NODES_INDEX must be specified together." };
+        }
+        if ((SEQID2TAXID_MAP == null) != (OUTPUT_SEQID2TAXID_INDEX == null)) {
+            return new String[] { "SEQID2TAXID_MAP and OUTPUT_SEQID2TAXID_INDEX must be specified together." };
+        }
+        if (NCBI_NODES_DMP == null && SEQID2TAXID_MAP == null) {
+            return new String[] { "At least one of NCBI_NODES_DMP and SEQID2TAXID_MAP must be specified." };
+        }
+        return super.customCommandLineValidation();
+    }
+
+    @Override
+    protected int doWork() {
+        try {
+            if (NCBI_NODES_DMP != null) {
+                IOUtil.assertFileIsReadable(NCBI_NODES_DMP);
+                IOUtil.assertFileIsWritable(OUTPUT_NODES_INDEX);
+                log.info("Loading NCBI taxonomy from ", NCBI_NODES_DMP);
+                TaxonomyIndexWriter writer = new TaxonomyIndexWriter();
+                writer.addNodesDmp(NCBI_NODES_DMP);
+                log.info("Writing ", OUTPUT_NODES_INDEX);
+                writer.write(OUTPUT_NODES_INDEX);
+            }
+            if (SEQID2TAXID_MAP != null) {
+                IOUtil.assertFileIsReadable(SEQID2TAXID_MAP);
+                IOUtil.assertFileIsWritable(OUTPUT_SEQID2TAXID_INDEX);
+                log.info("Loading seqid2taxid.map from ", SEQID2TAXID_MAP);
+                SeqIdToTaxIdIndexWriter writer = new SeqIdToTaxIdIndexWriter();
+                writer.addSeqIdToTaxIdMap(SEQID2TAXID_MAP);
+                log.info("Writing ", OUTPUT_SEQID2TAXID_INDEX);
+                writer.write(OUTPUT_SEQID2TAXID_INDEX);
+            }
+        } catch (IOException e) {
+            log.error(e);
+            throw new RuntimeException(e);
+        }
+        return 0;
+    }
+
+    public static void main(String[] argv) {
+        System.exit(new IndexTaxonomy().instanceMain(argv));
+    }
+}
@@ -2,8 +2,13 @@ package gridss.kraken;
 
 import au.edu.wehi.idsv.kraken.KrakenClassification;
 import au.edu.wehi.idsv.kraken.KrakenClassificationChecker;
-import au.edu.wehi.idsv.kraken.KrakenParser;
+import au.edu.wehi.idsv.util.AsyncBufferedIterator;
+import au.edu.wehi.idsv.util.BatchingIterator;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import htsjdk.samtools.util.AsyncBlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedInputStream;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.RuntimeIOException;
@@ -14,17 +19,32 @@ import picard.cmdline.StandardOptionDefinitions;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
 
 @CommandLineProgramProperties(
-        summary = "Processes Kraken2 output and subsets to only those records under the given taxonomic IDs. ",
+        summary = "Processes Kraken2 output and subsets to only those records under the given taxonomic IDs. " +
+                "Kraken2 output can be uncompressed, gzip, or bgzip compressed. " +
+                "Records are parsed and filtered in parallel with output written in input order.",
         oneLineSummary = "Processes Kraken2 output and subsets to only those records under the given taxonomic IDs.",
         programGroup=gridss.cmdline.programgroups.DataConversion.class
 )
 public class SubsetToTaxonomy extends CommandLineProgram {
     private static final int NCBI_VIRUS_TAXID = 10239;
     private static final Log log = Log.getInstance(SubsetToTaxonomy.class);
-    @Argument(shortName= StandardOptionDefinitions.INPUT_SHORT_NAME, doc="Kraken2 output file.")
+    private static final int ZSTD_MAGIC = 0xFD2FB528;
+    /**
+     * Number of Kraken2 output lines parsed by each worker task
+     */
+    private static final int LINES_PER_BATCH = 4096;
+    @Argument(shortName= StandardOptionDefinitions.INPUT_SHORT_NAME, doc="Kraken2 output file. gzip and bgzip compressed input is supported.")
     public File INPUT;
     @Argument(shortName=StandardOptionDefinitions.OUTPUT_SHORT_NAME, doc="Output file")
     public File OUTPUT;
@@ -32,8 +52,13 @@ public class SubsetToTaxonomy extends CommandLineProgram {
     public OutputFormat FORMAT = OutputFormat.KRAKEN;
     @Argument(doc="NCBI Taxonomy IDs to extract. All taxonomic entries under these IDs are also extracted. Defaults to all viruses.")
     public List<Integer> TAXONOMY_IDS = Lists.newArrayList(NCBI_VIRUS_TAXID);
-    @Argument(doc="NCBI taxonomy nodes.dmp. Download and extract from https://ftp.ncbi.nlm.nih.gov/pub/taxonomy/taxdmp.zip")
+    @Argument(doc="NCBI taxonomy nodes.dmp. Download and extract from https://ftp.ncbi.nlm.nih.gov/pub/taxonomy/taxdmp.zip" +
+            " A taxonomy index created by IndexTaxonomy can be used instead.")
     public File NCBI_NODES_DMP;
+    @Argument(doc="Number of worker threads used to parse and filter Kraken2 output. Defaults to number of cores available."
+            + " Note that I/O threads are not included in this worker thread count so CPU usage can be higher than the number of worker thread.",
+            shortName="THREADS")
+    public int WORKER_THREADS = Runtime.getRuntime().availableProcessors();
     //@Argument(doc="Include in output if any kmer unambiguously matches the taxonomic classification.", optional = true)
     //public Boolean ANY_KMER = true;
 
@@ -48,39 +73,136 @@ public class SubsetToTaxonomy extends CommandLineProgram {
         READ_NAME,
     }
 
+    @Override
+    protected String[] customCommandLineValidation() {
+        if (WORKER_THREADS < 1) {
+            return new String[] { "WORKER_THREADS must be at least 1." };
+        }
+        return super.customCommandLineValidation();
+    }
+
     @Override
     protected int doWork() {
         IOUtil.assertFileIsReadable(INPUT);
         IOUtil.assertFileIsReadable(NCBI_NODES_DMP);
         IOUtil.assertFileIsWritable(OUTPUT);
-        try (KrakenParser parser = new KrakenParser(new BufferedReader(new InputStreamReader(new FileInputStream(INPUT))))) {
+        ExecutorService threadpool = Executors.newFixedThreadPool(WORKER_THREADS, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("SubsetToTaxonomy-%d").build());
+        try (BufferedReader reader = openKrakenOutput(INPUT)) {
             KrakenClassificationChecker kcc = new KrakenClassificationChecker(TAXONOMY_IDS, NCBI_NODES_DMP);
             log.info("Performing taxonomy lookup on ", INPUT);
-            try (BufferedOutputStream os = new BufferedOutputStream(new FileOutputStream(OUTPUT))) {
-                while (parser.hasNext()) {
-                    KrakenClassification kc = parser.next();
-                    if (kcc.isOfInterest(kc)) {
-                        switch (FORMAT) {
-                            case READ_NAME:
-                                os.write(kc.sequenceId.getBytes(StandardCharsets.UTF_8));
-                                os.write('\n');
-                                break;
-                            case KRAKEN:
-                            default:
-                                os.write(kc.toKrakenOutput().getBytes(StandardCharsets.UTF_8));
-                                os.write('\n');
-                                break;
+            final OutputFormat format = FORMAT;
+            // lines are read (and decompressed) on a background thread, parsed and filtered
+            // in batches on the worker threads and written in input order on this thread
+            try (AsyncBufferedIterator<String> lines = new AsyncBufferedIterator<>(krakenLines(reader), "SubsetToTaxonomy-reader")) {
+                Iterator<List<String>> batches = new BatchingIterator<>(lines, LINES_PER_BATCH);
+                Deque<Future<byte[]>> pending = new ArrayDeque<>();
+                try (BufferedOutputStream os = new BufferedOutputStream(new FileOutputStream(OUTPUT))) {
+                    while (batches.hasNext() || !pending.isEmpty()) {
+                        if (batches.hasNext() && pending.size() < 2 * WORKER_THREADS) {
+                            List<String> batch = batches.next();
+                            pending.add(threadpool.submit(() -> filter(kcc, format, batch)));
+                        } else {
+                            os.write(pending.poll().get());
                         }
                     }
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
         } catch (IOException e) {
             log.error(e);
             throw new RuntimeIOException(e);
+        } finally {
+            threadpool.shutdownNow();
         }
         return 0;
     }
 
+    /**
+     * Filters the given Kraken2 output lines
+     * @return output records of interest
+     */
+    private static byte[] filter(KrakenClassificationChecker kcc, OutputFormat format, List<String> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            KrakenClassification kc = new KrakenClassification(line);
+            if (kcc.isOfInterest(kc)) {
+                switch (format) {
+                    case READ_NAME:
+                        sb.append(kc.sequenceId);
+                        sb.append('\n');
+                        break;
+                    case KRAKEN:
+                    default:
+                        sb.append(kc.toKrakenOutput());
+                        sb.append('\n');
+                        break;
+                }
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Kraken2 output lines up to the first empty line
+     */
+    private static Iterator<String> krakenLines(BufferedReader reader) {
+        return new AbstractIterator<String>() {
+            @Override
+            protected String computeNext() {
+                try {
+                    String line = reader.readLine();
+                    if (line == null || line.isEmpty()) {
+                        return endOfData();
+                    }
+                    return line;
+                } catch (IOException e) {
+                    throw new RuntimeIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Opens the given Kraken2 output file.
+     * bgzip compressed input blocks are decompressed in parallel.
+     */
+    private static BufferedReader openKrakenOutput(File file) throws IOException {
+        InputStream is = new BufferedInputStream(new FileInputStream(file), IOUtil.STANDARD_BUFFER_SIZE);
+        try {
+            if (BlockCompressedInputStream.isValidFile(is)) {
+                is = new AsyncBlockCompressedInputStream(is);
+            } else if (IOUtil.isGZIPInputStream(is)) {
+                is = new GZIPInputStream(is, IOUtil.STANDARD_BUFFER_SIZE);
+            } else if (isZstd(is)) {
+                throw new IOException(String.format("%s is zstd compressed. zstd compressed input is not supported. Decompress with zstd -dc or recompress with bgzip.", file));
+            }
+        } catch (IOException e) {
+            is.close();
+            throw e;
+        }
+        return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8), IOUtil.STANDARD_BUFFER_SIZE);
+    }
+
+    private static boolean isZstd(InputStream is) throws IOException {
+        is.mark(Integer.BYTES);
+        try {
+            // zstd frame magic number is stored little-endian
+            int magic = 0;
+            for (int i = 0; i < Integer.BYTES; i++) {
+                int b = is.read();
+                if (b < 0) return false;
+                magic |= b << (8 * i);
+            }
+            return magic == ZSTD_MAGIC;
+        } finally {
+            is.reset();
+        }
+    }
+
     public static void main(String[] argv) {
         System.exit(new SubsetToTaxonomy().instanceMain(argv));
     }
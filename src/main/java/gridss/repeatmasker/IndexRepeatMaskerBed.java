@@ -0,0 +1,46 @@
+package gridss.repeatmasker;
+
+import au.edu.wehi.idsv.repeatmasker.RepeatMaskerIndexWriter;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+import picard.cmdline.CommandLineProgram;
+import picard.cmdline.StandardOptionDefinitions;
+
+import java.io.File;
+import java.io.IOException;
+
+@CommandLineProgramProperties(
+		summary = "Converts a bedops RepeatMasker BED file to a memory-mappable index." +
+				" The index can be used in place of the BED file by AnnotateInsertedSequence" +
+				" and is loaded without parsing or holding the RepeatMasker annotations on the heap.",
+		oneLineSummary = "Creates a RepeatMasker index from a bedops RepeatMasker BED file",
+		programGroup = gridss.cmdline.programgroups.DataConversion.class
+)
+public class IndexRepeatMaskerBed extends CommandLineProgram {
+	private static final Log log = Log.getInstance(IndexRepeatMaskerBed.class);
+	@Argument(shortName=StandardOptionDefinitions.INPUT_SHORT_NAME, doc="bedops RepeatMasker BED file. Use bedops rmsk2bed to generate the bed file from the RepeatMasker .fa.out file.")
+	public File INPUT;
+	@Argument(shortName=StandardOptionDefinitions.OUTPUT_SHORT_NAME, doc="Output RepeatMasker index")
+	public File OUTPUT;
+	@Override
+	protected int doWork() {
+		IOUtil.assertFileIsReadable(INPUT);
+		IOUtil.assertFileIsWritable(OUTPUT);
+		try {
+			log.info("Loading ", INPUT);
+			RepeatMaskerIndexWriter writer = new RepeatMaskerIndexWriter();
+			writer.addBed(INPUT);
+			log.info("Writing ", OUTPUT);
+			writer.write(OUTPUT);
+		} catch (IOException e) {
+			log.error(e);
+			throw new RuntimeException(e);
+		}
+		return 0;
+	}
+	public static void main(String[] argv) {
+		System.exit(new IndexRepeatMaskerBed().instanceMain(argv));
+	}
+}
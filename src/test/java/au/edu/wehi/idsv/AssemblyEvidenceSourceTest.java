@@ -299,6 +299,38 @@ public class AssemblyEvidenceSourceTest extends IntermediateFilesTest {
 		assertEquals(100, list.size());
 	}
 	@Test
+	public void shared_decode_assembly_should_not_affect_assembly_results() throws IOException {
+		List<SAMRecord> in = new ArrayList<>();
+		for (int i = 50; i < 150; i++) {
+			in.add(withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGA", Read(0, i, "41M58S"))[0]);
+			in.add(withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGA", Read(1, i, "58S41M"))[0]);
+		}
+		createInput(in);
+		ProcessingContext pc = getCommandlineContext();
+		pc.getConfig().getAssembly().minReads = 1;
+		pc.getConfig().chunkSize = 100;
+		SAMEvidenceSource ses = new SAMEvidenceSource(pc, input, null, 0);
+		FileHelper.copy(ses.getFile(), ses.getSVFile(), true);
+		List<String> expected = null;
+		for (boolean sharedDecode : new boolean[] { false, true }) {
+			File file = new File(testFolder.getRoot(), "breakend" + sharedDecode + ".bam");
+			AssemblyEvidenceSource aes = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), file);
+			aes.setSharedDecodeAssembly(sharedDecode);
+			ExecutorService threadpool = Executors.newFixedThreadPool(4);
+			aes.assembleBreakends(threadpool);
+			threadpool.shutdown();
+			List<String> result = getRecords(file).stream()
+					.map(r -> String.format("%d:%d %s %s", r.getReferenceIndex(), r.getAlignmentStart(), r.getCigarString(), S(r.getReadBases())))
+					.collect(Collectors.toList());
+			if (expected == null) {
+				expected = result;
+			} else {
+				assertEquals(expected, result);
+			}
+		}
+		assertEquals(200, expected.size());
+	}
+	@Test
 	public void bounds_check_should_apply_to_final_assembly_SAMRecord() throws IOException {
 		// TODO: how do we check
 		List<SAMRecord> in = new ArrayList<>();
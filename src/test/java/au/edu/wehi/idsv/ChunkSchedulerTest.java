@@ -0,0 +1,102 @@
+package au.edu.wehi.idsv;
+
+import com.google.common.collect.ImmutableList;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMRecord;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ChunkSchedulerTest extends IntermediateFilesTest {
+	@Test
+	public void bisect_should_split_by_base_count() {
+		QueryInterval[][] result = ChunkScheduler.bisect(new QueryInterval[] {
+				new QueryInterval(0, 1, 10),
+				new QueryInterval(1, 1, 10),
+		}, 15);
+		assertEquals(2, result[0].length);
+		assertEquals(1, result[1].length);
+		assertEquals(new QueryInterval(0, 1, 10), result[0][0]);
+		assertEquals(new QueryInterval(1, 1, 5), result[0][1]);
+		assertEquals(new QueryInterval(1, 6, 10), result[1][0]);
+	}
+	@Test
+	public void bisect_should_split_on_interval_boundary() {
+		QueryInterval[][] result = ChunkScheduler.bisect(new QueryInterval[] {
+				new QueryInterval(0, 1, 10),
+				new QueryInterval(1, 1, 10),
+		}, 10);
+		assertEquals(1, result[0].length);
+		assertEquals(1, result[1].length);
+		assertEquals(new QueryInterval(0, 1, 10), result[0][0]);
+		assertEquals(new QueryInterval(1, 1, 10), result[1][0]);
+	}
+	@Test
+	public void byDescendingCost_should_schedule_expensive_chunks_first() {
+		assertEquals(ImmutableList.of(1, 3, 0, 2), ChunkScheduler.byDescendingCost(new long[] { 1, 10, 1, 5 }));
+	}
+	@Test
+	public void should_estimate_higher_cost_for_regions_containing_more_evidence() {
+		List<SAMRecord> reads = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			reads.add(Read(1, 1000 + i % 100, "50M50S"));
+		}
+		reads.add(Read(2, 1000, "50M50S"));
+		createInput(reads);
+		SAMEvidenceSource ses = new SAMEvidenceSource(getCommandlineContext(), input, null, 0);
+		try (ChunkCostEstimator estimator = new ChunkCostEstimator(ImmutableList.of(ses))) {
+			assertTrue(estimator.hasEvidenceDensity());
+			long hot = estimator.estimateCost(1, 1, 10000);
+			long cold = estimator.estimateCost(2, 1, 10000);
+			assertTrue(hot > cold);
+			assertEquals(0, estimator.estimateCost(3, 1, 10000));
+		}
+	}
+	@Test
+	public void splitExpensiveChunks_should_split_hot_chunks() {
+		List<SAMRecord> reads = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			reads.add(Read(1, 1 + i * 4, "50M50S"));
+		}
+		createInput(reads);
+		SAMEvidenceSource ses = new SAMEvidenceSource(getCommandlineContext(), input, null, 0);
+		List<QueryInterval[]> chunks = ImmutableList.of(
+				new QueryInterval[] { new QueryInterval(0, 1, 10000) },
+				new QueryInterval[] { new QueryInterval(1, 1, 10000) },
+				new QueryInterval[] { new QueryInterval(2, 1, 10000) },
+				new QueryInterval[] { new QueryInterval(3, 1, 10000) });
+		try (ChunkCostEstimator estimator = new ChunkCostEstimator(ImmutableList.of(ses))) {
+			List<QueryInterval[]> result = ChunkScheduler.splitExpensiveChunks(estimator, chunks, 2, 1000);
+			assertTrue(result.size() > chunks.size());
+			assertArrayEquals(chunks.get(0), result.get(0));
+			assertArrayEquals(chunks.get(2), result.get(result.size() - 2));
+			assertArrayEquals(chunks.get(3), result.get(result.size() - 1));
+			for (int i = 1; i < result.size() - 2; i++) {
+				assertEquals(1, result.get(i)[0].referenceIndex);
+				assertTrue(result.get(i)[0].end - result.get(i)[0].start + 1 >= 1000);
+			}
+		}
+	}
+	@Test
+	public void should_plan_smaller_chunks_over_high_evidence_density() {
+		List<SAMRecord> reads = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			reads.add(Read(0, 1 + i % 1000, "50M50S"));
+		}
+		createInput(reads);
+		ProcessingContext pc = getCommandlineContext();
+		pc.getConfig().chunkSize = 20000;
+		pc.getConfig().chunkSequenceChangePenalty = 0;
+		pc.getConfig().chunkSplitCostMultiple = 0;
+		pc.getConfig().chunkEvidenceDensityPlanning = true;
+		SAMEvidenceSource ses = new SAMEvidenceSource(pc, input, null, 0);
+		ChunkScheduler scheduler = new ChunkScheduler(pc, ImmutableList.of(ses));
+		// all evidence is on the first contig so it should not share a chunk
+		assertEquals(1, scheduler.getChunks().get(0).length);
+		assertEquals(new QueryInterval(0, 1, 10000), scheduler.getChunks().get(0)[0]);
+		assertTrue(scheduler.getChunks().get(1).length > 1);
+	}
+}
@@ -0,0 +1,86 @@
+package au.edu.wehi.idsv;
+
+import au.edu.wehi.idsv.CalledBreakpointPositionLookup.NominalPosition;
+import com.google.common.collect.ImmutableList;
+import htsjdk.samtools.QueryInterval;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+
+public class ChunkedBreakpointPositionLookupTest extends TestHelper {
+	private static final List<QueryInterval[]> CHUNKS = ImmutableList.of(
+			new QueryInterval[] { new QueryInterval(0, 1, 100) },
+			new QueryInterval[] { new QueryInterval(0, 101, 10000), new QueryInterval(1, 1, 50) },
+			new QueryInterval[] { new QueryInterval(1, 51, 10000), new QueryInterval(2, 1, 10000) });
+	private ChunkedBreakpointPositionLookup create() {
+		return new ChunkedBreakpointPositionLookup(new PaddedLinearGenomicCoordinate(getSequenceDictionary()), CHUNKS);
+	}
+	@Test
+	public void getChunk_should_return_chunk_containing_position() {
+		ChunkedBreakpointPositionLookup lookup = create();
+		assertEquals(0, lookup.getChunk(0, 1));
+		assertEquals(0, lookup.getChunk(0, 100));
+		assertEquals(1, lookup.getChunk(0, 101));
+		assertEquals(1, lookup.getChunk(1, 1));
+		assertEquals(1, lookup.getChunk(1, 50));
+		assertEquals(2, lookup.getChunk(1, 51));
+		assertEquals(2, lookup.getChunk(2, 1));
+		assertEquals(2, lookup.getChunk(3, 1));
+	}
+	@Test
+	public void getMateChunk_should_use_remote_breakend() {
+		ChunkedBreakpointPositionLookup lookup = create();
+		VariantContextDirectedEvidence bp = (VariantContextDirectedEvidence)minimalBreakend()
+				.breakpoint(new BreakpointSummary(0, FWD, 10, 2, BWD, 10), "").make();
+		assertEquals(0, lookup.getChunk(bp));
+		assertEquals(2, lookup.getMateChunk(bp));
+		VariantContextDirectedEvidence be = (VariantContextDirectedEvidence)minimalBreakend()
+				.breakend(new BreakendSummary(1, FWD, 60), "").make();
+		assertEquals(2, lookup.getChunk(be));
+		assertEquals(-1, lookup.getMateChunk(be));
+	}
+	@Test(expected=IllegalArgumentException.class)
+	public void should_require_chunks_in_genomic_order() {
+		new ChunkedBreakpointPositionLookup(new PaddedLinearGenomicCoordinate(getSequenceDictionary()), ImmutableList.of(CHUNKS.get(1), CHUNKS.get(0)));
+	}
+	@Test
+	public void await_should_return_published_position() throws InterruptedException, ExecutionException, TimeoutException {
+		ChunkedBreakpointPositionLookup lookup = create();
+		NominalPosition np = new NominalPosition(new BreakpointSummary(2, BWD, 10, 0, FWD, 10), "", "", true);
+		CompletableFuture<NominalPosition> waiting = CompletableFuture.supplyAsync(() -> {
+			try {
+				return lookup.await("event", 0);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		Thread.sleep(10);
+		assertFalse(waiting.isDone());
+		lookup.publish("event", np);
+		assertTrue(np == waiting.get(10, TimeUnit.SECONDS));
+		assertEquals(0, lookup.getPublishedCount());
+	}
+	@Test
+	public void await_should_return_null_when_chunk_completes_without_publishing() throws InterruptedException, ExecutionException, TimeoutException {
+		ChunkedBreakpointPositionLookup lookup = create();
+		CompletableFuture<NominalPosition> waiting = CompletableFuture.supplyAsync(() -> {
+			try {
+				return lookup.await("event", 1);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		lookup.complete(0);
+		Thread.sleep(10);
+		assertFalse(waiting.isDone());
+		lookup.complete(1);
+		assertNull(waiting.get(10, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,25 @@
+package au.edu.wehi.idsv;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EvidenceIdTest extends TestHelper {
+	@Test
+	public void should_be_equal_for_same_evidenceID() {
+		SoftClipEvidence e1 = SCE(FWD, Read(0, 1, "10M10S"));
+		SoftClipEvidence e2 = SCE(FWD, Read(0, 1, "10M10S"));
+		assertEquals(e1.getEvidenceID(), e2.getEvidenceID());
+		assertEquals(e1.getEvidenceIdentifier(), e2.getEvidenceIdentifier());
+		assertEquals(e1.getEvidenceIdentifier().hashCode(), e2.getEvidenceIdentifier().hashCode());
+		assertEquals(0, e1.getEvidenceIdentifier().compareTo(e2.getEvidenceIdentifier()));
+		assertEquals(EvidenceId.of(e1.getEvidenceID()), e1.getEvidenceIdentifier());
+	}
+	@Test
+	public void should_differ_for_different_evidence() {
+		SoftClipEvidence e1 = SCE(FWD, Read(0, 1, "10M10S"));
+		SoftClipEvidence e2 = SCE(BWD, Read(0, 1, "10S10M"));
+		assertNotEquals(e1.getEvidenceIdentifier(), e2.getEvidenceIdentifier());
+		assertNotEquals(0, e1.getEvidenceIdentifier().compareTo(e2.getEvidenceIdentifier()));
+	}
+}
@@ -1,9 +1,13 @@
 package au.edu.wehi.idsv;
 
+import com.google.common.hash.Hashing;
 import htsjdk.samtools.SAMRecord;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
 import java.util.regex.Pattern;
 
 public class HashedEvidenceIdentifierGeneratorTest extends EvidenceIdentifierGeneratorTest {
@@ -29,4 +33,37 @@ public class HashedEvidenceIdentifierGeneratorTest extends EvidenceIdentifierGen
 			Assert.assertTrue(Pattern.matches("^[0-9a-zA-Z_-]{32}$", hash));
 		}
 	}
+	private static String guavaHash(String s, int chars) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(Hashing.murmur3_128().hashString(s, StandardCharsets.US_ASCII).asBytes()).substring(0, chars);
+	}
+	@Test
+	public void should_match_hash_of_string_evidence_identifier() {
+		StringEvidenceIdentifierGenerator sgen = new StringEvidenceIdentifierGenerator();
+		HashedEvidenceIdentifierGenerator gen = new HashedEvidenceIdentifierGenerator();
+		Random rng = new Random(0);
+		for (int i = 0; i < 256; i++) {
+			SAMRecord r = Read(rng.nextInt(2), 1 + rng.nextInt(100000), "5S10M2D10M7S");
+			r.setReadName("read" + rng.nextLong());
+			r.setReadNegativeStrandFlag(rng.nextBoolean());
+			r.setReadPairedFlag(true);
+			r.setFirstOfPairFlag(rng.nextBoolean());
+			r.setSecondOfPairFlag(!r.getFirstOfPairFlag());
+			String segment = guavaHash(sgen.getSegmentUniqueName(r), 20);
+			String alignment = segment + guavaHash(sgen.getAlignmentUniqueName(r), 6);
+			Assert.assertEquals(segment, gen.getSegmentUniqueName(r));
+			Assert.assertEquals(alignment, gen.getAlignmentUniqueName(r));
+			SoftClipEvidence sc = SCE(FWD, r);
+			Assert.assertEquals(alignment + guavaHash(sgen.getEvidenceID(sc), 6), gen.getEvidenceID(sc));
+			sc = SCE(BWD, r);
+			Assert.assertEquals(alignment + guavaHash(sgen.getEvidenceID(sc), 6), gen.getEvidenceID(sc));
+			IndelEvidence ie = IE(r);
+			Assert.assertEquals(alignment + guavaHash(sgen.getEvidenceID(ie), 6), gen.getEvidenceID(ie));
+		}
+		SAMRecord[] dp = DP(0, 1, "100M", true, 1, 100, "100M", false);
+		NonReferenceReadPair nrrp = NRRP(dp);
+		Assert.assertEquals(gen.getAlignmentUniqueName(dp[0]) + guavaHash(sgen.getEvidenceID(nrrp), 6), gen.getEvidenceID(nrrp));
+		SAMRecord unmapped = Unmapped(100);
+		unmapped.setReadName("unmapped");
+		Assert.assertEquals(guavaHash(sgen.getSegmentUniqueName(unmapped), 20) + guavaHash(sgen.getAlignmentUniqueName(unmapped), 6), gen.getAlignmentUniqueName(unmapped));
+	}
 }
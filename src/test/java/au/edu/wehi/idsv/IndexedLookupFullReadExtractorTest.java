@@ -0,0 +1,83 @@
+package au.edu.wehi.idsv;
+
+import au.edu.wehi.idsv.bed.IntervalBed;
+import htsjdk.samtools.SAMRecord;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedLookupFullReadExtractorTest extends IntermediateFilesTest {
+    private static LinearGenomicCoordinate lgc = new PaddedLinearGenomicCoordinate(getSequenceDictionary(), LCCB);
+    private static List<String> extracted(List<SAMRecord> records) {
+        return records.stream()
+                .map(r -> String.format("%s %d %d:%d", r.getReadName(), r.getFlags(), r.getReferenceIndex(), r.getAlignmentStart()))
+                .collect(Collectors.toList());
+    }
+    private List<SAMRecord> randomReads() {
+        Random rng = new Random(0);
+        List<SAMRecord> reads = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            SAMRecord[] dp = DP(rng.nextInt(3), 1 + rng.nextInt(5000), "10M", rng.nextBoolean(), rng.nextInt(3), 1 + rng.nextInt(5000), "10M", rng.nextBoolean());
+            if (rng.nextInt(4) == 0) {
+                dp[1].setAttribute("SA", String.format("%s,%d,+,5S5M,0,0", getSequenceDictionary().getSequence(rng.nextInt(3)).getSequenceName(), 1 + rng.nextInt(5000)));
+            }
+            reads.add(dp[0]);
+            reads.add(dp[1]);
+        }
+        return reads;
+    }
+    @Test
+    public void should_match_full_read_extraction() throws IOException {
+        createInput(randomReads());
+        IntervalBed bed = new IntervalBed(lgc);
+        bed.addInterval(0, 100, 200);
+        bed.addInterval(1, 1000, 1500);
+        File fullOutput = new File(testFolder.getRoot(), "full.bam");
+        File indexedOutput = new File(testFolder.getRoot(), "indexed.bam");
+        new FullReadExtractor(lgc, bed, true, true).extract(input, fullOutput, 1);
+        new IndexedLookupFullReadExtractor(lgc, bed, true, true, 0).extract(input, indexedOutput, 3);
+        List<String> expected = extracted(getRecords(fullOutput));
+        List<String> actual = extracted(getRecords(indexedOutput));
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, actual);
+    }
+    @Test
+    public void should_iteratively_extract_mates_and_split_reads() throws IOException {
+        // A in region, mate B has a supplementary alignment C whose mate is A
+        SAMRecord[] dp = DP(0, 150, "10M", true, 1, 1000, "10M", false);
+        SAMRecord a = dp[0];
+        SAMRecord b = dp[1];
+        b.setCigarString("5M5S");
+        b.setAttribute("SA", "random,2000,-,5S5M,0,0");
+        SAMRecord c = b.deepCopy();
+        c.setSupplementaryAlignmentFlag(true);
+        c.setReferenceIndex(2);
+        c.setAlignmentStart(2000);
+        c.setCigarString("5S5M");
+        c.setAttribute("SA", "polyACGT,1000,-,5M5S,0,0");
+        createInput(a, b, c, Read(0, 500, "10M"));
+        IntervalBed bed = new IntervalBed(lgc);
+        bed.addInterval(0, 100, 200);
+        File output = new File(testFolder.getRoot(), "indexed.bam");
+        new IndexedLookupFullReadExtractor(lgc, bed, true, true, 0).extract(input, output, 2);
+        assertEquals(extracted(Arrays.asList(a, b, c)), extracted(getRecords(output)));
+    }
+    @Test
+    public void should_write_empty_output_when_nothing_overlaps() throws IOException {
+        createInput(Read(0, 500, "10M"));
+        IntervalBed bed = new IntervalBed(lgc);
+        bed.addInterval(2, 100, 200);
+        File output = new File(testFolder.getRoot(), "indexed.bam");
+        new IndexedLookupFullReadExtractor(lgc, bed, true, true, 0).extract(input, output, 2);
+        assertEquals(0, getRecords(output).size());
+    }
+}
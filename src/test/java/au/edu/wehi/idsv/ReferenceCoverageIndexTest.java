@@ -0,0 +1,122 @@
+package au.edu.wehi.idsv;
+
+import com.google.common.collect.Lists;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class ReferenceCoverageIndexTest extends IntermediateFilesTest {
+	private List<SAMRecord> randomReads() {
+		Random rng = new Random(0);
+		List<SAMRecord> reads = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			int referenceIndex = rng.nextInt(3) * 2;
+			int position = 1 + rng.nextInt(2000);
+			int readLength = 5 + rng.nextInt(20);
+			if (rng.nextBoolean()) {
+				SAMRecord[] rp = RP(referenceIndex, position, position + rng.nextInt(100), readLength);
+				rp[0].setDuplicateReadFlag(rng.nextInt(10) == 0);
+				reads.addAll(Lists.newArrayList(rp));
+			} else {
+				reads.add(Read(referenceIndex, position, readLength + "M"));
+			}
+		}
+		reads.sort(new SAMRecordCoordinateComparator());
+		return reads;
+	}
+	private ReferenceCoverageIndex writeIndex(List<SAMRecord> reads, int binSize) throws IOException {
+		File file = new File(testFolder.getRoot(), "test" + binSize + ReferenceCoverageIndex.SUFFIX);
+		try (ReferenceCoverageIndexWriter writer = new ReferenceCoverageIndexWriter(file, getSequenceDictionary(), new SAMFlagReadPairConcordanceCalculator(IDSV(reads)), binSize, true)) {
+			for (SAMRecord r : reads) {
+				writer.add(r);
+			}
+		}
+		return new ReferenceCoverageIndex(file, getSequenceDictionary(), 1);
+	}
+	@Test
+	public void should_match_sequential_lookup() throws IOException {
+		List<SAMRecord> reads = randomReads();
+		try (ReferenceCoverageIndex index = writeIndex(reads, 1)) {
+			SequentialReferenceCoverageLookup lookup = new SequentialReferenceCoverageLookup(reads.iterator(), IDSV(reads), new SAMFlagReadPairConcordanceCalculator(IDSV(reads)), 1, 1);
+			assertEquals(1, index.getCategory());
+			for (int referenceIndex = 0; referenceIndex < getSequenceDictionary().size(); referenceIndex++) {
+				for (int position = 1; position <= getSequenceDictionary().getSequence(referenceIndex).getSequenceLength(); position++) {
+					assertEquals(lookup.readsSupportingNoBreakendAfter(referenceIndex, position), index.readsSupportingNoBreakendAfter(referenceIndex, position));
+					assertEquals(lookup.readPairsSupportingNoBreakendAfter(referenceIndex, position), index.readPairsSupportingNoBreakendAfter(referenceIndex, position));
+				}
+			}
+		}
+	}
+	@Test
+	public void should_report_minimum_coverage_of_bin() throws IOException {
+		List<SAMRecord> reads = randomReads();
+		try (ReferenceCoverageIndex exact = writeIndex(reads, 1)) {
+			try (ReferenceCoverageIndex binned = writeIndex(reads, 7)) {
+				assertEquals(7, binned.getBinSize());
+				for (int referenceIndex = 0; referenceIndex < getSequenceDictionary().size(); referenceIndex++) {
+					int length = getSequenceDictionary().getSequence(referenceIndex).getSequenceLength();
+					for (int position = 1; position <= length; position++) {
+						int binStart = (position - 1) / 7 * 7 + 1;
+						int minReads = Integer.MAX_VALUE;
+						int minPairs = Integer.MAX_VALUE;
+						for (int i = binStart; i < binStart + 7 && i <= length; i++) {
+							minReads = Math.min(minReads, exact.readsSupportingNoBreakendAfter(referenceIndex, i));
+							minPairs = Math.min(minPairs, exact.readPairsSupportingNoBreakendAfter(referenceIndex, i));
+						}
+						assertEquals(minReads, binned.readsSupportingNoBreakendAfter(referenceIndex, position));
+						assertEquals(minPairs, binned.readPairsSupportingNoBreakendAfter(referenceIndex, position));
+					}
+				}
+			}
+		}
+	}
+	@Test
+	public void should_return_zero_outside_of_contig_bounds() throws IOException {
+		try (ReferenceCoverageIndex index = writeIndex(L(Read(0, 1, "100M")), 1)) {
+			assertEquals(1, index.readsSupportingNoBreakendAfter(0, 1));
+			assertEquals(0, index.readsSupportingNoBreakendAfter(0, 0));
+			assertEquals(0, index.readsSupportingNoBreakendAfter(0, 100000));
+			assertEquals(0, index.readsSupportingNoBreakendAfter(100, 1));
+		}
+	}
+	private ReferenceCoverageIndex writeFixedSizeIndex() throws IOException {
+		File file = new File(testFolder.getRoot(), "settings" + ReferenceCoverageIndex.SUFFIX);
+		try (ReferenceCoverageIndexWriter writer = new ReferenceCoverageIndexWriter(file, getSequenceDictionary(), new FixedSizeReadPairConcordanceCalculator(10, 100), 1, true)) {
+			writer.add(Read(0, 1, "10M"));
+		}
+		return new ReferenceCoverageIndex(file, getSequenceDictionary(), 0);
+	}
+	@Test
+	public void should_validate_matching_generation_settings() throws IOException {
+		try (ReferenceCoverageIndex index = writeFixedSizeIndex()) {
+			index.validate(true, new FixedSizeReadPairConcordanceCalculator(10, 100));
+		}
+	}
+	@Test(expected=IllegalArgumentException.class)
+	public void validate_should_fail_on_duplicate_filtering_mismatch() throws IOException {
+		try (ReferenceCoverageIndex index = writeFixedSizeIndex()) {
+			index.validate(false, new FixedSizeReadPairConcordanceCalculator(10, 100));
+		}
+	}
+	@Test(expected=IllegalArgumentException.class)
+	public void validate_should_fail_on_fragment_size_mismatch() throws IOException {
+		try (ReferenceCoverageIndex index = writeFixedSizeIndex()) {
+			index.validate(true, new FixedSizeReadPairConcordanceCalculator(10, 200));
+		}
+	}
+	@Test(expected=IllegalArgumentException.class)
+	public void validate_should_fail_on_concordance_method_mismatch() throws IOException {
+		try (ReferenceCoverageIndex index = writeFixedSizeIndex()) {
+			index.validate(true, new SAMFlagReadPairConcordanceCalculator(null));
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package au.edu.wehi.idsv;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceGovernorTest extends TestHelper {
+	@Test
+	public void should_partition_worker_threads_between_consumers() throws InterruptedException {
+		ResourceGovernor g = new ResourceGovernor(8, 1, false);
+		assertEquals(8, g.getFairShare());
+		g.setConcurrentConsumers(3);
+		assertEquals(2, g.getFairShare());
+		g.setConcurrentConsumers(100);
+		assertEquals(1, g.getFairShare());
+		g.setConcurrentConsumers(2);
+		try (ResourceGovernor.Lease lease = g.acquireWorkerThreads()) {
+			assertEquals(4, lease.getWorkerThreads());
+			assertEquals(4, g.getAvailableWorkerThreads());
+		}
+		assertEquals(8, g.getAvailableWorkerThreads());
+	}
+	@Test
+	public void should_allocate_remainder_threads() throws InterruptedException {
+		ResourceGovernor g = new ResourceGovernor(8, 1, false);
+		g.setConcurrentConsumers(3);
+		assertEquals(2, g.getRemainder());
+		try (ResourceGovernor.Lease l1 = g.acquireWorkerThreads()) {
+			ResourceGovernor.Lease l2 = g.acquireWorkerThreads();
+			try (ResourceGovernor.Lease l3 = g.acquireWorkerThreads()) {
+				assertEquals(3, l1.getWorkerThreads());
+				assertEquals(3, l2.getWorkerThreads());
+				assertEquals(2, l3.getWorkerThreads());
+				assertEquals(0, g.getAvailableWorkerThreads());
+				l2.close();
+				try (ResourceGovernor.Lease l4 = g.acquireWorkerThreads()) {
+					assertEquals(3, l4.getWorkerThreads());
+				}
+			}
+		}
+		assertEquals(8, g.getAvailableWorkerThreads());
+	}
+	@Test
+	public void should_reserve_thread_for_async_compression() throws InterruptedException {
+		ResourceGovernor g = new ResourceGovernor(4, 1, true);
+		try (ResourceGovernor.Lease lease = g.acquireWorkerThreads()) {
+			assertEquals(3, lease.getWorkerThreads());
+			assertEquals(0, g.getAvailableWorkerThreads());
+		}
+		g = new ResourceGovernor(1, 1, true);
+		try (ResourceGovernor.Lease lease = g.acquireWorkerThreads()) {
+			assertEquals(1, lease.getWorkerThreads());
+		}
+	}
+	@Test
+	public void close_should_release_once() throws InterruptedException {
+		ResourceGovernor g = new ResourceGovernor(2, 2, false);
+		ResourceGovernor.Lease lease = g.acquireTemporaryDisk();
+		assertEquals(1, g.getAvailableTemporaryDiskSlots());
+		lease.close();
+		lease.close();
+		assertEquals(2, g.getAvailableTemporaryDiskSlots());
+	}
+	@Test
+	public void should_not_oversubscribe() throws Exception {
+		ResourceGovernor g = new ResourceGovernor(4, 2, false);
+		g.setConcurrentConsumers(2);
+		AtomicInteger inUse = new AtomicInteger();
+		AtomicInteger maxInUse = new AtomicInteger();
+		AtomicInteger diskInUse = new AtomicInteger();
+		AtomicInteger maxDiskInUse = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(6);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 24; i++) {
+				futures.add(pool.submit(() -> {
+					try (ResourceGovernor.Lease lease = g.acquireWorkerThreads()) {
+						maxInUse.accumulateAndGet(inUse.addAndGet(lease.getWorkerThreads()), Math::max);
+						Thread.sleep(1);
+						inUse.addAndGet(-lease.getWorkerThreads());
+					}
+					try (ResourceGovernor.Lease lease = g.acquireTemporaryDisk()) {
+						maxDiskInUse.accumulateAndGet(diskInUse.incrementAndGet(), Math::max);
+						Thread.sleep(1);
+						diskInUse.decrementAndGet();
+					}
+					return null;
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} finally {
+			pool.shutdown();
+		}
+		assertTrue(maxInUse.get() <= 4);
+		assertTrue(maxDiskInUse.get() <= 2);
+		assertEquals(4, g.getAvailableWorkerThreads());
+		assertEquals(2, g.getAvailableTemporaryDiskSlots());
+	}
+}
@@ -14,6 +14,7 @@ import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
@@ -36,11 +37,13 @@ public class StreamingSplitReadRealignerTest extends SplitReadRealignerTest {
         private int out = 0;
         private int in = 0;
         private SAMRecord[] alignments;
+        public final List<String> alignedReadNames = new ArrayList<>();
         public StubStreamingAligner(SAMRecord... alignments) {
             this.alignments = alignments;
         }
         @Override
         public void asyncAlign(FastqRecord fq) throws IOException {
+            alignedReadNames.add(fq.getReadName());
             this.alignments[in++].setReadName(fq.getReadName());
         }
         @Override
@@ -85,6 +88,49 @@ public class StreamingSplitReadRealignerTest extends SplitReadRealignerTest {
         assertEquals(4, list.size());
     }
 
+    @Test
+    public void realignments_should_be_identified_by_compact_numeric_id() throws IOException {
+        SAMRecord r0 = Read(0, 100, "10M30S");
+        r0.setReadName("r0");
+        SAMRecord r1 = Read(0, 101, "10M30S");
+        r1.setReadName("r1");
+        SAMRecord r0realigned = Read(0, 200, "10M20S");
+        SAMRecord r1realigned = Read(0, 300, "30M");
+        SAMRecord r0nested = Read(0, 400, "20M");
+        createBAM(input, SAMFileHeader.SortOrder.coordinate, r0, r1);
+        StubStreamingAligner stub = new StubStreamingAligner(r0realigned, r0nested, r1realigned);
+        StreamingSplitReadRealigner srr = new StreamingSplitReadRealigner(getContext(), stub, 10);
+        srr.createSupplementaryAlignments(input, output, output);
+        assertEquals(Lists.newArrayList("0#10", "0#20", "1#10"), stub.alignedReadNames);
+        List<SAMRecord> list = getRecords(output);
+        assertEquals(5, list.size());
+        assertEquals(3, list.stream().filter(r -> r.getReadName().equals("r0")).count());
+        assertEquals(2, list.stream().filter(r -> r.getReadName().equals("r1")).count());
+    }
+
+    @Test
+    public void getRealignmentId_should_parse_originating_record_id() {
+        SAMRecord r = Read(0, 1, "1M");
+        r.setReadName("1234567890123#15");
+        assertEquals(1234567890123L, StreamingSplitReadRealigner.getRealignmentId(r));
+        r.setReadName("0#A");
+        assertEquals(0, StreamingSplitReadRealigner.getRealignmentId(r));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void getRealignmentId_should_fail_if_id_prefix_missing() {
+        SAMRecord r = Read(0, 1, "1M");
+        r.setReadName("read1#15");
+        StreamingSplitReadRealigner.getRealignmentId(r);
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void getRealignmentId_should_fail_if_separator_missing() {
+        SAMRecord r = Read(0, 1, "1M");
+        r.setReadName("15");
+        StreamingSplitReadRealigner.getRealignmentId(r);
+    }
+
     @Test
     @Category(ExternalAlignerTests.class)
     @Ignore("Working 2018-04-08. Currently need to manual check # restarts of external aligner to actually test this functionality. Needs a delayed return stub to test properly.")
@@ -1,5 +1,6 @@
 package au.edu.wehi.idsv;
 
+import au.edu.wehi.idsv.repeatmasker.RepeatMaskerIndexWriter;
 import com.google.common.collect.ImmutableList;
 import htsjdk.variant.variantcontext.VariantContext;
 import org.junit.Assert;
@@ -8,7 +9,7 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 
-public class VariantContextRepeatMaskerAnnotatorTest extends TestHelper {
+public class VariantContextRepeatMaskerAnnotatorTest extends IntermediateFilesTest {
     @Test
     public void should_match_with_repeat_masker_interval() throws IOException {
         VariantContextRepeatMaskerAnnotator rma = new VariantContextRepeatMaskerAnnotator(new File("src/test/resources/hg19.rm.bedops.bed"));
@@ -44,4 +45,17 @@ public class VariantContextRepeatMaskerAnnotatorTest extends TestHelper {
         Assert.assertEquals("MER5B", vc.getAttributeAsString("INSRMRT", null));
         Assert.assertEquals("+", vc.getAttributeAsString("INSRMRO", null));
     }
+    @Test
+    public void should_annotate_from_repeatmasker_index() throws IOException {
+        File index = new File(testFolder.getRoot(), "rm.idx");
+        RepeatMaskerIndexWriter writer = new RepeatMaskerIndexWriter();
+        writer.addBed(new File("src/test/resources/hg19.rm.bedops.bed"));
+        writer.write(index);
+        VariantContextRepeatMaskerAnnotator rma = new VariantContextRepeatMaskerAnnotator(index);
+        VariantContext vc = minimalVariant().attribute("BEALN", ImmutableList.of("chr1:10465|-|10M|60", "chr1:11678|-|100M|60")).make();
+        vc = rma.apply(vc);
+        Assert.assertEquals("MER5B", vc.getAttributeAsString("INSRMRT", null));
+        Assert.assertEquals("DNA/hAT-Charlie", vc.getAttributeAsString("INSRMRC", null));
+        Assert.assertEquals("+", vc.getAttributeAsString("INSRMRO", null));
+    }
 }
\ No newline at end of file
@@ -74,4 +74,24 @@ public class BwaStreamingAlignerTest extends TestHelper {
         assertEquals(0, bwamem.outstandingAlignmentRecord());
         assertEquals(0, bwamem.processedAlignmentRecords());
     }
-}
\ No newline at end of file
+    @Test
+    public void should_return_alignments_in_input_order_across_in_flight_batches() throws IOException {
+        for (int inFlight = 1; inFlight <= 3; inFlight++) {
+            BwaStreamingAligner bwamem = new BwaStreamingAligner(SMALL_FA_FILE, SMALL_FA.getSequenceDictionary(), 2, 200, inFlight);
+            for (int i = 0; i < 100; i++) {
+                String seq = S(RANDOM).substring(i, i + 50);
+                bwamem.asyncAlign(new FastqRecord(Integer.toString(i), seq, "", S(getPolyA(50))));
+            }
+            bwamem.flush();
+            assertEquals(0, bwamem.outstandingAlignmentRecord());
+            int last = -1;
+            while (bwamem.processedAlignmentRecords() > 0) {
+                int current = Integer.parseInt(bwamem.getAlignment().getReadName());
+                assertTrue(current >= last);
+                last = current;
+            }
+            assertEquals(99, last);
+            bwamem.close();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package au.edu.wehi.idsv.bed;
 
 import au.edu.wehi.idsv.TestHelper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
 import htsjdk.samtools.QueryInterval;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -8,6 +10,7 @@ import org.junit.rules.TemporaryFolder;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -116,4 +119,56 @@ public class IntervalBedTest extends TestHelper {
 			assertEquals(qi[i].end, result[i].end);
 		}
 	}
+	@Test
+	public void frozen_overlap_should_match_unfrozen() {
+		Random rng = new Random(0);
+		IntervalBed bed = new IntervalBed(getContext().getLinear());
+		for (int i = 0; i < 200; i++) {
+			int start = 1 + rng.nextInt(5000);
+			bed.addInterval(rng.nextInt(2), start, start + rng.nextInt(50));
+		}
+		IntervalBed frozen = IntervalBed.merge(getContext().getLinear(), ImmutableList.of(bed)).freeze();
+		assertTrue(frozen.isFrozen());
+		assertFalse(bed.isFrozen());
+		// sequential access
+		for (int referenceIndex = 0; referenceIndex < 2; referenceIndex++) {
+			for (int start = 1; start < 5100; start++) {
+				int end = start + rng.nextInt(10);
+				assertEquals(bed.overlaps(referenceIndex, start, end), frozen.overlaps(referenceIndex, start, end));
+			}
+		}
+		// random access
+		for (int i = 0; i < 10000; i++) {
+			int referenceIndex = rng.nextInt(3);
+			int start = 1 + rng.nextInt(5100);
+			int end = start + rng.nextInt(100);
+			assertEquals(bed.overlaps(referenceIndex, start, end), frozen.overlaps(referenceIndex, start, end));
+			long linearStart = getContext().getLinear().getLinearCoordinate(referenceIndex, start);
+			long linearEnd = getContext().getLinear().getLinearCoordinate(referenceIndex, end + 1);
+			assertEquals(bed.overlaps(Range.closedOpen(linearStart, linearEnd)), frozen.overlaps(Range.closedOpen(linearStart, linearEnd)));
+			assertEquals(bed.overlaps(Range.atLeast(linearStart)), frozen.overlaps(Range.atLeast(linearStart)));
+		}
+	}
+	@Test
+	public void frozen_overlap_should_return_true_if_at_least_one_base_overlaps() {
+		IntervalBed bed = new IntervalBed(getContext().getLinear());
+		bed.addInterval(1, 3, 5);
+		bed.addInterval(1, 7, 9);
+		bed.freeze();
+		assertFalse(bed.overlaps(0, 3, 5));
+		assertFalse(bed.overlaps(1, 2, 2));
+		assertFalse(bed.overlaps(1, 6, 6));
+		assertTrue(bed.overlaps(1, 3, 3));
+		assertTrue(bed.overlaps(1, 5, 6));
+		assertTrue(bed.overlaps(1, 2, 3));
+		assertTrue(bed.overlaps(1, 1, 11));
+		assertFalse(bed.overlaps(1, 10, 10));
+		assertTrue(bed.overlaps(1, 9, 9));
+	}
+	@Test(expected=IllegalStateException.class)
+	public void frozen_should_not_allow_modification() {
+		IntervalBed bed = new IntervalBed(getContext().getLinear());
+		bed.freeze();
+		bed.addInterval(1, 3, 5);
+	}
 }
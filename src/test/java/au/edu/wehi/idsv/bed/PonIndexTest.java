@@ -0,0 +1,153 @@
+package au.edu.wehi.idsv.bed;
+
+import au.edu.wehi.idsv.BreakendSummary;
+import au.edu.wehi.idsv.BreakpointSummary;
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class PonIndexTest extends IntermediateFilesTest {
+	private PonIndex write(List<BreakendSummary> records, List<Integer> counts) throws IOException {
+		File file = testFolder.newFile();
+		try (PonIndexWriter w = new PonIndexWriter(getSequenceDictionary(), file)) {
+			for (int i = 0; i < records.size(); i++) {
+				w.write(records.get(i), counts.get(i));
+			}
+		}
+		return new PonIndex(file, getSequenceDictionary());
+	}
+	@Test
+	public void should_match_overlapping_breakpoint() throws IOException {
+		List<BreakendSummary> records = new ArrayList<>();
+		List<Integer> counts = new ArrayList<>();
+		records.add(new BreakpointSummary(0, FWD, 100, 100, 110, 1, BWD, 200, 200, 200));
+		counts.add(3);
+		records.add(new BreakpointSummary(0, FWD, 500, 1, BWD, 600));
+		counts.add(5);
+		try (PonIndex pon = write(records, counts)) {
+			assertEquals(2, pon.getBreakpointCount());
+			assertEquals(3, pon.getCount(new BreakpointSummary(0, FWD, 105, 1, BWD, 200), 0));
+			assertEquals(3, pon.getCount(new BreakpointSummary(1, BWD, 200, 0, FWD, 105), 0));
+			assertEquals(0, pon.getCount(new BreakpointSummary(0, FWD, 111, 1, BWD, 200), 0));
+			assertEquals(3, pon.getCount(new BreakpointSummary(0, FWD, 111, 1, BWD, 200), 1));
+			assertEquals(0, pon.getCount(new BreakpointSummary(0, FWD, 105, 1, BWD, 202), 1));
+			assertEquals(0, pon.getCount(new BreakpointSummary(0, BWD, 105, 1, BWD, 200), 0));
+			assertEquals(0, pon.getCount(new BreakpointSummary(0, FWD, 105, 2, BWD, 200), 0));
+			assertEquals(5, pon.getCount(new BreakpointSummary(0, FWD, 500, 1, BWD, 600), 0));
+		}
+	}
+	@Test
+	public void should_match_intrachromosomal_breakpoint_either_way_around() throws IOException {
+		List<BreakendSummary> records = new ArrayList<>();
+		List<Integer> counts = new ArrayList<>();
+		records.add(new BreakpointSummary(0, BWD, 300, 0, FWD, 100));
+		counts.add(2);
+		try (PonIndex pon = write(records, counts)) {
+			assertEquals(2, pon.getCount(new BreakpointSummary(0, FWD, 100, 0, BWD, 300), 0));
+			assertEquals(2, pon.getCount(new BreakpointSummary(0, BWD, 300, 0, FWD, 100), 0));
+		}
+	}
+	@Test
+	public void should_match_single_breakend() throws IOException {
+		List<BreakendSummary> records = new ArrayList<>();
+		List<Integer> counts = new ArrayList<>();
+		records.add(new BreakendSummary(2, FWD, 100, 90, 110));
+		counts.add(4);
+		records.add(new BreakendSummary(2, FWD, 105));
+		counts.add(7);
+		records.add(new BreakendSummary(3, BWD, 105));
+		counts.add(1);
+		try (PonIndex pon = write(records, counts)) {
+			assertEquals(3, pon.getBreakendCount());
+			assertEquals(0, pon.getBreakpointCount());
+			assertEquals(7, pon.getCount(new BreakendSummary(2, FWD, 105), 0));
+			assertEquals(4, pon.getCount(new BreakendSummary(2, FWD, 95), 0));
+			assertEquals(0, pon.getCount(new BreakendSummary(2, BWD, 95), 0));
+			assertEquals(0, pon.getCount(new BreakendSummary(2, FWD, 120), 0));
+			assertEquals(4, pon.getCount(new BreakendSummary(2, FWD, 120), 10));
+			assertEquals(1, pon.getCount(new BreakendSummary(3, BWD, 105), 0));
+			assertEquals(0, pon.getCount(new BreakendSummary(1, BWD, 105), 0));
+		}
+	}
+	@Test
+	public void should_match_linear_scan() throws IOException {
+		Random rng = new Random(0);
+		List<BreakendSummary> records = new ArrayList<>();
+		List<Integer> counts = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			int start = 1 + rng.nextInt(1000);
+			int start2 = 1 + rng.nextInt(1000);
+			if (rng.nextBoolean()) {
+				records.add(new BreakpointSummary(rng.nextInt(3), rng.nextBoolean() ? FWD : BWD, start, start, start + rng.nextInt(20),
+						rng.nextInt(3), rng.nextBoolean() ? FWD : BWD, start2, start2, start2 + rng.nextInt(20)));
+			} else {
+				records.add(new BreakendSummary(rng.nextInt(3), rng.nextBoolean() ? FWD : BWD, start, start, start + rng.nextInt(20)));
+			}
+			counts.add(1 + rng.nextInt(100));
+		}
+		try (PonIndex pon = write(records, counts)) {
+			for (int i = 0; i < 2000; i++) {
+				int pos = 1 + rng.nextInt(1000);
+				int pos2 = 1 + rng.nextInt(1000);
+				BreakendSummary query = rng.nextBoolean()
+						? new BreakpointSummary(rng.nextInt(3), rng.nextBoolean() ? FWD : BWD, pos, rng.nextInt(3), rng.nextBoolean() ? FWD : BWD, pos2)
+						: new BreakendSummary(rng.nextInt(3), rng.nextBoolean() ? FWD : BWD, pos);
+				int margin = rng.nextInt(5);
+				int expected = 0;
+				for (int j = 0; j < records.size(); j++) {
+					if (matches(query, records.get(j), margin)) {
+						expected = Math.max(expected, counts.get(j));
+					}
+				}
+				assertEquals(expected, query instanceof BreakpointSummary ? pon.getCount((BreakpointSummary)query, margin) : pon.getCount(query, margin));
+			}
+		}
+	}
+	private static boolean matches(BreakendSummary query, BreakendSummary record, int margin) {
+		if (query instanceof BreakpointSummary != record instanceof BreakpointSummary) return false;
+		if (!(query instanceof BreakpointSummary)) return overlaps(query, record, margin);
+		BreakpointSummary q = (BreakpointSummary)query;
+		BreakpointSummary r = (BreakpointSummary)record;
+		return (overlaps(q, r, margin) && overlaps(q.remoteBreakend(), r.remoteBreakend(), margin))
+				|| (overlaps(q.remoteBreakend(), r, margin) && overlaps(q, r.remoteBreakend(), margin));
+	}
+	private static boolean overlaps(BreakendSummary a, BreakendSummary b, int margin) {
+		return a.referenceIndex == b.referenceIndex
+				&& a.direction == b.direction
+				&& a.start - margin <= b.end
+				&& a.end + margin >= b.start;
+	}
+	@Test
+	public void should_load_generated_pon_files() throws IOException {
+		File bedpe = testFolder.newFile("pon.bedpe");
+		File bed = testFolder.newFile("pon.bed");
+		try (BedpeWriter w = new BedpeWriter(getSequenceDictionary(), bedpe)) {
+			w.write(new BreakpointSummary(0, FWD, 10, 1, BWD, 20), ".", "6");
+		}
+		try (BufferedWriter w = Files.newBufferedWriter(bed.toPath(), StandardCharsets.US_ASCII)) {
+			w.write("polyACGT\t9\t12\t.\t8\t-\n");
+		}
+		File file = testFolder.newFile("pon.bin");
+		try (PonIndexWriter w = new PonIndexWriter(getSequenceDictionary(), file)) {
+			w.addBedpe(bedpe);
+			w.addBed(bed);
+		}
+		try (PonIndex pon = new PonIndex(file)) {
+			assertEquals(6, pon.getCount(new BreakpointSummary(0, FWD, 10, 1, BWD, 20), 0));
+			assertEquals(8, pon.getCount(new BreakendSummary(1, BWD, 10), 0));
+			assertEquals(8, pon.getCount(new BreakendSummary(1, BWD, 12), 0));
+			assertEquals(0, pon.getCount(new BreakendSummary(1, BWD, 13), 0));
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package au.edu.wehi.idsv.debruijn.positional;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PackedKmerPathTest extends TestHelper {
+	private static LongArrayList kmers(int k, String seq) {
+		LongArrayList list = new LongArrayList();
+		for (int i = 0; i + k <= seq.length(); i++) {
+			list.add(KmerEncodingHelper.picardBaseToEncoded(k, B(seq.substring(i, i + k))));
+		}
+		return list;
+	}
+	private static String randomSequence(Random rng, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			sb.append("ACGT".charAt(rng.nextInt(4)));
+		}
+		return sb.toString();
+	}
+	private static PackedKmerPath pack(LongArrayList kmers) {
+		PackedKmerPath path = new PackedKmerPath();
+		for (long kmer : kmers) {
+			path.add(kmer);
+		}
+		return path;
+	}
+	@Test
+	public void should_reconstruct_successive_kmers() {
+		Random rng = new Random(0);
+		for (int k = 1; k <= 32; k++) {
+			LongArrayList expected = kmers(k, randomSequence(rng, k + 100));
+			PackedKmerPath path = pack(expected);
+			assertTrue(path.isPacked());
+			assertEquals(expected, path.toLongArrayList());
+		}
+	}
+	@Test
+	public void should_reconstruct_poly_A() {
+		for (int k = 1; k <= 32; k++) {
+			LongArrayList expected = kmers(k, "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAT");
+			PackedKmerPath path = pack(expected);
+			assertTrue(path.isPacked());
+			assertEquals(expected, path.toLongArrayList());
+		}
+	}
+	@Test
+	public void should_fall_back_to_explicit_kmers_if_not_successive() {
+		LongArrayList expected = new LongArrayList(new long[] { 0, 1, 2, 3, 1000, 7 });
+		PackedKmerPath path = pack(expected);
+		assertFalse(path.isPacked());
+		assertEquals(expected, path.toLongArrayList());
+	}
+	@Test
+	public void removeLong_should_remove_from_either_end() {
+		LongArrayList expected = kmers(25, randomSequence(new Random(1), 100));
+		PackedKmerPath path = pack(expected);
+		assertEquals(expected.getLong(0), path.removeLong(0));
+		expected.removeLong(0);
+		assertEquals(expected.getLong(expected.size() - 1), path.removeLong(path.size() - 1));
+		expected.removeLong(expected.size() - 1);
+		assertEquals(expected, path.toLongArrayList());
+		path.removeLong(10);
+		expected.removeLong(10);
+		assertEquals(expected, path.toLongArrayList());
+	}
+	@Test
+	public void copy_and_truncate_should_split_path() {
+		LongArrayList expected = kmers(25, randomSequence(new Random(2), 100));
+		PackedKmerPath path = pack(expected);
+		PackedKmerPath second = path.copy(40, path.size());
+		path.truncate(40);
+		assertEquals(expected.subList(0, 40), path.toLongArrayList());
+		assertEquals(expected.subList(40, expected.size()), second.toLongArrayList());
+		path.addAll(second);
+		assertTrue(path.isPacked());
+		assertEquals(expected, path.toLongArrayList());
+		assertEquals(pack(expected), path);
+		assertEquals(pack(expected).hashCode(), path.hashCode());
+	}
+	@Test
+	public void clone_should_not_share_state() {
+		LongArrayList expected = kmers(4, "ACGTTGCA");
+		PackedKmerPath path = pack(expected);
+		PackedKmerPath clone = path.clone();
+		path.truncate(1);
+		assertEquals(expected, clone.toLongArrayList());
+	}
+}
@@ -0,0 +1,102 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.positional.ImmutableKmerNode;
+import au.edu.wehi.idsv.debruijn.positional.KmerNodeUtil;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class KmerNodeByFirstStartKmerRingBufferNavigableSetTest extends TestHelper {
+    private static void assertSameSet(TreeSet<ImmutableKmerNode> expected, KmerNodeByFirstStartKmerRingBufferNavigableSet<ImmutableKmerNode> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        if (!expected.isEmpty()) {
+            assertEquals(expected.first(), actual.first());
+            assertEquals(expected.last(), actual.last());
+        }
+        assertEquals(new ArrayList<>(expected), Lists.newArrayList(actual.iterator()));
+        assertEquals(Lists.newArrayList(expected.descendingIterator()), Lists.newArrayList(actual.descendingIterator()));
+    }
+    @Test
+    public void should_mimic_treeset() {
+        TreeSet<ImmutableKmerNode> expected = new TreeSet<>(KmerNodeUtil.ByFirstStartKmer);
+        KmerNodeByFirstStartKmerRingBufferNavigableSet<ImmutableKmerNode> actual = new KmerNodeByFirstStartKmerRingBufferNavigableSet<>(2);
+        Random rng = new Random(0);
+        int windowStart = -100;
+        for (int i = 0; i < 20000; i++) {
+            ImmutableKmerNode node = new ImmutableKmerNode(rng.nextInt(8), windowStart + rng.nextInt(50), windowStart + 60, rng.nextBoolean(), 1);
+            if (rng.nextInt(3) == 0) {
+                assertEquals(expected.remove(node), actual.remove(node));
+            } else {
+                assertEquals(expected.add(node), actual.add(node));
+            }
+            assertEquals(expected.contains(node), actual.contains(node));
+            if (i % 100 == 0) {
+                assertSameSet(expected, actual);
+                windowStart += rng.nextInt(20);
+            }
+            if (i % 1000 == 0) {
+                assertEquals(expected.pollFirst(), actual.pollFirst());
+                assertEquals(expected.pollLast(), actual.pollLast());
+            }
+        }
+        assertSameSet(expected, actual);
+        actual.clear();
+        expected.clear();
+        assertSameSet(expected, actual);
+    }
+    @Test
+    public void should_grow_to_span_window() {
+        TreeSet<ImmutableKmerNode> expected = new TreeSet<>(KmerNodeUtil.ByFirstStartKmer);
+        KmerNodeByFirstStartKmerRingBufferNavigableSet<ImmutableKmerNode> actual = new KmerNodeByFirstStartKmerRingBufferNavigableSet<>(1);
+        for (int i = 0; i < 1000; i += 7) {
+            ImmutableKmerNode node = new ImmutableKmerNode(i, i, i, false, 1);
+            expected.add(node);
+            actual.add(node);
+            node = new ImmutableKmerNode(i, -i, -i, false, 1);
+            expected.add(node);
+            actual.add(node);
+        }
+        assertSameSet(expected, actual);
+    }
+    @Test
+    public void iterator_remove_should_remove_node() {
+        TreeSet<ImmutableKmerNode> expected = new TreeSet<>(KmerNodeUtil.ByFirstStartKmer);
+        KmerNodeByFirstStartKmerRingBufferNavigableSet<ImmutableKmerNode> actual = new KmerNodeByFirstStartKmerRingBufferNavigableSet<>(4);
+        for (int i = 0; i < 100; i++) {
+            ImmutableKmerNode node = new ImmutableKmerNode(i % 3, i / 3, i / 3, false, 1);
+            expected.add(node);
+            actual.add(node);
+        }
+        Iterator<ImmutableKmerNode> eit = expected.iterator();
+        Iterator<ImmutableKmerNode> ait = actual.iterator();
+        while (eit.hasNext()) {
+            assertTrue(ait.hasNext());
+            ImmutableKmerNode node = eit.next();
+            assertEquals(node, ait.next());
+            if (node.firstKmer() != 1) {
+                eit.remove();
+                ait.remove();
+            }
+        }
+        assertFalse(ait.hasNext());
+        assertSameSet(expected, actual);
+        eit = expected.descendingIterator();
+        ait = actual.descendingIterator();
+        while (eit.hasNext()) {
+            assertEquals(eit.next(), ait.next());
+            if (expected.size() % 2 == 0) {
+                eit.remove();
+                ait.remove();
+            }
+        }
+        assertSameSet(expected, actual);
+    }
+}
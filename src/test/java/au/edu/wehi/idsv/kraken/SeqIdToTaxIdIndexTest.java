@@ -0,0 +1,62 @@
+package au.edu.wehi.idsv.kraken;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SeqIdToTaxIdIndexTest extends IntermediateFilesTest {
+    private static final File SEQID2TAXID = new File("src/test/resources/kraken/genus/seqid2taxid.map");
+    private static Map<String, Integer> parse(File file) throws IOException {
+        Map<String, Integer> map = new HashMap<>();
+        for (String line : Files.readAllLines(file.toPath())) {
+            String[] fields = line.split("\t");
+            map.put(fields[0], Integer.parseInt(fields[1]));
+        }
+        return map;
+    }
+    private static void assertMatches(Map<String, Integer> expected, SeqIdToTaxIdIndex index) {
+        Assert.assertTrue(expected.size() > 0);
+        Assert.assertEquals(expected.size(), index.size());
+        for (Map.Entry<String, Integer> e : expected.entrySet()) {
+            Assert.assertEquals(e.getValue(), index.get(e.getKey()));
+        }
+        Assert.assertNull(index.get("not_a_sequence"));
+        Assert.assertEquals(expected, new HashMap<>(index));
+    }
+    @Test
+    public void should_match_seqid2taxid_map() throws IOException {
+        assertMatches(parse(SEQID2TAXID), SeqIdToTaxIdIndex.open(SEQID2TAXID));
+    }
+    @Test
+    public void should_memory_map_index_file() throws IOException {
+        File file = new File(testFolder.getRoot(), "seqid2taxid.idx");
+        SeqIdToTaxIdIndexWriter writer = new SeqIdToTaxIdIndexWriter();
+        writer.addSeqIdToTaxIdMap(SEQID2TAXID);
+        writer.write(file);
+        Assert.assertTrue(SeqIdToTaxIdIndex.isIndex(file));
+        Assert.assertFalse(SeqIdToTaxIdIndex.isIndex(SEQID2TAXID));
+        try (SeqIdToTaxIdIndex index = SeqIdToTaxIdIndex.open(file)) {
+            assertMatches(parse(SEQID2TAXID), index);
+        }
+    }
+    @Test
+    public void should_handle_empty_map() throws IOException {
+        SeqIdToTaxIdIndex index = new SeqIdToTaxIdIndexWriter().toIndex();
+        Assert.assertEquals(0, index.size());
+        Assert.assertNull(index.get("chr1"));
+        Assert.assertTrue(index.entrySet().isEmpty());
+    }
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_duplicate_sequence_ids() throws IOException {
+        SeqIdToTaxIdIndexWriter writer = new SeqIdToTaxIdIndexWriter();
+        writer.add("chr1", 1);
+        writer.add("chr1", 2);
+        writer.toIndex();
+    }
+}
@@ -0,0 +1,52 @@
+package au.edu.wehi.idsv.ncbi;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+public class TaxonomyIndexTest extends IntermediateFilesTest {
+    private static final File NODES = new File("src/test/resources/ncbi/test.nodes.dmp");
+    private static final File HOMO_SAPIENS_NODES = new File("src/test/resources/ncbi/homo_sapiens.nodes.dmp");
+    private static void assertMatches(Map<Integer, TaxonomyNode> expected, TaxonomyIndex index) {
+        Assert.assertEquals(TaxonomyHelper.maxTaxId(expected), index.getMaxTaxId());
+        for (int i = -1; i <= index.getMaxTaxId() + 1; i++) {
+            TaxonomyNode node = expected.get(i);
+            Assert.assertEquals(node != null, index.contains(i));
+            Assert.assertEquals(node == null ? TaxonomyIndex.NO_TAXID : node.parentTaxId, index.getParentTaxId(i));
+            Assert.assertEquals(node == null ? null : node.rank, index.getRank(i));
+        }
+    }
+    @Test
+    public void should_match_parsed_nodes_dmp() throws IOException {
+        assertMatches(TaxonomyHelper.parseFull(NODES), TaxonomyIndex.open(NODES));
+    }
+    @Test
+    public void should_memory_map_index_file() throws IOException {
+        File file = new File(testFolder.getRoot(), "nodes.idx");
+        TaxonomyIndexWriter writer = new TaxonomyIndexWriter();
+        writer.addNodesDmp(NODES);
+        writer.write(file);
+        Assert.assertTrue(TaxonomyIndex.isIndex(file));
+        Assert.assertFalse(TaxonomyIndex.isIndex(NODES));
+        try (TaxonomyIndex index = TaxonomyIndex.open(file)) {
+            assertMatches(TaxonomyHelper.parseFull(NODES), index);
+        }
+    }
+    @Test
+    public void inclusion_lookup_should_match_parsed_nodes_dmp() throws IOException {
+        Map<Integer, MinimalTaxonomyNode> taxa = TaxonomyHelper.parseMinimal(HOMO_SAPIENS_NODES);
+        TaxonomyIndex index = TaxonomyIndex.open(HOMO_SAPIENS_NODES);
+        for (List<Integer> taxIds : ImmutableList.of(ImmutableList.of(9606), ImmutableList.of(8287), ImmutableList.of(314293, 376912))) {
+            boolean[] expected = TaxonomyHelper.createInclusionLookup(taxIds, taxa);
+            boolean[] actual = TaxonomyHelper.createInclusionLookup(taxIds, index);
+            Assert.assertArrayEquals(expected, actual);
+            Assert.assertArrayEquals(TaxonomyHelper.addAncestors(expected, taxa), TaxonomyHelper.addAncestors(actual, index));
+        }
+    }
+}
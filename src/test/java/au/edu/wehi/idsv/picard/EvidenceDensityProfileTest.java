@@ -0,0 +1,42 @@
+package au.edu.wehi.idsv.picard;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import com.google.common.io.Files;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class EvidenceDensityProfileTest extends IntermediateFilesTest {
+	@Test
+	public void addDensity_should_distribute_across_bins() {
+		EvidenceDensityProfile profile = new EvidenceDensityProfile(SMALL_FA.getSequenceDictionary(), 10);
+		profile.addDensity(0, 5, 25, 2);
+		assertEquals(12, profile.getDensity(0, 0), 0);
+		assertEquals(20, profile.getDensity(0, 1), 0);
+		assertEquals(10, profile.getDensity(0, 2), 0);
+		assertEquals(0, profile.getDensity(0, 3), 0);
+		assertEquals(42, profile.getTotalDensity(), 0);
+	}
+	@Test
+	public void getBinCount_should_include_partial_final_bin() {
+		EvidenceDensityProfile profile = new EvidenceDensityProfile(SMALL_FA.getSequenceDictionary(), 3);
+		assertEquals(3334, profile.getBinCount(0));
+	}
+	@Test
+	public void fromBed_should_read_bedgraph_density() throws IOException {
+		File bed = new File(testFolder.getRoot(), "density.bed");
+		Files.asCharSink(bed, StandardCharsets.UTF_8).write(
+				"#comment\n" +
+				"polyA\t0\t10\t1.5\n" +
+				"polyACGT\t20\t30\t2\tname\n" +
+				"unknown\t0\t10\t100\n");
+		EvidenceDensityProfile profile = EvidenceDensityProfile.fromBed(bed, SMALL_FA.getSequenceDictionary(), 10);
+		assertEquals(15, profile.getDensity(0, 0), 0);
+		assertEquals(20, profile.getDensity(1, 2), 0);
+		assertEquals(35, profile.getTotalDensity(), 0);
+	}
+}
@@ -55,4 +55,78 @@ public class ReferenceLookupTest extends TestHelper {
 		Assert.assertEquals(4, intervals.get(2)[0].start);
 		Assert.assertEquals(4, intervals.get(2)[0].end);
 	}
+	private static InMemoryReferenceSequenceFile ref(int... lengths) {
+		String[] names = new String[lengths.length];
+		byte[][] bases = new byte[lengths.length][];
+		for (int i = 0; i < lengths.length; i++) {
+			names[i] = "chr" + (i + 1);
+			bases[i] = new byte[lengths[i]];
+			java.util.Arrays.fill(bases[i], (byte)'A');
+		}
+		return new InMemoryReferenceSequenceFile(names, bases);
+	}
+	private static void assertCoversReference(ReferenceLookup ref, List<QueryInterval[]> intervals) {
+		int referenceIndex = 0;
+		int position = 1;
+		for (QueryInterval[] chunk : intervals) {
+			for (QueryInterval qi : chunk) {
+				if (position > ref.getSequenceDictionary().getSequence(referenceIndex).getSequenceLength()) {
+					referenceIndex++;
+					position = 1;
+				}
+				Assert.assertEquals(referenceIndex, qi.referenceIndex);
+				Assert.assertEquals(position, qi.start);
+				position = qi.end + 1;
+			}
+		}
+		Assert.assertEquals(ref.getSequenceDictionary().size() - 1, referenceIndex);
+		Assert.assertEquals(ref.getSequenceDictionary().getSequence(referenceIndex).getSequenceLength() + 1, position);
+	}
+	@Test
+	public void getIntervals_density_should_cover_entire_reference() {
+		InMemoryReferenceSequenceFile ref = ref(1000, 55, 1, 333);
+		EvidenceDensityProfile profile = new EvidenceDensityProfile(ref.getSequenceDictionary(), 10);
+		profile.addDensity(0, 1, 100, 10);
+		profile.addDensity(1, 1, 55, 1);
+		profile.addDensity(3, 200, 333, 5);
+		assertCoversReference(ref, ref.getIntervals(100, 20, profile));
+		assertCoversReference(ref, ref.getIntervals(100, 0, profile));
+		assertCoversReference(ref, ref.getIntervals(1000, 1000, profile));
+		assertCoversReference(ref, ref.getIntervals(2, 0, profile));
+	}
+	@Test
+	public void getIntervals_density_should_use_smaller_chunks_in_high_density_regions() {
+		InMemoryReferenceSequenceFile ref = ref(1000);
+		EvidenceDensityProfile profile = new EvidenceDensityProfile(ref.getSequenceDictionary(), 10);
+		profile.addDensity(0, 1, 100, 100);
+		profile.addDensity(0, 101, 1000, 1);
+		List<QueryInterval[]> intervals = ref.getIntervals(100, 0, profile);
+		assertCoversReference(ref, intervals);
+		QueryInterval first = intervals.get(0)[0];
+		QueryInterval last = intervals.get(intervals.size() - 1)[0];
+		Assert.assertTrue(first.end - first.start < last.end - last.start);
+		Assert.assertTrue(first.end <= 100);
+	}
+	@Test
+	public void getIntervals_density_should_place_boundaries_in_low_density_regions() {
+		InMemoryReferenceSequenceFile ref = ref(1000);
+		EvidenceDensityProfile profile = new EvidenceDensityProfile(ref.getSequenceDictionary(), 10);
+		profile.addDensity(0, 1, 1000, 10);
+		// evidence-free gap within the snap window of the first chunk
+		profile.addDensity(0, 181, 200, -10);
+		List<QueryInterval[]> intervals = ref.getIntervals(200, 0, profile);
+		assertCoversReference(ref, intervals);
+		Assert.assertEquals(190, intervals.get(0)[0].end);
+	}
+	@Test
+	public void getIntervals_density_should_fall_back_to_fixed_size_without_evidence() {
+		InMemoryReferenceSequenceFile ref = ref(1000, 500);
+		EvidenceDensityProfile profile = new EvidenceDensityProfile(ref.getSequenceDictionary(), 10);
+		List<QueryInterval[]> expected = ref.getIntervals(100, 10);
+		List<QueryInterval[]> actual = ref.getIntervals(100, 10, profile);
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertArrayEquals(expected.get(i), actual.get(i));
+		}
+	}
 }
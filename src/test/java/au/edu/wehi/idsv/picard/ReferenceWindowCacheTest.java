@@ -0,0 +1,38 @@
+package au.edu.wehi.idsv.picard;
+
+import au.edu.wehi.idsv.TestHelper;
+import com.google.common.collect.ImmutableList;
+import htsjdk.samtools.QueryInterval;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+public class ReferenceWindowCacheTest extends TestHelper {
+	@Test
+	public void should_match_underlying_reference() {
+		ReferenceWindowCache cache = new ReferenceWindowCache(SMALL_FA, ImmutableList.of(
+				new QueryInterval(2, -10, 100),
+				new QueryInterval(2, 90, 200),
+				new QueryInterval(2, 1000, 1100),
+				new QueryInterval(3, 9000, 100000)), 10);
+		Random rng = new Random(0);
+		for (int i = 0; i < 1000; i++) {
+			int referenceIndex = 2 + rng.nextInt(2);
+			String contig = SMALL_FA.getSequenceDictionary().getSequence(referenceIndex).getSequenceName();
+			int length = SMALL_FA.getSequenceDictionary().getSequence(referenceIndex).getSequenceLength();
+			int start = 1 + rng.nextInt(length);
+			int end = Math.min(length, start + rng.nextInt(200));
+			assertArrayEquals(SMALL_FA.getSubsequenceAt(contig, start, end).getBases(), cache.getSubsequenceAt(contig, start, end).getBases());
+			assertEquals(SMALL_FA.getBase(referenceIndex, start), cache.getBase(referenceIndex, start));
+		}
+	}
+	@Test
+	public void should_pass_through_uncached_contigs() {
+		ReferenceWindowCache cache = new ReferenceWindowCache(SMALL_FA, ImmutableList.of(new QueryInterval(2, 1, 100)), 0);
+		assertArrayEquals(SMALL_FA.getSubsequenceAt("polyACGT", 1, 10).getBases(), cache.getSubsequenceAt("polyACGT", 1, 10).getBases());
+	}
+}
@@ -0,0 +1,73 @@
+package au.edu.wehi.idsv.repeatmasker;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import htsjdk.samtools.util.IntervalTree;
+import htsjdk.tribble.AbstractFeatureReader;
+import htsjdk.tribble.annotation.Strand;
+import htsjdk.tribble.bed.BEDFeature;
+import htsjdk.tribble.readers.LineIterator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class RepeatMaskerIndexTest extends IntermediateFilesTest {
+    private static final File BED = new File("src/test/resources/hg19.rm.bedops.bed");
+    private static IntervalTree<RepeatMaskerFeature> loadIntervalTree() throws IOException {
+        IntervalTree<RepeatMaskerFeature> tree = new IntervalTree<>();
+        try (AbstractFeatureReader<BEDFeature, LineIterator> reader = AbstractFeatureReader.getFeatureReader(BED.getPath(), new RepeatMaskerBEDCodec(), false)) {
+            for (BEDFeature feat : reader.iterator()) {
+                tree.put(feat.getStart(), feat.getEnd(), (RepeatMaskerFeature)feat);
+            }
+        }
+        return tree;
+    }
+    private static void assertMatches(IntervalTree<RepeatMaskerFeature> tree, RepeatMaskerIndex index) {
+        Assert.assertEquals(tree.size(), index.size());
+        Random rng = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            int start = 9000 + rng.nextInt(14000);
+            int end = start + rng.nextInt(1000);
+            List<RepeatMaskerFeature> expected = new ArrayList<>();
+            tree.overlappers(start, end).forEachRemaining(n -> expected.add(n.getValue()));
+            List<Integer> actual = new ArrayList<>();
+            index.forEachOverlap("chr1", start, end, actual::add);
+            Assert.assertEquals(expected.size(), actual.size());
+            for (int j = 0; j < expected.size(); j++) {
+                RepeatMaskerFeature f = expected.get(j);
+                int r = actual.get(j);
+                Assert.assertEquals(f.getStart(), index.getStart(r));
+                Assert.assertEquals(f.getEnd(), index.getEnd(r));
+                Assert.assertEquals(f.getRepeatType(), index.getRepeatType(r));
+                Assert.assertEquals(f.getRepeatClass(), index.getRepeatClass(r));
+                Assert.assertEquals(f.getStrand() == Strand.NEGATIVE, index.isNegativeStrand(r));
+            }
+        }
+    }
+    @Test
+    public void should_match_interval_tree_lookup() throws IOException {
+        assertMatches(loadIntervalTree(), RepeatMaskerIndex.open(BED));
+    }
+    @Test
+    public void should_memory_map_index_file() throws IOException {
+        File file = new File(testFolder.getRoot(), "rm.idx");
+        RepeatMaskerIndexWriter writer = new RepeatMaskerIndexWriter();
+        writer.addBed(BED);
+        writer.write(file);
+        Assert.assertTrue(RepeatMaskerIndex.isIndex(file));
+        Assert.assertFalse(RepeatMaskerIndex.isIndex(BED));
+        try (RepeatMaskerIndex index = RepeatMaskerIndex.open(file)) {
+            assertMatches(loadIntervalTree(), index);
+            Assert.assertEquals(1, index.getContigs().size());
+        }
+    }
+    @Test
+    public void should_ignore_unknown_contigs() throws IOException {
+        RepeatMaskerIndex index = RepeatMaskerIndex.open(BED);
+        index.forEachOverlap("chr2", 1, Integer.MAX_VALUE, r -> Assert.fail());
+    }
+}
@@ -133,4 +133,21 @@ public class DuplicatingIterableTest {
 		}
 		assertEquals(n, exceptionsFound);
 	}
-}
\ No newline at end of file
+	@Test
+	public void close_should_end_stream_for_lagging_iterators() throws InterruptedException {
+		List<Integer> list = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) list.add(i);
+		DuplicatingIterable<Integer> dib = new DuplicatingIterable<Integer>(2, list.iterator(), 2, false);
+		Thread feeder = new Thread(dib.getFeeder());
+		feeder.start();
+		Iterator<Integer> it1 = dib.iterator();
+		Iterator<Integer> it2 = dib.iterator();
+		it1.next();
+		// it2 is never consumed so the feeder is blocked
+		dib.close();
+		while (it1.hasNext()) it1.next();
+		feeder.join(10000);
+		assertFalse(feeder.isAlive());
+		while (it2.hasNext()) it2.next();
+	}
+}
@@ -0,0 +1,60 @@
+package au.edu.wehi.idsv.util;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class GangExecutorTest {
+	@Test
+	public void should_run_all_tasks_in_gang_concurrently() throws InterruptedException {
+		GangExecutor executor = new GangExecutor(3, "test-%d");
+		CountDownLatch started = new CountDownLatch(3);
+		List<Runnable> gang = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			gang.add(() -> {
+				started.countDown();
+				try {
+					// deadlocks unless every task in the gang is running
+					started.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			});
+		}
+		executor.execute(gang);
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+	}
+	@Test
+	public void should_bound_concurrent_tasks() throws InterruptedException {
+		GangExecutor executor = new GangExecutor(4, "test-%d");
+		CountDownLatch done = new CountDownLatch(60);
+		for (int i = 0; i < 20; i++) {
+			List<Runnable> gang = new ArrayList<>();
+			for (int j = 0; j < 3; j++) {
+				gang.add(() -> {
+					try {
+						Thread.sleep(1);
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+					done.countDown();
+				});
+			}
+			executor.execute(gang);
+		}
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertTrue(executor.getPeakActiveTasks() <= 4);
+		assertTrue(executor.getPoolSize() <= 4);
+		assertEquals(20, executor.getAdmittedGangs());
+	}
+	@Test(expected = IllegalArgumentException.class)
+	public void should_reject_gang_larger_than_thread_limit() throws InterruptedException {
+		new GangExecutor(1, "test-%d").execute(ImmutableList.of(() -> { }, () -> { }));
+	}
+}
@@ -0,0 +1,58 @@
+package au.edu.wehi.idsv.util;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class Murmur3HasherTest {
+	private static byte[] bytes(Murmur3Hasher h) {
+		byte[] b = new byte[16];
+		for (int i = 0; i < 16; i++) {
+			b[i] = (byte)h.getHashByte(i);
+		}
+		return b;
+	}
+	@Test
+	public void should_match_guava_murmur3_128() {
+		Random rng = new Random(0);
+		Murmur3Hasher h = new Murmur3Hasher();
+		for (int len = 0; len < 100; len++) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < len; i++) {
+				sb.append((char)(' ' + rng.nextInt(95)));
+			}
+			String s = sb.toString();
+			HashCode expected = Hashing.murmur3_128().hashString(s, StandardCharsets.US_ASCII);
+			h.reset().putAscii(s).hash();
+			assertArrayEquals(expected.asBytes(), bytes(h));
+		}
+	}
+	@Test
+	public void prefix_hash_should_not_affect_full_hash() {
+		Murmur3Hasher h = new Murmur3Hasher();
+		String s = "read_name_of_some_length#1#chr1#12345#+#10M5S#sc" ;
+		h.reset();
+		for (int i = 0; i < s.length(); i++) {
+			h.putAscii(s.charAt(i));
+			h.hash();
+			assertArrayEquals(Hashing.murmur3_128().hashString(s.substring(0, i + 1), StandardCharsets.US_ASCII).asBytes(), bytes(h));
+		}
+	}
+	@Test
+	public void putDecimal_should_hash_string_representation() {
+		Murmur3Hasher h1 = new Murmur3Hasher();
+		Murmur3Hasher h2 = new Murmur3Hasher();
+		for (int v : new int[] { 0, 1, 9, 10, 99, 100, 12345, -1, -10, Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+			h1.reset().putDecimal(v).hash();
+			h2.reset().putAscii(Integer.toString(v)).hash();
+			assertEquals(h2.getHash1(), h1.getHash1());
+			assertEquals(h2.getHash2(), h1.getHash2());
+		}
+	}
+}
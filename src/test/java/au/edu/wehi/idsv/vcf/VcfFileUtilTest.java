@@ -1,6 +1,67 @@
 package au.edu.wehi.idsv.vcf;
 
-public class VcfFileUtilTest {
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import au.edu.wehi.idsv.ProcessingContext;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class VcfFileUtilTest extends IntermediateFilesTest {
+	private File writeUnsorted(ProcessingContext pc, String name, VariantContext... data) {
+		File file = new File(testFolder.getRoot(), name);
+		try (VariantContextWriter writer = pc.getVariantContextWriter(file, false)) {
+			for (VariantContext vc : data) {
+				writer.add(vc);
+			}
+		}
+		return file;
+	}
+	private List<String> ids(File file) {
+		return getRawVcf(file).stream().map(vc -> vc.getID()).collect(Collectors.toList());
+	}
+	@Test
+	public void sortAndMerge_should_sort_each_input_and_merge() throws IOException {
+		ProcessingContext pc = getCommandlineContext();
+		File chunk0 = writeUnsorted(pc, "chunk0.vcf",
+				minimalVariant().chr("polyA").start(10).stop(10).id("a10").make(),
+				minimalVariant().chr("random").start(5).stop(5).id("c5").make(),
+				minimalVariant().chr("polyA").start(20).stop(20).id("a20").make());
+		File chunk1 = writeUnsorted(pc, "chunk1.vcf",
+				minimalVariant().chr("polyACGT").start(1).stop(1).id("b1").make(),
+				minimalVariant().chr("polyA").start(15).stop(15).id("a15").make(),
+				minimalVariant().chr("polyACGT").start(100).stop(100).id("b100").make());
+		File chunk2 = writeUnsorted(pc, "chunk2.vcf");
+		File out = new File(testFolder.getRoot(), "out.vcf");
+		ExecutorService threadpool = Executors.newFixedThreadPool(2);
+		try {
+			VcfFileUtil.sortAndMerge(pc, ImmutableList.of(chunk0, chunk1, chunk2), out, threadpool);
+		} finally {
+			threadpool.shutdown();
+		}
+		assertEquals(ImmutableList.of("a10", "a15", "a20", "b1", "b100", "c5"), ids(out));
+		assertFalse(new File(testFolder.getRoot(), "gridss.tmp.sorted.chunk0.vcf").exists());
+	}
+	@Test
+	public void merge_should_write_ties_in_input_order() throws IOException {
+		ProcessingContext pc = getCommandlineContext();
+		File in0 = writeUnsorted(pc, "in0.vcf", minimalVariant().start(10).stop(10).id("first").make());
+		File in1 = writeUnsorted(pc, "in1.vcf", minimalVariant().start(10).stop(10).id("second").make());
+		File out = new File(testFolder.getRoot(), "out.vcf");
+		VcfFileUtil.sortAndMerge(pc, ImmutableList.of(in0, in1), out, MoreExecutors.newDirectExecutorService());
+		assertEquals(ImmutableList.of("first", "second"), ids(out));
+	}
 	/*
 	public class TestCommandLineProgram extends CommandLineProgram {
 		public TestCommandLineProgram() {
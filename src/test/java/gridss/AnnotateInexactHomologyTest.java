@@ -1,14 +1,19 @@
 package gridss;
 
 import au.edu.wehi.idsv.*;
+import au.edu.wehi.idsv.alignment.BreakpointHomology;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
 import au.edu.wehi.idsv.vcf.VcfInfoAttributes;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 public class AnnotateInexactHomologyTest extends TestHelper {
@@ -29,4 +34,29 @@ public class AnnotateInexactHomologyTest extends TestHelper {
 		assertEquals(300, ((int[])e.getAttribute(VcfInfoAttributes.INEXACT_HOMPOS.attribute()))[1]);
 		threadpool.shutdown();
 	}
+	@Test
+	public void should_preserve_order_across_batches() {
+		ProcessingContext pc = getContext();
+		List<VariantContextDirectedEvidence> calls = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			if (i % 3 == 0) {
+				calls.add((VariantContextDirectedEvidence)minimalBreakend().breakend(new BreakendSummary(2, FWD, 10 + i), "").id("be" + i).make());
+			} else {
+				calls.add((VariantContextDirectedEvidence)minimalBreakend().breakpoint(new BreakpointSummary(2, FWD, 10 + i, 6, BWD, 500 - i), "").id("bp" + i).make());
+			}
+		}
+		AnnotateInexactHomology aih = new AnnotateInexactHomology();
+		aih.setContext(pc);
+		ExecutorService threadpool = Executors.newFixedThreadPool(4);
+		List<VariantContextDirectedEvidence> result = Lists.newArrayList(aih.iterator(new AutoClosingIterator<>(calls.iterator()), threadpool));
+		threadpool.shutdown();
+		assertEquals(calls.size(), result.size());
+		for (int i = 0; i < calls.size(); i++) {
+			assertEquals(calls.get(i).getID(), result.get(i).getID());
+			if (calls.get(i) instanceof VariantContextDirectedBreakpoint) {
+				VariantContextDirectedBreakpoint expected = BreakpointHomology.annotate(pc, (VariantContextDirectedBreakpoint)calls.get(i));
+				assertArrayEquals((int[])expected.getAttribute(VcfInfoAttributes.INEXACT_HOMPOS.attribute()), (int[])result.get(i).getAttribute(VcfInfoAttributes.INEXACT_HOMPOS.attribute()));
+			}
+		}
+	}
 }
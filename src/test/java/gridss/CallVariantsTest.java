@@ -16,6 +16,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -67,6 +68,71 @@ public class CallVariantsTest extends IntermediateFilesTest {
 		assertEquals(1, breakendAssemblies.size());
 		assembly.delete();
 	}
+	private File writeConfig(String name, String config) throws IOException {
+		File propfile = testFolder.newFile(name + ".properties");
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(propfile))) {
+			writer.write("assembly.k=5\n");
+			writer.write("minMapq=10\n");
+			writer.write("softclip.minLength=1\n");
+			writer.write("minAnchorShannonEntropy=0\n");
+			writer.write("softclip.minAnchorIdentity=0\n");
+			writer.write("softclip.minAverageQual=0\n");
+			writer.write("realignment.aligner=\n");
+			writer.write("variantcalling.writeFiltered=true\n");
+			writer.write("variantcalling.minScore=0\n");
+			writer.write("variantcalling.minReads=0\n");
+			writer.write(config);
+		}
+		return propfile;
+	}
+	private void addCommonArgs(CommandLineProgramHelper cmd, File propfile) {
+		cmd.addArg("INPUT", input.toString());
+		cmd.addArg("ASSEMBLY" , new File(testFolder.getRoot(), "assembly.bam").toString());
+		cmd.addArg("REFERENCE_SEQUENCE" , reference.toString());
+		cmd.addArg("TMP_DIR" ,super.testFolder.getRoot().toString());
+		cmd.addArg("WORKING_DIR" , super.testFolder.getRoot().toString());
+		cmd.addArg("CONFIGURATION_FILE" , propfile.toString());
+		cmd.addArg("INPUT_MIN_FRAGMENT_SIZE", "10");
+		cmd.addArg("INPUT_MAX_FRAGMENT_SIZE", "100");
+	}
+	private List<String> annotateVariants(File vcf, String name, String config, boolean chunked) throws IOException {
+		File annotated = new File(testFolder.getRoot(), name + ".vcf");
+		CommandLineProgramHelper cmd = new CommandLineProgramHelper(new AnnotateVariants());
+		addCommonArgs(cmd, writeConfig(name, config));
+		cmd.addArg("INPUT_VCF" , vcf.toString());
+		cmd.addArg("OUTPUT_VCF" , annotated.toString());
+		cmd.addArg("CHUNKED_ANNOTATION" , Boolean.toString(chunked));
+		assertEquals(0, cmd.run());
+		return Files.readAllLines(annotated.toPath()).stream()
+				.filter(line -> !line.startsWith("#"))
+				.collect(Collectors.toList());
+	}
+	@Test
+	public void chunked_annotation_should_match_sequential_annotation() throws IOException {
+		List<DirectedEvidence> in = new ArrayList<DirectedEvidence>();
+		in.add(SCE(FWD, withSequence("AACCGGTTCTA", Read(0, 15, "5M6S"))));
+		in.add(SCE(FWD, withSequence("AACCGGTTCTA", Read(0, 15, "6M5S"))));
+		in.add(NRRP(withSequence("AACCGGTTCTA", DP(0, 1, "11M", true, 1, 100, "11M", false))));
+		in.add(NRRP(withSequence("AACCGGTTCTA", DP(0, 2, "11M", true, 1, 100, "11M", false))));
+		List<SAMRecord> insam = in.stream().flatMap(de -> {
+			if (de instanceof SoftClipEvidence) return ImmutableList.<SAMRecord>of(((SoftClipEvidence)de).getSAMRecord()).stream();
+			if (de instanceof NonReferenceReadPair) return ImmutableList.<SAMRecord>of(
+					((NonReferenceReadPair)de).getNonReferenceRead(),
+					((NonReferenceReadPair)de).getLocalledMappedRead()).stream();
+			throw new RuntimeException("NYI");
+		}).collect(Collectors.toList());
+		insam.addAll(Lists.newArrayList(RP(0, 1, 100, 10)));
+		createInput(insam);
+		CommandLineProgramHelper cmd = new CommandLineProgramHelper(new CallVariants());
+		addCommonArgs(cmd, writeConfig("calls", ""));
+		cmd.addArg("OUTPUT" , output.toString());
+		assertEquals(0, cmd.run());
+		List<String> sequential = annotateVariants(output, "sequential", "", false);
+		// breakends of the breakpoint are now in different chunks
+		List<String> chunked = annotateVariants(output, "chunked", "chunkSize=60\nchunkSequenceChangePenalty=0\nchunkSplitCostMultiple=0\n", true);
+		assertTrue(sequential.size() > 0);
+		assertEquals(sequential, chunked);
+	}
 	@Test
 	public void should_handle_unpaired_libraries() throws IOException {
 		List<DirectedEvidence> in = new ArrayList<DirectedEvidence>();
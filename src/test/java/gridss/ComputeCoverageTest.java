@@ -1,6 +1,7 @@
 package gridss;
 
 import au.edu.wehi.idsv.IntermediateFilesTest;
+import au.edu.wehi.idsv.ReferenceCoverageIndex;
 import com.google.common.io.Files;
 import htsjdk.tribble.AbstractFeatureReader;
 import htsjdk.tribble.bed.BEDCodec;
@@ -95,4 +96,30 @@ public class ComputeCoverageTest extends IntermediateFilesTest {
 		expectBin("polyA", 21, 30, 50, list.get(2));
 		expectBin("polyA", 31, 40, 0, list.get(3));
 	}
+	@Test
+	public void should_write_reference_coverage_index() throws IOException {
+		output = new File(testFolder.getRoot(), "out.bed");
+		File index = new File(testFolder.getRoot(), "out" + ReferenceCoverageIndex.SUFFIX);
+		createInput(RP(0, 5, 21, 5));
+		String[] args = new String[] {
+				"INPUT=" + input.toString(),
+				"REFERENCE_SEQUENCE=" + reference.toString(),
+				"OUTPUT=" + output.toString(),
+				"TMP_DIR=" + super.testFolder.getRoot().toString(),
+				"OUTPUT_REFERENCE_COVERAGE_INDEX=" + index.toString(),
+				"REFERENCE_COVERAGE_INDEX_BIN_SIZE=1",
+				"READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE=0",
+				"READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE=100",
+		};
+		assertEquals(0, new ComputeCoverage().instanceMain(args));
+		try (ReferenceCoverageIndex rci = new ReferenceCoverageIndex(index, getSequenceDictionary(), 0)) {
+			assertEquals(0, rci.readsSupportingNoBreakendAfter(0, 4));
+			assertEquals(1, rci.readsSupportingNoBreakendAfter(0, 5));
+			assertEquals(0, rci.readsSupportingNoBreakendAfter(0, 9));
+			assertEquals(0, rci.readPairsSupportingNoBreakendAfter(0, 8));
+			assertEquals(1, rci.readPairsSupportingNoBreakendAfter(0, 9));
+			assertEquals(1, rci.readPairsSupportingNoBreakendAfter(0, 20));
+			assertEquals(0, rci.readPairsSupportingNoBreakendAfter(0, 21));
+		}
+	}
 }
@@ -2,6 +2,7 @@ package gridss;
 
 import au.edu.wehi.idsv.IntermediateFilesTest;
 import com.google.common.collect.ImmutableList;
+import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.fastq.FastqRecord;
 import org.junit.Assert;
@@ -12,6 +13,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class ExtractFragmentsToFastqTest extends IntermediateFilesTest {
     private List<List<FastqRecord>> go(Collection<String> readNames, SAMRecord... records) throws IOException {
@@ -72,4 +74,71 @@ public class ExtractFragmentsToFastqTest extends IntermediateFilesTest {
         assertLinesMatch(new File(sam.toString() + ".out.1.fq"), cmd.OUTPUT_FQ1);
         assertLinesMatch(new File(sam.toString() + ".out.2.fq"), cmd.OUTPUT_FQ2);
     }
-}
\ No newline at end of file
+    private static List<String> sortedFastq(List<FastqRecord> records) {
+        return records.stream().map(FastqRecord::toFastQString).sorted().collect(Collectors.toList());
+    }
+    @Test
+    public void low_memory_mode_should_match_c_implementation() throws IOException {
+        File sam = new File("src/test/resources/extractFragmentsToFastq/in.sam");
+        ExtractFragmentsToFastq cmd = new ExtractFragmentsToFastq();
+        cmd.LOW_MEMORY = true;
+        cmd.INPUT = sam;
+        cmd.READ_NAMES = new File(sam.toString() + ".readnames.txt");
+        cmd.OUTPUT_FQ = new File(output.toString() + ".u.fq");
+        cmd.OUTPUT_FQ1 = new File(output.toString() + ".1.fq");
+        cmd.OUTPUT_FQ2 = new File(output.toString() + ".2.fq");
+        cmd.TMP_DIR = ImmutableList.of(testFolder.getRoot());
+        Assert.assertEquals(0, cmd.doWork());
+        Assert.assertEquals(sortedFastq(getFastqRecords(new File(sam.toString() + ".out.u.fq"))), sortedFastq(getFastqRecords(cmd.OUTPUT_FQ)));
+        Assert.assertEquals(sortedFastq(getFastqRecords(new File(sam.toString() + ".out.1.fq"))), sortedFastq(getFastqRecords(cmd.OUTPUT_FQ1)));
+        Assert.assertEquals(sortedFastq(getFastqRecords(new File(sam.toString() + ".out.2.fq"))), sortedFastq(getFastqRecords(cmd.OUTPUT_FQ2)));
+    }
+    private List<List<FastqRecord>> goLowMemory(File bam, Collection<String> readNames) throws IOException {
+        File rnFile = new File(testFolder.getRoot(), "readnames.txt");
+        Files.write(rnFile.toPath(), readNames);
+        ExtractFragmentsToFastq cmd = new ExtractFragmentsToFastq();
+        cmd.LOW_MEMORY = true;
+        cmd.MAX_RECORDS_IN_RAM = 2;
+        cmd.TMP_DIR = ImmutableList.of(testFolder.getRoot());
+        cmd.INPUT = bam;
+        cmd.OUTPUT_FQ = new File(testFolder.getRoot(), "fq.fq");
+        cmd.OUTPUT_FQ1 = new File(testFolder.getRoot(), "fq1.fq");
+        cmd.OUTPUT_FQ2 = new File(testFolder.getRoot(), "fq2.fq");
+        cmd.READ_NAMES = rnFile;
+        Assert.assertEquals(0, cmd.doWork());
+        return ImmutableList.of(
+                getFastqRecords(cmd.OUTPUT_FQ),
+                getFastqRecords(cmd.OUTPUT_FQ1),
+                getFastqRecords(cmd.OUTPUT_FQ2));
+    }
+    @Test
+    public void low_memory_mode_should_pair_records_in_read_name_order() throws IOException {
+        SAMRecord[] r1 = withName("r1", DP(0, 1, "10M", true, 1, 10, "10M", true));
+        SAMRecord[] r2 = withName("r2", DP(0, 01, "10M", true, 0, 20, "10M", true));
+        SAMRecord[] r3 = withName("r3", DP(0, 5, "10M", true, 0, 30, "10M", true));
+        SAMRecord u = withName("u", Read(0, 1, "10M"))[0];
+        createInput(r1[0], r2[0], r2[1], r1[1], r3[0], r3[1], u);
+        List<List<FastqRecord>> result = goLowMemory(input, ImmutableList.of("u", "r2", "missing", "r1"));
+        Assert.assertEquals(1, result.get(0).size());
+        Assert.assertEquals("u", result.get(0).get(0).getReadName());
+        Assert.assertEquals(2, result.get(1).size());
+        Assert.assertEquals("r1", result.get(1).get(0).getReadName());
+        Assert.assertEquals("r2", result.get(1).get(1).getReadName());
+        Assert.assertEquals("r1", result.get(2).get(0).getReadName());
+        Assert.assertEquals("r2", result.get(2).get(1).getReadName());
+    }
+    @Test
+    public void low_memory_mode_should_merge_join_queryname_sorted_input() throws IOException {
+        SAMRecord[] r1 = withName("r1", DP(0, 1, "10M", true, 1, 10, "10M", true));
+        SAMRecord[] r2 = withName("r2", DP(0, 01, "10M", true, 0, 20, "10M", true));
+        SAMRecord[] r3 = withName("r3", DP(0, 5, "10M", true, 0, 30, "10M", true));
+        File bam = new File(testFolder.getRoot(), "qn.bam");
+        createBAM(bam, SAMFileHeader.SortOrder.queryname, r1[0], r1[1], r2[0], r2[1], r3[0]);
+        List<List<FastqRecord>> result = goLowMemory(bam, ImmutableList.of("r3", "r1"));
+        Assert.assertEquals(1, result.get(0).size());
+        Assert.assertEquals("r3", result.get(0).get(0).getReadName());
+        Assert.assertEquals(1, result.get(1).size());
+        Assert.assertEquals("r1", result.get(1).get(0).getReadName());
+        Assert.assertEquals("r1", result.get(2).get(0).getReadName());
+    }
+}
@@ -1,11 +1,20 @@
 package gridss;
 
-import au.edu.wehi.idsv.Hg19Tests;
-import au.edu.wehi.idsv.IdsvVariantContext;
-import au.edu.wehi.idsv.IntermediateFilesTest;
-import au.edu.wehi.idsv.ProcessingContext;
+import au.edu.wehi.idsv.*;
+import au.edu.wehi.idsv.vcf.VcfFormatAttributes;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Streams;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.tribble.Tribble;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.IndexFactory;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.vcf.VCFCodec;
+import htsjdk.variant.vcf.VCFHeader;
 import org.apache.commons.math3.util.Pair;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -13,7 +22,11 @@ import org.junit.experimental.categories.Category;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
@@ -150,4 +163,145 @@ public class GeneratePonBedpeTest extends IntermediateFilesTest {
         assertEquals(S(Files.readAllBytes(out_bed.toPath())), S(Files.readAllBytes(out2_bed.toPath())));
         assertEquals(S(Files.readAllBytes(out_bedpe.toPath())), S(Files.readAllBytes(out2_bedpe.toPath())));
     }
-}
\ No newline at end of file
+    @Test
+    @Category(Hg19Tests.class)
+    public void partitioned_should_match_unpartitioned() throws IOException {
+        File vcf = new File(testFolder.getRoot(), "input.vcf");
+        Files.copy(colo829.toPath(), vcf.toPath());
+        Index index = IndexFactory.createDynamicIndex(vcf, new VCFCodec());
+        IndexFactory.writeIndex(index, Tribble.indexFile(vcf));
+        File out_bed = new File(testFolder.getRoot(), "out.bed");
+        File out_bedpe = new File(testFolder.getRoot(), "out.bedpe");
+        File out2_bed = new File(testFolder.getRoot(), "out2.bed");
+        File out2_bedpe = new File(testFolder.getRoot(), "out2.bedpe");
+        File out3_bed = new File(testFolder.getRoot(), "out3.bed");
+        File out3_bedpe = new File(testFolder.getRoot(), "out3.bedpe");
+        File out4_bed = new File(testFolder.getRoot(), "out4.bed");
+        File out4_bedpe = new File(testFolder.getRoot(), "out4.bedpe");
+        new GeneratePonBedpe().instanceMain(new String[] {
+                "INPUT=" + vcf.getAbsolutePath(),
+                "OUTPUT_BED=" + out_bed.getAbsolutePath(),
+                "OUTPUT_BEDPE=" + out_bedpe.getAbsolutePath(),
+                "NORMAL_ORDINAL=1",
+                "R=" + Hg19Tests.findBroadHg19Reference().getAbsolutePath()
+        });
+        new GeneratePonBedpe().instanceMain(new String[] {
+                "INPUT=" + vcf.getAbsolutePath(),
+                "OUTPUT_BED=" + out2_bed.getAbsolutePath(),
+                "OUTPUT_BEDPE=" + out2_bedpe.getAbsolutePath(),
+                "NORMAL_ORDINAL=1",
+                "PARTITION_BY_CHROMOSOME=true",
+                "R=" + Hg19Tests.findBroadHg19Reference().getAbsolutePath()
+        });
+        assertEquals(S(Files.readAllBytes(out_bed.toPath())), S(Files.readAllBytes(out2_bed.toPath())));
+        assertEquals(S(Files.readAllBytes(out_bedpe.toPath())), S(Files.readAllBytes(out2_bedpe.toPath())));
+        // incremental update of an existing PON
+        new GeneratePonBedpe().instanceMain(new String[] {
+                "INPUT=" + vcf.getAbsolutePath(),
+                "OUTPUT_BED=" + out3_bed.getAbsolutePath(),
+                "OUTPUT_BEDPE=" + out3_bedpe.getAbsolutePath(),
+                "INPUT_BED=" + out_bed.getAbsolutePath(),
+                "INPUT_BEDPE=" + out_bedpe.getAbsolutePath(),
+                "NORMAL_ORDINAL=1",
+                "R=" + Hg19Tests.findBroadHg19Reference().getAbsolutePath()
+        });
+        new GeneratePonBedpe().instanceMain(new String[] {
+                "INPUT=" + vcf.getAbsolutePath(),
+                "OUTPUT_BED=" + out4_bed.getAbsolutePath(),
+                "OUTPUT_BEDPE=" + out4_bedpe.getAbsolutePath(),
+                "INPUT_BED=" + out_bed.getAbsolutePath(),
+                "INPUT_BEDPE=" + out_bedpe.getAbsolutePath(),
+                "NORMAL_ORDINAL=1",
+                "PARTITION_BY_CHROMOSOME=true",
+                "R=" + Hg19Tests.findBroadHg19Reference().getAbsolutePath()
+        });
+        assertEquals(S(Files.readAllBytes(out3_bed.toPath())), S(Files.readAllBytes(out4_bed.toPath())));
+        assertEquals(S(Files.readAllBytes(out3_bedpe.toPath())), S(Files.readAllBytes(out4_bedpe.toPath())));
+    }
+    private File createNormalVcf(String name, long seed) {
+        ProcessingContext pc = getContext();
+        Random rng = new Random(seed);
+        List<VariantContext> variants = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            BreakpointSummary bp = new BreakpointSummary(
+                    rng.nextInt(pc.getDictionary().size()), rng.nextBoolean() ? BreakendDirection.Forward : BreakendDirection.Backward, 100 + rng.nextInt(9000),
+                    rng.nextInt(pc.getDictionary().size()), rng.nextBoolean() ? BreakendDirection.Forward : BreakendDirection.Backward, 100 + rng.nextInt(9000));
+            double qual = rng.nextInt(150);
+            variants.add(normalVariant(new IdsvVariantContextBuilder(pc).breakpoint(bp, "").id(name + "_bp" + i + "o"), qual, 0));
+            variants.add(normalVariant(new IdsvVariantContextBuilder(pc).breakpoint(bp.remoteBreakpoint(), "").id(name + "_bp" + i + "h"), qual, 0));
+        }
+        for (int i = 0; i < 50; i++) {
+            BreakendSummary be = new BreakendSummary(rng.nextInt(pc.getDictionary().size()), rng.nextBoolean() ? BreakendDirection.Forward : BreakendDirection.Backward, 100 + rng.nextInt(9000));
+            variants.add(normalVariant(new IdsvVariantContextBuilder(pc).breakend(be, "").id(name + "_be" + i), 0, rng.nextInt(600)));
+        }
+        variants.sort(IdsvVariantContext.VariantContextByLocationStart(pc.getDictionary()));
+        File file = new File(testFolder.getRoot(), name + ".vcf");
+        try (VariantContextWriter writer = pc.getVariantContextWriter(file, new VCFHeader(Collections.emptySet(), ImmutableList.of("normal", "tumour")), true)) {
+            variants.forEach(writer::add);
+        }
+        return file;
+    }
+    private static VariantContext normalVariant(IdsvVariantContextBuilder builder, double breakpointQual, double breakendQual) {
+        return new VariantContextBuilder(builder.make())
+                .genotypes(
+                        new GenotypeBuilder("normal")
+                                .attribute(VcfFormatAttributes.BREAKPOINT_QUAL.attribute(), breakpointQual)
+                                .attribute(VcfFormatAttributes.BREAKEND_QUAL.attribute(), breakendQual)
+                                .make(),
+                        new GenotypeBuilder("tumour").make())
+                .make();
+    }
+    private void generatePon(List<File> input, File existing, File out, String... args) {
+        List<String> list = new ArrayList<>();
+        input.forEach(f -> list.add("INPUT=" + f.getAbsolutePath()));
+        list.add("OUTPUT_BED=" + out.getAbsolutePath() + ".bed");
+        list.add("OUTPUT_BEDPE=" + out.getAbsolutePath() + ".bedpe");
+        if (existing != null) {
+            list.add("INPUT_BED=" + existing.getAbsolutePath() + ".bed");
+            list.add("INPUT_BEDPE=" + existing.getAbsolutePath() + ".bedpe");
+        }
+        list.add("NORMAL_ORDINAL=0");
+        list.add("TMP_DIR=" + testFolder.getRoot().getAbsolutePath());
+        list.add("R=" + SMALL_FA_FILE.getAbsolutePath());
+        list.addAll(Arrays.asList(args));
+        assertEquals(0, new GeneratePonBedpe().instanceMain(list.toArray(new String[0])));
+    }
+    private void assertSamePon(File expected, File actual) throws IOException {
+        assertEquals(S(Files.readAllBytes(new File(expected.getAbsolutePath() + ".bed").toPath())), S(Files.readAllBytes(new File(actual.getAbsolutePath() + ".bed").toPath())));
+        assertEquals(S(Files.readAllBytes(new File(expected.getAbsolutePath() + ".bedpe").toPath())), S(Files.readAllBytes(new File(actual.getAbsolutePath() + ".bedpe").toPath())));
+    }
+    @Test
+    public void partitioned_should_match_unpartitioned_on_small_reference() throws IOException {
+        List<File> input = ImmutableList.of(createNormalVcf("n1", 1), createNormalVcf("n2", 2));
+        File unpartitioned = new File(testFolder.getRoot(), "unpartitioned");
+        generatePon(input, null, unpartitioned);
+        assertTrue(Files.readAllLines(new File(unpartitioned.getAbsolutePath() + ".bed").toPath()).size() > 0);
+        assertTrue(Files.readAllLines(new File(unpartitioned.getAbsolutePath() + ".bedpe").toPath()).size() > 0);
+        // multiple chromosomes per partition
+        File grouped = new File(testFolder.getRoot(), "grouped");
+        generatePon(input, null, grouped, "PARTITION_BY_CHROMOSOME=true", "WORKER_THREADS=3");
+        assertSamePon(unpartitioned, grouped);
+        // one chromosome per partition with partitions limited by the number of open files
+        File limited = new File(testFolder.getRoot(), "limited");
+        generatePon(input, null, limited, "PARTITION_BY_CHROMOSOME=true", "WORKER_THREADS=16", "MAX_OPEN_INPUT_FILES=2");
+        assertSamePon(unpartitioned, limited);
+        File perChromosome = new File(testFolder.getRoot(), "perChromosome");
+        generatePon(input, null, perChromosome, "PARTITION_BY_CHROMOSOME=true", "WORKER_THREADS=16");
+        assertSamePon(unpartitioned, perChromosome);
+        // incremental update of an existing PON
+        File incremental = new File(testFolder.getRoot(), "incremental");
+        generatePon(input, unpartitioned, incremental);
+        File incrementalPartitioned = new File(testFolder.getRoot(), "incrementalPartitioned");
+        generatePon(input, unpartitioned, incrementalPartitioned, "PARTITION_BY_CHROMOSOME=true", "WORKER_THREADS=3");
+        assertSamePon(incremental, incrementalPartitioned);
+    }
+    @Test
+    public void partitionContigs_should_group_contiguous_chromosomes() {
+        SAMSequenceDictionary dict = getContext().getDictionary();
+        List<List<SAMSequenceRecord>> partitions = GeneratePonBedpe.partitionContigs(dict, 3);
+        assertEquals(3, partitions.size());
+        assertEquals(dict.getSequences(), partitions.stream().flatMap(List::stream).collect(Collectors.toList()));
+        assertEquals(1, GeneratePonBedpe.partitionContigs(dict, 1).size());
+        assertEquals(dict.size(), GeneratePonBedpe.partitionContigs(dict, 100).size());
+    }
+}
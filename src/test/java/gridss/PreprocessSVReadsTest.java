@@ -0,0 +1,54 @@
+package gridss;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PreprocessSVReadsTest extends IntermediateFilesTest {
+	private int run(SAMFileHeader.SortOrder inputSortOrder, SAMRecord... records) {
+		createBAM(input, inputSortOrder, records);
+		PreprocessSVReads cmd = new PreprocessSVReads();
+		return cmd.instanceMain(new String[] {
+				"INPUT=" + input.getAbsolutePath(),
+				"OUTPUT=" + output.getAbsolutePath(),
+				"REFERENCE_SEQUENCE=" + reference.getAbsolutePath(),
+				"TMP_DIR=" + testFolder.getRoot().getAbsolutePath(),
+				"WORKER_THREADS=1",
+		});
+	}
+	@Test
+	public void should_extract_only_sv_reads() {
+		output = new java.io.File(testFolder.getRoot(), "out.sv.bam");
+		SAMRecord[] concordant = RP(0, 100, 300, 50);
+		SAMRecord clipped = Read(0, 200, "50M50S");
+		clipped.setReadName("clipped");
+		assertEquals(0, run(SAMFileHeader.SortOrder.queryname, concordant[0], concordant[1], clipped));
+		List<SAMRecord> out = getRecords(output);
+		assertTrue(out.stream().allMatch(r -> r.getReadName().equals("clipped")));
+		assertTrue(out.size() >= 1);
+	}
+	@Test
+	public void should_write_coordinate_sorted_output() {
+		output = new java.io.File(testFolder.getRoot(), "out.sv.bam");
+		SAMRecord r1 = Read(0, 500, "50M50S");
+		r1.setReadName("r1");
+		SAMRecord r2 = Read(0, 100, "50S50M");
+		r2.setReadName("r2");
+		SAMRecord r3 = Read(1, 100, "60M40S");
+		r3.setReadName("r3");
+		assertEquals(0, run(SAMFileHeader.SortOrder.unsorted, r3, r1, r2));
+		List<SAMRecord> out = getRecords(output);
+		assertTrue(out.size() >= 3);
+		SAMRecordCoordinateComparator cmp = new SAMRecordCoordinateComparator();
+		for (int i = 1; i < out.size(); i++) {
+			assertTrue(cmp.fileOrderCompare(out.get(i - 1), out.get(i)) <= 0);
+		}
+	}
+}
@@ -117,6 +117,34 @@ public class IdentifyViralTaxaTest extends IntermediateFilesTest {
         Assert.assertEquals(1+1, output.size()); // 1 + header
     }
     @Test
+    public void should_accept_taxonomy_indexes() throws IOException {
+        String datadir = "src/test/resources/kraken/genus/";
+        IndexTaxonomy index = new IndexTaxonomy();
+        index.NCBI_NODES_DMP = new File(datadir + "relevant_nodes.dmp");
+        index.SEQID2TAXID_MAP = new File(datadir + "seqid2taxid.map");
+        index.OUTPUT_NODES_INDEX = new File(testFolder.getRoot(), "nodes.idx");
+        index.OUTPUT_SEQID2TAXID_INDEX = new File(testFolder.getRoot(), "seqid2taxid.idx");
+        Assert.assertEquals(0, index.doWork());
+        IdentifyViralTaxa cmd = setup(
+                new File(datadir + "hbv.kraken2.report.all.txt"),
+                ImmutableList.of(new File(datadir + "relevant_ref.fa")),
+                new File(datadir + "relevant_nodes.dmp"),
+                new File(datadir + "seqid2taxid.map"),
+                ImmutableList.of(10239),
+                50,
+                TaxonomyLevel.Genus);
+        List<String> expected = Files.readAllLines(cmd.OUTPUT.toPath());
+        cmd = setup(
+                new File(datadir + "hbv.kraken2.report.all.txt"),
+                ImmutableList.of(new File(datadir + "relevant_ref.fa")),
+                index.OUTPUT_NODES_INDEX,
+                index.OUTPUT_SEQID2TAXID_INDEX,
+                ImmutableList.of(10239),
+                50,
+                TaxonomyLevel.Genus);
+        Assert.assertEquals(expected, Files.readAllLines(cmd.OUTPUT.toPath()));
+    }
+    @Test
     public void should_output_per_species() throws IOException {
         // Script to extract nodes.dmp and reference sequences of interest:
         // grep ~/dev/virusbreakend/virusbreakenddb/taxonomy/nodes.dmp -f <(cut -f 5 *.report.all.txt | sed 's/$/\t/' | sed 's/^/^/') > relevant_nodes.dmp
@@ -0,0 +1,118 @@
+package gridss.kraken;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import au.edu.wehi.idsv.kraken.KrakenClassification;
+import au.edu.wehi.idsv.kraken.KrakenClassificationChecker;
+import au.edu.wehi.idsv.kraken.KrakenParser;
+import com.google.common.collect.ImmutableList;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.RuntimeIOException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+public class SubsetToTaxonomyTest extends IntermediateFilesTest {
+    private static final File NODES = new File("src/test/resources/ncbi/homo_sapiens.nodes.dmp");
+    private static final List<Integer> TAXONOMY_IDS = ImmutableList.of(207598);
+    private static final String[] KMER_TAXA = { "0", "1", "A", "2759", "9606", "9605", "10239", "207598", "7711" };
+    private static List<String> randomKrakenOutput() {
+        Random rng = new Random(0);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder kmers = new StringBuilder();
+            for (int j = 1 + rng.nextInt(4); j > 0; j--) {
+                kmers.append(KMER_TAXA[rng.nextInt(KMER_TAXA.length)]).append(':').append(1 + rng.nextInt(30)).append(' ');
+            }
+            if (rng.nextBoolean()) {
+                kmers.setLength(kmers.length() - 1);
+                kmers.append("|:|");
+                kmers.append(KMER_TAXA[rng.nextInt(KMER_TAXA.length)]).append(':').append(1 + rng.nextInt(30));
+            }
+            String taxId = KMER_TAXA[rng.nextInt(KMER_TAXA.length)];
+            if (taxId.equals("A")) taxId = "0";
+            lines.add(String.format("%s\tread%d\t%s\t151\t%s", taxId.equals("0") ? "U" : "C", i, taxId, kmers.toString().trim()));
+        }
+        return lines;
+    }
+    private static List<String> expected(File krakenOutput) throws IOException {
+        KrakenClassificationChecker kcc = new KrakenClassificationChecker(TAXONOMY_IDS, NODES);
+        List<String> result = new ArrayList<>();
+        try (KrakenParser parser = new KrakenParser(new BufferedReader(new InputStreamReader(new FileInputStream(krakenOutput))))) {
+            while (parser.hasNext()) {
+                KrakenClassification kc = parser.next();
+                if (kcc.isOfInterest(kc)) {
+                    result.add(kc.toKrakenOutput());
+                }
+            }
+        }
+        return result;
+    }
+    private List<String> go(File krakenOutput, int threads) throws IOException {
+        SubsetToTaxonomy cmd = new SubsetToTaxonomy();
+        cmd.INPUT = krakenOutput;
+        cmd.OUTPUT = output;
+        cmd.NCBI_NODES_DMP = NODES;
+        cmd.TAXONOMY_IDS = TAXONOMY_IDS;
+        cmd.WORKER_THREADS = threads;
+        Assert.assertEquals(0, cmd.doWork());
+        return Files.readAllLines(output.toPath());
+    }
+    private static void write(List<String> lines, OutputStream os) throws IOException {
+        try (Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+    @Test
+    public void should_match_sequential_filtering_in_input_order() throws IOException {
+        File file = new File(testFolder.getRoot(), "kraken.txt");
+        write(randomKrakenOutput(), new FileOutputStream(file));
+        List<String> expected = expected(file);
+        Assert.assertTrue(expected.size() > 0);
+        Assert.assertTrue(expected.size() < 20000);
+        Assert.assertEquals(expected, go(file, 1));
+        Assert.assertEquals(expected, go(file, 4));
+    }
+    @Test
+    public void should_read_gzip_input() throws IOException {
+        List<String> lines = randomKrakenOutput();
+        File plain = new File(testFolder.getRoot(), "kraken.txt");
+        write(lines, new FileOutputStream(plain));
+        File gz = new File(testFolder.getRoot(), "kraken.txt.gz");
+        write(lines, new GZIPOutputStream(new FileOutputStream(gz)));
+        Assert.assertEquals(expected(plain), go(gz, 4));
+    }
+    @Test
+    public void should_read_bgzip_input() throws IOException {
+        List<String> lines = randomKrakenOutput();
+        File plain = new File(testFolder.getRoot(), "kraken.txt");
+        write(lines, new FileOutputStream(plain));
+        File bgz = new File(testFolder.getRoot(), "kraken.txt.bgz");
+        write(lines, new BlockCompressedOutputStream(bgz));
+        Assert.assertEquals(expected(plain), go(bgz, 4));
+    }
+    @Test
+    public void should_stop_at_first_empty_line() throws IOException {
+        List<String> lines = new ArrayList<>(randomKrakenOutput());
+        lines.add(100, "");
+        File file = new File(testFolder.getRoot(), "kraken.txt");
+        write(lines, new FileOutputStream(file));
+        List<String> expected = expected(file);
+        Assert.assertEquals(expected, go(file, 4));
+    }
+    @Test(expected = RuntimeIOException.class)
+    public void should_reject_zstd_input() throws IOException {
+        File file = new File(testFolder.getRoot(), "kraken.txt.zst");
+        Files.write(file.toPath(), new byte[] { 0x28, (byte)0xB5, 0x2F, (byte)0xFD, 0, 0, 0, 0 });
+        go(file, 1);
+    }
+}
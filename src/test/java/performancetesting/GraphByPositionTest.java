@@ -0,0 +1,59 @@
+package performancetesting;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.positional.ImmutableKmerNode;
+import au.edu.wehi.idsv.debruijn.positional.KmerNodeUtil;
+import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.KmerNodeByFirstStartKmerRingBufferNavigableSet;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Compares the assembly graph position lookups with a
+ * sliding window workload similar to NonReferenceContigAssembler
+ */
+public class GraphByPositionTest extends TestHelper {
+	private static final int NODES = 10000000;
+	private static final int WINDOW = 2000;
+	private static long slidingWindow(NavigableSet<ImmutableKmerNode> set) {
+		Random rng = new Random(0);
+		ArrayDeque<ImmutableKmerNode> loaded = new ArrayDeque<>();
+		long checksum = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < NODES; i++) {
+			int position = i / 8;
+			ImmutableKmerNode node = new ImmutableKmerNode(rng.nextLong(), position + rng.nextInt(100), position + 150, false, 1);
+			set.add(node);
+			loaded.add(node);
+			while (loaded.peekFirst().firstStart() < position - WINDOW) {
+				set.remove(loaded.pollFirst());
+			}
+			checksum += set.first().firstStart();
+			if (i % 1000 == 0) {
+				for (ImmutableKmerNode n : set) {
+					if (n.firstStart() > position - WINDOW / 2) break;
+					checksum += n.weight();
+				}
+				Iterator<ImmutableKmerNode> it = set.descendingIterator();
+				while (it.hasNext() && it.next().firstStart() > position - 16) {
+					checksum++;
+				}
+			}
+		}
+		System.out.println(String.format("%s: %dms (checksum %d)", set.getClass().getSimpleName(), (System.nanoTime() - start) / 1000000, checksum));
+		return checksum;
+	}
+	@Ignore // TODO: performance testing group
+	@Test
+	public void compare_sliding_window() {
+		for (int i = 0; i < 3; i++) {
+			slidingWindow(new TreeSet<>(KmerNodeUtil.ByFirstStartKmer));
+			slidingWindow(new KmerNodeByFirstStartKmerRingBufferNavigableSet<>(10));
+		}
+	}
+}